@@ -7,7 +7,9 @@ import org.broadinstitute.hellbender.utils.Utils;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -47,6 +49,17 @@ public class FeatureContext {
      */
     private final SimpleInterval interval;
 
+    /**
+     * Features of some FeatureInputs overlapping {@link #prefetchWindow}, fetched by {@link #prefetch}. Null unless
+     * this context was made by prefetch, in which case all queries are answered from these alone.
+     */
+    private final Map<FeatureInput<? extends Feature>, List<? extends Feature>> prefetchedFeatures;
+
+    /**
+     * The interval over which {@link #prefetchedFeatures} were fetched. Null unless this context was made by prefetch.
+     */
+    private final SimpleInterval prefetchWindow;
+
     /**
      * Creates an empty FeatureContext with no backing data source. All queries on this context will
      * return an empty List.
@@ -64,8 +77,49 @@ public class FeatureContext {
      * @param interval Interval to constrain queries on this FeatureContext. Null if we have no known location.
      */
     public FeatureContext(final FeatureManager featureManager, final SimpleInterval interval) {
+        this(featureManager, interval, null, null);
+    }
+
+    private FeatureContext(final FeatureManager featureManager, final SimpleInterval interval,
+                           final Map<FeatureInput<? extends Feature>, List<? extends Feature>> prefetchedFeatures,
+                           final SimpleInterval prefetchWindow) {
         this.featureManager = featureManager;
         this.interval = interval;
+        this.prefetchedFeatures = prefetchedFeatures;
+        this.prefetchWindow = prefetchWindow;
+    }
+
+    /**
+     * Fetches now all Features from the sources represented by the provided FeatureInput arguments that overlap this
+     * FeatureContext's query interval as expanded by the specified number of leading/trailing bases, and returns a
+     * FeatureContext with the same interval that answers queries from those Features alone.
+     *
+     * Feature sources may only be queried by the thread that traverses them, so this is how the Features of a
+     * locus are handed to another thread. The returned FeatureContext returns the same Features, in the same order,
+     * as this one for any query on the given FeatureInputs within the expanded window, and throws an
+     * IllegalArgumentException for queries on other FeatureInputs or outside of the window.
+     *
+     * @param featureDescriptors FeatureInput arguments for which to fetch Features; null elements are ignored
+     * @param windowLeadingBases Number of extra reference bases to fetch before the start of our interval. Must be >= 0.
+     * @param windowTrailingBases Number of extra reference bases to fetch after the end of our interval. Must be >= 0.
+     * @return a FeatureContext that no longer queries the feature sources, or this FeatureContext if it has no backing
+     *         data source and/or interval
+     */
+    public FeatureContext prefetch(final Collection<? extends FeatureInput<? extends Feature>> featureDescriptors,
+                                   final int windowLeadingBases, final int windowTrailingBases) {
+        Utils.nonNull(featureDescriptors);
+        if (featureManager == null || interval == null) {
+            return this;
+        }
+
+        final SimpleInterval window = getQueryInterval(windowLeadingBases, windowTrailingBases);
+        final Map<FeatureInput<? extends Feature>, List<? extends Feature>> features = new HashMap<>();
+        for (final FeatureInput<? extends Feature> featureDescriptor : featureDescriptors) {
+            if (featureDescriptor != null) {
+                features.put(featureDescriptor, getValues(featureDescriptor, window));
+            }
+        }
+        return new FeatureContext(featureManager, interval, features, window);
     }
 
     /**
@@ -160,9 +214,21 @@ public class FeatureContext {
         if (featureManager == null || queryInterval == null || featureDescriptor == null) {
             return Collections.emptyList();
         }
+        if (prefetchedFeatures != null) {
+            return getPrefetchedValues(featureDescriptor, queryInterval);
+        }
         return featureManager.getFeatures(featureDescriptor, queryInterval);
     }
 
+    @SuppressWarnings("unchecked")
+    private <T extends Feature> List<T> getPrefetchedValues(final FeatureInput<T> featureDescriptor, final SimpleInterval queryInterval) {
+        Utils.validateArg(prefetchedFeatures.containsKey(featureDescriptor), () -> "Features of " + featureDescriptor + " were not prefetched");
+        Utils.validateArg(prefetchWindow.contains(queryInterval), () -> "Query interval " + queryInterval + " is outside of the prefetched interval " + prefetchWindow);
+
+        final List<T> features = (List<T>) prefetchedFeatures.get(featureDescriptor);
+        return features.stream().filter(queryInterval::overlaps).collect(Collectors.toList());
+    }
+
     /**
      * Gets the query interval expanded by the specified number of leading/trailing bases, or null if this context has no interval.
      *
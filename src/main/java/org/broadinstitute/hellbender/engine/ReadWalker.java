@@ -5,14 +5,20 @@ import org.broadinstitute.hellbender.cmdline.GATKPlugin.GATKReadFilterPluginDesc
 import org.broadinstitute.hellbender.engine.filters.ReadFilter;
 import org.broadinstitute.hellbender.engine.filters.WellformedReadFilter;
 import org.broadinstitute.hellbender.transformers.ReadTransformer;
+import org.broadinstitute.hellbender.utils.IntervalUtils;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.engine.filters.CountingReadFilter;
 import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
 
 /**
  * A ReadWalker is a tool that processes a single read at a time from one or multiple sources of reads, with
@@ -103,6 +109,74 @@ public abstract class ReadWalker extends GATKTool {
         logger.info(countedFilter.getSummaryLine());
     }
 
+    /**
+     * @return the intervals to traverse: the intervals given by the user if there are any, otherwise all of the
+     *         contigs of the reads
+     */
+    protected final List<SimpleInterval> getTraversalIntervals() {
+        return hasIntervals() ? intervalsForTraversal : IntervalUtils.getAllIntervalsForReference(getHeaderForReads().getSequenceDictionary());
+    }
+
+    /**
+     * Alternative to {@link #traverse()} for tools that visit the genome a shard at a time, in an order of their
+     * own choosing, and that may stop before visiting all of it.
+     *
+     * The reads overlapping each shard are filtered, transformed and handed to {@link #apply} as in {@link #traverse()},
+     * except for those that also overlap a shard before it on the genome: each read is only processed with the
+     * first shard that it overlaps, whatever the order of the shards.  Unmapped reads without a position are not
+     * visited.
+     *
+     * @param shards disjoint intervals to visit, in the order in which to visit them
+     * @param isDone called after each shard; the traversal stops as soon as it returns true
+     * @return the number of shards that were visited
+     */
+    protected final int traverseShards(final List<SimpleInterval> shards, final BooleanSupplier isDone) {
+        Utils.nonNull(shards);
+        Utils.nonNull(isDone);
+
+        // the end of the closest shard before each shard on its contig, or 0 if there is none
+        final Map<SimpleInterval, Integer> previousShardEnds = new IdentityHashMap<>();
+        final List<SimpleInterval> sortedShards = new ArrayList<>(shards);
+        sortedShards.sort(Comparator.comparing(SimpleInterval::getContig).thenComparingInt(SimpleInterval::getStart));
+        SimpleInterval previousShard = null;
+        for ( final SimpleInterval shard : sortedShards ) {
+            final boolean sameContig = previousShard != null && previousShard.getContig().equals(shard.getContig());
+            Utils.validateArg(! sameContig || previousShard.getEnd() < shard.getStart(), "shards must not overlap");
+            previousShardEnds.put(shard, sameContig ? previousShard.getEnd() : 0);
+            previousShard = shard;
+        }
+
+        final CountingReadFilter countedFilter = makeReadFilter();
+        final ReadTransformer preTransformer = makePreReadFilterTransformer();
+        final ReadTransformer postTransformer = makePostReadFilterTransformer();
+        int numShardsVisited = 0;
+        for ( final SimpleInterval shard : shards ) {
+            final int previousShardEnd = previousShardEnds.get(shard);
+            reads.setTraversalBounds(Collections.singletonList(shard));
+            Utils.stream(reads)
+                    .filter(read -> read.getStart() > previousShardEnd)
+                    .map(preTransformer)
+                    .filter(countedFilter)
+                    .map(postTransformer)
+                    .forEach(read -> {
+                        final SimpleInterval readInterval = getReadInterval(read);
+                        apply(read,
+                              new ReferenceContext(reference, readInterval),
+                              new FeatureContext(features, readInterval));
+
+                        progressMeter.update(readInterval);
+                    });
+
+            numShardsVisited++;
+            if ( isDone.getAsBoolean() ) {
+                break;
+            }
+        }
+
+        logger.info(countedFilter.getSummaryLine());
+        return numShardsVisited;
+    }
+
     /**
      * Returns an interval for the read.
      * Note: some walkers must be able to work on any read, including those whose coordinates do not form a valid SimpleInterval.
@@ -30,6 +30,7 @@ import org.broadinstitute.hellbender.utils.gcs.BucketUtils;
 import org.broadinstitute.hellbender.utils.io.IOUtils;
 import org.broadinstitute.hellbender.utils.recalibration.BaseRecalibrationEngine;
 import org.broadinstitute.hellbender.utils.recalibration.RecalibrationArgumentCollection;
+import org.broadinstitute.hellbender.utils.recalibration.DenseRecalibrationTables;
 import org.broadinstitute.hellbender.utils.recalibration.RecalibrationTables;
 import org.broadinstitute.hellbender.utils.recalibration.covariates.StandardCovariateList;
 import org.broadinstitute.hellbender.utils.variant.GATKVariant;
@@ -152,13 +153,13 @@ public class BaseRecalibratorSparkSharded extends SparkCommandLineProgram {
 
         // run BaseRecalibratorEngine.
         BaseRecalibratorEngineSparkWrapper recal = new BaseRecalibratorEngineSparkWrapper(readsHeaderBcast, refDictionaryBcast, bqsrArgs);
-        JavaRDD<RecalibrationTables> tables = readsWithContext.mapPartitions(s->recal.apply(s));
+        JavaRDD<DenseRecalibrationTables> tables = readsWithContext.mapPartitions(s->recal.apply(s));
 
-        final RecalibrationTables emptyRecalibrationTable = new RecalibrationTables(new StandardCovariateList(bqsrArgs, readsHeader));
+        final DenseRecalibrationTables emptyRecalibrationTable = new DenseRecalibrationTables(new StandardCovariateList(bqsrArgs, readsHeader));
         final RecalibrationTables table = tables.treeAggregate(emptyRecalibrationTable,
-                RecalibrationTables::inPlaceCombine,
-                RecalibrationTables::inPlaceCombine,
-                Math.max(1, (int)(Math.log(tables.partitions().size()) / Math.log(2))));
+                DenseRecalibrationTables::inPlaceCombine,
+                DenseRecalibrationTables::inPlaceCombine,
+                Math.max(1, (int)(Math.log(tables.partitions().size()) / Math.log(2)))).toRecalibrationTables();
 
         BaseRecalibrationEngine.finalizeRecalibrationTables(table);
 
@@ -20,7 +20,7 @@ import java.util.Arrays;
 public final class BaseRecalibratorSparkFn {
 
     public static RecalibrationReport apply( final JavaPairRDD<GATKRead, ReadContextData> readsWithContext, final SAMFileHeader header, final SAMSequenceDictionary referenceDictionary, final RecalibrationArgumentCollection recalArgs ) {
-        JavaRDD<RecalibrationTables> unmergedTables = readsWithContext.mapPartitions(readWithContextIterator -> {
+        JavaRDD<DenseRecalibrationTables> unmergedTables = readsWithContext.mapPartitions(readWithContextIterator -> {
             final BaseRecalibrationEngine bqsr = new BaseRecalibrationEngine(recalArgs, header);
             bqsr.logCovariatesUsed();
 
@@ -32,14 +32,14 @@ public final class BaseRecalibratorSparkFn {
 
                 bqsr.processRead(readWithData._1(), refDS, variants);
             }
-            return Arrays.asList(bqsr.getRecalibrationTables()).iterator();
+            return Arrays.asList(bqsr.getDenseRecalibrationTables()).iterator();
         });
 
-        final RecalibrationTables emptyRecalibrationTable = new RecalibrationTables(new StandardCovariateList(recalArgs, header));
+        final DenseRecalibrationTables emptyRecalibrationTable = new DenseRecalibrationTables(new StandardCovariateList(recalArgs, header));
         final RecalibrationTables combinedTables = unmergedTables.treeAggregate(emptyRecalibrationTable,
-                RecalibrationTables::inPlaceCombine,
-                RecalibrationTables::inPlaceCombine,
-                Math.max(1, (int)(Math.log(unmergedTables.partitions().size()) / Math.log(2))));
+                DenseRecalibrationTables::inPlaceCombine,
+                DenseRecalibrationTables::inPlaceCombine,
+                Math.max(1, (int)(Math.log(unmergedTables.partitions().size()) / Math.log(2)))).toRecalibrationTables();
 
         BaseRecalibrationEngine.finalizeRecalibrationTables(combinedTables);
 
@@ -43,7 +43,7 @@ public final class BaseRecalibratorEngineSparkWrapper implements Serializable {
     // public functions (and constructors, those go first)
 
     /**
-     * Takes in reads + contextual data (overlapping reference bases and variants), spits out RecalibrationTables.
+     * Takes in reads + contextual data (overlapping reference bases and variants), spits out DenseRecalibrationTables.
      */
     public BaseRecalibratorEngineSparkWrapper(Broadcast<SAMFileHeader> headerBcast, Broadcast<SAMSequenceDictionary> referenceSequenceDictionaryBcast, RecalibrationArgumentCollection recalArgs) {
         this.headerBcast = headerBcast;
@@ -67,7 +67,7 @@ public final class BaseRecalibratorEngineSparkWrapper implements Serializable {
         }
     }
 
-    public Iterator<RecalibrationTables> apply(Iterator<ContextShard> shards) throws Exception {
+    public Iterator<DenseRecalibrationTables> apply(Iterator<ContextShard> shards) throws Exception {
         this.header = headerBcast.value();
         this.referenceSequenceDictionary = referenceSequenceDictionaryBcast.value();
         recalibrationEngine = new BaseRecalibrationEngine(recalArgs, header);
@@ -85,8 +85,8 @@ public final class BaseRecalibratorEngineSparkWrapper implements Serializable {
                 recalibrationEngine.processRead(read, refDS, variants);
             }
         }
-        ArrayList<RecalibrationTables> ret = new ArrayList<>();
-        ret.add(recalibrationEngine.getRecalibrationTables());
+        ArrayList<DenseRecalibrationTables> ret = new ArrayList<>();
+        ret.add(recalibrationEngine.getDenseRecalibrationTables());
         return ret.iterator();
     }
 
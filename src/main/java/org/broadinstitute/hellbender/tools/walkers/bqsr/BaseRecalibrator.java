@@ -13,19 +13,27 @@ import org.broadinstitute.hellbender.engine.filters.ReadFilter;
 import org.broadinstitute.hellbender.engine.filters.ReadFilterLibrary;
 import org.broadinstitute.hellbender.engine.filters.WellformedReadFilter;
 import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.IntervalUtils;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.recalibration.BaseRecalibrationEngine;
+import org.broadinstitute.hellbender.utils.recalibration.DenseRecalibrationTables;
+import org.broadinstitute.hellbender.utils.recalibration.ParallelBaseRecalibrationEngine;
 import org.broadinstitute.hellbender.utils.recalibration.QuantizationInfo;
 import org.broadinstitute.hellbender.utils.recalibration.RecalUtils;
 import org.broadinstitute.hellbender.utils.recalibration.RecalibrationArgumentCollection;
+import org.broadinstitute.hellbender.utils.recalibration.RecalibrationConvergence;
+import org.broadinstitute.hellbender.utils.variant.KnownSitesBitSet;
 import picard.cmdline.programgroups.ReadDataManipulationProgramGroup;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 /**
  * First pass of the base quality score recalibration.
@@ -72,6 +80,18 @@ import java.util.List;
  *   --known-sites another/optional/setOfSitesToMask.vcf \
  *   -O recal_data.table
  * </pre>
+ *
+ * <p>
+ * When the same known sites are used for many samples, they can be turned once into a compact bit set with
+ * {@link CreateKnownSitesBitSet}, which is much faster to open and query than the VCFs:
+ * </p>
+ * <pre>
+ * gatk BaseRecalibrator \
+ *   -I my_reads.bam \
+ *   -R reference.fasta \
+ *   --known-sites-bitset known_sites.knownsites \
+ *   -O recal_data.table
+ * </pre>
  */
 
 @CommandLineProgramProperties(
@@ -87,6 +107,15 @@ public final class BaseRecalibrator extends ReadWalker {
             "(such as read group, reported quality score, machine cycle, and nucleotide context).";
 
     public static final String KNOWN_SITES_ARG_FULL_NAME = "known-sites";
+    public static final String KNOWN_SITES_BITSET_LONG_NAME = "known-sites-bitset";
+    public static final String THREADS_LONG_NAME = "threads";
+    public static final String STOP_AT_CONVERGENCE_LONG_NAME = "stop-at-convergence";
+    public static final String CONVERGENCE_SHARD_SIZE_LONG_NAME = "convergence-shard-size";
+    public static final String CONVERGENCE_THRESHOLD_LONG_NAME = "convergence-threshold";
+    public static final String CONVERGENCE_SHARDS_LONG_NAME = "convergence-shards";
+
+    // shards are shuffled the same way in every run, so that runs are reproducible
+    private static final long CONVERGENCE_SHUFFLE_SEED = 47382911L;
 
     protected static final Logger logger = LogManager.getLogger(BaseRecalibrator.class);
 
@@ -103,8 +132,18 @@ public final class BaseRecalibrator extends ReadWalker {
      * use -XL my.interval.list to skip over processing those sites. Please note however that the statistics reported by the tool will not accurately
      * reflected those sites skipped by the -XL argument.
      */
-    @Argument(fullName = KNOWN_SITES_ARG_FULL_NAME, doc = "One or more databases of known polymorphic sites used to exclude regions around known polymorphisms from analysis.", optional = false)
-    private List<FeatureInput<Feature>> knownSites;
+    @Argument(fullName = KNOWN_SITES_ARG_FULL_NAME, doc = "One or more databases of known polymorphic sites used to exclude regions around known polymorphisms from analysis.", optional = true,
+            mutex = {KNOWN_SITES_BITSET_LONG_NAME})
+    private List<FeatureInput<Feature>> knownSites = new ArrayList<>();
+
+    /**
+     * The known sites as a bit set made by {@link CreateKnownSitesBitSet}, to be used instead of --known-sites.  Known
+     * sites next to each other are merged in the bit set, so an insertion in a read between two adjacent known sites
+     * is skipped as well; otherwise the same bases are skipped as with the original known sites.
+     */
+    @Argument(fullName = KNOWN_SITES_BITSET_LONG_NAME, doc = "Known polymorphic sites, as made by CreateKnownSitesBitSet, to use instead of --" + KNOWN_SITES_ARG_FULL_NAME, optional = true,
+            mutex = {KNOWN_SITES_ARG_FULL_NAME})
+    private File knownSitesBitSetFile = null;
 
     /**
      * After the header, data records occur one per line until the end of the file. The first several items on a line are the
@@ -115,8 +154,40 @@ public final class BaseRecalibrator extends ReadWalker {
     @Argument(shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME, fullName = StandardArgumentDefinitions.OUTPUT_LONG_NAME, doc = "The output recalibration table file to create", optional = false)
     private File recalTableFile = null;
 
+    /**
+     * Reads are recalibrated in batches of consecutive reads by this many threads, each collecting its own tables, and
+     * the tables are added up at the end.  The recalibration report is the same for any number of threads.
+     */
+    @Argument(fullName = THREADS_LONG_NAME, doc = "Number of threads that collect recalibration data", optional = true, minValue = 1)
+    private int threads = 1;
+
+    /**
+     * Rather than reading the whole input, visit the genome in shards of --convergence-shard-size bases, in a random
+     * order, and stop as soon as the empirical qualities of the quality score table have converged: when their largest
+     * change over a shard has stayed below --convergence-threshold for --convergence-shards shards in a row.  The
+     * fraction of the genome used and the last change, an estimate of the error in the empirical qualities, are logged.
+     */
+    @Argument(fullName = STOP_AT_CONVERGENCE_LONG_NAME, doc = "Sample the genome in random shards until the recalibration tables converge", optional = true)
+    private boolean stopAtConvergence = false;
+
+    @Argument(fullName = CONVERGENCE_SHARD_SIZE_LONG_NAME, doc = "Size, in bases, of the shards sampled with --" + STOP_AT_CONVERGENCE_LONG_NAME, optional = true, minValue = 1)
+    private int convergenceShardSize = 1_000_000;
+
+    @Argument(fullName = CONVERGENCE_THRESHOLD_LONG_NAME, doc = "Largest change in empirical quality over a shard for the tables to count as converged", optional = true, minValue = 0.0)
+    private double convergenceThreshold = 0.1;
+
+    @Argument(fullName = CONVERGENCE_SHARDS_LONG_NAME, doc = "Number of shards in a row that must be below the convergence threshold", optional = true, minValue = 1)
+    private int convergenceShards = 3;
+
     private BaseRecalibrationEngine recalibrationEngine;
 
+    private KnownSitesBitSet knownSitesBitSet = null;
+
+    /**
+     * Used instead of recalibrationEngine during the traversal when there is more than one thread
+     */
+    private ParallelBaseRecalibrationEngine parallelEngine = null;
+
     private ReferenceDataSource referenceDataSource; // datasource for the reference. We're using a different one from the engine itself to avoid messing with its caches.
 
     /**
@@ -129,6 +200,14 @@ public final class BaseRecalibrator extends ReadWalker {
         return true;
     }
 
+    @Override
+    protected String[] customCommandLineValidation() {
+        if ( knownSites.isEmpty() && knownSitesBitSetFile == null ) {
+            return new String[]{"Known sites must be given with either --" + KNOWN_SITES_ARG_FULL_NAME + " or --" + KNOWN_SITES_BITSET_LONG_NAME};
+        }
+        return super.customCommandLineValidation();
+    }
+
     /**
      * Parse the -cov arguments and create a list of covariates to be used here
      * Based on the covariates' estimates for initial capacity allocate the data hashmap
@@ -143,7 +222,17 @@ public final class BaseRecalibrator extends ReadWalker {
 
         recalibrationEngine = new BaseRecalibrationEngine(recalArgs, getHeaderForReads());
         recalibrationEngine.logCovariatesUsed();
-        referenceDataSource = ReferenceDataSource.of(referenceArguments.getReferencePath());
+        if ( knownSitesBitSetFile != null ) {
+            knownSitesBitSet = new KnownSitesBitSet(knownSitesBitSetFile.toPath());
+        }
+        if ( threads > 1 ) {
+            logger.info("Collecting recalibration data with " + threads + " threads");
+            parallelEngine = new ParallelBaseRecalibrationEngine(recalArgs, getHeaderForReads(),
+                    () -> ReferenceDataSource.of(referenceArguments.getReferencePath()), knownSitesBitSet,
+                    threads, ParallelBaseRecalibrationEngine.DEFAULT_BATCH_SIZE);
+        } else {
+            referenceDataSource = ReferenceDataSource.of(referenceArguments.getReferencePath());
+        }
     }
 
     @Override
@@ -182,11 +271,62 @@ public final class BaseRecalibrator extends ReadWalker {
      */
     @Override
     public void apply( GATKRead read, ReferenceContext ref, FeatureContext featureContext ) {
-        recalibrationEngine.processRead(read, referenceDataSource, featureContext.getValues(knownSites));
+        if ( knownSitesBitSet != null ) {
+            if ( parallelEngine != null ) {
+                parallelEngine.processRead(read);
+            } else {
+                recalibrationEngine.processRead(read, referenceDataSource, knownSitesBitSet);
+            }
+            return;
+        }
+
+        // known sites are looked up here, on the traversal thread, since the feature sources aren't thread-safe
+        if ( parallelEngine != null ) {
+            parallelEngine.processRead(read, featureContext.getValues(knownSites));
+        } else {
+            recalibrationEngine.processRead(read, referenceDataSource, featureContext.getValues(knownSites));
+        }
+    }
+
+    /**
+     * With --stop-at-convergence, visit shards of the traversal intervals in a random order until the tables converge;
+     * otherwise traverse all the reads in order
+     */
+    @Override
+    public void traverse() {
+        if ( ! stopAtConvergence ) {
+            super.traverse();
+            return;
+        }
+
+        final List<SimpleInterval> shards = IntervalUtils.cutToShards(getTraversalIntervals(), convergenceShardSize);
+        Collections.shuffle(shards, new Random(CONVERGENCE_SHUFFLE_SEED));
+
+        final RecalibrationConvergence convergence = new RecalibrationConvergence(convergenceThreshold, convergenceShards);
+        final int numShardsVisited = traverseShards(shards, () -> convergence.update(getCountsSoFar()));
+
+        final long basesVisited = shards.subList(0, numShardsVisited).stream().mapToLong(SimpleInterval::size).sum();
+        final long totalBases = shards.stream().mapToLong(SimpleInterval::size).sum();
+        final String fractionUsed = String.format("%d of %d shards (%.2f%% of %d bases)", numShardsVisited, shards.size(),
+                totalBases == 0 ? 0.0 : 100.0 * basesVisited / totalBases, totalBases);
+        if ( convergence.hasConverged() ) {
+            logger.info("Recalibration tables converged after " + fractionUsed + "; estimated error in empirical qualities: " +
+                    String.format("%.3f", convergence.getLastChange()));
+        } else {
+            logger.info("Recalibration tables did not converge after " + fractionUsed + "; last change in empirical qualities: " +
+                    String.format("%.3f", convergence.getLastChange()));
+        }
+    }
+
+    private DenseRecalibrationTables getCountsSoFar() {
+        return parallelEngine != null ? parallelEngine.combineCounts() : recalibrationEngine.getDenseRecalibrationTables();
     }
 
     @Override
     public Object onTraversalSuccess() {
+        if ( parallelEngine != null ) {
+            recalibrationEngine = parallelEngine.finish();
+        }
         recalibrationEngine.finalizeData();
 
         logger.info("Calculating quantized quality scores...");
@@ -217,4 +357,14 @@ public final class BaseRecalibrator extends ReadWalker {
             throw new UserException.CouldNotCreateOutputFile(recalTableFile, e);
         }
     }
+
+    @Override
+    public void closeTool() {
+        if ( parallelEngine != null ) {
+            parallelEngine.close();
+        }
+        if ( referenceDataSource != null ) {
+            referenceDataSource.close();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,74 @@
+package org.broadinstitute.hellbender.tools.walkers.bqsr;
+
+import com.google.common.collect.Iterators;
+import htsjdk.tribble.Feature;
+import org.broadinstitute.barclay.argparser.Argument;
+import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
+import org.broadinstitute.barclay.help.DocumentedFeature;
+import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
+import org.broadinstitute.hellbender.engine.FeatureDataSource;
+import org.broadinstitute.hellbender.engine.FeatureInput;
+import org.broadinstitute.hellbender.engine.GATKTool;
+import org.broadinstitute.hellbender.utils.variant.KnownSitesBitSet;
+import picard.cmdline.programgroups.ReadDataManipulationProgramGroup;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Turns the known sites of variation used by {@link BaseRecalibrator} into a compact bit set of the reference positions
+ * they cover, to be given to BaseRecalibrator with --known-sites-bitset instead of --known-sites.
+ *
+ * <p>
+ * The bit set takes one bit for each position of the reference (about 400MB for a human genome), is opened without
+ * being read and answers queries without decoding any records, so it only has to be made once for all of the samples
+ * recalibrated with the same known sites.
+ * </p>
+ *
+ * <h3>Usage example</h3>
+ * <pre>
+ * gatk CreateKnownSitesBitSet \
+ *   -R reference.fasta \
+ *   --known-sites sites_of_variation.vcf \
+ *   --known-sites another/optional/setOfSitesToMask.vcf \
+ *   -O known_sites.knownsites
+ * </pre>
+ */
+@CommandLineProgramProperties(
+        summary = "Writes the positions covered by known sites of variation as a bit set for BaseRecalibrator",
+        oneLineSummary = "Make a known sites bit set for BaseRecalibrator",
+        programGroup = ReadDataManipulationProgramGroup.class
+)
+@DocumentedFeature
+public final class CreateKnownSitesBitSet extends GATKTool {
+
+    @Argument(fullName = BaseRecalibrator.KNOWN_SITES_ARG_FULL_NAME, doc = "One or more databases of known polymorphic sites", optional = false)
+    private List<FeatureInput<Feature>> knownSites;
+
+    @Argument(shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME, fullName = StandardArgumentDefinitions.OUTPUT_LONG_NAME,
+            doc = "The known sites bit set file to create; by convention with the extension " + KnownSitesBitSet.FILE_EXTENSION, optional = false)
+    private File output;
+
+    @Override
+    public boolean requiresReference() {
+        return true;
+    }
+
+    @Override
+    public void traverse() {
+        final List<FeatureDataSource<Feature>> dataSources = new ArrayList<>(knownSites.size());
+        try {
+            final List<Iterator<Feature>> iterators = new ArrayList<>(knownSites.size());
+            for ( final FeatureInput<Feature> input : knownSites ) {
+                final FeatureDataSource<Feature> dataSource = new FeatureDataSource<>(input, 0, Feature.class);
+                dataSources.add(dataSource);
+                iterators.add(dataSource.iterator());
+            }
+            KnownSitesBitSet.write(output.toPath(), getReferenceDictionary(), Iterators.concat(iterators.iterator()));
+        } finally {
+            dataSources.forEach(FeatureDataSource::close);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.broadinstitute.hellbender.tools.walkers.contamination;
 
+import htsjdk.samtools.SAMFileHeader;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.vcf.VCFConstants;
 import org.broadinstitute.barclay.argparser.Argument;
@@ -18,11 +19,15 @@ import org.broadinstitute.hellbender.engine.filters.ReadFilterLibrary;
 import org.broadinstitute.hellbender.engine.filters.WellformedReadFilter;
 import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.GATKProtectedVariantContextUtils;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.utils.pileup.ReadPileup;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.StreamSupport;
 
 /**
  * <p>Summarizes counts of reads that support reference, alternate and other alleles for given sites. Results can be used with {@link CalculateContamination}.</p>
@@ -67,6 +72,19 @@ import java.util.List;
  * </pre>
  *
  * <p>
+ * With dense sites, such as common germline sites on a whole genome, it is much faster to read the reads once in
+ * coordinate order than to query the reads of each site. The table is the same.
+ * </p>
+ *
+ * <pre>
+ * gatk GetPileupSummaries \
+ *   -I tumor.bam \
+ *   -V common_biallelic.vcf.gz \
+ *   --stream-reads \
+ *   -O pileups.table
+ * </pre>
+ *
+ * <p>
  * GetPileupSummaries tabulates results into six columns as shown below.
  * The alt_count and allele_frequency correspond to the ALT allele in the germline resource.
  * </p>
@@ -102,6 +120,7 @@ public class GetPileupSummaries extends MultiVariantWalker {
     public static final String MIN_SITE_AF_SHORT_NAME = "min-af";
     public static final String MIN_MAPPING_QUALITY_LONG_NAME = "min-mapping-quality";
     public static final String MIN_MAPPING_QUALITY_SHORT_NAME = "mmq";
+    public static final String STREAM_READS_LONG_NAME = "stream-reads";
 
     private static final double DEFAULT_MIN_POPULATION_AF = 0.01;
     private static final double DEFAULT_MAX_POPULATION_AF = 0.2;
@@ -125,6 +144,14 @@ public class GetPileupSummaries extends MultiVariantWalker {
     @Argument(fullName = MIN_MAPPING_QUALITY_LONG_NAME, shortName = MIN_MAPPING_QUALITY_SHORT_NAME, doc = "Minimum read mapping quality", optional = true)
     private int minMappingQuality = DEFAULT_MINIMUM_MAPPING_QUALITY;
 
+    /**
+     * Rather than querying the reads overlapping each site, read all of the reads once, in coordinate order, and count
+     * their bases at the sites as both go by.  Each read is then decoded once, however many sites it overlaps, which
+     * is much faster when most reads overlap some site.  The reads must be sorted by coordinate.
+     */
+    @Argument(fullName = STREAM_READS_LONG_NAME, doc = "Read the reads once in coordinate order rather than querying them at each site", optional = true)
+    private boolean streamReads = false;
+
     private final List<PileupSummary> pileupSummaries = new ArrayList<>();
 
     private VariantContext lastVariant = null;
@@ -165,19 +192,55 @@ public class GetPileupSummaries extends MultiVariantWalker {
         if (!alleleFrequencyInHeader) {
             throw new UserException.BadInput("Population vcf does not have an allele frequency (AF) info field in its header.");
         }
+        if (streamReads && getHeaderForReads().getSortOrder() != SAMFileHeader.SortOrder.coordinate) {
+            throw new UserException.BadInput("Reads must be sorted by coordinate with --" + STREAM_READS_LONG_NAME);
+        }
     }
 
     @Override
-    public void apply(final VariantContext vc, final ReadsContext readsContext, final ReferenceContext referenceContext, final FeatureContext featureContext ) {
-        // if we input multiple sources of variants, ignore repeats
-        if (lastVariant != null && vc.getStart() == lastVariant.getStart()) {
+    public void traverse() {
+        if (!streamReads) {
+            super.traverse();
             return;
-        } else if ( vc.isBiallelic() && vc.isSNP() && alleleFrequencyInRange(vc) ) {
+        }
+
+        // the same reads, by the same filters, as the pileups of apply()
+        final Iterator<GATKRead> reads = getTransformedReadStream(makeReadFilter())
+                .filter(ReadFilterLibrary.PASSES_VENDOR_QUALITY_CHECK.and(ReadFilterLibrary.NOT_DUPLICATE))
+                .filter(read -> read.getMappingQuality() >= minMappingQuality)
+                .iterator();
+        final SiteBaseCounter baseCounter = new SiteBaseCounter(reads, getHeaderForReads().getSequenceDictionary());
+
+        StreamSupport.stream(getSpliteratorForDrivingVariants(), false)
+                .filter(makeVariantFilter())
+                .forEach(vc -> {
+                    if (isSiteToSummarize(vc)) {
+                        pileupSummaries.add(new PileupSummary(vc, baseCounter.getBaseCounts(vc.getContig(), vc.getStart())));
+                    }
+                    progressMeter.update(new SimpleInterval(vc));
+                });
+    }
+
+    @Override
+    public void apply(final VariantContext vc, final ReadsContext readsContext, final ReferenceContext referenceContext, final FeatureContext featureContext ) {
+        if (isSiteToSummarize(vc)) {
             final ReadPileup pileup = GATKProtectedVariantContextUtils.getPileup(vc, readsContext)
                     .makeFilteredPileup(pe -> pe.getRead().getMappingQuality() >= minMappingQuality);
             pileupSummaries.add(new PileupSummary(vc, pileup));
         }
+    }
+
+    /**
+     * @return true if vc is a biallelic SNP whose allele frequency is in range, and isn't at the same position as the
+     *         previous variant (from another source of variants)
+     */
+    private boolean isSiteToSummarize(final VariantContext vc) {
+        // if we input multiple sources of variants, ignore repeats
+        if (lastVariant != null && vc.getStart() == lastVariant.getStart()) {
+            return false;
+        }
         lastVariant = vc;
+        return vc.isBiallelic() && vc.isSNP() && alleleFrequencyInRange(vc);
     }
 
     @Override
@@ -0,0 +1,128 @@
+package org.broadinstitute.hellbender.tools.walkers.contamination;
+
+import htsjdk.samtools.CigarElement;
+import htsjdk.samtools.CigarOperator;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.util.PeekableIterator;
+import org.broadinstitute.hellbender.utils.BaseUtils;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Counts the bases of reads at a series of sites, reading the reads only once, in coordinate order, alongside the sites.
+ *
+ * <p>
+ *     Sites must be given in the order of the reads: by contig in the order of the sequence dictionary, and by
+ *     position within a contig.  Reads are taken from the iterator as the sites reach their start, and are kept only
+ *     until the sites move past their end, so each read is decoded once however many sites it overlaps.
+ * </p>
+ *
+ * <p>
+ *     The counts are those of {@link org.broadinstitute.hellbender.utils.pileup.ReadPileup#getBaseCounts()} for the
+ *     pileup of the same reads at the site: deletions and bases other than A, C, G and T are not counted, and a read
+ *     that skips over the site with an N cigar operator counts its last base before the skip, as its pileup element does.
+ * </p>
+ */
+public final class SiteBaseCounter {
+    private final PeekableIterator<GATKRead> reads;
+    private final SAMSequenceDictionary dictionary;
+
+    /**
+     * Reads on the contig of the last site that start at or before it and that hadn't ended before it
+     */
+    private final List<GATKRead> window = new ArrayList<>();
+
+    private int contigIndex = -1;
+    private int position = 0;
+
+    /**
+     * @param reads mapped reads sorted by coordinate; must not be used by the caller afterwards
+     * @param dictionary sequence dictionary of the reads
+     */
+    public SiteBaseCounter(final Iterator<GATKRead> reads, final SAMSequenceDictionary dictionary) {
+        this.reads = new PeekableIterator<>(Utils.nonNull(reads));
+        this.dictionary = Utils.nonNull(dictionary);
+    }
+
+    /**
+     * Count the bases of the reads at a site
+     *
+     * @param contig contig of the site
+     * @param position 1-based position of the site; must not come before the previous site
+     * @return counts of the bases of the reads at the site, indexed by {@link BaseUtils#simpleBaseToBaseIndex}
+     */
+    public int[] getBaseCounts(final String contig, final int position) {
+        Utils.nonNull(contig);
+        final int[] counts = new int[4];
+        final int siteContigIndex = dictionary.getSequenceIndex(contig);
+        if ( siteContigIndex < 0 ) {
+            // there are no reads on contigs that aren't in the dictionary
+            return counts;
+        }
+        Utils.validateArg(siteContigIndex > contigIndex || (siteContigIndex == contigIndex && position >= this.position),
+                () -> "Site " + contig + ":" + position + " comes before the previous site");
+
+        if ( siteContigIndex != contigIndex ) {
+            window.clear();
+        }
+        contigIndex = siteContigIndex;
+        this.position = position;
+
+        window.removeIf(read -> read.getEnd() < position);
+        while ( reads.hasNext() ) {
+            final GATKRead read = reads.peek();
+            // unmapped reads without an assigned position come after all others
+            if ( read.getAssignedContig() == null ) {
+                break;
+            }
+            final int readContigIndex = dictionary.getSequenceIndex(read.getAssignedContig());
+            if ( readContigIndex > contigIndex || (readContigIndex == contigIndex && read.getAssignedStart() > position) ) {
+                break;
+            }
+            reads.next();
+            if ( !read.isUnmapped() && readContigIndex == contigIndex && read.getEnd() >= position ) {
+                window.add(read);
+            }
+        }
+
+        for ( final GATKRead read : window ) {
+            final int baseIndex = baseIndexAt(read, position);
+            if ( baseIndex >= 0 ) {
+                counts[baseIndex]++;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @return the base index of the base of read aligned to position, or -1 if it's a deletion, isn't a regular base
+     *         or the read doesn't cover position
+     */
+    private static int baseIndexAt(final GATKRead read, final int position) {
+        int referencePosition = read.getStart();
+        int readOffset = 0;
+        for ( final CigarElement element : read.getCigarElements() ) {
+            final CigarOperator operator = element.getOperator();
+            final int length = element.getLength();
+            if ( operator.consumesReferenceBases() ) {
+                if ( position < referencePosition + length ) {
+                    if ( operator.consumesReadBases() ) {
+                        return BaseUtils.simpleBaseToBaseIndex(read.getBase(readOffset + position - referencePosition));
+                    } else if ( operator == CigarOperator.N && readOffset > 0 ) {
+                        return BaseUtils.simpleBaseToBaseIndex(read.getBase(readOffset - 1));
+                    }
+                    return -1;
+                }
+                referencePosition += length;
+            }
+            if ( operator.consumesReadBases() ) {
+                readOffset += length;
+            }
+        }
+        return -1;
+    }
+}
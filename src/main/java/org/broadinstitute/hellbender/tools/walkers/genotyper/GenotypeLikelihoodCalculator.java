@@ -23,8 +23,8 @@ public final class GenotypeLikelihoodCalculator {
      * Offset table for this calculator.
      *
      * <p>
-     *     This is a shallow copy of {@link GenotypeLikelihoodCalculators#alleleFirstGenotypeOffsetByPloidy} when the calculator was created
-     *     thus it follows the same format as that array. Please refer to its documentation.
+     *     This is shared with other calculators with the same ploidy and allele count and follows the format described in
+     *     {@link GenotypeLikelihoodCalculators#buildAlleleFirstGenotypeOffsetTable}. Please refer to its documentation.
      * </p>
      *
      * <p>You can assume that this offset table contain at least (probably more) the numbers corresponding to the allele count and ploidy for this calculator.
@@ -36,8 +36,11 @@ public final class GenotypeLikelihoodCalculator {
     /**
      * Genotype table for this calculator.
      *
-     * <p>It is ensure that it contains all the genotypes for this calculator ploidy and allele count, maybe more. For
-     * that reason you must use {@link #genotypeCount} when iterating through this array and not relay on its length.</p>
+     * <p>It is ensure that it contains all the genotypes for this calculator ploidy and allele count, maybe more, up to
+     * {@link GenotypeLikelihoodCalculators#MAXIMUM_STRONG_REF_GENOTYPE_PER_PLOIDY}. For that reason you must use
+     * {@link #genotypeCount} when iterating through this array and not relay on its length.</p>
+     *
+     * <p>It is shared with other calculators of the same ploidy so neither the array nor its elements can be modified.</p>
      */
     private final GenotypeAlleleCounts[] genotypeAlleleCounts;
 
@@ -142,10 +145,10 @@ public final class GenotypeLikelihoodCalculator {
      */
     protected GenotypeLikelihoodCalculator(final int ploidy, final int alleleCount,
                                            final int[][] alleleFirstGenotypeOffsetByPloidy,
-                                           final GenotypeAlleleCounts[][] genotypeTableByPloidy) {
+                                           final GenotypeAlleleCounts[] genotypeTable) {
         Utils.validateArg(ploidy > 0, () -> "ploidy must be at least 1 but was " + ploidy);
         this.alleleFirstGenotypeOffsetByPloidy = alleleFirstGenotypeOffsetByPloidy;
-        genotypeAlleleCounts = genotypeTableByPloidy[ploidy];
+        genotypeAlleleCounts = genotypeTable;
         this.alleleCount = alleleCount;
         this.ploidy = ploidy;
         genotypeCount = this.alleleFirstGenotypeOffsetByPloidy[ploidy][alleleCount];
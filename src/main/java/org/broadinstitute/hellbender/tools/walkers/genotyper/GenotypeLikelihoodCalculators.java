@@ -1,5 +1,7 @@
 package org.broadinstitute.hellbender.tools.walkers.genotyper;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.broadinstitute.hellbender.exceptions.GATKException;
 import org.broadinstitute.hellbender.utils.MathUtils;
 import org.broadinstitute.hellbender.utils.Utils;
@@ -15,20 +17,17 @@ import java.util.Arrays;
  *     This class provide genotype likelihood calculators with any number of alleles able given an arbitrary ploidy and allele
  *     count (number of distinct alleles).
  * </p>
+ *
+ * <p>
+ *     The tables the calculators need are computed lazily, for the ploidy and allele count requested, and kept in caches
+ *     shared by all instances of this class and safe to use from several threads. Each cache has a memory bound; when it is
+ *     exceeded the tables used least recently are dropped, and built again if requested later.
+ * </p>
  */
 public final class GenotypeLikelihoodCalculators {
 
     private static final Logger logger = LogManager.getLogger(GenotypeLikelihoodCalculators.class);
 
-    /**
-     * The current maximum ploidy supported by the tables.
-     * <p>
-     *     Its initial value indicates the initial capacity of the shared {@link #genotypeTableByPloidy}. Feel free
-     *     to change it to anything reasonable that is non-negative.
-     * </p>
-     */
-    private int maximumPloidy = 2; // its initial value is the initial capacity of the shared tables.
-
     /**
      * Maximum possible number of genotypes that this calculator can handle.
      */
@@ -40,32 +39,38 @@ public final class GenotypeLikelihoodCalculators {
     static final int GENOTYPE_COUNT_OVERFLOW = -1;
 
     /**
-     * The current maximum allele index supported by the tables.
-     * <p>
-     *     Its initial value indicates the initial capacity of the shared {@link #alleleFirstGenotypeOffsetByPloidy} table.
-     *     Feel free to change it to anything reasonable that is non-negative.
-     * </p>
+     * Approximate maximum memory, in bytes, taken by the cached offset tables.
      */
-    private int maximumAllele = 1; // its initial value is the initial capacity of the shared tables.
+    static final long MAXIMUM_OFFSET_TABLE_CACHE_BYTES = 16L << 20;
 
     /**
-     * Shared copy of the offset table as described in {@link #buildGenotypeAlleleCountsTable(int, int, int[][])}.
-     *
-     * This reference holds the largest requested so far in terms of maximum-allele and maximum-ploidy.
+     * Approximate maximum memory, in bytes, taken by the cached genotype tables.
      */
-    private int[][] alleleFirstGenotypeOffsetByPloidy =
-            buildAlleleFirstGenotypeOffsetTable(maximumPloidy, maximumAllele);
+    static final long MAXIMUM_GENOTYPE_TABLE_CACHE_BYTES = 64L << 20;
 
+    /**
+     * Shared offset tables, as described in {@link #buildAlleleFirstGenotypeOffsetTable(int, int)}, by ploidy and allele
+     * count (see {@link #offsetTableKey}).
+     */
+    private static final Cache<Long, int[][]> alleleFirstGenotypeOffsetTables = CacheBuilder.newBuilder()
+            .maximumWeight(MAXIMUM_OFFSET_TABLE_CACHE_BYTES)
+            .<Long, int[][]>weigher((key, table) -> estimateOffsetTableBytes(table))
+            .build();
 
     /**
-     * Shared table of genotypes give the ploidy sorted by their index in the likelihood array.
+     * Shared tables of genotypes by ploidy, sorted by their index in the likelihood array.
      *
      * <p>
-     *  Its format is described in {@link #buildGenotypeAlleleCountsTable(int, int, int[][])}.
+     *     As genotypes with fewer alleles come first, the table built for an allele count is a prefix of the one for a larger
+     *     count; so there is a single table per ploidy, which only grows as long as has been requested so far, up to
+     *     {@link #MAXIMUM_STRONG_REF_GENOTYPE_PER_PLOIDY} genotypes. The tables, and the genotypes in them, are never modified once
+     *     they are in the cache.
      * </p>
      */
-    private GenotypeAlleleCounts[][] genotypeTableByPloidy =
-            buildGenotypeAlleleCountsTable(maximumPloidy,maximumAllele,alleleFirstGenotypeOffsetByPloidy);
+    private static final Cache<Integer, GenotypeAlleleCounts[]> genotypeTableByPloidy = CacheBuilder.newBuilder()
+            .maximumWeight(MAXIMUM_GENOTYPE_TABLE_CACHE_BYTES)
+            .<Integer, GenotypeAlleleCounts[]>weigher((ploidy, table) -> estimateGenotypeTableBytes(table))
+            .build();
 
     public GenotypeLikelihoodCalculators(){
 
@@ -167,42 +172,6 @@ public final class GenotypeLikelihoodCalculators {
         return result;
     }
 
-    /**
-     * Composes a table with the lists of all possible genotype allele counts given the the ploidy and maximum allele index.
-     * <p>
-     *     The resulting matrix has at least as many rows as {@code maximumPloidy } + 1 as the first row with index 0 correspond
-     *     to ploidy == 0. Each row array has as many positions as necessary to contain all possible genotype-allele-counts in increasing order.
-     *     This quantity varies with the ploidy.
-     * </p>
-     *
-     * <p>
-     *     Therefore <code>result[3][4]</code> would contain the 5th genotype with ploidy 3, and <code>result[4].length</code>
-     *     would be equal to the count of possible genotypes for ploidy 4.
-     * </p>
-     *
-     * @param maximumPloidy maximum ploidy to use in queries to the resulting table.
-     * @param maximumAllele maximum allele index to use in queries to the resulting table.
-     * @param offsetTable an allele first genotype offset table as constructed using {@link #buildAlleleFirstGenotypeOffsetTable(int, int)}
-     *                    that supports at least up to {@code maximumAllele} and {@code maximumPloidy}.
-     *
-     * @throws IllegalArgumentException if {@code maximumPloidy} or {@code maximumAllele} is negative, or {@code offsetTable} is {@code null},
-     *   or it does not have the capacity to handle the requested maximum ploidy or allele index.
-     *
-     * @return never {@code null}.
-     */
-    private static GenotypeAlleleCounts[][] buildGenotypeAlleleCountsTable(final int maximumPloidy, final int maximumAllele, final int[][] offsetTable) {
-        checkPloidyAndMaximumAllele(maximumPloidy, maximumAllele);
-        checkOffsetTableCapacity(offsetTable,maximumPloidy,maximumAllele);
-        final int rowCount = maximumPloidy + 1;
-        final GenotypeAlleleCounts[][] result = new GenotypeAlleleCounts[rowCount][]; // each row has a different number of columns.
-
-        for (int ploidy = 0; ploidy <= maximumPloidy; ploidy++) {
-            result[ploidy] = buildGenotypeAlleleCountsArray(ploidy, maximumAllele, offsetTable);
-        }
-
-        return result;
-    }
-
     /**
      * Builds a genotype-allele-counts array given the genotype ploidy and how many genotype you need.
      * <p>
@@ -225,28 +194,29 @@ public final class GenotypeLikelihoodCalculators {
      * </p>
      *
      * @param ploidy requested ploidy.
-     * @param alleleCount number of different alleles that the genotype table must support.
-     * @param genotypeOffsetTable table with the offset of the first genotype that contain an allele given
-     *                            the ploidy and its index.
+     * @param length number of genotypes in the result.
+     * @param prefix an array with the first genotypes to reuse, possibly {@code null}.
      *
-     * @throws IllegalArgumentException if {@code ploidy} or {@code length} is negative.
+     * @throws IllegalArgumentException if {@code ploidy} is negative or {@code length} is less than 1.
      *
      * @return never {@code null}, follows the specification above.
      */
-    private static GenotypeAlleleCounts[] buildGenotypeAlleleCountsArray(final int ploidy, final int alleleCount, final int[][] genotypeOffsetTable) {
+    private static GenotypeAlleleCounts[] buildGenotypeAlleleCountsArray(final int ploidy, final int length, final GenotypeAlleleCounts[] prefix) {
         Utils.validateArg(ploidy >= 0, () -> "the requested ploidy cannot be negative: " + ploidy);
-        Utils.validateArg(alleleCount >= 0, () -> "the requested maximum allele cannot be negative: " + alleleCount);
-        final int length = genotypeOffsetTable[ploidy][alleleCount];
-        final int strongRefLength = length == GENOTYPE_COUNT_OVERFLOW ? MAXIMUM_STRONG_REF_GENOTYPE_PER_PLOIDY : Math.min(length, MAXIMUM_STRONG_REF_GENOTYPE_PER_PLOIDY);
-        final GenotypeAlleleCounts[] result = new GenotypeAlleleCounts[strongRefLength];
-        result[0] = GenotypeAlleleCounts.first(ploidy);
-        for (int genotypeIndex = 1; genotypeIndex < strongRefLength; genotypeIndex++) {
+        Utils.validateArg(length > 0, () -> "the requested length must be positive: " + length);
+        final GenotypeAlleleCounts[] result = new GenotypeAlleleCounts[length];
+        final int reused = prefix == null ? 0 : Math.min(prefix.length, length);
+        if (reused > 0) {
+            System.arraycopy(prefix, 0, result, 0, reused);
+        } else {
+            result[0] = GenotypeAlleleCounts.first(ploidy);
+        }
+        for (int genotypeIndex = Math.max(reused, 1); genotypeIndex < length; genotypeIndex++) {
             result[genotypeIndex] = result[genotypeIndex - 1].next();
         }
         return result;
     }
 
-
     /**
      * Returns an instance given its ploidy and the number of alleles.
      *
@@ -258,48 +228,69 @@ public final class GenotypeLikelihoodCalculators {
      * @return never {@code null}.
      */
     public GenotypeLikelihoodCalculator getInstance(final int ploidy, final int alleleCount) {
-        checkPloidyAndMaximumAllele(ploidy, alleleCount);
+        final int genotypeCount = genotypeCount(ploidy, alleleCount);
+        return new GenotypeLikelihoodCalculator(ploidy, alleleCount, alleleFirstGenotypeOffsetTable(ploidy, alleleCount),
+                genotypeTable(ploidy, genotypeCount));
+    }
 
-        if (calculateGenotypeCountUsingTables(ploidy, alleleCount) == GENOTYPE_COUNT_OVERFLOW) {
-            final double largeGenotypeCount = Math.pow(10, MathUtils.log10BinomialCoefficient(ploidy + alleleCount - 1, alleleCount - 1));
-            throw new IllegalArgumentException(String.format("the number of genotypes is too large for ploidy %d and allele %d: approx. %.0f", ploidy, alleleCount, largeGenotypeCount));
+    /**
+     * Returns the shared offset table for a ploidy and allele count, building it if it is not in the cache.
+     *
+     * @return never {@code null}, a table as described in {@link #buildAlleleFirstGenotypeOffsetTable(int, int)} with
+     *  exactly {@code ploidy + 1} rows and {@code alleleCount + 1} columns.
+     */
+    private static int[][] alleleFirstGenotypeOffsetTable(final int ploidy, final int alleleCount) {
+        final Long key = offsetTableKey(ploidy, alleleCount);
+        final int[][] cached = alleleFirstGenotypeOffsetTables.getIfPresent(key);
+        if (cached != null) {
+            return cached;
         }
-
-        // At this point the tables must have at least the requested capacity, likely to be much more.
-        return new GenotypeLikelihoodCalculator(ploidy, alleleCount, alleleFirstGenotypeOffsetByPloidy, genotypeTableByPloidy);
+        final int[][] result = buildAlleleFirstGenotypeOffsetTable(ploidy, alleleCount);
+        final int[][] previous = alleleFirstGenotypeOffsetTables.asMap().putIfAbsent(key, result);
+        return previous == null ? result : previous;
     }
 
     /**
-     * Update of shared tables
+     * Returns the shared genotype table for a ploidy, making sure it covers a number of genotypes.
+     *
+     * <p>
+     *     If the table in the cache is too short it is extended, reusing its genotypes, and the longest of the two is kept in
+     *     the cache.
+     * </p>
      *
-     * @param requestedMaximumAllele the new requested maximum allele maximum.
-     * @param requestedMaximumPloidy the new requested ploidy maximum.
+     * @param ploidy the ploidy.
+     * @param genotypeCount number of genotypes the table must contain, capped to {@link #MAXIMUM_STRONG_REF_GENOTYPE_PER_PLOIDY}.
+     *
+     * @return never {@code null}, an array with at least {@code min(genotypeCount, MAXIMUM_STRONG_REF_GENOTYPE_PER_PLOIDY)} genotypes.
      */
-    private void ensureCapacity(final int requestedMaximumAllele, final int requestedMaximumPloidy) {
-
-        final boolean needsToExpandAlleleCapacity = requestedMaximumAllele > maximumAllele;
-        final boolean needsToExpandPloidyCapacity = requestedMaximumPloidy > maximumPloidy;
-
-        // Double check with the lock on to avoid double work.
-        if (!needsToExpandAlleleCapacity && !needsToExpandPloidyCapacity) {
-            return;
+    private static GenotypeAlleleCounts[] genotypeTable(final int ploidy, final int genotypeCount) {
+        final int length = Math.max(1, Math.min(genotypeCount, MAXIMUM_STRONG_REF_GENOTYPE_PER_PLOIDY));
+        final GenotypeAlleleCounts[] cached = genotypeTableByPloidy.getIfPresent(ploidy);
+        if (cached != null && cached.length >= length) {
+            return cached;
         }
+        logger.debug("Expanding genotype table for ploidy " + ploidy + " to " + length + " genotypes");
+        final GenotypeAlleleCounts[] result = buildGenotypeAlleleCountsArray(ploidy, length, cached);
+        genotypeTableByPloidy.asMap().merge(ploidy, result, (previous, extended) -> previous.length >= extended.length ? previous : extended);
+        return result;
+    }
 
-        final int newMaximumPloidy = Math.max(maximumPloidy, requestedMaximumPloidy);
-        final int newMaximumAllele = Math.max(maximumAllele, requestedMaximumAllele);
-
-        logger.debug("Expanding capacity ploidy:" + maximumPloidy + "->" + newMaximumPloidy + " allele:" +  maximumAllele +"->" + newMaximumAllele );
+    private static Long offsetTableKey(final int ploidy, final int alleleCount) {
+        return ((long) ploidy << 32) | alleleCount;
+    }
 
-        // Update tables first.
-        alleleFirstGenotypeOffsetByPloidy = buildAlleleFirstGenotypeOffsetTable(newMaximumPloidy,newMaximumAllele);
-        genotypeTableByPloidy = buildGenotypeAlleleCountsTable(newMaximumPloidy,newMaximumAllele,alleleFirstGenotypeOffsetByPloidy);
+    private static int estimateOffsetTableBytes(final int[][] table) {
+        final long bytes = 16L + 4L * table.length * (4 + table[0].length);
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
 
-        if (needsToExpandAlleleCapacity) {
-            maximumAllele = requestedMaximumAllele;
-        }
-        if (needsToExpandPloidyCapacity) {
-            maximumPloidy = requestedMaximumPloidy;
+    private static int estimateGenotypeTableBytes(final GenotypeAlleleCounts[] table) {
+        long bytes = 16L + 4L * table.length;
+        for (final GenotypeAlleleCounts genotype : table) {
+            // object header and fields plus the sorted allele counts array.
+            bytes += 56 + 8 * genotype.distinctAlleleCount();
         }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
     }
 
     /**
@@ -318,15 +309,6 @@ public final class GenotypeLikelihoodCalculators {
         Utils.validateArg(maximumAllele >= 0, () -> "the maximum allele index provided cannot be negative: " + maximumAllele);
     }
 
-    private static void checkOffsetTableCapacity(final int[][] offsetTable, final int maximumPloidy, final int maximumAllele) {
-        Utils.nonNull(offsetTable, "the allele first genotype offset table provided cannot be null");
-        Utils.validateArg(offsetTable.length > maximumPloidy, () -> "the allele first genotype offset table provided does not have enough " +
-                    "capacity for requested maximum ploidy: " + maximumPloidy);
-        Utils.validateArg(offsetTable[0].length >= maximumAllele, () -> "the allele first genotype offset table provided does not have enough " +
-                    "capacity for requested maximum allele index: " + maximumAllele);
-    }
-
-
     /**
      * Returns the number of possible genotypes given the ploidy and number of different alleles.
      * @param ploidy the requested ploidy.
@@ -339,7 +321,7 @@ public final class GenotypeLikelihoodCalculators {
      */
     public int genotypeCount(final int ploidy, final int alleleCount) {
 
-        final int result = calculateGenotypeCountUsingTables(ploidy, alleleCount);
+        final int result = calculateGenotypeCount(ploidy, alleleCount);
         if (result == GENOTYPE_COUNT_OVERFLOW) {
             final double largeGenotypeCount = Math.pow(10, MathUtils.log10BinomialCoefficient(ploidy + alleleCount - 1, alleleCount - 1));
             throw new IllegalArgumentException(String.format("the number of genotypes is too large for ploidy %d and allele %d: approx. %.0f", ploidy, alleleCount, largeGenotypeCount));
@@ -380,11 +362,28 @@ public final class GenotypeLikelihoodCalculators {
         throw new GATKException("Code should never reach here.");
     }
 
-    private int calculateGenotypeCountUsingTables(int ploidy, int alleleCount) {
+    /**
+     * Computes the number of genotypes, {@code C(ploidy + alleleCount - 1, alleleCount - 1)}, the same value as
+     * {@code Offset[ploidy][alleleCount]} in {@link #buildAlleleFirstGenotypeOffsetTable(int, int)} but without building
+     * the table.
+     *
+     * @return the genotype count or {@link #GENOTYPE_COUNT_OVERFLOW} if larger than {@link Integer#MAX_VALUE}.
+     */
+    private static int calculateGenotypeCount(final int ploidy, final int alleleCount) {
         checkPloidyAndMaximumAllele(ploidy, alleleCount);
-        if (ploidy > maximumPloidy || alleleCount > maximumAllele) {
-            ensureCapacity(alleleCount, ploidy);
+        if (alleleCount == 0) {
+            return 0;
+        }
+        final long n = (long) ploidy + alleleCount - 1;
+        final int k = Math.min(ploidy, alleleCount - 1);
+        long result = 1;
+        for (int i = 1; i <= k; i++) {
+            // result is C(n - k + i, i) after each step so the division is exact.
+            result = result * (n - k + i) / i;
+            if (result > Integer.MAX_VALUE) {
+                return GENOTYPE_COUNT_OVERFLOW;
+            }
         }
-        return alleleFirstGenotypeOffsetByPloidy[ploidy][alleleCount];
+        return (int) result;
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,6 @@
 package org.broadinstitute.hellbender.tools.walkers.genotyper.afcalc;
 
+import com.google.common.annotations.VisibleForTesting;
 import htsjdk.variant.variantcontext.Allele;
 import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.VariantContext;
@@ -25,6 +26,14 @@ public final class AlleleFrequencyCalculator extends AFCalculator {
     private static final GenotypeLikelihoodCalculators GL_CALCS = new GenotypeLikelihoodCalculators();
     private static final double THRESHOLD_FOR_ALLELE_COUNT_CONVERGENCE = 0.1;
     private static final int HOM_REF_GENOTYPE_INDEX = 0;
+    private static final int DIPLOID = 2;
+
+    // combination counts and log10 allele copy counts of diploid genotypes, taken from the same sources as the general path
+    // so that the diploid path gives exactly the same results.
+    private static final double LOG10_HOM_DIPLOID_COMBINATION_COUNT = GL_CALCS.getInstance(DIPLOID, 2).genotypeAlleleCountsAt(0).log10CombinationCount();
+    private static final double LOG10_HET_DIPLOID_COMBINATION_COUNT = GL_CALCS.getInstance(DIPLOID, 2).genotypeAlleleCountsAt(1).log10CombinationCount();
+    private static final double LOG10_ONE_COPY = MathUtils.log10(1);
+    private static final double LOG10_TWO_COPIES = MathUtils.log10(2);
 
     private final double refPseudocount;
     private final double snpPseudocount;
@@ -82,29 +91,45 @@ public final class AlleleFrequencyCalculator extends AFCalculator {
 
         double[] log10POfZeroCountsByAllele = new double[numAlleles];
         double log10PNoVariant = 0;
+        final double[] diploidGenotypePosteriors = new double[diploidGenotypeCount(numAlleles)];
+        final double[] log10ProbabilityOfNonZeroAltAlleles = new double[numAlleles];
 
         for (final Genotype g : vc.getGenotypes()) {
             if (!g.hasLikelihoods()) {
                 continue;
             }
             final int ploidy = g.getPloidy() == 0 ? defaultPloidy : g.getPloidy();
-            final GenotypeLikelihoodCalculator glCalc = GL_CALCS.getInstance(ploidy, numAlleles);
-
-            final double[] log10GenotypePosteriors = log10NormalizedGenotypePosteriors(g, glCalc, log10AlleleFrequencies);
-
-            //the total probability
-            log10PNoVariant += log10GenotypePosteriors[HOM_REF_GENOTYPE_INDEX];
 
             // per allele non-log space probabilities of zero counts for this sample
             // for each allele calculate the total probability of genotypes containing at least one copy of the allele
-            final double[] log10ProbabilityOfNonZeroAltAlleles = new double[numAlleles];
             Arrays.fill(log10ProbabilityOfNonZeroAltAlleles, Double.NEGATIVE_INFINITY);
 
-            for (int genotype = 0; genotype < glCalc.genotypeCount(); genotype++) {
-                final double log10GenotypePosterior = log10GenotypePosteriors[genotype];
-                glCalc.genotypeAlleleCountsAt(genotype).forEachAlleleIndexAndCount((alleleIndex, count) ->
-                        log10ProbabilityOfNonZeroAltAlleles[alleleIndex] =
-                                MathUtils.log10SumLog10(log10ProbabilityOfNonZeroAltAlleles[alleleIndex], log10GenotypePosterior));
+            if (ploidy == DIPLOID && g.hasPL()) {
+                log10NormalizedDiploidGenotypePosteriors(g, log10AlleleFrequencies, diploidGenotypePosteriors);
+                log10PNoVariant += diploidGenotypePosteriors[HOM_REF_GENOTYPE_INDEX];
+                for (int allele2 = 0, genotype = 0; allele2 < numAlleles; allele2++) {
+                    for (int allele1 = 0; allele1 <= allele2; allele1++, genotype++) {
+                        final double log10GenotypePosterior = diploidGenotypePosteriors[genotype];
+                        log10ProbabilityOfNonZeroAltAlleles[allele1] = MathUtils.log10SumLog10(log10ProbabilityOfNonZeroAltAlleles[allele1], log10GenotypePosterior);
+                        if (allele1 != allele2) {
+                            log10ProbabilityOfNonZeroAltAlleles[allele2] = MathUtils.log10SumLog10(log10ProbabilityOfNonZeroAltAlleles[allele2], log10GenotypePosterior);
+                        }
+                    }
+                }
+            } else {
+                final GenotypeLikelihoodCalculator glCalc = GL_CALCS.getInstance(ploidy, numAlleles);
+
+                final double[] log10GenotypePosteriors = log10NormalizedGenotypePosteriors(g, glCalc, log10AlleleFrequencies);
+
+                //the total probability
+                log10PNoVariant += log10GenotypePosteriors[HOM_REF_GENOTYPE_INDEX];
+
+                for (int genotype = 0; genotype < glCalc.genotypeCount(); genotype++) {
+                    final double log10GenotypePosterior = log10GenotypePosteriors[genotype];
+                    glCalc.genotypeAlleleCountsAt(genotype).forEachAlleleIndexAndCount((alleleIndex, count) ->
+                            log10ProbabilityOfNonZeroAltAlleles[alleleIndex] =
+                                    MathUtils.log10SumLog10(log10ProbabilityOfNonZeroAltAlleles[alleleIndex], log10GenotypePosterior));
+                }
             }
 
             for (int allele = 0; allele < numAlleles; allele++) {
@@ -143,10 +168,25 @@ public final class AlleleFrequencyCalculator extends AFCalculator {
         Utils.validateArg(numAlleles == log10AlleleFrequencies.length, "number of alleles inconsistent");
         final double[] log10Result = new double[numAlleles];
         Arrays.fill(log10Result, Double.NEGATIVE_INFINITY);
+        final double[] diploidGenotypePosteriors = new double[diploidGenotypeCount(numAlleles)];
         for (final Genotype g : vc.getGenotypes()) {
             if (!g.hasLikelihoods()) {
                 continue;
             }
+            if (g.getPloidy() == DIPLOID && g.hasPL()) {
+                log10NormalizedDiploidGenotypePosteriors(g, log10AlleleFrequencies, diploidGenotypePosteriors);
+                for (int allele2 = 0, genotype = 0; allele2 < numAlleles; allele2++) {
+                    for (int allele1 = 0; allele1 <= allele2; allele1++, genotype++) {
+                        if (allele1 == allele2) {
+                            log10Result[allele1] = MathUtils.log10SumLog10(log10Result[allele1], diploidGenotypePosteriors[genotype] + LOG10_TWO_COPIES);
+                        } else {
+                            log10Result[allele1] = MathUtils.log10SumLog10(log10Result[allele1], diploidGenotypePosteriors[genotype] + LOG10_ONE_COPY);
+                            log10Result[allele2] = MathUtils.log10SumLog10(log10Result[allele2], diploidGenotypePosteriors[genotype] + LOG10_ONE_COPY);
+                        }
+                    }
+                }
+                continue;
+            }
             final GenotypeLikelihoodCalculator glCalc = GL_CALCS.getInstance(g.getPloidy(), numAlleles);
 
             final double[] log10GenotypePosteriors = log10NormalizedGenotypePosteriors(g, glCalc, log10AlleleFrequencies);
@@ -158,7 +198,8 @@ public final class AlleleFrequencyCalculator extends AFCalculator {
         return MathUtils.applyToArrayInPlace(log10Result, x -> Math.pow(10.0, x));
     }
 
-    private static double[] log10NormalizedGenotypePosteriors(final Genotype g, final GenotypeLikelihoodCalculator glCalc, final double[] log10AlleleFrequencies) {
+    @VisibleForTesting
+    static double[] log10NormalizedGenotypePosteriors(final Genotype g, final GenotypeLikelihoodCalculator glCalc, final double[] log10AlleleFrequencies) {
         final double[] log10Likelihoods = g.getLikelihoods().getAsVector();
         final double[] log10Posteriors = new IndexRange(0, glCalc.genotypeCount()).mapToDouble(genotypeIndex -> {
             final GenotypeAlleleCounts gac = glCalc.genotypeAlleleCountsAt(genotypeIndex);
@@ -168,6 +209,38 @@ public final class AlleleFrequencyCalculator extends AFCalculator {
         return MathUtils.normalizeLog10(log10Posteriors);
     }
 
+    private static int diploidGenotypeCount(final int numAlleles) {
+        return numAlleles * (numAlleles + 1) / 2;
+    }
+
+    /**
+     * Same as {@link #log10NormalizedGenotypePosteriors} for a diploid genotype, without going through
+     * {@link GenotypeAlleleCounts}.
+     *
+     * <p>
+     *     Diploid genotypes come in closed form: the genotype with alleles {@code allele1 <= allele2} has index
+     *     {@code allele2 * (allele2 + 1) / 2 + allele1}, so looping on {@code allele2} and then on {@code allele1} visits them
+     *     in order. Terms are added up in the same order as in the general path so the results are identical.
+     * </p>
+     *
+     * @param result array to write the posteriors into, of length {@link #diploidGenotypeCount}.
+     */
+    @VisibleForTesting
+    static void log10NormalizedDiploidGenotypePosteriors(final Genotype g, final double[] log10AlleleFrequencies, final double[] result) {
+        final int[] pls = g.getPL();
+        final int numAlleles = log10AlleleFrequencies.length;
+        for (int allele2 = 0, genotype = 0; allele2 < numAlleles; allele2++) {
+            for (int allele1 = 0; allele1 <= allele2; allele1++, genotype++) {
+                // the genotype likelihoods of a Genotype are its PLs divided by -10
+                final double log10Likelihood = pls[genotype] / -10.0;
+                result[genotype] = allele1 == allele2
+                        ? LOG10_HOM_DIPLOID_COMBINATION_COUNT + log10Likelihood + 2 * log10AlleleFrequencies[allele1]
+                        : LOG10_HET_DIPLOID_COMBINATION_COUNT + log10Likelihood + (log10AlleleFrequencies[allele1] + log10AlleleFrequencies[allele2]);
+            }
+        }
+        MathUtils.normalizeLog10(result);
+    }
+
     @Override   //Note: unused
     protected AFCalculationResult getResultFromFinalState(final VariantContext vc, final double[] priors, final StateTracker st) { return null; }
 
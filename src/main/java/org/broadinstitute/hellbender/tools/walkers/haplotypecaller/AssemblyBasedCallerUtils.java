@@ -34,7 +34,7 @@ import java.util.stream.Collectors;
  */
 public final class AssemblyBasedCallerUtils {
 
-    static final int REFERENCE_PADDING_FOR_ASSEMBLY = 500;
+    public static final int REFERENCE_PADDING_FOR_ASSEMBLY = 500;
 
     /**
      * Returns a map with the original read as a key and the realigned read as the value.
@@ -166,7 +166,7 @@ public final class AssemblyBasedCallerUtils {
 
         switch ( likelihoodArgs.likelihoodEngineImplementation) {
             case PairHMM:
-                return new PairHMMLikelihoodCalculationEngine((byte) likelihoodArgs.gcpHMM, likelihoodArgs.pairHMMNativeArgs.getPairHMMArgs(), likelihoodArgs.pairHMM, log10GlobalReadMismappingRate, likelihoodArgs.pcrErrorModel, likelihoodArgs.BASE_QUALITY_SCORE_THRESHOLD);
+                return new PairHMMLikelihoodCalculationEngine((byte) likelihoodArgs.gcpHMM, likelihoodArgs.pairHMMNativeArgs.getPairHMMArgs(), likelihoodArgs.pairHMM, log10GlobalReadMismappingRate, likelihoodArgs.pcrErrorModel, likelihoodArgs.BASE_QUALITY_SCORE_THRESHOLD, likelihoodArgs.singlePrecisionLikelihoods);
             case Random:
                 return new RandomLikelihoodCalculationEngine();
             default:
@@ -184,6 +184,8 @@ public final class AssemblyBasedCallerUtils {
         assemblyEngine.setRecoverDanglingBranches(!rtaac.doNotRecoverDanglingBranches);
         assemblyEngine.setMinDanglingBranchLength(rtaac.minDanglingBranchLength);
         assemblyEngine.setMinBaseQualityToUseInAssembly(args.minBaseQualityScore);
+        assemblyEngine.setHaplotypeAlignmentCacheSize(rtaac.haplotypeAlignmentCacheMegabytes * 1024L * 1024L);
+        assemblyEngine.setHaplotypeSearchLimits(rtaac.maxExpandedHaplotypePaths, rtaac.maxQueuedHaplotypePaths);
 
         if ( rtaac.graphOutput != null ) {
             assemblyEngine.setGraphWriter(new File(rtaac.graphOutput));
@@ -22,6 +22,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.List;
 import org.broadinstitute.hellbender.utils.io.IOUtils;
+import org.broadinstitute.hellbender.utils.variant.writers.GVCFWriter;
 
 
 /**
@@ -158,6 +159,11 @@ public final class HaplotypeCaller extends AssemblyRegionWalker {
 
     private VariantContextWriter vcfWriter;
 
+    /**
+     * The vcfWriter in GVCF mode, to which the engine gives the hom-ref sites in bands, or null otherwise
+     */
+    private GVCFWriter gvcfWriter;
+
     private HaplotypeCallerEngine hcEngine;
 
     @Override
@@ -199,6 +205,7 @@ public final class HaplotypeCaller extends AssemblyRegionWalker {
         // The HC engine will make the right kind (VCF or GVCF) of writer for us
         final SAMSequenceDictionary sequenceDictionary = getHeaderForReads().getSequenceDictionary();
         vcfWriter = hcEngine.makeVCFWriter(outputVCF, sequenceDictionary, createOutputVariantIndex, createOutputVariantMD5);
+        gvcfWriter = hcArgs.emitReferenceConfidence == ReferenceConfidenceMode.GVCF ? (GVCFWriter) vcfWriter : null;
         hcEngine.writeHeader(vcfWriter, sequenceDictionary, getDefaultToolVCFHeaderLines());
     }
 
@@ -215,7 +222,11 @@ public final class HaplotypeCaller extends AssemblyRegionWalker {
 
     @Override
     public void apply(final AssemblyRegion region, final ReferenceContext referenceContext, final FeatureContext featureContext ) {
-        hcEngine.callRegion(region, featureContext).forEach(vcfWriter::add);
+        if ( gvcfWriter != null ) {
+            hcEngine.callRegion(region, featureContext, gvcfWriter);
+        } else {
+            hcEngine.callRegion(region, featureContext).forEach(vcfWriter::add);
+        }
     }
 
     @Override
@@ -43,10 +43,11 @@ import org.broadinstitute.hellbender.utils.variant.GATKVCFHeaderLines;
 import org.broadinstitute.hellbender.utils.variant.GATKVariantContextUtils;
 import org.broadinstitute.hellbender.utils.variant.HomoSapiensConstants;
 import org.broadinstitute.hellbender.utils.variant.writers.GVCFWriter;
+import org.broadinstitute.hellbender.utils.variant.writers.ReferenceConfidenceBand;
 
 import java.io.File;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 /**
  * The core engine for the HaplotypeCaller that does all of the actual work of the tool.
@@ -95,6 +96,10 @@ public final class HaplotypeCallerEngine implements AssemblyRegionEvaluator {
 
     private SmithWatermanAligner aligner;
 
+    // how many active regions we were asked to call, and how many of them skipped assembly because they could only give the reference
+    private long numActiveRegions = 0;
+    private long numReferenceOnlyActiveRegions = 0;
+
     public static final byte MIN_TAIL_QUALITY_WITH_ERROR_CORRECTION = 6;
 
     /**
@@ -131,8 +136,6 @@ public final class HaplotypeCallerEngine implements AssemblyRegionEvaluator {
      */
     private static final int READ_QUALITY_FILTER_THRESHOLD = 20;
 
-    private static final List<VariantContext> NO_CALLS = Collections.emptyList();
-
     private static final Allele FAKE_REF_ALLELE = Allele.create("N", true); // used in isActive function to call into UG Engine. Should never appear anywhere in a VCF file
     private static final Allele FAKE_ALT_ALLELE = Allele.create("<FAKE_ALT>", false); // used in isActive function to call into UG Engine. Should never appear anywhere in a VCF file
 
@@ -178,7 +181,12 @@ public final class HaplotypeCallerEngine implements AssemblyRegionEvaluator {
         genotypingEngine = new HaplotypeCallerGenotypingEngine(hcArgs, samplesList, FixedAFCalculatorProvider.createThreadSafeProvider(hcArgs), ! hcArgs.doNotRunPhysicalPhasing);
         genotypingEngine.setAnnotationEngine(annotationEngine);
 
-        referenceConfidenceModel = new ReferenceConfidenceModel(samplesList, readsHeader, hcArgs.indelSizeToEliminateInRefModel);
+        try {
+            referenceConfidenceModel = new ReferenceConfidenceModel(samplesList, readsHeader, hcArgs.indelSizeToEliminateInRefModel,
+                    hcArgs.emitReferenceConfidence == ReferenceConfidenceMode.GVCF ? hcArgs.GVCFGQBands : null);
+        } catch ( IllegalArgumentException e ) {
+            throw new CommandLineException.BadArgumentValue("GQBands", "are malformed: " + e.getMessage());
+        }
 
         //Allele-specific annotations are not yet supported in the VCF mode
         if (isAlleleSpecificMode(annotationEngine) && isVCFMode()){
@@ -317,6 +325,9 @@ public final class HaplotypeCallerEngine implements AssemblyRegionEvaluator {
     /**
      * Create a VCF or GVCF writer as appropriate, given our arguments
      *
+     * In GVCF mode this is a {@link GVCFWriter}, to which {@link #callRegion(AssemblyRegion, FeatureContext, GVCFWriter)}
+     * can give the hom-ref sites already collected into GQ bands.
+     *
      * @param outputVCF location to which the vcf should be written
      * @param readsDictionary sequence dictionary for the reads
      * @return a VCF or GVCF writer as appropriate, ready to use
@@ -473,9 +484,39 @@ public final class HaplotypeCallerEngine implements AssemblyRegionEvaluator {
      * @return List of variants discovered in the region (may be empty)
      */
     public List<VariantContext> callRegion(final AssemblyRegion region, final FeatureContext features) {
+        final List<VariantContext> result = new ArrayList<>();
+        callRegion(region, features, result::add, null);
+        return result;
+    }
+
+    /**
+     * Generate variant calls for an assembly region in GVCF mode and add them to a GVCF writer, passing the hom-ref
+     * sites of the reference confidence model to it in bands rather than one VariantContext per site
+     *
+     * @param region region to assemble and perform variant calling on
+     * @param features Features overlapping the assembly region
+     * @param gvcfWriter writer with the GQ bands of our arguments, such as the one made by {@link #makeVCFWriter}
+     */
+    public void callRegion(final AssemblyRegion region, final FeatureContext features, final GVCFWriter gvcfWriter) {
+        Utils.nonNull(gvcfWriter);
+        Utils.validate(hcArgs.emitReferenceConfidence == ReferenceConfidenceMode.GVCF, "bands of hom-ref sites are only made in GVCF mode");
+        callRegion(region, features, gvcfWriter::add, gvcfWriter::addBand);
+    }
+
+    /**
+     * Generate variant calls for an assembly region and pass them, in order, to the consumers
+     *
+     * @param region region to assemble and perform variant calling on
+     * @param features Features overlapping the assembly region
+     * @param variantConsumer receives the variants discovered in the region
+     * @param bandConsumer receives the bands of hom-ref sites in GVCF mode, or {@code null} to get one VariantContext per
+     *                     site from the reference confidence model
+     */
+    private void callRegion(final AssemblyRegion region, final FeatureContext features,
+                            final Consumer<VariantContext> variantConsumer, final Consumer<ReferenceConfidenceBand> bandConsumer) {
         if ( hcArgs.justDetermineActiveRegions ) {
             // we're benchmarking ART and/or the active region determination code in the HC, just leave without doing any work
-            return NO_CALLS;
+            return;
         }
 
         if ( hcArgs.sampleNameToUse != null ) {
@@ -484,7 +525,8 @@ public final class HaplotypeCallerEngine implements AssemblyRegionEvaluator {
 
         if( ! region.isActive() ) {
             // Not active so nothing to do!
-            return referenceModelForNoVariation(region, true);
+            referenceModelForNoVariation(region, true, variantConsumer, bandConsumer);
+            return;
         }
 
         final List<VariantContext> givenAlleles = new ArrayList<>();
@@ -493,11 +535,21 @@ public final class HaplotypeCallerEngine implements AssemblyRegionEvaluator {
 
             // No alleles found in this region so nothing to do!
             if ( givenAlleles.isEmpty() ) {
-                return referenceModelForNoVariation(region, true);
+                referenceModelForNoVariation(region, true, variantConsumer, bandConsumer);
+                return;
             }
         } else if( region.size() == 0 ) {
             // No reads here so nothing to do!
-            return referenceModelForNoVariation(region, true);
+            referenceModelForNoVariation(region, true, variantConsumer, bandConsumer);
+            return;
+        }
+
+        numActiveRegions++;
+        if ( givenAlleles.isEmpty() && regionIsReferenceOnly(region) ) {
+            // the assembly would only give the reference haplotype, so we would end up here anyway
+            numReferenceOnlyActiveRegions++;
+            referenceModelForNoVariation(region, false, variantConsumer, bandConsumer);
+            return;
         }
 
         // run the local assembler, getting back a collection of information on how we should proceed
@@ -511,7 +563,8 @@ public final class HaplotypeCallerEngine implements AssemblyRegionEvaluator {
         final AssemblyRegionTrimmer.Result trimmingResult = trimmer.trim(region, allVariationEvents);
 
         if ( ! trimmingResult.isVariationPresent() && ! hcArgs.disableOptimizations ) {
-            return referenceModelForNoVariation(region, false);
+            referenceModelForNoVariation(region, false, variantConsumer, bandConsumer);
+            return;
         }
 
         final AssemblyResultSet assemblyResult =
@@ -530,18 +583,20 @@ public final class HaplotypeCallerEngine implements AssemblyRegionEvaluator {
         // abort early if something is out of the acceptable range
         // TODO is this ever true at this point??? perhaps GGA. Need to check.
         if( ! assemblyResult.isVariationPresent() && ! hcArgs.disableOptimizations ) {
-            return referenceModelForNoVariation(region, false);
+            referenceModelForNoVariation(region, false, variantConsumer, bandConsumer);
+            return;
         }
 
         // For sure this is not true if gVCF is on.
         if ( hcArgs.dontGenotype ) {
-            return NO_CALLS; // user requested we not proceed
+            return; // user requested we not proceed
         }
 
         // TODO is this ever true at this point??? perhaps GGA. Need to check.
         if ( regionForGenotyping.size() == 0 && ! hcArgs.disableOptimizations ) {
             // no reads remain after filtering so nothing else to do!
-            return referenceModelForNoVariation(region, false);
+            referenceModelForNoVariation(region, false, variantConsumer, bandConsumer);
+            return;
         }
 
         // evaluate each sample's reads against all haplotypes
@@ -590,34 +645,54 @@ public final class HaplotypeCallerEngine implements AssemblyRegionEvaluator {
         if ( emitReferenceConfidence() ) {
             if ( !containsCalls(calledHaplotypes) ) {
                 // no called all of the potential haplotypes
-                return referenceModelForNoVariation(region, false);
+                referenceModelForNoVariation(region, false, variantConsumer, bandConsumer);
+                return;
             }
             else {
-                final List<VariantContext> result = new LinkedList<>();
                 // output left-flanking non-variant section:
                 if (trimmingResult.hasLeftFlankingRegion()) {
-                    result.addAll(referenceModelForNoVariation(trimmingResult.nonVariantLeftFlankRegion(), false));
+                    referenceModelForNoVariation(trimmingResult.nonVariantLeftFlankRegion(), false, variantConsumer, bandConsumer);
                 }
                 // output variant containing region.
-                result.addAll(referenceConfidenceModel.calculateRefConfidence(assemblyResult.getReferenceHaplotype(),
+                referenceConfidenceModel.calculateRefConfidence(assemblyResult.getReferenceHaplotype(),
                         calledHaplotypes.getCalledHaplotypes(), assemblyResult.getPaddedReferenceLoc(), regionForGenotyping,
-                        readLikelihoods, genotypingEngine.getPloidyModel(), calledHaplotypes.getCalls()));
+                        readLikelihoods, genotypingEngine.getPloidyModel(), calledHaplotypes.getCalls(), variantConsumer, bandConsumer);
                 // output right-flanking non-variant section:
                 if (trimmingResult.hasRightFlankingRegion()) {
-                    result.addAll(referenceModelForNoVariation(trimmingResult.nonVariantRightFlankRegion(), false));
+                    referenceModelForNoVariation(trimmingResult.nonVariantRightFlankRegion(), false, variantConsumer, bandConsumer);
                 }
-                return result;
             }
         }
         else {
             //TODO this should be updated once reducible annotations are handled properly.
-            return calledHaplotypes.getCalls()
+            calledHaplotypes.getCalls()
                     .stream()
                     .map(RMSMappingQuality.getInstance()::finalizeRawMQ)
-                    .collect(Collectors.toList());
+                    .forEachOrdered(variantConsumer);
         }
     }
 
+    /**
+     * Determines, before assembly, whether the assembly of the region can only yield the reference haplotype.
+     * This finalizes the region exactly as {@link AssemblyBasedCallerUtils#assembleReads} would do.
+     *
+     * @param region the active region
+     * @return true if we can skip the assembly and treat the region as having no variation
+     */
+    private boolean regionIsReferenceOnly(final AssemblyRegion region) {
+        // read error correction can change read bases in ways that we cannot predict here, and the graph output needs the graphs
+        if ( hcArgs.disableOptimizations || hcArgs.errorCorrectReads || hcArgs.assemblerArgs.errorCorrectKmers || hcArgs.assemblerArgs.graphOutput != null ) {
+            return false;
+        }
+        AssemblyBasedCallerUtils.finalizeRegion(region, hcArgs.errorCorrectReads, hcArgs.dontUseSoftClippedBases, (byte)(hcArgs.minBaseQualityScore - 1), readsHeader, samplesList);
+        if ( region.size() == 0 ) {
+            return false;
+        }
+        final int minKmerSize = hcArgs.assemblerArgs.kmerSizes.stream().mapToInt(Integer::intValue).min().orElse(0);
+        return minKmerSize > 0 && ReferenceOnlyRegionDetector.isReferenceOnly(region.getAssemblyRegionReference(referenceReader),
+                region.getReads(), minKmerSize, assemblyEngine.getMinBaseQualityToUseInAssembly());
+    }
+
     private boolean containsCalls(final HaplotypeCallerGenotypingEngine.CalledHaplotypes calledHaplotypes) {
         return calledHaplotypes.getCalls().stream()
                 .flatMap(call -> call.getGenotypes().stream())
@@ -630,9 +705,11 @@ public final class HaplotypeCallerEngine implements AssemblyRegionEvaluator {
      *
      * @param region the region to return a no-variation result
      * @param needsToBeFinalized should the region be finalized before computing the ref model (should be false if already done)
-     * @return a list of variant contexts (can be empty) to emit for this ref region
+     * @param variantConsumer receives the variant contexts (can be none) to emit for this ref region
+     * @param bandConsumer receives the bands of hom-ref sites, or {@code null} to get one variant context per site
      */
-    private List<VariantContext> referenceModelForNoVariation(final AssemblyRegion region, final boolean needsToBeFinalized) {
+    private void referenceModelForNoVariation(final AssemblyRegion region, final boolean needsToBeFinalized,
+                                              final Consumer<VariantContext> variantConsumer, final Consumer<ReferenceConfidenceBand> bandConsumer) {
         if ( emitReferenceConfidence() ) {
             //TODO - why the activeRegion cannot manage its own one-time finalization and filtering?
             //TODO - perhaps we can remove the last parameter of this method and the three lines bellow?
@@ -644,12 +721,9 @@ public final class HaplotypeCallerEngine implements AssemblyRegionEvaluator {
             final SimpleInterval paddedLoc = region.getExtendedSpan();
             final Haplotype refHaplotype = AssemblyBasedCallerUtils.createReferenceHaplotype(region, paddedLoc, referenceReader);
             final List<Haplotype> haplotypes = Collections.singletonList(refHaplotype);
-            return referenceConfidenceModel.calculateRefConfidence(refHaplotype, haplotypes,
+            referenceConfidenceModel.calculateRefConfidence(refHaplotype, haplotypes,
                     paddedLoc, region, createDummyStratifiedReadMap(refHaplotype, samplesList, region),
-                    genotypingEngine.getPloidyModel(), Collections.emptyList());
-        }
-        else {
-            return NO_CALLS;
+                    genotypingEngine.getPloidyModel(), Collections.emptyList(), variantConsumer, bandConsumer);
         }
     }
 
@@ -673,6 +747,11 @@ public final class HaplotypeCallerEngine implements AssemblyRegionEvaluator {
     public void shutdown() {
         likelihoodCalculationEngine.close();
         aligner.close();
+        assemblyEngine.getHaplotypeAlignmentCache().logStatistics();
+        if ( numActiveRegions > 0 ) {
+            logger.info(String.format("%d of %d active regions (%.2f%%) were found to be reference-only before assembly",
+                    numReferenceOnlyActiveRegions, numActiveRegions, 100.0 * numReferenceOnlyActiveRegions / numActiveRegions));
+        }
         if ( haplotypeBAMWriter.isPresent() ) {
             haplotypeBAMWriter.get().close();
         }
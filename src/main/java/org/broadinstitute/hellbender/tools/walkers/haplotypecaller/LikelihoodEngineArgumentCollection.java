@@ -68,6 +68,16 @@ public final class LikelihoodEngineArgumentCollection implements Serializable {
     @Argument(fullName="phred-scaled-global-read-mismapping-rate", doc="The global assumed mismapping rate for reads", optional = true)
     public int phredScaledGlobalReadMismappingRate = 45;
 
+    /**
+     * Store the read likelihoods of each region in single rather than double precision. This halves the memory taken
+     * by the read-by-haplotype likelihood matrices, which dominate the heap when there are many haplotypes and deep
+     * coverage. Likelihoods are still computed in double precision and only rounded when stored, so calls should
+     * change only where likelihoods tie to within about one part in ten million.
+     */
+    @Advanced
+    @Argument(fullName="single-precision-likelihoods", doc="Store read likelihoods in single precision to save memory", optional = true)
+    public boolean singlePrecisionLikelihoods = false;
+
     @ArgumentCollection
     public PairHMMNativeArgumentCollection pairHMMNativeArgs = new PairHMMNativeArgumentCollection();
 
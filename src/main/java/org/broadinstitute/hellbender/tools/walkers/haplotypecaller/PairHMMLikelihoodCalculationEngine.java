@@ -74,6 +74,8 @@ public final class PairHMMLikelihoodCalculationEngine implements ReadLikelihoodC
     
     private final byte baseQualityScoreThreshold;
 
+    private final boolean singlePrecisionLikelihoods;
+
     /**
      * The expected rate of random sequencing errors for a read originating from its true haplotype.
      *
@@ -127,6 +129,27 @@ public final class PairHMMLikelihoodCalculationEngine implements ReadLikelihoodC
                                               final double log10globalReadMismappingRate,
                                               final PCRErrorModel pcrErrorModel,
                                               final byte baseQualityScoreThreshold) {
+        this( constantGCP, arguments, hmmType, log10globalReadMismappingRate, pcrErrorModel, baseQualityScoreThreshold, false );
+    }
+
+    /**
+     * Create a new PairHMMLikelihoodCalculationEngine using provided parameters and hmm to do its calculations
+     *
+     * @param constantGCP the gap continuation penalty to use with the PairHMM
+     * @param hmmType the type of the HMM to use
+     * @param log10globalReadMismappingRate the global mismapping probability, in log10(prob) units.
+     * @param pcrErrorModel model to correct for PCR indel artifacts
+     * @param baseQualityScoreThreshold Base qualities below this threshold will be reduced to the minimum usable base
+     *                                  quality.
+     * @param singlePrecisionLikelihoods whether the resulting read likelihoods are stored in single precision.
+     */
+    public PairHMMLikelihoodCalculationEngine(final byte constantGCP,
+                                              final PairHMMNativeArguments arguments,
+                                              final PairHMM.Implementation hmmType,
+                                              final double log10globalReadMismappingRate,
+                                              final PCRErrorModel pcrErrorModel,
+                                              final byte baseQualityScoreThreshold,
+                                              final boolean singlePrecisionLikelihoods) {
         Utils.nonNull(hmmType, "hmmType is null");
         Utils.nonNull(pcrErrorModel, "pcrErrorModel is null");
         if (constantGCP < 0){
@@ -148,6 +171,7 @@ public final class PairHMMLikelihoodCalculationEngine implements ReadLikelihoodC
             throw new IllegalArgumentException("baseQualityScoreThreshold must be greater than or equal to " + QualityUtils.MIN_USABLE_Q_SCORE + " (QualityUtils.MIN_USABLE_Q_SCORE)");
         }
         this.baseQualityScoreThreshold = baseQualityScoreThreshold;
+        this.singlePrecisionLikelihoods = singlePrecisionLikelihoods;
     }
 
     private PrintStream makeLikelihoodStream() {
@@ -178,7 +202,7 @@ public final class PairHMMLikelihoodCalculationEngine implements ReadLikelihoodC
         initializePairHMM(haplotypeList, perSampleReadList);
 
         // Add likelihoods for each sample's reads to our result
-        final ReadLikelihoods<Haplotype> result = new ReadLikelihoods<>(samples, haplotypes, perSampleReadList);
+        final ReadLikelihoods<Haplotype> result = new ReadLikelihoods<>(samples, haplotypes, perSampleReadList, singlePrecisionLikelihoods);
         final int sampleCount = result.numberOfSamples();
         for (int i = 0; i < sampleCount; i++) {
             computeReadLikelihoods(result.sampleMatrix(i));
@@ -4,6 +4,7 @@ import com.google.common.collect.Lists;
 import org.broadinstitute.barclay.argparser.Advanced;
 import org.broadinstitute.barclay.argparser.Argument;
 import org.broadinstitute.barclay.argparser.Hidden;
+import org.broadinstitute.hellbender.tools.walkers.haplotypecaller.graphs.LazyKBestHaplotypeFinder;
 
 import java.io.Serializable;
 import java.util.List;
@@ -111,6 +112,32 @@ public final class ReadThreadingAssemblerArgumentCollection implements Serializa
     @Argument(fullName="min-pruning", doc = "Minimum support to not prune paths in the graph", optional = true)
     public int minPruneFactor = 2;
 
+    /**
+     * Haplotypes assembled again against the same reference window, which happens with overlapping or re-trimmed regions and
+     * in GGA mode, reuse their alignment to the reference instead of running Smith-Waterman again. This sets the approximate
+     * amount of memory used by that cache; 0 disables it.
+     */
+    @Advanced
+    @Argument(fullName="haplotype-alignment-cache-megabytes", doc="Memory used to cache haplotype to reference alignments, in megabytes (0 to disable)", optional = true)
+    public int haplotypeAlignmentCacheMegabytes = 32;
+
+    /**
+     * By default the best haplotypes in each assembly graph are found with an exhaustive search, which on very complex graphs
+     * (typically in long repeats) can take a lot of time and memory before the best paths are selected. When this is positive
+     * we use instead a best-first search that generates haplotypes in score order on demand and gives up, keeping the haplotypes
+     * found so far, after extending this many partial paths. Haplotypes with equal scores may come out in a different order.
+     */
+    @Advanced
+    @Argument(fullName="max-expanded-haplotype-paths", doc="If positive, use a bounded best-first search for haplotypes that gives up after extending this many partial paths", optional = true)
+    public int maxExpandedHaplotypePaths = 0;
+
+    /**
+     * Bounds the memory used by the best-first haplotype search enabled by --max-expanded-haplotype-paths
+     */
+    @Advanced
+    @Argument(fullName="max-queued-haplotype-paths", doc="Maximum number of partial paths held in memory by the best-first haplotype search", optional = true)
+    public int maxQueuedHaplotypePaths = LazyKBestHaplotypeFinder.DEFAULT_MAX_QUEUED_PATHS;
+
     @Hidden
     @Argument(fullName="debug-graph-transformations", doc="Write DOT formatted graph files out of the assembler for only this graph size", optional = true)
     public boolean debugGraphTransformations = false;
@@ -1,6 +1,8 @@
 package org.broadinstitute.hellbender.tools.walkers.haplotypecaller;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeMap;
 import htsjdk.samtools.Cigar;
 import htsjdk.samtools.CigarElement;
 import htsjdk.samtools.CigarOperator;
@@ -9,7 +11,6 @@ import htsjdk.samtools.util.Locatable;
 import htsjdk.variant.variantcontext.*;
 import htsjdk.variant.vcf.VCFHeaderLine;
 import htsjdk.variant.vcf.VCFSimpleHeaderLine;
-import org.broadinstitute.hellbender.engine.AlignmentContext;
 import org.broadinstitute.hellbender.engine.AssemblyRegion;
 import org.broadinstitute.hellbender.tools.walkers.genotyper.PloidyModel;
 import org.broadinstitute.hellbender.utils.MathUtils;
@@ -19,16 +20,20 @@ import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.genotyper.ReadLikelihoods;
 import org.broadinstitute.hellbender.utils.genotyper.SampleList;
 import org.broadinstitute.hellbender.utils.haplotype.Haplotype;
-import org.broadinstitute.hellbender.utils.locusiterator.LocusIteratorByState;
+import org.broadinstitute.hellbender.utils.locusiterator.AlignmentStateMachine;
 import org.broadinstitute.hellbender.utils.param.ParamUtils;
 import org.broadinstitute.hellbender.utils.pileup.PileupElement;
 import org.broadinstitute.hellbender.utils.pileup.ReadPileup;
 import org.broadinstitute.hellbender.utils.read.AlignmentUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.ReadUtils;
 import org.broadinstitute.hellbender.utils.variant.GATKVCFConstants;
 import org.broadinstitute.hellbender.utils.variant.GATKVariantContextUtils;
+import org.broadinstitute.hellbender.utils.variant.writers.GVCFWriter;
+import org.broadinstitute.hellbender.utils.variant.writers.ReferenceConfidenceBand;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.DoubleStream;
 
 /**
@@ -43,6 +48,12 @@ public final class ReferenceConfidenceModel {
     private final SampleList samples;
     private final int indelInformativeDepthIndelSize;
 
+    /**
+     * GQ bands in which to collect the reference confidence sites into {@link ReferenceConfidenceBand}s,
+     * or {@code null} to emit one VariantContext per site.
+     */
+    private final RangeMap<Integer, Range<Integer>> gqPartitions;
+
     /**
      * Surrogate quality score for no base calls.
      * <p>
@@ -56,7 +67,8 @@ public final class ReferenceConfidenceModel {
      * Base calls with quality threshold lower than this number won't be considered when assessing the
      * confidence on the hom-ref call.
      */
-    private static final byte BASE_QUAL_THRESHOLD = 6;
+    @VisibleForTesting
+    static final byte BASE_QUAL_THRESHOLD = 6;
 
     /**
      * Only base calls with quality strictly greater than this constant,
@@ -91,6 +103,8 @@ public final class ReferenceConfidenceModel {
     private static final double INDEL_LIKELIHOOD = QualityUtils.qualToErrorProbLog10(INDEL_QUAL);
     private static final int IDX_HOM_REF = 0;
 
+    private static final String REFERENCE_CONFIDENCE_SOURCE = "HC";
+
     /**
      * Holds information about a genotype call of a single sample reference vs. any non-ref event
      *
@@ -147,6 +161,60 @@ public final class ReferenceConfidenceModel {
         }
     }
 
+    /**
+     * Holds the ref vs. any non-ref information of a single sample at every position of a span,
+     * in flat arrays indexed by the offset of the position in the span.
+     */
+    @VisibleForTesting
+    static final class RegionRefVsAnyResult {
+        private final int likelihoodCount;
+
+        /**
+         * The genotype likelihoods of the position at offset {@code p} are at
+         * {@code p * likelihoodCount ... (p + 1) * likelihoodCount - 1}.
+         */
+        final double[] genotypeLikelihoods;
+        final int[] refDepths;
+        final int[] nonRefDepths;
+        final int[] indelInformativeReads;
+
+        RegionRefVsAnyResult(final int numberOfPositions, final int likelihoodCount) {
+            this.likelihoodCount = likelihoodCount;
+            genotypeLikelihoods = new double[numberOfPositions * likelihoodCount];
+            refDepths = new int[numberOfPositions];
+            nonRefDepths = new int[numberOfPositions];
+            indelInformativeReads = new int[numberOfPositions];
+        }
+
+        int getDP(final int offset) {
+            return refDepths[offset] + nonRefDepths[offset];
+        }
+
+        /**
+         * Returns a new array with the genotype likelihoods at a position, with the het and hom var likelihoods
+         * capped by the hom ref likelihood as in {@link RefVsAnyResult#getGenotypeLikelihoodsCappedByHomRefLikelihood}.
+         */
+        double[] getGenotypeLikelihoodsCappedByHomRefLikelihood(final int offset) {
+            final int from = offset * likelihoodCount;
+            final double[] result = new double[likelihoodCount];
+            for (int i = 0; i < likelihoodCount; i++) {
+                result[i] = Math.min(genotypeLikelihoods[from + i], genotypeLikelihoods[from]);
+            }
+            return result;
+        }
+
+        /**
+         * @return a new {@link RefVsAnyResult} with the information at a position.
+         */
+        RefVsAnyResult getResult(final int offset) {
+            final RefVsAnyResult result = new RefVsAnyResult(likelihoodCount);
+            System.arraycopy(genotypeLikelihoods, offset * likelihoodCount, result.genotypeLikelihoods, 0, likelihoodCount);
+            result.refDepth = refDepths[offset];
+            result.nonRefDepth = nonRefDepths[offset];
+            return result;
+        }
+    }
+
     /**
      * Create a new ReferenceConfidenceModel
      *
@@ -157,6 +225,24 @@ public final class ReferenceConfidenceModel {
     public ReferenceConfidenceModel(final SampleList samples,
                                     final SAMFileHeader header,
                                     final int indelInformativeDepthIndelSize) {
+        this(samples, header, indelInformativeDepthIndelSize, null);
+    }
+
+    /**
+     * Create a new ReferenceConfidenceModel that can also give the reference confidence sites in GVCF bands
+     *
+     * The consecutive sites whose GQ falls in the same band can then be passed to a band consumer as a single
+     * {@link ReferenceConfidenceBand}, by the {@link #calculateRefConfidence} that takes one.
+     *
+     * @param samples the list of all samples we'll be considering with this model
+     * @param header the SAMFileHeader describing the read information (used for debugging)
+     * @param indelInformativeDepthIndelSize the max size of indels to consider when calculating indel informative depths
+     * @param gqPartitions the GQ bands as given to the {@link GVCFWriter}, or {@code null} to only emit one VariantContext per site
+     */
+    public ReferenceConfidenceModel(final SampleList samples,
+                                    final SAMFileHeader header,
+                                    final int indelInformativeDepthIndelSize,
+                                    final List<Integer> gqPartitions) {
         Utils.nonNull(samples, "samples cannot be null");
         Utils.validateArg( samples.numberOfSamples() > 0, "samples cannot be empty");
         Utils.nonNull(header, "header cannot be empty");
@@ -165,6 +251,7 @@ public final class ReferenceConfidenceModel {
 
         this.samples = samples;
         this.indelInformativeDepthIndelSize = indelInformativeDepthIndelSize;
+        this.gqPartitions = gqPartitions == null ? null : GVCFWriter.parsePartitions(gqPartitions);
     }
 
     /**
@@ -184,7 +271,6 @@ public final class ReferenceConfidenceModel {
      * detailed information about the certainty that the sample is hom-ref for each base in the region.
      *
      *
-     *
      * @param refHaplotype the reference haplotype, used to get the reference bases across activeRegion.getLoc()
      * @param calledHaplotypes a list of haplotypes that segregate in this region, for realignment of the reads in the
      *                         readLikelihoods, corresponding to each reads best haplotype.  Must contain the refHaplotype.
@@ -205,6 +291,31 @@ public final class ReferenceConfidenceModel {
                                                        final ReadLikelihoods<Haplotype> readLikelihoods,
                                                        final PloidyModel ploidyModel,
                                                        final List<VariantContext> variantCalls) {
+        final List<VariantContext> results = new ArrayList<>();
+        calculateRefConfidence(refHaplotype, calledHaplotypes, paddedReferenceLoc, activeRegion, readLikelihoods, ploidyModel, variantCalls, results::add, null);
+        return results;
+    }
+
+    /**
+     * Calculate the reference confidence for a single sample given the its read data, as {@link #calculateRefConfidence}
+     * above does, but pass the results to consumers in order instead of returning them
+     *
+     * If a band consumer is given, consecutive positions whose GQ falls in the same GQ band are passed to it together as a
+     * {@link ReferenceConfidenceBand}, instead of one VariantContext per position to the variant consumer.
+     *
+     * @param variantConsumer receives the variant calls and the reference confidence contexts
+     * @param bandConsumer receives the bands of reference confidence positions, or {@code null} to pass one VariantContext
+     *                     per position to the variantConsumer.  Requires that this model was given GQ bands.
+     */
+    public void calculateRefConfidence(final Haplotype refHaplotype,
+                                       final Collection<Haplotype> calledHaplotypes,
+                                       final SimpleInterval paddedReferenceLoc,
+                                       final AssemblyRegion activeRegion,
+                                       final ReadLikelihoods<Haplotype> readLikelihoods,
+                                       final PloidyModel ploidyModel,
+                                       final List<VariantContext> variantCalls,
+                                       final Consumer<VariantContext> variantConsumer,
+                                       final Consumer<ReferenceConfidenceBand> bandConsumer) {
         Utils.nonNull(refHaplotype, "refHaplotype cannot be null");
         Utils.nonNull(calledHaplotypes, "calledHaplotypes cannot be null");
         Utils.validateArg(calledHaplotypes.contains(refHaplotype), "calledHaplotypes must contain the refHaplotype");
@@ -214,53 +325,80 @@ public final class ReferenceConfidenceModel {
         Utils.validateArg(readLikelihoods.numberOfSamples() == 1, () -> "readLikelihoods must contain exactly one sample but it contained " + readLikelihoods.numberOfSamples());
         Utils.validateArg( refHaplotype.length() == activeRegion.getExtendedSpan().size(), () -> "refHaplotype " + refHaplotype.length() + " and activeRegion location size " + activeRegion.getSpan().size() + " are different");
         Utils.nonNull(ploidyModel, "the ploidy model cannot be null");
+        Utils.nonNull(variantConsumer, "variantConsumer cannot be null");
+        Utils.validateArg(bandConsumer == null || gqPartitions != null, "this model has no GQ bands to give bands of");
         final int ploidy = ploidyModel.samplePloidy(0); // the first sample = the only sample in reference-confidence mode.
 
         final SimpleInterval refSpan = activeRegion.getSpan();
-        final List<ReadPileup> refPileups = getPileupsOverReference(refHaplotype, calledHaplotypes, paddedReferenceLoc, activeRegion, refSpan, readLikelihoods);
         final byte[] ref = refHaplotype.getBases();
-        final List<VariantContext> results = new ArrayList<>(refSpan.size());
         final String sampleName = readLikelihoods.getSample(0);
 
         final int globalRefOffset = refSpan.getStart() - activeRegion.getExtendedSpan().getStart();
-        for ( final ReadPileup pileup : refPileups ) {
-            final Locatable curPos = pileup.getLocation();
-            final int offset = curPos.getStart() - refSpan.getStart();
+        final boolean[] callStarts = new boolean[refSpan.size()];
+        for ( final VariantContext call : variantCalls ) {
+            if ( call.getContig().equals(refSpan.getContig()) && call.getStart() >= refSpan.getStart() && call.getStart() <= refSpan.getEnd() ) {
+                callStarts[call.getStart() - refSpan.getStart()] = true;
+            }
+        }
+        final RegionRefVsAnyResult regionCalc = calcGenotypeLikelihoodsOfRefVsAnyOverSpan(ploidy, activeRegion.getReads(), refSpan, ref, globalRefOffset, callStarts);
+
+        final ReferenceConfidenceBand.Builder band = bandConsumer == null ? null
+                : new ReferenceConfidenceBand.Builder(REFERENCE_CONFIDENCE_SOURCE, sampleName, ploidy, gqPartitions);
+        for ( int offset = 0; offset < refSpan.size(); offset++ ) {
+            final SimpleInterval curPos = new SimpleInterval(refSpan.getContig(), refSpan.getStart() + offset, refSpan.getStart() + offset);
 
-            final VariantContext overlappingSite = getOverlappingVariantContext(curPos, variantCalls);
+            final VariantContext overlappingSite = callStarts[offset] ? getOverlappingVariantContext(curPos, variantCalls) : null;
             if ( overlappingSite != null && overlappingSite.getStart() == curPos.getStart() ) {
-                results.add(overlappingSite);
+                if ( band != null && !band.isEmpty() ) {
+                    bandConsumer.accept(band.build());
+                }
+                variantConsumer.accept(overlappingSite);
+            } else if ( band != null ) {
+                // collect the site into the current band, without making a VariantContext for it
+                final int[] pls = calcLeastConfidencePLs(ploidy, regionCalc.getGenotypeLikelihoodsCappedByHomRefLikelihood(offset), regionCalc.indelInformativeReads[offset]);
+                final int gq = GATKVariantContextUtils.calculateGQFromPLs(pls);
+                if ( !band.isEmpty() && !band.canAdd(curPos.getContig(), curPos.getStart(), gq) ) {
+                    bandConsumer.accept(band.build());
+                }
+                band.add(curPos.getContig(), curPos.getStart(), ref[offset + globalRefOffset], gq, pls, regionCalc.getDP(offset));
             } else {
                 // otherwise emit a reference confidence variant context
-                results.add(makeReferenceConfidenceVariantContext(ploidy, ref, sampleName, globalRefOffset, pileup, curPos, offset));
+                variantConsumer.accept(makeReferenceConfidenceVariantContext(ploidy, ref[offset + globalRefOffset], sampleName, curPos, regionCalc.getResult(offset), regionCalc.indelInformativeReads[offset]));
             }
         }
-
-        return results;
+        if ( band != null && !band.isEmpty() ) {
+            bandConsumer.accept(band.build());
+        }
     }
 
     private VariantContext makeReferenceConfidenceVariantContext(final int ploidy,
-                                                                 final byte[] ref,
+                                                                 final byte refBase,
                                                                  final String sampleName,
-                                                                 final int globalRefOffset,
-                                                                 final ReadPileup pileup,
                                                                  final Locatable curPos,
-                                                                 final int offset) {
+                                                                 final RefVsAnyResult homRefCalc,
+                                                                 final int nIndelInformativeReads) {
         // Assume infinite population on a single sample.
-        final int refOffset = offset + globalRefOffset;
-        final byte refBase = ref[refOffset];
-        final RefVsAnyResult homRefCalc = calcGenotypeLikelihoodsOfRefVsAny(ploidy, pileup, refBase, BASE_QUAL_THRESHOLD, null);
-
         final Allele refAllele = Allele.create(refBase, true);
         final List<Allele> refSiteAlleles = Arrays.asList(refAllele, Allele.NON_REF_ALLELE);
-        final VariantContextBuilder vcb = new VariantContextBuilder("HC", curPos.getContig(), curPos.getStart(), curPos.getStart(), refSiteAlleles);
+        final VariantContextBuilder vcb = new VariantContextBuilder(REFERENCE_CONFIDENCE_SOURCE, curPos.getContig(), curPos.getStart(), curPos.getStart(), refSiteAlleles);
         final GenotypeBuilder gb = new GenotypeBuilder(sampleName, GATKVariantContextUtils.homozygousAlleleList(refAllele, ploidy));
         gb.AD(homRefCalc.getAD());
         gb.DP(homRefCalc.getDP());
 
+        final int[] leastConfidenceGLsAsPLs = calcLeastConfidencePLs(ploidy, homRefCalc.getGenotypeLikelihoodsCappedByHomRefLikelihood(), nIndelInformativeReads);
+        gb.GQ(GATKVariantContextUtils.calculateGQFromPLs(leastConfidenceGLsAsPLs));
+        gb.PL(leastConfidenceGLsAsPLs);
+
+        vcb.genotypes(gb.make());
+        return vcb.make();
+    }
+
+    /**
+     * Calculates the PLs of the hom-ref call at a site, from the SNP or the indel model, whichever gives the least confidence
+     */
+    private int[] calcLeastConfidencePLs(final int ploidy, final double[] cappedGenotypeLikelihoods, final int nIndelInformativeReads) {
         // genotype likelihood calculation
-        final GenotypeLikelihoods snpGLs = GenotypeLikelihoods.fromLog10Likelihoods(homRefCalc.getGenotypeLikelihoodsCappedByHomRefLikelihood());
-        final int nIndelInformativeReads = calcNIndelInformativeReads(pileup, refOffset, ref, indelInformativeDepthIndelSize);
+        final GenotypeLikelihoods snpGLs = GenotypeLikelihoods.fromLog10Likelihoods(cappedGenotypeLikelihoods);
         final GenotypeLikelihoods indelGLs = getIndelPLs(ploidy,nIndelInformativeReads);
 
         // now that we have the SNP and indel GLs, we take the one with the least confidence,
@@ -271,12 +409,7 @@ public final class ReferenceConfidenceModel {
         // as our GLs for the site.
         final GenotypeLikelihoods leastConfidenceGLs = getGLwithWorstGQ(indelGLs, snpGLs);
 
-        final int[] leastConfidenceGLsAsPLs = leastConfidenceGLs.getAsPLs();
-        gb.GQ(GATKVariantContextUtils.calculateGQFromPLs(leastConfidenceGLsAsPLs));
-        gb.PL(leastConfidenceGLsAsPLs);
-
-        vcb.genotypes(gb.make());
-        return vcb.make();
+        return leastConfidenceGLs.getAsPLs();
     }
 
     /**
@@ -382,63 +515,161 @@ public final class ReferenceConfidenceModel {
     private void applyPileupElementRefVsNonRefLikelihoodAndCount(final byte refBase, final int likelihoodCount, final double log10Ploidy, final RefVsAnyResult result, final PileupElement element, final byte qual, final MathUtils.RunningAverage hqSoftClips) {
         final boolean isAlt = element.getBase() != refBase || element.isDeletion() || element.isBeforeDeletionStart()
                 || element.isAfterDeletionEnd() || element.isBeforeInsertion() || element.isAfterInsertion() || element.isNextToSoftClip();
+        if (isAlt) {
+            result.nonRefDepth++;
+        } else {
+            result.refDepth++;
+        }
+        addRefVsNonRefLikelihoods(result.genotypeLikelihoods, 0, likelihoodCount, log10Ploidy, isAlt, qual);
+        if (isAlt && hqSoftClips != null && element.isNextToSoftClip()) {
+            hqSoftClips.add(AlignmentUtils.calcNumHighQualitySoftClips(element.getRead(), HQ_BASE_QUALITY_SOFTCLIP_THRESHOLD));
+        }
+    }
+
+    /**
+     * Adds the log10 likelihoods of a base call to the genotype likelihoods that start at {@code from} in {@code genotypeLikelihoods}
+     */
+    private static void addRefVsNonRefLikelihoods(final double[] genotypeLikelihoods, final int from, final int likelihoodCount,
+                                                  final double log10Ploidy, final boolean isAlt, final byte qual) {
         final double referenceLikelihood;
         final double nonRefLikelihood;
         if (isAlt) {
             nonRefLikelihood = QualityUtils.qualToProbLog10(qual);
             referenceLikelihood = QualityUtils.qualToErrorProbLog10(qual) + MathUtils.LOG10_ONE_THIRD;
-            result.nonRefDepth++;
         } else {
             referenceLikelihood = QualityUtils.qualToProbLog10(qual);
             nonRefLikelihood = QualityUtils.qualToErrorProbLog10(qual) + MathUtils.LOG10_ONE_THIRD;
-            result.refDepth++;
         }
         // Homozygous likelihoods don't need the logSum trick.
-        result.genotypeLikelihoods[0] += referenceLikelihood + log10Ploidy;
-        result.genotypeLikelihoods[likelihoodCount - 1] += nonRefLikelihood + log10Ploidy;
+        genotypeLikelihoods[from] += referenceLikelihood + log10Ploidy;
+        genotypeLikelihoods[from + likelihoodCount - 1] += nonRefLikelihood + log10Ploidy;
         // Heterozygous likelihoods need the logSum trick:
         for (int i = 1, j = likelihoodCount - 2; i < likelihoodCount - 1; i++, j--) {
-            result.genotypeLikelihoods[i] +=
+            genotypeLikelihoods[from + i] +=
                     MathUtils.approximateLog10SumLog10(
                             referenceLikelihood + MathUtils.log10(j),
                             nonRefLikelihood + MathUtils.log10(i));
         }
-        if (isAlt && hqSoftClips != null && element.isNextToSoftClip()) {
-            hqSoftClips.add(AlignmentUtils.calcNumHighQualitySoftClips(element.getRead(), HQ_BASE_QUALITY_SOFTCLIP_THRESHOLD));
-        }
     }
 
     /**
-     * Get a list of pileups that span the entire active region span, in order, one for each position
+     * Calculates, for every position of a span, what {@link #calcGenotypeLikelihoodsOfRefVsAny} and
+     * {@link #calcNIndelInformativeReads} would compute from the pileup of the reads at that position.
+     *
+     * Rather than building a pileup per position, each read is walked along the reference once, adding its contribution
+     * to the position sums kept in primitive arrays. The cigar neighbourhood that makes a base count as non-ref, or a read
+     * not count as evidence against indels, is worked out once per cigar element rather than once per base.
+     * Reads are walked in their order in the list, which is the order of their elements in the pileups, so the sums are
+     * the same too.
+     *
+     * @param ploidy target sample ploidy.
+     * @param reads the reads of the only sample, sorted by alignment start.
+     * @param span the positions to calculate.
+     * @param ref the reference bases.
+     * @param spanOffsetIntoRef the index in {@code ref} of the first position in {@code span}.
+     * @param skippedPositions positions, relative to the start of {@code span}, that do not need to be calculated.
+     * @return never {@code null}.
      */
-    private List<ReadPileup> getPileupsOverReference(final Haplotype refHaplotype,
-                                                           final Collection<Haplotype> calledHaplotypes,
-                                                           final SimpleInterval paddedReferenceLoc,
-                                                           final AssemblyRegion activeRegion,
-                                                           final SimpleInterval activeRegionSpan,
-                                                           final ReadLikelihoods<Haplotype> readLikelihoods) {
-        Utils.validateArg(calledHaplotypes.contains(refHaplotype), "calledHaplotypes must contain the refHaplotype");
-        Utils.validateArg(readLikelihoods.numberOfSamples() == 1, () -> "readLikelihoods must contain exactly one sample but it contained " + readLikelihoods.numberOfSamples());
+    @VisibleForTesting
+    RegionRefVsAnyResult calcGenotypeLikelihoodsOfRefVsAnyOverSpan(final int ploidy,
+                                                                   final List<GATKRead> reads,
+                                                                   final SimpleInterval span,
+                                                                   final byte[] ref,
+                                                                   final int spanOffsetIntoRef,
+                                                                   final boolean[] skippedPositions) {
+        final int likelihoodCount = ploidy + 1;
+        final double log10Ploidy = MathUtils.log10(ploidy);
+        final int spanStart = span.getStart();
+        final int spanEnd = span.getEnd();
+        final RegionRefVsAnyResult result = new RegionRefVsAnyResult(span.size(), likelihoodCount);
+
+        for (final GATKRead read : reads) {
+            if (read.getEnd() < spanStart || read.getStart() > spanEnd) {
+                continue;
+            }
+            final byte[] readBases = read.getBasesNoCopy();
+            final byte[] readQuals = read.getBaseQualitiesNoCopy();
+            final Cigar cigar = read.getCigar();
+            final AlignmentStateMachine state = new AlignmentStateMachine(read);
+
+            int cigarElementIndex = -1;
+            boolean altAtElementStart = false;
+            boolean altAtElementEnd = false;
+            boolean indelUninformativeAtElementEnd = false;
+            for (CigarOperator op = state.stepForwardOnGenome(); op != null; op = state.stepForwardOnGenome()) {
+                final int position = state.getGenomePosition();
+                if (position < spanStart) {
+                    continue;
+                } else if (position > spanEnd) {
+                    break;
+                }
+                final int offset = position - spanStart;
+                // like the locus iterator, leave out reference skips and adaptor bases
+                if (op == CigarOperator.N || skippedPositions[offset] || ReadUtils.isBaseInsideAdaptor(read, position)) {
+                    continue;
+                }
 
-        final List<GATKRead> reads = activeRegion.getReads();
+                if (state.getCurrentCigarElementOffset() != cigarElementIndex) {
+                    cigarElementIndex = state.getCurrentCigarElementOffset();
+                    final CigarOperator previous = adjacentOperator(cigar, cigarElementIndex - 1);
+                    final CigarOperator next = adjacentOperator(cigar, cigarElementIndex + 1);
+                    final boolean afterDeletion = nearestOnGenomeOperator(cigar, cigarElementIndex, -1) == CigarOperator.D;
+                    final boolean beforeDeletion = nearestOnGenomeOperator(cigar, cigarElementIndex, 1) == CigarOperator.D;
+                    altAtElementStart = afterDeletion || previous == CigarOperator.I || previous == CigarOperator.S;
+                    altAtElementEnd = beforeDeletion || next == CigarOperator.I || next == CigarOperator.S;
+                    indelUninformativeAtElementEnd = beforeDeletion || next == CigarOperator.I;
+                }
+                final boolean isDeletion = op == CigarOperator.D;
+                final boolean atElementStart = state.getOffsetIntoCurrentCigarElement() == 0;
+                final boolean atElementEnd = state.getOffsetIntoCurrentCigarElement() == state.getCurrentCigarElement().getLength() - 1;
+                final int readOffset = state.getReadOffset();
+                final int refOffset = spanOffsetIntoRef + offset;
+
+                final byte qual = isDeletion ? REF_MODEL_DELETION_QUAL : readQuals[readOffset];
+                if (isDeletion || qual > BASE_QUAL_THRESHOLD) {
+                    final boolean isAlt = isDeletion || readBases[readOffset] != ref[refOffset]
+                            || (atElementStart && altAtElementStart) || (atElementEnd && altAtElementEnd);
+                    if (isAlt) {
+                        result.nonRefDepths[offset]++;
+                    } else {
+                        result.refDepths[offset]++;
+                    }
+                    addRefVsNonRefLikelihoods(result.genotypeLikelihoods, offset * likelihoodCount, likelihoodCount, log10Ploidy, isAlt, qual);
+                }
 
-        final LocusIteratorByState libs = new LocusIteratorByState(reads.iterator(), LocusIteratorByState.NO_DOWNSAMPLING,
-                false, samples.asSetOfSamples(), activeRegion.getHeader(), true);
+                // reads with an indel right after this base don't count as evidence; beyond the cap further reads make no difference
+                if (!isDeletion && !(atElementEnd && indelUninformativeAtElementEnd)
+                        && result.indelInformativeReads[offset] < MAX_N_INDEL_INFORMATIVE_READS
+                        && isReadInformativeAboutIndelsOfSize(read, readOffset, ref, refOffset, indelInformativeDepthIndelSize)) {
+                    result.indelInformativeReads[offset]++;
+                }
+            }
+        }
 
-        final int startPos = activeRegionSpan.getStart();
-        final List<ReadPileup> pileups = new ArrayList<>(activeRegionSpan.getEnd() - startPos);
-        AlignmentContext next = libs.advanceToLocus(startPos, true);
-        for ( int curPos = startPos; curPos <= activeRegionSpan.getEnd(); curPos++ ) {
-            if ( next != null && next.getLocation().getStart() == curPos ) {
-                pileups.add(next.getBasePileup());
-                next = libs.hasNext() ? libs.next() : null;
-            } else {
-                // no data, so we create empty pileups
-                pileups.add(new ReadPileup(new SimpleInterval(activeRegionSpan.getContig(), curPos, curPos)));
+        for (int offset = 0; offset < span.size(); offset++) {
+            final double denominator = (result.refDepths[offset] + result.nonRefDepths[offset]) * log10Ploidy;
+            for (int i = 0; i < likelihoodCount; i++) {
+                result.genotypeLikelihoods[offset * likelihoodCount + i] -= denominator;
             }
         }
+        return result;
+    }
+
+    private static CigarOperator adjacentOperator(final Cigar cigar, final int index) {
+        return index < 0 || index >= cigar.numCigarElements() ? null : cigar.getCigarElement(index).getOperator();
+    }
 
-        return pileups;
+    /**
+     * @return the operator of the nearest cigar element on the genome (M, =, X or D) in the given direction, or {@code null} if there is none.
+     */
+    private static CigarOperator nearestOnGenomeOperator(final Cigar cigar, final int index, final int increment) {
+        for (int i = index + increment; i >= 0 && i < cigar.numCigarElements(); i += increment) {
+            final CigarOperator op = cigar.getCigarElement(i).getOperator();
+            if (op == CigarOperator.M || op == CigarOperator.EQ || op == CigarOperator.X || op == CigarOperator.D) {
+                return op;
+            }
+        }
+        return null;
     }
 
     /**
@@ -0,0 +1,129 @@
+package org.broadinstitute.hellbender.tools.walkers.haplotypecaller;
+
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.param.ParamUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cheap test, done before assembly, of whether the read threading assembler can only ever produce the reference haplotype
+ * for a region.
+ *
+ * <p>
+ *     The assembler threads the reference and every stretch of usable bases (not N and with quality at least the assembler
+ *     minimum) of each read into a de Bruijn graph. If the reference kmers are unique and every such stretch is an exact
+ *     substring of the reference, all the read kmers and all the links between them are already on the reference path,
+ *     so no kmer size can give a non-reference haplotype and the region can go straight to the no-variation path.
+ * </p>
+ *
+ * <p>
+ *     We check this with the smallest kmer size used by the assembler (or 31 if that is larger, so that kmers fit in a long):
+ *     uniqueness at a kmer size implies uniqueness at any larger size, and a stretch whose consecutive kmers are found at
+ *     consecutive reference positions is a substring of the reference. Anything else, including lower-case or ambiguous
+ *     reference bases, makes the test answer {@code false}; a {@code false} answer does not imply that there is variation.
+ * </p>
+ */
+public final class ReferenceOnlyRegionDetector {
+
+    /**
+     * The largest kmer size that we can pack in a long with two bits per base.
+     */
+    static final int MAX_KMER_SIZE = 31;
+
+    private ReferenceOnlyRegionDetector() {}
+
+    /**
+     * @param reference the reference bases the assembler builds its graph from
+     * @param reads the reads, as given to the assembler
+     * @param minAssemblyKmerSize the smallest kmer size used by the assembler
+     * @param minBaseQualityToUseInAssembly bases below this quality are not used by the assembler
+     * @return {@code true} only if the assembly of {@code reads} against {@code reference} cannot yield any non-reference haplotype
+     */
+    public static boolean isReferenceOnly(final byte[] reference, final Iterable<GATKRead> reads, final int minAssemblyKmerSize,
+                                          final byte minBaseQualityToUseInAssembly) {
+        Utils.nonNull(reference, "reference");
+        Utils.nonNull(reads, "reads");
+        ParamUtils.isPositive(minAssemblyKmerSize, "the kmer size must be positive");
+        final int kmerSize = Math.min(minAssemblyKmerSize, MAX_KMER_SIZE);
+
+        final Map<Long, Integer> referenceKmerPositions = indexReferenceKmers(reference, kmerSize);
+        if ( referenceKmerPositions == null ) {
+            return false;
+        }
+
+        for ( final GATKRead read : reads ) {
+            if ( !readStretchesAreInReference(read.getBases(), read.getBaseQualities(), referenceKmerPositions, kmerSize, minBaseQualityToUseInAssembly) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the position of each reference kmer, or {@code null} if some kmer is repeated or there is a base other than A, C, G or T
+     */
+    private static Map<Long, Integer> indexReferenceKmers(final byte[] reference, final int kmerSize) {
+        final Map<Long, Integer> positions = new HashMap<>(2 * reference.length);
+        final long mask = kmerMask(kmerSize);
+        long kmer = 0;
+        for ( int i = 0; i < reference.length; i++ ) {
+            final int code = encode(reference[i]);
+            if ( code < 0 ) {
+                return null;
+            }
+            kmer = ((kmer << 2) | code) & mask;
+            if ( i >= kmerSize - 1 && positions.put(kmer, i - kmerSize + 1) != null ) {
+                return null;
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Checks that each stretch of usable bases of a read that is at least a kmer long is a substring of the reference.
+     */
+    private static boolean readStretchesAreInReference(final byte[] bases, final byte[] qualities, final Map<Long, Integer> referenceKmerPositions,
+                                                       final int kmerSize, final byte minBaseQualityToUseInAssembly) {
+        final long mask = kmerMask(kmerSize);
+        long kmer = 0;
+        int stretchLength = 0;
+        int expectedPosition = -1;
+        for ( int i = 0; i < bases.length; i++ ) {
+            if ( bases[i] == 'N' || qualities[i] < minBaseQualityToUseInAssembly ) {
+                stretchLength = 0;
+                continue;
+            }
+            final int code = encode(bases[i]);
+            if ( code < 0 ) {
+                // the assembler would use this base but it cannot be on the reference path
+                return false;
+            }
+            kmer = ((kmer << 2) | code) & mask;
+            stretchLength++;
+            if ( stretchLength >= kmerSize ) {
+                final Integer position = referenceKmerPositions.get(kmer);
+                if ( position == null || (stretchLength > kmerSize && position != expectedPosition) ) {
+                    return false;
+                }
+                expectedPosition = position + 1;
+            }
+        }
+        return true;
+    }
+
+    private static long kmerMask(final int kmerSize) {
+        return (1L << (2 * kmerSize)) - 1;
+    }
+
+    private static int encode(final byte base) {
+        switch ( base ) {
+            case 'A': return 0;
+            case 'C': return 1;
+            case 'G': return 2;
+            case 'T': return 3;
+            default: return -1;
+        }
+    }
+}
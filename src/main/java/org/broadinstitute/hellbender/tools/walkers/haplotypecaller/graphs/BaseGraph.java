@@ -441,6 +441,13 @@ public abstract class BaseGraph<V extends BaseVertex, E extends BaseEdge> extend
         new LowWeightChainPruner<V,E>(pruneFactor).pruneLowWeightChains(this);
     }
 
+    /**
+     * As {@link #pruneLowWeightChains(int)}, using and updating a snapshot of this graph
+     */
+    public final void pruneLowWeightChains( final int pruneFactor, final CompactGraph<V,E> compactGraph ) {
+        new LowWeightChainPruner<V,E>(pruneFactor).pruneLowWeightChains(this, compactGraph);
+    }
+
     /**
      * Remove all vertices in the graph that have in and out degree of 0
      */
@@ -456,21 +463,49 @@ public abstract class BaseGraph<V extends BaseVertex, E extends BaseEdge> extend
         return inDegreeOf(v) == 0 && outDegreeOf(v) == 0 && !isRefSource(v);
     }
 
+    /**
+     * As {@link #removeSingletonOrphanVertices()}, using and updating a snapshot of this graph
+     */
+    public void removeSingletonOrphanVertices(final CompactGraph<V,E> compactGraph) {
+        removeOrphanedVertices(compactGraph, true);
+    }
+
+    /**
+     * Remove the vertices with in and out degree of 0 from both this graph and a snapshot of it
+     *
+     * @param keepRefSource whether to keep the reference source if it is one of them
+     */
+    protected final void removeOrphanedVertices(final CompactGraph<V,E> compactGraph, final boolean keepRefSource) {
+        checkIsSnapshot(compactGraph);
+        final boolean[] orphans = new boolean[compactGraph.numberOfVertices()];
+        for ( int v = 0; v < orphans.length; v++ ) {
+            orphans[v] = !compactGraph.isRemovedVertex(v) && compactGraph.inDegreeOf(v) == 0 && compactGraph.outDegreeOf(v) == 0
+                    && !(keepRefSource && isRefSource(compactGraph.getVertex(v)));
+        }
+        removeVertices(compactGraph, orphans, true);
+    }
+
     /**
      * Remove all vertices on the graph that cannot be accessed by following any edge,
      * regardless of its direction, from the reference source vertex
      */
     public final void removeVerticesNotConnectedToRefRegardlessOfEdgeDirection() {
-        final Collection<V> toRemove = new HashSet<>(vertexSet());
+        removeVerticesNotConnectedToRefRegardlessOfEdgeDirection(new CompactGraph<>(this));
+    }
 
+    /**
+     * As {@link #removeVerticesNotConnectedToRefRegardlessOfEdgeDirection()}, using and updating a snapshot of this graph
+     */
+    public final void removeVerticesNotConnectedToRefRegardlessOfEdgeDirection(final CompactGraph<V,E> compactGraph) {
+        checkIsSnapshot(compactGraph);
         final V refV = getReferenceSourceVertex();
-        if ( refV != null ) {
-            for ( final V v : new BaseGraphIterator<>(this, refV, true, true) ) {
-                toRemove.remove(v);
-            }
+        if ( refV == null ) {
+            removeVertices(compactGraph, new boolean[compactGraph.numberOfVertices()], false);
+            return;
         }
 
-        removeAllVertices(toRemove);
+        final boolean[] connected = compactGraph.reachableFrom(compactGraph.getVertexId(refV), true, true);
+        removeVertices(compactGraph, connected, false);
     }
 
     /**
@@ -481,27 +516,28 @@ public abstract class BaseGraph<V extends BaseVertex, E extends BaseEdge> extend
      * paths that do not also meet eventually with the reference sink vertex
      */
     public final void removePathsNotConnectedToRef() {
+        removePathsNotConnectedToRef(new CompactGraph<>(this));
+    }
+
+    /**
+     * As {@link #removePathsNotConnectedToRef()}, using and updating a snapshot of this graph
+     */
+    public final void removePathsNotConnectedToRef(final CompactGraph<V,E> compactGraph) {
+        checkIsSnapshot(compactGraph);
         if ( getReferenceSourceVertex() == null || getReferenceSinkVertex() == null ) {
             throw new IllegalStateException("Graph must have ref source and sink vertices");
         }
 
-        // get the set of vertices we can reach by going forward from the ref source
-        final Collection<V> onPathFromRefSource = new HashSet<>(vertexSet().size());
-        for ( final V v : new BaseGraphIterator<>(this, getReferenceSourceVertex(), false, true) ) {
-            onPathFromRefSource.add(v);
-        }
-
-        // get the set of vertices we can reach by going backward from the ref sink
-        final Collection<V> onPathFromRefSink = new HashSet<>(vertexSet().size());
-        for ( final V v : new BaseGraphIterator<>(this, getReferenceSinkVertex(), true, false) ) {
-            onPathFromRefSink.add(v);
-        }
+        // the set of vertices we can reach by going forward from the ref source
+        final boolean[] onPathFromRefSource = compactGraph.reachableFrom(compactGraph.getVertexId(getReferenceSourceVertex()), false, true);
+        // the set of vertices we can reach by going backward from the ref sink
+        final boolean[] onPathFromRefSink = compactGraph.reachableFrom(compactGraph.getVertexId(getReferenceSinkVertex()), true, false);
 
         // we want to remove anything that's not in both the sink and source sets
-        final Collection<V> verticesToRemove = new HashSet<>(vertexSet());
-        onPathFromRefSource.retainAll(onPathFromRefSink);
-        verticesToRemove.removeAll(onPathFromRefSource);
-        removeAllVertices(verticesToRemove);
+        for ( int v = 0; v < onPathFromRefSource.length; v++ ) {
+            onPathFromRefSource[v] &= onPathFromRefSink[v];
+        }
+        removeVertices(compactGraph, onPathFromRefSource, false);
 
         // simple sanity checks that this algorithm is working.
         if ( getSinks().size() > 1 ) {
@@ -513,6 +549,26 @@ public abstract class BaseGraph<V extends BaseVertex, E extends BaseEdge> extend
         }
     }
 
+    /**
+     * Remove the vertices of the snapshot that haven't been removed already and are selected, or not selected, from
+     * both this graph and the snapshot
+     */
+    private void removeVertices(final CompactGraph<V,E> compactGraph, final boolean[] selected, final boolean removeSelected) {
+        final List<V> toRemove = new ArrayList<>();
+        for ( int v = 0; v < selected.length; v++ ) {
+            if ( selected[v] == removeSelected && ! compactGraph.isRemovedVertex(v) ) {
+                toRemove.add(compactGraph.getVertex(v));
+                compactGraph.removeVertex(v);
+            }
+        }
+        removeAllVertices(toRemove);
+    }
+
+    private void checkIsSnapshot(final CompactGraph<V,E> compactGraph) {
+        Utils.nonNull(compactGraph, "the snapshot cannot be null");
+        Utils.validateArg(compactGraph.isSnapshotOf(this), "the snapshot is not of this graph, or the graph has changed since it was taken");
+    }
+
     /**
      * Semi-lenient comparison of two graphs, truing true if g1 and g2 have similar structure
      *
@@ -698,74 +754,4 @@ public abstract class BaseGraph<V extends BaseVertex, E extends BaseEdge> extend
     public BaseGraph<V,E> clone()  {
         return (BaseGraph<V,E>) super.clone();
     }
-
-    /**
-     * General iterator that can iterate over all vertices in a BaseGraph, following either
-     * incoming, outgoing edge (as well as both or none) edges.  Supports traversal of graphs
-     * with cycles and other crazy structures.  Will only ever visit each vertex once.  The
-     * order in which the vertices are visited is undefined.
-     */
-    private static final class BaseGraphIterator<T extends BaseVertex, E extends BaseEdge> implements Iterator<T>, Iterable<T> {
-        final Collection<T> visited = new HashSet<>();
-        final Deque<T> toVisit = new LinkedList<>();
-        final BaseGraph<T,E> graph;
-        final boolean followIncomingEdges;
-        final boolean followOutgoingEdges;
-
-        /**
-         * Create a new BaseGraphIterator starting its traversal at start
-         *
-         * Note that if both followIncomingEdges and followOutgoingEdges are false, we simply return the
-         * start vertex
-         *
-         * @param graph the graph to iterator over.  Cannot be null
-         * @param start the vertex to start at.  Cannot be null
-         * @param followIncomingEdges should we follow incoming edges during our
-         *                            traversal? (goes backward through the graph)
-         * @param followOutgoingEdges should we follow outgoing edges during out traversal?
-         */
-        private BaseGraphIterator(final BaseGraph<T,E> graph, final T start,
-                                 final boolean followIncomingEdges, final boolean followOutgoingEdges) {
-            Utils.nonNull(graph, "graph cannot be null");
-            Utils.nonNull(start, "start cannot be null");
-            Utils.validateArg(graph.containsVertex(start), () -> "start " + start + " must be in graph but it isn't");
-            this.graph = graph;
-            this.followIncomingEdges = followIncomingEdges;
-            this.followOutgoingEdges = followOutgoingEdges;
-
-            toVisit.add(start);
-        }
-
-        @Override
-        public Iterator<T> iterator() {
-            return this;
-        }
-
-        @Override
-        public boolean hasNext() {
-            return ! toVisit.isEmpty();
-        }
-
-        @Override
-        public T next() {
-            final T v = toVisit.pop();
-
-            if ( ! visited.contains(v) ) {
-                visited.add(v);
-                if ( followIncomingEdges ) {
-                    toVisit.addAll(graph.incomingVerticesOf(v));
-                }
-                if ( followOutgoingEdges ) {
-                    toVisit.addAll(graph.outgoingVerticesOf(v));
-                }
-            }
-
-            return v;
-        }
-
-        @Override
-        public void remove() {
-            throw new UnsupportedOperationException("Doesn't implement remove");
-        }
-    }
 }
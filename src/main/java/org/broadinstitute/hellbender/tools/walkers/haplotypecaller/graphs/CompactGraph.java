@@ -0,0 +1,282 @@
+package org.broadinstitute.hellbender.tools.walkers.haplotypecaller.graphs;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.*;
+
+/**
+ * Compact, read-only snapshot of the structure of a {@link BaseGraph}.
+ *
+ * <p>
+ *     Vertices and edges are numbered with consecutive int ids and adjacency is kept in compressed sparse row form: the
+ *     outgoing edges of vertex {@code v} are {@code outgoingEdge(v, 0) ... outgoingEdge(v, outDegree(v) - 1)}, stored next
+ *     to each other in a single int array, and the same for incoming edges. Edge endpoints, pruning multiplicities and
+ *     reference status are kept in primitive arrays indexed by edge id.
+ * </p>
+ *
+ * <p>
+ *     {@link BaseGraph} stays the representation that graph transformations modify; this class is meant for passes that
+ *     only need to traverse the graph, which then avoid the per-step hash lookups and set allocations of the JGraphT
+ *     adjacency.
+ * </p>
+ *
+ * <p>
+ *     The {@link BaseGraph} methods that take a snapshot remove the vertices and edges they remove from the graph from
+ *     the snapshot as well, so that a pruning phase made of several of them can take one snapshot and use it throughout.
+ *     Removed vertices and edges keep their ids, but are no longer counted in the degrees, listed as incoming or outgoing
+ *     edges or reached by {@link #reachableFrom}. The snapshot does not follow any other change to the original graph.
+ * </p>
+ *
+ * @param <V> the vertex type
+ * @param <E> the edge type
+ */
+public final class CompactGraph<V extends BaseVertex, E extends BaseEdge> {
+
+    private final BaseGraph<V, E> graph;
+    private final List<V> vertices;
+    private final Object2IntMap<V> vertexIds;
+    private final List<E> edges;
+
+    private final int[] edgeSources;
+    private final int[] edgeTargets;
+    private final int[] pruningMultiplicities;
+    private final boolean[] refEdges;
+
+    private final int[] outgoingOffsets;
+    private final int[] outgoingEdges;
+    private final int[] incomingOffsets;
+    private final int[] incomingEdges;
+
+    private final boolean[] removedVertices;
+    private final boolean[] removedEdges;
+    private final int[] outDegrees;
+    private final int[] inDegrees;
+    private int numberOfRemovedVertices = 0;
+    private int numberOfRemovedEdges = 0;
+
+    /**
+     * Takes a snapshot of a graph.
+     *
+     * @param graph the graph.
+     */
+    public CompactGraph(final BaseGraph<V, E> graph) {
+        Utils.nonNull(graph, "the graph cannot be null");
+        this.graph = graph;
+        vertices = new ArrayList<>(graph.vertexSet());
+        final int numberOfVertices = vertices.size();
+        vertexIds = new Object2IntOpenHashMap<>(numberOfVertices);
+        vertexIds.defaultReturnValue(-1);
+        for (int v = 0; v < numberOfVertices; v++) {
+            vertexIds.put(vertices.get(v), v);
+        }
+
+        edges = new ArrayList<>(graph.edgeSet());
+        final int numberOfEdges = edges.size();
+        edgeSources = new int[numberOfEdges];
+        edgeTargets = new int[numberOfEdges];
+        pruningMultiplicities = new int[numberOfEdges];
+        refEdges = new boolean[numberOfEdges];
+        outgoingOffsets = new int[numberOfVertices + 1];
+        incomingOffsets = new int[numberOfVertices + 1];
+        for (int e = 0; e < numberOfEdges; e++) {
+            final E edge = edges.get(e);
+            edgeSources[e] = vertexIds.getInt(graph.getEdgeSource(edge));
+            edgeTargets[e] = vertexIds.getInt(graph.getEdgeTarget(edge));
+            pruningMultiplicities[e] = edge.getPruningMultiplicity();
+            refEdges[e] = edge.isRef();
+            outgoingOffsets[edgeSources[e] + 1]++;
+            incomingOffsets[edgeTargets[e] + 1]++;
+        }
+        for (int v = 0; v < numberOfVertices; v++) {
+            outgoingOffsets[v + 1] += outgoingOffsets[v];
+            incomingOffsets[v + 1] += incomingOffsets[v];
+        }
+
+        outgoingEdges = new int[numberOfEdges];
+        incomingEdges = new int[numberOfEdges];
+        final int[] outgoingFill = Arrays.copyOf(outgoingOffsets, numberOfVertices);
+        final int[] incomingFill = Arrays.copyOf(incomingOffsets, numberOfVertices);
+        for (int e = 0; e < numberOfEdges; e++) {
+            outgoingEdges[outgoingFill[edgeSources[e]]++] = e;
+            incomingEdges[incomingFill[edgeTargets[e]]++] = e;
+        }
+
+        removedVertices = new boolean[numberOfVertices];
+        removedEdges = new boolean[numberOfEdges];
+        outDegrees = new int[numberOfVertices];
+        inDegrees = new int[numberOfVertices];
+        for (int v = 0; v < numberOfVertices; v++) {
+            outDegrees[v] = outgoingOffsets[v + 1] - outgoingOffsets[v];
+            inDegrees[v] = incomingOffsets[v + 1] - incomingOffsets[v];
+        }
+    }
+
+    /**
+     * @return the number of vertex ids, which includes those of removed vertices.
+     */
+    public int numberOfVertices() {
+        return vertices.size();
+    }
+
+    /**
+     * @return the number of edge ids, which includes those of removed edges.
+     */
+    public int numberOfEdges() {
+        return edges.size();
+    }
+
+    public boolean isRemovedVertex(final int v) {
+        return removedVertices[v];
+    }
+
+    public boolean isRemovedEdge(final int e) {
+        return removedEdges[e];
+    }
+
+    /**
+     * @return whether this is a snapshot of the graph, which has had the same vertices and edges removed since.
+     */
+    public boolean isSnapshotOf(final BaseGraph<V, E> graph) {
+        return this.graph == graph && vertices.size() - numberOfRemovedVertices == graph.vertexSet().size()
+                && edges.size() - numberOfRemovedEdges == graph.edgeSet().size();
+    }
+
+    public V getVertex(final int v) {
+        return vertices.get(v);
+    }
+
+    /**
+     * @return the id of the vertex, or -1 if it was not in the graph.
+     */
+    public int getVertexId(final V vertex) {
+        return vertexIds.getInt(vertex);
+    }
+
+    public E getEdge(final int e) {
+        return edges.get(e);
+    }
+
+    public int getEdgeSource(final int e) {
+        return edgeSources[e];
+    }
+
+    public int getEdgeTarget(final int e) {
+        return edgeTargets[e];
+    }
+
+    public int getPruningMultiplicity(final int e) {
+        return pruningMultiplicities[e];
+    }
+
+    public boolean isRef(final int e) {
+        return refEdges[e];
+    }
+
+    public int outDegreeOf(final int v) {
+        return outDegrees[v];
+    }
+
+    public int inDegreeOf(final int v) {
+        return inDegrees[v];
+    }
+
+    /**
+     * @return the id of the {@code i}-th outgoing edge of vertex {@code v}.
+     */
+    public int outgoingEdge(final int v, final int i) {
+        return liveEdge(outgoingEdges, outgoingOffsets[v], i);
+    }
+
+    /**
+     * @return the id of the {@code i}-th incoming edge of vertex {@code v}.
+     */
+    public int incomingEdge(final int v, final int i) {
+        return liveEdge(incomingEdges, incomingOffsets[v], i);
+    }
+
+    /**
+     * @return the {@code i}-th edge that hasn't been removed in the adjacency of a vertex, starting at {@code offset}.
+     */
+    private int liveEdge(final int[] adjacentEdges, final int offset, final int i) {
+        if (numberOfRemovedEdges == 0) {
+            return adjacentEdges[offset + i];
+        }
+        int remaining = i;
+        for (int k = offset; ; k++) {
+            final int e = adjacentEdges[k];
+            if (!removedEdges[e] && remaining-- == 0) {
+                return e;
+            }
+        }
+    }
+
+    /**
+     * Remove an edge that has been removed from the graph.
+     */
+    void removeEdge(final int e) {
+        if (!removedEdges[e]) {
+            removedEdges[e] = true;
+            numberOfRemovedEdges++;
+            outDegrees[edgeSources[e]]--;
+            inDegrees[edgeTargets[e]]--;
+        }
+    }
+
+    /**
+     * Remove a vertex, and its edges, that have been removed from the graph.
+     */
+    void removeVertex(final int v) {
+        if (!removedVertices[v]) {
+            for (int i = outgoingOffsets[v]; i < outgoingOffsets[v + 1]; i++) {
+                removeEdge(outgoingEdges[i]);
+            }
+            for (int i = incomingOffsets[v]; i < incomingOffsets[v + 1]; i++) {
+                removeEdge(incomingEdges[i]);
+            }
+            removedVertices[v] = true;
+            numberOfRemovedVertices++;
+        }
+    }
+
+    /**
+     * Finds the vertices that can be reached from a vertex.
+     *
+     * @param start the id of the vertex to start from, which must not have been removed.
+     * @param followIncomingEdges whether to walk edges backwards.
+     * @param followOutgoingEdges whether to walk edges forwards.
+     * @return array indexed by vertex id that tells which vertices are reachable, including {@code start}.
+     */
+    public boolean[] reachableFrom(final int start, final boolean followIncomingEdges, final boolean followOutgoingEdges) {
+        Utils.validIndex(start, numberOfVertices());
+        Utils.validateArg(!removedVertices[start], "the start vertex has been removed");
+        final boolean[] reached = new boolean[numberOfVertices()];
+        final int[] stack = new int[numberOfVertices()];
+        int stackSize = 0;
+        reached[start] = true;
+        stack[stackSize++] = start;
+        while (stackSize > 0) {
+            final int v = stack[--stackSize];
+            if (followOutgoingEdges) {
+                for (int i = outgoingOffsets[v]; i < outgoingOffsets[v + 1]; i++) {
+                    final int target = edgeTargets[outgoingEdges[i]];
+                    if (!reached[target] && !removedEdges[outgoingEdges[i]]) {
+                        reached[target] = true;
+                        stack[stackSize++] = target;
+                    }
+                }
+            }
+            if (followIncomingEdges) {
+                for (int i = incomingOffsets[v]; i < incomingOffsets[v + 1]; i++) {
+                    final int source = edgeSources[incomingEdges[i]];
+                    if (!reached[source] && !removedEdges[incomingEdges[i]]) {
+                        reached[source] = true;
+                        stack[stackSize++] = source;
+                    }
+                }
+            }
+        }
+        return reached;
+    }
+}
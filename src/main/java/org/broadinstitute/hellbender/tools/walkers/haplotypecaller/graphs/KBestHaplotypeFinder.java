@@ -132,7 +132,7 @@ public final class KBestHaplotypeFinder extends AbstractList<KBestHaplotype> {
      * @param sinks considered sink vertices.
      * @return never {@code null}.
      */
-    private static SeqGraph removeCycles(final SeqGraph original, final Collection<SeqVertex> sources, final Set<SeqVertex> sinks) {
+    static SeqGraph removeCycles(final SeqGraph original, final Collection<SeqVertex> sources, final Set<SeqVertex> sinks) {
         final Set<BaseEdge> edgesToRemove = new HashSet<>(original.edgeSet().size());
         final Set<SeqVertex> vertexToRemove = new HashSet<>(original.vertexSet().size());
 
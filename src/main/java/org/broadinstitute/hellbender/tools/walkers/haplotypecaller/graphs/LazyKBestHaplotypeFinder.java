@@ -0,0 +1,459 @@
+package org.broadinstitute.hellbender.tools.walkers.haplotypecaller.graphs;
+
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.haplotype.Haplotype;
+import org.broadinstitute.hellbender.utils.param.ParamUtils;
+import org.jgrapht.alg.CycleDetector;
+
+import java.util.*;
+
+/**
+ * Best-first alternative to {@link KBestHaplotypeFinder} that generates haplotypes in score order on demand.
+ *
+ * <p>
+ *     Haplotype scores are the same as those computed by {@link KBestHaplotypeFinder}. Rather than building a
+ *     sub-haplotype finder per vertex that caches the best solutions below it, we compute once the best achievable score from
+ *     each vertex to a sink and then grow partial paths from the sources in a priority queue ordered by the score of their best
+ *     possible completion. Since that bound is exact, complete paths come out of the queue in decreasing score order and
+ *     the work done is proportional to the number of haplotypes requested times their length rather than to the size of
+ *     the whole search space.
+ * </p>
+ *
+ * <p>
+ *     On very complex graphs the search is further bounded by a maximum number of partial paths to expand and a maximum
+ *     number of partial paths to hold in memory at any time. Once either limit is reached no more haplotypes are
+ *     returned and {@link #hasReachedSearchLimit()} reports it. Haplotypes returned before that are still the best ones.
+ * </p>
+ *
+ * <p>Haplotypes with the same score are returned in the order in which they were found, which may differ from the
+ * (unspecified) order used by {@link KBestHaplotypeFinder}.</p>
+ */
+public final class LazyKBestHaplotypeFinder {
+
+    public static final int DEFAULT_MAX_EXPANDED_PATHS = 100_000;
+    public static final int DEFAULT_MAX_QUEUED_PATHS = 1_000_000;
+
+    /**
+     * The search graph, free of cycles.
+     */
+    private final SeqGraph graph;
+
+    private final Set<SeqVertex> sinks;
+
+    private final List<SeqVertex> sources;
+
+    /**
+     * Outgoing edges that lead to some sink, their score and the best score achievable from each vertex to a sink.
+     * Vertices that cannot reach any sink are absent.
+     */
+    private final Map<SeqVertex, VertexInfo> vertexInfo;
+
+    private final int maxExpandedPaths;
+
+    private final int maxQueuedPaths;
+
+    /**
+     * Partial paths ordered by the score of their best completion; ties are broken by creation order.
+     */
+    private final PriorityQueue<PartialPath> queue = new PriorityQueue<>();
+
+    private final List<KBestHaplotype> found = new ArrayList<>();
+
+    private long nextPathSerial = 0;
+
+    private int expandedPaths = 0;
+
+    private boolean reachedSearchLimit = false;
+
+    /**
+     * Constructs a new best-first haplotype finder.
+     *
+     * @param graph the seq-graph to search.
+     * @param sources source vertices for all haplotypes.
+     * @param sinks sink vertices for all haplotypes.
+     * @param maxExpandedPaths maximum number of partial paths to extend over the life of the finder.
+     * @param maxQueuedPaths maximum number of partial paths to keep in memory at once.
+     *
+     * @throws IllegalArgumentException if <ul>
+     *     <li>any of {@code graph}, {@code sources} or {@code sinks} is {@code null},</li>
+     *     <li>any of {@code sources}' or any {@code sinks}' member is not a vertex in {@code graph} or</li>
+     *     <li>either limit is less than 1.</li>
+     * </ul>
+     */
+    public LazyKBestHaplotypeFinder(final SeqGraph graph, final Set<SeqVertex> sources, final Set<SeqVertex> sinks,
+                                    final int maxExpandedPaths, final int maxQueuedPaths) {
+        Utils.nonNull(graph, "graph cannot be null");
+        Utils.nonNull(sources, "sources cannot be null");
+        Utils.nonNull(sinks, "sinks cannot be null");
+        Utils.validateArg(graph.containsAllVertices(sources), "source does not belong to the graph");
+        Utils.validateArg(graph.containsAllVertices(sinks), "sink does not belong to the graph");
+        ParamUtils.isPositive(maxExpandedPaths, "the maximum number of expanded paths must be positive");
+        ParamUtils.isPositive(maxQueuedPaths, "the maximum number of queued paths must be positive");
+
+        // the best scores to the sinks, which guide the search, are computed children first, so the graph must be acyclic
+        this.graph = !sources.isEmpty() && !sinks.isEmpty() && new CycleDetector<>(graph).detectCycles()
+                ? KBestHaplotypeFinder.removeCycles(graph, sources, sinks) : graph;
+        this.sinks = sinks;
+        this.sources = new ArrayList<>(sources);
+        this.maxExpandedPaths = maxExpandedPaths;
+        this.maxQueuedPaths = maxQueuedPaths;
+        vertexInfo = new HashMap<>(this.graph.vertexSet().size());
+        final Set<SeqVertex> visited = new HashSet<>(this.graph.vertexSet().size());
+        for (final SeqVertex source : this.sources) {
+            computeVertexInfo(source, visited);
+            final VertexInfo info = vertexInfo.get(source);
+            if (info != null) {
+                queue.add(new PartialPath(source, null, null, 0.0, info.bestScoreToSink, nextPathSerial++));
+            }
+        }
+    }
+
+    /**
+     * Constructs a new best-first haplotype finder with default search limits.
+     *
+     * @param graph the seq-graph to search.
+     * @param source the source vertex for all haplotypes.
+     * @param sink sink vertex for all haplotypes.
+     */
+    public LazyKBestHaplotypeFinder(final SeqGraph graph, final SeqVertex source, final SeqVertex sink) {
+        this(graph, Collections.singleton(source), Collections.singleton(sink), DEFAULT_MAX_EXPANDED_PATHS, DEFAULT_MAX_QUEUED_PATHS);
+    }
+
+    /**
+     * Constructs a new best-first haplotype finder with default search limits that considers all source and sink vertices.
+     *
+     * @param graph the seq-graph to search.
+     */
+    public LazyKBestHaplotypeFinder(final SeqGraph graph) {
+        this(graph, graph.getSources(), graph.getSinks(), DEFAULT_MAX_EXPANDED_PATHS, DEFAULT_MAX_QUEUED_PATHS);
+    }
+
+    /**
+     * Computes the live outgoing edges and best score to a sink for every vertex reachable from {@code start}.
+     *
+     * <p>Done with an explicit stack (post-order) as graphs in long repeats can be very deep.</p>
+     *
+     * @param start the vertex to start from.
+     * @param visited vertices already visited, from this or a previous start vertex.
+     */
+    private void computeVertexInfo(final SeqVertex start, final Set<SeqVertex> visited) {
+        final Deque<SeqVertex> stack = new ArrayDeque<>();
+        stack.push(start);
+        while (!stack.isEmpty()) {
+            final SeqVertex vertex = stack.peek();
+            if (visited.add(vertex)) {
+                if (!sinks.contains(vertex)) {
+                    for (final BaseEdge edge : graph.outgoingEdgesOf(vertex)) {
+                        final SeqVertex target = graph.getEdgeTarget(edge);
+                        if (!visited.contains(target)) {
+                            stack.push(target);
+                        }
+                    }
+                }
+            } else {
+                stack.pop();
+                if (!vertexInfo.containsKey(vertex)) {
+                    final VertexInfo info = createVertexInfo(vertex);
+                    if (info != null) {
+                        vertexInfo.put(vertex, info);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the information for a vertex once that of all its children is known.
+     *
+     * <p>Edge scores are calibrated as in {@link RecursiveSubHaplotypeFinder}: the log10 fraction of the multiplicity of
+     * the edge (at least 0.5) across all outgoing edges that lead to some sink, or 0 if there is only one such edge.</p>
+     *
+     * @return {@code null} if the vertex does not lead to any sink.
+     */
+    private VertexInfo createVertexInfo(final SeqVertex vertex) {
+        if (sinks.contains(vertex)) {
+            return new VertexInfo(new BaseEdge[0], new SeqVertex[0], new double[0], 0.0, graph.isReferenceNode(vertex));
+        }
+        final List<BaseEdge> liveEdges = new ArrayList<>(2);
+        double totalMultiplicity = 0;
+        for (final BaseEdge edge : graph.outgoingEdgesOf(vertex)) {
+            if (vertexInfo.containsKey(graph.getEdgeTarget(edge))) {
+                liveEdges.add(edge);
+                totalMultiplicity += Math.max(0.5, edge.getMultiplicity());
+            }
+        }
+        if (liveEdges.isEmpty()) {
+            return null;
+        }
+        final int size = liveEdges.size();
+        final BaseEdge[] edges = liveEdges.toArray(new BaseEdge[size]);
+        final SeqVertex[] targets = new SeqVertex[size];
+        final double[] edgeScores = new double[size];
+        final double log10TotalMultiplicity = Math.log10(totalMultiplicity);
+        double bestScoreToSink = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            targets[i] = graph.getEdgeTarget(edges[i]);
+            edgeScores[i] = size == 1 ? 0 : Math.log10(Math.max(edges[i].getMultiplicity(), 0.5)) - log10TotalMultiplicity;
+            bestScoreToSink = Math.max(bestScoreToSink, edgeScores[i] + vertexInfo.get(targets[i]).bestScoreToSink);
+        }
+        return new VertexInfo(edges, targets, edgeScores, bestScoreToSink, false);
+    }
+
+    /**
+     * Returns the next best haplotype, or {@code null} if there are no more or the search limits have been reached.
+     */
+    private KBestHaplotype findNext() {
+        while (!queue.isEmpty()) {
+            if (expandedPaths >= maxExpandedPaths || queue.size() > maxQueuedPaths) {
+                reachedSearchLimit = true;
+                queue.clear();
+                return null;
+            }
+            final PartialPath path = queue.poll();
+            final VertexInfo info = vertexInfo.get(path.vertex);
+            if (sinks.contains(path.vertex)) {
+                return createHaplotype(path, found.size());
+            }
+            expandedPaths++;
+            for (int i = 0; i < info.targets.length; i++) {
+                final SeqVertex target = info.targets[i];
+                final double score = path.score + info.edgeScores[i];
+                queue.add(new PartialPath(target, info.edges[i], path, score, score + vertexInfo.get(target).bestScoreToSink, nextPathSerial++));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Turns a complete path, which is linked from the end, into a chain of {@link KBestHaplotype} from the start.
+     */
+    private KBestHaplotype createHaplotype(final PartialPath completePath, final int rank) {
+        final double totalScore = completePath.score;
+        PathHaplotype tail = new PathHaplotype(completePath.vertex, null, totalScore - completePath.score,
+                vertexInfo.get(completePath.vertex).isReferenceSink, rank);
+        for (PartialPath path = completePath; path.previous != null; path = path.previous) {
+            final PartialPath previous = path.previous;
+            tail = new PathHaplotype(previous.vertex, tail, totalScore - previous.score,
+                    path.incomingEdge.isRef() && tail.isReference(), rank);
+        }
+        return tail;
+    }
+
+    /**
+     * Returns the best haplotype not yet returned.
+     *
+     * @return {@code null} if there are no more haplotypes or the search limits have been reached.
+     */
+    public KBestHaplotype next() {
+        final KBestHaplotype result = findNext();
+        if (result != null) {
+            found.add(result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns an iterator on the first k best haplotypes.
+     * <p>
+     *     It might return less than k haplotypes if the total number of possible haplotypes is smaller or the search
+     *     limits are reached. Haplotypes already found by this finder are returned again without further search.
+     * </p>
+     *
+     * @param k the maximum number of haplotypes to return.
+     * @return never {@code null}, but perhaps a iterator that return no haplotype.
+     */
+    public Iterator<KBestHaplotype> iterator(final int k) {
+        ParamUtils.isPositiveOrZero(k, "k cannot be negative");
+        return new Iterator<KBestHaplotype>() {
+            private int nextK = 0;
+
+            @Override
+            public boolean hasNext() {
+                return nextK < k && (nextK < found.size() || LazyKBestHaplotypeFinder.this.next() != null);
+            }
+
+            @Override
+            public KBestHaplotype next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return found.get(nextK++);
+            }
+        };
+    }
+
+    /**
+     * Returns the best {@code k} haplotypes, or fewer if there are not as many or the search limits are reached.
+     *
+     * @param k the maximum number of haplotypes to return.
+     * @return never {@code null}.
+     */
+    public List<KBestHaplotype> findBestHaplotypes(final int k) {
+        final List<KBestHaplotype> result = new ArrayList<>(Math.min(k, 100));
+        iterator(k).forEachRemaining(result::add);
+        return result;
+    }
+
+    /**
+     * Whether the search stopped before enumerating all the haplotypes in the graph because it reached the limit on
+     * expanded or queued partial paths.
+     */
+    public boolean hasReachedSearchLimit() {
+        return reachedSearchLimit;
+    }
+
+    /**
+     * @return the number of partial paths extended so far.
+     */
+    public int getExpandedPaths() {
+        return expandedPaths;
+    }
+
+    /**
+     * Get the score of a give sequence of bases, as {@link KBestHaplotypeFinder#score(byte[])} would do.
+     *
+     * @param bases the base sequence.
+     *
+     * @return {@link Double#NaN} if there is no score for the sequence, i.e. there is no such a haplotype accessible
+     *   throw this finder.
+     */
+    public double score(final byte[] bases) {
+        Utils.nonNull(bases);
+        for (final SeqVertex source : sources) {
+            final double score = score(source, bases, 0, bases.length);
+            if (!Double.isNaN(score)) {
+                return score;
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Get the score of a give sequence of bases
+     *
+     * @param haplotype the haplotype.
+     *
+     * @return {@link Double#NaN} if there is no score for the sequence, i.e. there is no such a haplotype accessible
+     *   throw this finder.
+     */
+    public double score(final Haplotype haplotype) {
+        return score(Utils.nonNull(haplotype).getBases());
+    }
+
+    private double score(final SeqVertex vertex, final byte[] bases, final int offset, final int length) {
+        final VertexInfo info = vertexInfo.get(vertex);
+        if (info == null) {
+            return Double.NaN;
+        }
+        final byte[] vertexSequence = vertex.getSequence();
+        if (sinks.contains(vertex)) {
+            return length == vertexSequence.length && Utils.equalRange(bases, offset, vertexSequence, 0, length) ? 0.0 : Double.NaN;
+        }
+        for (int i = 0; i < info.targets.length; i++) {
+            if (length == 0) {
+                return 0;
+            } else if (length < vertexSequence.length || !Utils.equalRange(vertexSequence, 0, bases, offset, vertexSequence.length)) {
+                continue;
+            }
+            final double score = info.edgeScores[i] + score(info.targets[i], bases, offset + vertexSequence.length, length - vertexSequence.length);
+            if (!Double.isNaN(score)) {
+                return score;
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static final class VertexInfo {
+        private final BaseEdge[] edges;
+        private final SeqVertex[] targets;
+        private final double[] edgeScores;
+        private final double bestScoreToSink;
+        private final boolean isReferenceSink;
+
+        private VertexInfo(final BaseEdge[] edges, final SeqVertex[] targets, final double[] edgeScores,
+                           final double bestScoreToSink, final boolean isReferenceSink) {
+            this.edges = edges;
+            this.targets = targets;
+            this.edgeScores = edgeScores;
+            this.bestScoreToSink = bestScoreToSink;
+            this.isReferenceSink = isReferenceSink;
+        }
+    }
+
+    /**
+     * A path from a source linked from its last vertex backwards, so that extensions share their prefix.
+     */
+    private static final class PartialPath implements Comparable<PartialPath> {
+        private final SeqVertex vertex;
+        private final BaseEdge incomingEdge;
+        private final PartialPath previous;
+        private final double score;
+        private final double bestCompletionScore;
+        private final long serial;
+
+        private PartialPath(final SeqVertex vertex, final BaseEdge incomingEdge, final PartialPath previous,
+                            final double score, final double bestCompletionScore, final long serial) {
+            this.vertex = vertex;
+            this.incomingEdge = incomingEdge;
+            this.previous = previous;
+            this.score = score;
+            this.bestCompletionScore = bestCompletionScore;
+            this.serial = serial;
+        }
+
+        @Override
+        public int compareTo(final PartialPath other) {
+            final int result = Double.compare(other.bestCompletionScore, bestCompletionScore);
+            return result != 0 ? result : Long.compare(serial, other.serial);
+        }
+    }
+
+    /**
+     * Solution returned by this finder; each instance is the sub-haplotype from its head vertex to the sink.
+     */
+    private final class PathHaplotype extends KBestHaplotype {
+        private final SeqVertex head;
+        private final PathHaplotype tail;
+        private final double score;
+        private final boolean isReference;
+        private final int rank;
+
+        private PathHaplotype(final SeqVertex head, final PathHaplotype tail, final double score, final boolean isReference, final int rank) {
+            this.head = head;
+            this.tail = tail;
+            this.score = score;
+            this.isReference = isReference;
+            this.rank = rank;
+        }
+
+        @Override
+        public SeqGraph graph() {
+            return graph;
+        }
+
+        @Override
+        public double score() {
+            return score;
+        }
+
+        @Override
+        public boolean isReference() {
+            return isReference;
+        }
+
+        @Override
+        public int rank() {
+            return rank;
+        }
+
+        @Override
+        protected SeqVertex head() {
+            return head;
+        }
+
+        @Override
+        protected KBestHaplotype tail() {
+            return tail;
+        }
+    }
+}
@@ -29,101 +29,95 @@ public final class LowWeightChainPruner<V extends BaseVertex, E extends BaseEdge
         Utils.nonNull(graph, "Graph cannot be null");
 
         if ( pruneFactor > 0 ) {
-            final Collection<E> edgesToKeep = new LinkedHashSet<>();
-
-            for ( final Path<V,E> linearChain : getLinearChains(graph) ) {
-                if( mustBeKept(linearChain, pruneFactor) ) {
-                    // we must keep edges in any path that contains a reference edge or an edge with weight >= pruneFactor
-                    edgesToKeep.addAll(linearChain.getEdges());
-                }
-            }
-
-            // we want to remove all edges not in the keep set
-            final Collection<E> edgesToRemove = new HashSet<>(graph.edgeSet());
-            edgesToRemove.removeAll(edgesToKeep);
-            graph.removeAllEdges(edgesToRemove);
-
-            graph.removeSingletonOrphanVertices();
+            pruneLowWeightChains(graph, new CompactGraph<>(graph));
         }
     }
 
     /**
-     * Traverse the edges in the path and determine if any are either ref edges or have weight >= pruneFactor
-     * and should therefore not be pruned away.
+     * Prune graph, finding the chains in a snapshot of it, from which the pruned edges and vertices are removed too,
+     * so that it can be used for the next steps of pruning
      *
-     * @param path the path in question
-     * @param pruneFactor the integer pruning factor
-     * @return true if any edge in the path must be kept
+     * @param graph the graph to prune
+     * @param compactGraph snapshot of the graph
      */
-    private boolean mustBeKept(final Path<V, E> path, final int pruneFactor) {
-        for ( final E edge : path.getEdges() ) {
-            if ( edge.getPruningMultiplicity() >= pruneFactor || edge.isRef() ) {
-                return true;
+    public void pruneLowWeightChains(final BaseGraph<V,E> graph, final CompactGraph<V,E> compactGraph) {
+        Utils.nonNull(graph, "Graph cannot be null");
+        Utils.validateArg(Utils.nonNull(compactGraph).isSnapshotOf(graph), "the snapshot is not of the graph to prune");
+
+        if ( pruneFactor > 0 ) {
+            final boolean[] edgesToKeep = findEdgesToKeep(compactGraph);
+
+            // we want to remove all edges not in the keep set
+            final List<E> edgesToRemove = new ArrayList<>();
+            for ( int e = 0; e < edgesToKeep.length; e++ ) {
+                if ( ! edgesToKeep[e] && ! compactGraph.isRemovedEdge(e) ) {
+                    edgesToRemove.add(compactGraph.getEdge(e));
+                    compactGraph.removeEdge(e);
+                }
             }
+            graph.removeAllEdges(edgesToRemove);
+
+            graph.removeSingletonOrphanVertices(compactGraph);
         }
-        return false;
     }
 
     /**
-     * Get all of the linear chains in graph
+     * Walks all of the linear chains in the graph and keeps the edges of those that contain a reference edge or an
+     * edge with weight >= pruneFactor.
      *
      * A linear chain is a series of vertices that start from either a source of a vertex with
      * out-degree > 1 and extend through all vertices accessible via an outgoing edge from this
      * vertex that have in == 1 and out degree of 0 or 1.
      *
      * @param graph the graph
-     * @return a non-null collection of paths in graph
+     * @return array indexed by edge id telling whether each edge must be kept
      */
-    private Collection<Path<V,E>> getLinearChains(final BaseGraph<V, E> graph) {
-        final Collection<V> chainStarts = new LinkedHashSet<>();
-
-        for ( final V v : graph.vertexSet() ) {
-            // we want a list of all chain start vertices.  These are all vertices with out
+    private boolean[] findEdgesToKeep(final CompactGraph<V,E> graph) {
+        final int numberOfVertices = graph.numberOfVertices();
+        final boolean[] edgesToKeep = new boolean[graph.numberOfEdges()];
+        final int[] chainEdges = new int[graph.numberOfEdges()];
+        // chainIds[v] == chainId iff v is on the chain being extended, so that we can stop on cycles
+        final int[] chainIds = new int[numberOfVertices];
+        int chainId = 0;
+
+        for ( int chainStart = 0; chainStart < numberOfVertices; chainStart++ ) {
+            // we want all chain start vertices.  These are all vertices with out
             // degree > 1, or all source vertices.
-            final int outDegree = graph.outDegreeOf(v);
-            final int inDegree = graph.inDegreeOf(v);
-            if ( outDegree > 1 || inDegree > 1 || (inDegree == 0 && outDegree > 0)) // don't add isolated vertices
-            {
-                chainStarts.add(v);
+            final int outDegree = graph.outDegreeOf(chainStart);
+            final int inDegree = graph.inDegreeOf(chainStart);
+            if ( !(outDegree > 1 || inDegree > 1 || (inDegree == 0 && outDegree > 0)) ) { // don't add isolated vertices
+                continue;
             }
-        }
-
-        // must be after since we can add duplicate starts in the above finding algorithm
-        final Collection<Path<V, E>> linearChains = new LinkedList<>();
-        for ( final V chainStart : chainStarts ) {
-            for ( final E outEdge : graph.outgoingEdgesOf(chainStart) ) {
-                // these chains are composed of the starts + their next vertices
-                linearChains.add(extendLinearChain(new Path<>(new Path<>(chainStart, graph), outEdge)));
-            }
-        }
 
-        return linearChains;
-    }
-
-    /**
-     * Extend path while the last vertex has in and out degrees of 1 or 0
-     * @param path the path to extend
-     * @return a fully extended linear path
-     */
-    private Path<V,E> extendLinearChain(final Path<V, E> path) {
-        final V last = path.getLastVertex();
-        final Set<E> outEdges = path.getGraph().outgoingEdgesOf(last);
-
-        final int outDegree = outEdges.size();
-        final int inDegree = path.getGraph().inDegreeOf(last);
+            for ( int i = 0; i < outDegree; i++ ) {
+                chainId++;
+                chainIds[chainStart] = chainId;
+                int edge = graph.outgoingEdge(chainStart, i);
+                int chainLength = 0;
+                boolean mustBeKept = false;
+                while ( true ) {
+                    chainEdges[chainLength++] = edge;
+                    mustBeKept |= graph.getPruningMultiplicity(edge) >= pruneFactor || graph.isRef(edge);
+                    final int last = graph.getEdgeTarget(edge);
+                    chainIds[last] = chainId;
+                    // stop if the next vertex has multiple outgoing or incoming edges
+                    if ( graph.outDegreeOf(last) != 1 || graph.inDegreeOf(last) > 1 ) {
+                        break;
+                    }
+                    edge = graph.outgoingEdge(last, 0);
+                    // we are done if the path contains a cycle
+                    if ( chainIds[graph.getEdgeTarget(edge)] == chainId ) {
+                        break;
+                    }
+                }
 
-        if ( outDegree != 1 || inDegree > 1 ) {
-            // out next vertex has multiple outgoing edges, so we are done with the linear path
-            return path;
-        } else {
-            final V next = path.getGraph().getEdgeTarget(outEdges.iterator().next());
-            if ( path.containsVertex(next) ) {
-                // we are done if the path contains a cycle
-                return path;
-            } else {
-                // we now know that last has outdegree == 1, so we keep extending the chain
-                return extendLinearChain(new Path<>(path, outEdges.iterator().next()));
+                if ( mustBeKept ) {
+                    for ( int j = 0; j < chainLength; j++ ) {
+                        edgesToKeep[chainEdges[j]] = true;
+                    }
+                }
             }
         }
+        return edgesToKeep;
     }
 }
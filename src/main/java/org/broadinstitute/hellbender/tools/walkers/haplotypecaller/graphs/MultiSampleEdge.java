@@ -3,8 +3,6 @@ package org.broadinstitute.hellbender.tools.walkers.haplotypecaller.graphs;
 import com.google.common.annotations.VisibleForTesting;
 import org.broadinstitute.hellbender.utils.Utils;
 
-import java.util.PriorityQueue;
-
 /**
  * Edge class for connecting nodes in the graph that tracks some per-sample information.
  * <p>
@@ -28,7 +26,13 @@ import java.util.PriorityQueue;
 public final class MultiSampleEdge extends BaseEdge {
     private int currentSingleSampleMultiplicity;
     private final int singleSampleCapacity;
-    private final PriorityQueue<Integer> singleSampleMultiplicities;
+
+    /**
+     * The largest single sample multiplicities seen so far, at most {@link #singleSampleCapacity} of them. The capacity is the
+     * number of samples used for pruning, which is small, so a linear scan beats a boxed priority queue here.
+     */
+    private final int[] singleSampleMultiplicities;
+    private int numberOfSingleSampleMultiplicities;
 
     /**
      * Create a new MultiSampleEdge with weight multiplicity and, if isRef == true, indicates a path through the reference
@@ -41,8 +45,9 @@ public final class MultiSampleEdge extends BaseEdge {
         super(isRef, multiplicity);
 
         Utils.validateArg( singleSampleCapacity > 0, () -> "singleSampleCapacity must be > 0 but found: " + singleSampleCapacity);
-        singleSampleMultiplicities = new PriorityQueue<>(singleSampleCapacity);
-        singleSampleMultiplicities.add(multiplicity);
+        singleSampleMultiplicities = new int[singleSampleCapacity];
+        singleSampleMultiplicities[0] = multiplicity;
+        numberOfSingleSampleMultiplicities = 1;
         currentSingleSampleMultiplicity = multiplicity;
         this.singleSampleCapacity = singleSampleCapacity;
     }
@@ -57,15 +62,28 @@ public final class MultiSampleEdge extends BaseEdge {
      * reset the current single sample multiplicity to 0.
      */
     public void flushSingleSampleMultiplicity() {
-        singleSampleMultiplicities.add(currentSingleSampleMultiplicity);
-        if( singleSampleMultiplicities.size() == singleSampleCapacity + 1 ) {
-            singleSampleMultiplicities.poll(); // remove the lowest multiplicity from the list
-        } else if( singleSampleMultiplicities.size() > singleSampleCapacity + 1 ) {
-            throw new IllegalStateException("Somehow the per sample multiplicity list has grown too big: " + singleSampleMultiplicities);
+        if ( numberOfSingleSampleMultiplicities < singleSampleCapacity ) {
+            singleSampleMultiplicities[numberOfSingleSampleMultiplicities++] = currentSingleSampleMultiplicity;
+        } else {
+            // replace the lowest multiplicity if the new one is larger
+            final int lowestIndex = indexOfLowestSingleSampleMultiplicity();
+            if ( currentSingleSampleMultiplicity > singleSampleMultiplicities[lowestIndex] ) {
+                singleSampleMultiplicities[lowestIndex] = currentSingleSampleMultiplicity;
+            }
         }
         currentSingleSampleMultiplicity = 0;
     }
 
+    private int indexOfLowestSingleSampleMultiplicity() {
+        int lowestIndex = 0;
+        for ( int i = 1; i < numberOfSingleSampleMultiplicities; i++ ) {
+            if ( singleSampleMultiplicities[i] < singleSampleMultiplicities[lowestIndex] ) {
+                lowestIndex = i;
+            }
+        }
+        return lowestIndex;
+    }
+
     @Override
     public void incMultiplicity(final int incr) {
         super.incMultiplicity(incr);
@@ -74,7 +92,7 @@ public final class MultiSampleEdge extends BaseEdge {
 
     @Override
     public int getPruningMultiplicity() {
-        return singleSampleMultiplicities.peek();
+        return singleSampleMultiplicities[indexOfLowestSingleSampleMultiplicity()];
     }
 
     @Override
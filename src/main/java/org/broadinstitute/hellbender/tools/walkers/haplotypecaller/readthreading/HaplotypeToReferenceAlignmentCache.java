@@ -0,0 +1,221 @@
+package org.broadinstitute.hellbender.tools.walkers.haplotypecaller.readthreading;
+
+import htsjdk.samtools.Cigar;
+import htsjdk.samtools.CigarElement;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.gatk.nativebindings.smithwaterman.SWParameters;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.CigarUtils;
+import org.broadinstitute.hellbender.utils.smithwaterman.SmithWatermanAligner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded cache of the alignments of assembled haplotypes to the reference window they were assembled against.
+ *
+ * Overlapping and neighboring assembly regions, re-assembly after trimming and GGA mode frequently produce the very same
+ * haplotype against the very same reference window; this cache lets us skip the Smith-Waterman alignment done by
+ * {@link CigarUtils#calculateCigar} in those cases. Entries are keyed by the reference window, the haplotype bases and the
+ * Smith-Waterman parameters, and are evicted in least-recently-used order once their approximate memory footprint goes
+ * above the requested size.
+ *
+ * This class is not thread-safe; each assembler owns its own cache.
+ */
+public final class HaplotypeToReferenceAlignmentCache {
+    private static final Logger logger = LogManager.getLogger(HaplotypeToReferenceAlignmentCache.class);
+
+    /**
+     * Rough memory footprint of an entry in addition to its bases: map entry, key, value and array headers
+     */
+    private static final int ENTRY_OVERHEAD_IN_BYTES = 200;
+    private static final int CIGAR_ELEMENT_SIZE_IN_BYTES = 32;
+
+    private final long maxSizeInBytes;
+    private final LinkedHashMap<AlignmentKey, CachedAlignment> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeInBytes = 0;
+
+    // the last reference window seen, so that we hash each window once and share a single copy of it among entries
+    private byte[] lastReference = null;
+    private byte[] lastReferenceCopy = null;
+    private int lastReferenceHash = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * @param maxSizeInBytes approximate maximum amount of memory used by the cached alignments; 0 disables caching
+     */
+    public HaplotypeToReferenceAlignmentCache(final long maxSizeInBytes) {
+        Utils.validateArg(maxSizeInBytes >= 0, () -> "the cache size cannot be negative but got " + maxSizeInBytes);
+        this.maxSizeInBytes = maxSizeInBytes;
+    }
+
+    /**
+     * Same as {@link CigarUtils#calculateCigar(byte[], byte[], SmithWatermanAligner)}, but looks up the alignment in the cache first
+     *
+     * @param refSeq the reference window the haplotype was assembled against
+     * @param altSeq the haplotype bases
+     * @param aligner the aligner to use on a cache miss
+     * @return a new Cigar mapping altSeq to refSeq, or null if no reasonable alignment could be found
+     */
+    public Cigar calculateCigar(final byte[] refSeq, final byte[] altSeq, final SmithWatermanAligner aligner) {
+        Utils.nonNull(refSeq, "refSeq");
+        Utils.nonNull(altSeq, "altSeq");
+        if ( maxSizeInBytes == 0 ) {
+            return CigarUtils.calculateCigar(refSeq, altSeq, aligner);
+        }
+
+        final AlignmentKey key = new AlignmentKey(referenceWindow(refSeq), lastReferenceHash, altSeq, CigarUtils.NEW_SW_PARAMETERS);
+        final CachedAlignment cached = cache.get(key);
+        if ( cached != null ) {
+            hits++;
+            return cached.toCigar();
+        }
+
+        misses++;
+        final Cigar cigar = CigarUtils.calculateCigar(refSeq, altSeq, aligner);
+        final AlignmentKey storedKey = new AlignmentKey(lastReferenceCopy, lastReferenceHash, altSeq.clone(), CigarUtils.NEW_SW_PARAMETERS);
+        final CachedAlignment value = new CachedAlignment(cigar);
+        cache.put(storedKey, value);
+        sizeInBytes += entrySize(storedKey, value);
+        evictIfNeeded();
+        return cigar;
+    }
+
+    /**
+     * @return the given reference window, or the copy of it we already hold if we saw it last time
+     */
+    private byte[] referenceWindow(final byte[] refSeq) {
+        if ( refSeq != lastReference && (lastReferenceCopy == null || !Arrays.equals(refSeq, lastReferenceCopy)) ) {
+            lastReferenceCopy = refSeq.clone();
+            lastReferenceHash = Arrays.hashCode(refSeq);
+        }
+        lastReference = refSeq;
+        return lastReferenceCopy;
+    }
+
+    private void evictIfNeeded() {
+        final Iterator<Map.Entry<AlignmentKey, CachedAlignment>> eldest = cache.entrySet().iterator();
+        while ( sizeInBytes > maxSizeInBytes && eldest.hasNext() ) {
+            final Map.Entry<AlignmentKey, CachedAlignment> entry = eldest.next();
+            sizeInBytes -= entrySize(entry.getKey(), entry.getValue());
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private static long entrySize(final AlignmentKey key, final CachedAlignment value) {
+        // the reference window is usually shared by several entries, but we count it for each of them to stay on the safe side
+        return ENTRY_OVERHEAD_IN_BYTES + key.reference.length + key.haplotype.length + CIGAR_ELEMENT_SIZE_IN_BYTES * value.numberOfElements();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the fraction of lookups that were answered by the cache, or 0 if there were none
+     */
+    public double getHitRate() {
+        final long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : hits / (double) lookups;
+    }
+
+    /**
+     * @return the number of alignments currently held
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * @return the approximate memory footprint of the alignments currently held, in bytes
+     */
+    public long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    public void logStatistics() {
+        if ( maxSizeInBytes > 0 ) {
+            logger.info(String.format("Haplotype to reference alignment cache: %d hits, %d misses (hit rate %.2f%%), %d evictions",
+                    hits, misses, 100 * getHitRate(), evictions));
+        }
+    }
+
+    private static final class AlignmentKey {
+        private final byte[] reference;
+        private final byte[] haplotype;
+        private final int matchValue;
+        private final int mismatchPenalty;
+        private final int gapOpenPenalty;
+        private final int gapExtendPenalty;
+        private final int hashCode;
+
+        AlignmentKey(final byte[] reference, final int referenceHash, final byte[] haplotype, final SWParameters parameters) {
+            this.reference = reference;
+            this.haplotype = haplotype;
+            this.matchValue = parameters.getMatchValue();
+            this.mismatchPenalty = parameters.getMismatchPenalty();
+            this.gapOpenPenalty = parameters.getGapOpenPenalty();
+            this.gapExtendPenalty = parameters.getGapExtendPenalty();
+            int hash = referenceHash;
+            hash = 31 * hash + Arrays.hashCode(haplotype);
+            hash = 31 * hash + matchValue;
+            hash = 31 * hash + mismatchPenalty;
+            hash = 31 * hash + gapOpenPenalty;
+            hash = 31 * hash + gapExtendPenalty;
+            this.hashCode = hash;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if ( this == o ) return true;
+            if ( o == null || getClass() != o.getClass() ) return false;
+
+            final AlignmentKey that = (AlignmentKey) o;
+            return hashCode == that.hashCode && matchValue == that.matchValue && mismatchPenalty == that.mismatchPenalty
+                    && gapOpenPenalty == that.gapOpenPenalty && gapExtendPenalty == that.gapExtendPenalty
+                    && Arrays.equals(haplotype, that.haplotype) && (reference == that.reference || Arrays.equals(reference, that.reference));
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * The cigar elements of an alignment, or null if the alignment failed. Cigars are mutable so we hand out copies.
+     */
+    private static final class CachedAlignment {
+        private final List<CigarElement> elements;
+
+        CachedAlignment(final Cigar cigar) {
+            this.elements = cigar == null ? null : Collections.unmodifiableList(new ArrayList<>(cigar.getCigarElements()));
+        }
+
+        Cigar toCigar() {
+            return elements == null ? null : new Cigar(new ArrayList<>(elements));
+        }
+
+        int numberOfElements() {
+            return elements == null ? 0 : elements.size();
+        }
+    }
+}
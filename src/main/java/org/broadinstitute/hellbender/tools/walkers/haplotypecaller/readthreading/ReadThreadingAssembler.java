@@ -18,7 +18,6 @@ import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.haplotype.Haplotype;
 import org.broadinstitute.hellbender.utils.param.ParamUtils;
-import org.broadinstitute.hellbender.utils.read.CigarUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.smithwaterman.SmithWatermanAligner;
 import org.broadinstitute.hellbender.utils.variant.GATKVariantContextUtils;
@@ -27,6 +26,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.*;
+import java.util.function.ToDoubleFunction;
 
 public final class ReadThreadingAssembler {
     private static final Logger logger = LogManager.getLogger(ReadThreadingAssembler.class);
@@ -66,6 +66,12 @@ public final class ReadThreadingAssembler {
     private File debugGraphOutputPath = null;  //Where to write debug graphs, if unset it defaults to the current working dir
     private File graphOutputPath = null;
 
+    private HaplotypeToReferenceAlignmentCache haplotypeAlignmentCache = new HaplotypeToReferenceAlignmentCache(0);
+
+    // 0 means that we use the exhaustive KBestHaplotypeFinder rather than the bounded LazyKBestHaplotypeFinder
+    private int maxExpandedHaplotypePaths = 0;
+    private int maxQueuedHaplotypePaths = LazyKBestHaplotypeFinder.DEFAULT_MAX_QUEUED_PATHS;
+
     public ReadThreadingAssembler(final int maxAllowedPathsForReadThreadingAssembler, final List<Integer> kmerSizes, final boolean dontIncreaseKmerSizesForCycles, final boolean allowNonUniqueKmersInRef, final int numPruningSamples) {
         Utils.validateArg( maxAllowedPathsForReadThreadingAssembler >= 1, "numBestHaplotypesPerGraph should be >= 1 but got " + maxAllowedPathsForReadThreadingAssembler);
         this.kmerSizes = kmerSizes;
@@ -194,22 +200,35 @@ public final class ReadThreadingAssembler {
         final Set<Haplotype> returnHaplotypes = new LinkedHashSet<>();
 
         final int activeRegionStart = refHaplotype.getAlignmentStartHapwrtRef();
-        final Collection<KBestHaplotypeFinder> finders = new ArrayList<>(graphs.size());
+        final List<ToDoubleFunction<Haplotype>> haplotypeScorers = new ArrayList<>(graphs.size());
         int failedCigars = 0;
 
         for( final SeqGraph graph : graphs ) {
             final SeqVertex source = graph.getReferenceSourceVertex();
             final SeqVertex sink = graph.getReferenceSinkVertex();
             Utils.validateArg( source != null && sink != null, () -> "Both source and sink cannot be null but got " + source + " and sink " + sink + " for graph " + graph);
-            final KBestHaplotypeFinder haplotypeFinder = new KBestHaplotypeFinder(graph,source,sink);
-            finders.add(haplotypeFinder);
-            final Iterator<KBestHaplotype> bestHaplotypes = haplotypeFinder.iterator(numBestHaplotypesPerGraph);
+            final Iterator<KBestHaplotype> bestHaplotypes;
+            if ( maxExpandedHaplotypePaths > 0 ) {
+                final LazyKBestHaplotypeFinder haplotypeFinder = new LazyKBestHaplotypeFinder(graph, Collections.singleton(source), Collections.singleton(sink),
+                        maxExpandedHaplotypePaths, maxQueuedHaplotypePaths);
+                haplotypeScorers.add(haplotypeFinder::score);
+                final List<KBestHaplotype> found = haplotypeFinder.findBestHaplotypes(numBestHaplotypesPerGraph);
+                if ( haplotypeFinder.hasReachedSearchLimit() ) {
+                    logger.debug(String.format("haplotype search reached its limit in the graph with kmer %d at %s; keeping the best %d haplotypes found",
+                            graph.getKmerSize(), refLoc, found.size()));
+                }
+                bestHaplotypes = found.iterator();
+            } else {
+                final KBestHaplotypeFinder haplotypeFinder = new KBestHaplotypeFinder(graph,source,sink);
+                haplotypeScorers.add(haplotypeFinder::score);
+                bestHaplotypes = haplotypeFinder.iterator(numBestHaplotypesPerGraph);
+            }
 
             while (bestHaplotypes.hasNext()) {
                 final KBestHaplotype kBestHaplotype = bestHaplotypes.next();
                 final Haplotype h = kBestHaplotype.haplotype();
                 if( !returnHaplotypes.contains(h) ) {
-                    final Cigar cigar = CigarUtils.calculateCigar(refHaplotype.getBases(), h.getBases(), aligner);
+                    final Cigar cigar = haplotypeAlignmentCache.calculateCigar(refHaplotype.getBases(), h.getBases(), aligner);
 
                     if ( cigar == null ) {
                         failedCigars++; // couldn't produce a meaningful alignment of haplotype to reference, fail quietly
@@ -243,8 +262,8 @@ public final class ReadThreadingAssembler {
         // the first returned by any finder.
         if (!returnHaplotypes.contains(refHaplotype)) {
             double refScore = Double.NaN;
-            for (final KBestHaplotypeFinder finder : finders) {
-                final double candidate = finder.score(refHaplotype);
+            for (final ToDoubleFunction<Haplotype> scorer : haplotypeScorers) {
+                final double candidate = scorer.applyAsDouble(refHaplotype);
                 if (Double.isNaN(candidate)) {
                     continue;
                 }
@@ -307,8 +326,9 @@ public final class ReadThreadingAssembler {
         printDebugGraphTransform(seqGraph, "sequenceGraph.2.zipped.dot");
 
         // now go through and prune the graph, removing vertices no longer connected to the reference chain
-        seqGraph.removeSingletonOrphanVertices();
-        seqGraph.removeVerticesNotConnectedToRefRegardlessOfEdgeDirection();
+        final CompactGraph<SeqVertex, BaseEdge> compactSeqGraph = new CompactGraph<>(seqGraph);
+        seqGraph.removeSingletonOrphanVertices(compactSeqGraph);
+        seqGraph.removeVerticesNotConnectedToRefRegardlessOfEdgeDirection(compactSeqGraph);
 
         printDebugGraphTransform(seqGraph, "sequenceGraph.3.pruned.dot");
         seqGraph.simplifyGraph();
@@ -488,7 +508,8 @@ public final class ReadThreadingAssembler {
         // prune all of the chains where all edges have multiplicity < pruneFactor.  This must occur
         // before recoverDanglingTails in the graph, so that we don't spend a ton of time recovering
         // tails that we'll ultimately just trim away anyway, as the dangling tail edges have weight of 1
-        rtgraph.pruneLowWeightChains(pruneFactor);
+        final CompactGraph<MultiDeBruijnVertex, MultiSampleEdge> compactGraph = new CompactGraph<>(rtgraph);
+        rtgraph.pruneLowWeightChains(pruneFactor, compactGraph);
 
         // look at all chains in the graph that terminate in a non-ref node (dangling sources and sinks) and see if
         // we can recover them by merging some N bases from the chain back into the reference
@@ -499,7 +520,8 @@ public final class ReadThreadingAssembler {
 
         // remove all heading and trailing paths
         if ( removePathsNotConnectedToRef ) {
-            rtgraph.removePathsNotConnectedToRef();
+            // the snapshot taken for pruning doesn't have the branches added by recovering dangling ones
+            rtgraph.removePathsNotConnectedToRef(recoverDanglingBranches ? new CompactGraph<>(rtgraph) : compactGraph);
         }
 
         printDebugGraphTransform(rtgraph, refHaplotype.getLocation() + "-sequenceGraph." + kmerSize + ".0.1.cleaned_readthreading_graph.dot");
@@ -602,6 +624,31 @@ public final class ReadThreadingAssembler {
 
     public boolean isRecoverDanglingBranches() { return recoverDanglingBranches; }
 
+    /**
+     * Cache the alignments of the assembled haplotypes to the reference window, using up to approximately the given
+     * amount of memory; 0 disables the cache
+     */
+    public void setHaplotypeAlignmentCacheSize(final long maxSizeInBytes) {
+        haplotypeAlignmentCache = new HaplotypeToReferenceAlignmentCache(maxSizeInBytes);
+    }
+
+    public HaplotypeToReferenceAlignmentCache getHaplotypeAlignmentCache() {
+        return haplotypeAlignmentCache;
+    }
+
+    /**
+     * Find the best haplotypes in each graph with a bounded best-first search rather than the exhaustive one
+     *
+     * @param maxExpandedPaths maximum number of partial paths extended per graph; 0 to use the exhaustive search
+     * @param maxQueuedPaths maximum number of partial paths held in memory at once
+     */
+    public void setHaplotypeSearchLimits(final int maxExpandedPaths, final int maxQueuedPaths) {
+        ParamUtils.isPositiveOrZero(maxExpandedPaths, "the maximum number of expanded paths cannot be negative");
+        ParamUtils.isPositive(maxQueuedPaths, "the maximum number of queued paths must be positive");
+        this.maxExpandedHaplotypePaths = maxExpandedPaths;
+        this.maxQueuedHaplotypePaths = maxQueuedPaths;
+    }
+
     public void setPruneFactor(final int pruneFactor) {
         this.pruneFactor = pruneFactor;
     }
@@ -10,6 +10,7 @@ import org.apache.logging.log4j.Logger;
 import org.broadinstitute.gatk.nativebindings.smithwaterman.SWOverhangStrategy;
 import org.broadinstitute.hellbender.tools.walkers.haplotypecaller.Kmer;
 import org.broadinstitute.hellbender.tools.walkers.haplotypecaller.graphs.BaseGraph;
+import org.broadinstitute.hellbender.tools.walkers.haplotypecaller.graphs.CompactGraph;
 import org.broadinstitute.hellbender.tools.walkers.haplotypecaller.graphs.KmerSearchableGraph;
 import org.broadinstitute.hellbender.tools.walkers.haplotypecaller.graphs.MultiSampleEdge;
 import org.broadinstitute.hellbender.tools.walkers.haplotypecaller.graphs.SeqGraph;
@@ -365,6 +366,11 @@ public class ReadThreadingGraph extends BaseGraph<MultiDeBruijnVertex, MultiSamp
         removeAllVertices(verticesToRemove);
     }
 
+    @Override
+    public void removeSingletonOrphanVertices(final CompactGraph<MultiDeBruijnVertex, MultiSampleEdge> compactGraph) {
+        removeOrphanedVertices(compactGraph, false);
+    }
+
     /**
      * Does the graph not have enough complexity?  We define low complexity as a situation where the number
      * of non-unique kmers is more than 20% of the total number of kmers.
@@ -1,15 +1,12 @@
 package org.broadinstitute.hellbender.tools.walkers.mutect;
 
 import htsjdk.samtools.SAMSequenceDictionary;
-import htsjdk.samtools.util.CloseableIterator;
-import htsjdk.samtools.util.MergingIterator;
-import htsjdk.variant.variantcontext.VariantContext;
-import htsjdk.variant.variantcontext.VariantContextBuilder;
 import htsjdk.variant.variantcontext.VariantContextComparator;
 import htsjdk.variant.variantcontext.writer.Options;
 import htsjdk.variant.variantcontext.writer.VariantContextWriter;
 import htsjdk.variant.vcf.VCFFileReader;
 import htsjdk.variant.vcf.VCFHeader;
+import htsjdk.variant.vcf.VCFHeaderLine;
 import htsjdk.variant.vcf.VCFUtils;
 import org.broadinstitute.barclay.argparser.Argument;
 import org.broadinstitute.barclay.argparser.BetaFeature;
@@ -19,8 +16,6 @@ import org.broadinstitute.hellbender.cmdline.CommandLineProgram;
 import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
 import picard.cmdline.programgroups.VariantFilteringProgramGroup;
 import org.broadinstitute.hellbender.exceptions.UserException;
-import org.broadinstitute.hellbender.tools.walkers.haplotypecaller.AssemblyBasedCallerUtils;
-import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.variant.GATKVariantContextUtils;
 
@@ -83,6 +78,17 @@ import java.util.*;
  *
  * <p>The resulting VCF will be an eight-column sites-only VCF lacking annotations.</p>
  *
+ * <p>The input VCFs must be sorted by coordinate.  They are read alongside each other, decoding only the position and alleles
+ *  of each record, so memory use doesn't grow with the number of records.  With more VCFs than --max-open-files, the VCFs are
+ *  merged in batches, on --threads threads, into temporary files that are merged in turn.</p>
+ * <pre>
+ * gatk CreateSomaticPanelOfNormals \
+ *   -vcfs normals_for_pon_vcf.args \
+ *   --max-open-files 200 \
+ *   --threads 4 \
+ *   -O pon.vcf.gz
+ * </pre>
+ *
  * <p>By default the tool fails if multiple vcfs have the same sample name, but the --duplicate-sample-strategy argument can be changed to
  *  ALLOW_ALL to allow duplicates or CHOOSE_FIRST to use only the first vcf with a given sample name.</p>
  *
@@ -100,6 +106,8 @@ public class CreateSomaticPanelOfNormals extends CommandLineProgram {
     public static final String INPUT_VCFS_LIST_SHORT_NAME = "vcfs";
 
     public static final String DUPLICATE_SAMPLE_STRATEGY_LONG_NAME = "duplicate-sample-strategy";
+    public static final String MAX_OPEN_FILES_LONG_NAME = "max-open-files";
+    public static final String THREADS_LONG_NAME = "threads";
 
     public enum DuplicateSampleStrategy {
         THROW_ERROR, CHOOSE_FIRST, ALLOW_ALL
@@ -126,22 +134,40 @@ public class CreateSomaticPanelOfNormals extends CommandLineProgram {
             doc="Output vcf", optional = false)
     private File outputVcf = null;
 
+    /**
+     * With more input vcfs than this, the vcfs are merged in batches into temporary files, which are then merged in turn.
+     * Each thread reads up to this many files at once.
+     */
+    @Argument(fullName = MAX_OPEN_FILES_LONG_NAME,
+            doc="Maximum number of files to read at once on each thread", minValue = 2, optional = true)
+    private int maxOpenFiles = PanelOfNormalsMerger.DEFAULT_MAX_OPEN_FILES;
+
+    /**
+     * Threads only help when there are more input vcfs than --max-open-files, as it's the batches of vcfs that are
+     * merged in parallel.  The output doesn't depend on the number of threads.
+     */
+    @Argument(fullName = THREADS_LONG_NAME,
+            doc="Number of threads that merge batches of input vcfs", minValue = 1, optional = true)
+    private int threads = 1;
+
     public Object doWork() {
         final List<File> inputVcfs = new ArrayList<>(vcfs);
         if (!inputVcfs.stream().map(File::getAbsolutePath).allMatch(path -> path.endsWith(".vcf") || path.endsWith(".vcf.gz") || path.endsWith(".args") )) {
             logger.warn("Some input files don't seem to be .vcf or .args files.  Make sure that any input vcfs list end in .args.");
         }
-        final Collection<CloseableIterator<VariantContext>> iterators = new ArrayList<>(inputVcfs.size());
-        final Collection<VCFHeader> headers = new HashSet<>(inputVcfs.size());
-        final VCFHeader headerOfFirstVcf = new VCFFileReader(inputVcfs.get(0), false).getFileHeader();
+        final VCFHeader headerOfFirstVcf = readHeader(inputVcfs.get(0));
         final SAMSequenceDictionary sequenceDictionary = headerOfFirstVcf.getSequenceDictionary();
+        if (sequenceDictionary == null) {
+            throw new UserException.BadInput(inputVcfs.get(0).getAbsolutePath() + " has no contig lines in its header.");
+        }
         final VariantContextComparator comparator = headerOfFirstVcf.getVCFRecordComparator();
 
+        // the headers are read one at a time and only their merged lines are kept, so that no more than one vcf is open here
+        final List<File> vcfsToMerge = new ArrayList<>(inputVcfs.size());
+        Set<VCFHeaderLine> mergedHeaderLines = new LinkedHashSet<>();
         final Set<String> samples = new HashSet<>();
         for (final File vcf : inputVcfs) {
-            final VCFFileReader reader = new VCFFileReader(vcf, false);
-
-            final VCFHeader header = reader.getFileHeader();
+            final VCFHeader header = readHeader(vcf);
             final String sample = header.getGenotypeSamples().get(0);
             if (duplicateSampleStrategy == DuplicateSampleStrategy.THROW_ERROR && samples.contains(sample)) {
                 throw new UserException.BadInput(String.format("Duplicate sample name %s found in multiple input vcfs, the second one being %s.  Consider changing the %s argument", sample, vcf.getAbsolutePath(), DUPLICATE_SAMPLE_STRATEGY_LONG_NAME));
@@ -150,45 +176,31 @@ public class CreateSomaticPanelOfNormals extends CommandLineProgram {
                 continue;
             } else {
                 Utils.validateArg(comparator.isCompatible(header.getContigLines()), () -> vcf.getAbsolutePath() + " has incompatible contigs.");
-                headers.add(header);
-                iterators.add(reader.iterator());
+                mergedHeaderLines = VCFUtils.smartMergeHeaders(Arrays.asList(new VCFHeader(mergedHeaderLines), header), false);
+                vcfsToMerge.add(vcf);
                 samples.add(sample);
             }
         }
 
-        final VariantContextWriter writer = GATKVariantContextUtils.createVCFWriter(outputVcf, sequenceDictionary, false, Options.INDEX_ON_THE_FLY);
-        writer.writeHeader(new VCFHeader(VCFUtils.smartMergeHeaders(headers, false)));
-
-        final MergingIterator<VariantContext> mergingIterator = new MergingIterator<>(comparator, iterators);
-        SimpleInterval currentPosition = new SimpleInterval("FAKE", 1, 1);
-        final List<VariantContext> variantsAtThisPosition = new ArrayList<>(20);
-        while (mergingIterator.hasNext()) {
-            final VariantContext vc = mergingIterator.next();
-            if (!currentPosition.overlaps(vc)) {
-                processVariantsAtSamePosition(variantsAtThisPosition, writer);
-                variantsAtThisPosition.clear();
-                currentPosition = new SimpleInterval(vc.getContig(), vc.getStart(), vc.getStart());
-            }
-            variantsAtThisPosition.add(vc);
+        try (final VariantContextWriter writer = GATKVariantContextUtils.createVCFWriter(outputVcf, sequenceDictionary, false, Options.INDEX_ON_THE_FLY)) {
+            writer.writeHeader(new VCFHeader(mergedHeaderLines));
+            new PanelOfNormalsMerger(sequenceDictionary, maxOpenFiles, threads).merge(vcfsToMerge, site -> processSite(site, writer));
         }
-        processVariantsAtSamePosition(variantsAtThisPosition, writer);
-        mergingIterator.close();
-        writer.close();
 
         return "SUCCESS";
     }
 
+    private static VCFHeader readHeader(final File vcf) {
+        try (final VCFFileReader reader = new VCFFileReader(vcf, false)) {
+            return reader.getFileHeader();
+        }
+    }
+
     //TODO: this is the old Mutect behavior that just looks for multiple hits
     //TODO: we should refine this
-    private static void processVariantsAtSamePosition(final List<VariantContext> variants, final VariantContextWriter writer) {
-        if (variants.size() > 1){
-            final VariantContext mergedVc = AssemblyBasedCallerUtils.makeMergedVariantContext(variants);
-            final VariantContext outputVc = new VariantContextBuilder()
-                    .source(mergedVc.getSource())
-                    .loc(mergedVc.getContig(), mergedVc.getStart(), mergedVc.getEnd())
-                    .alleles(mergedVc.getAlleles())
-                    .make();
-            writer.add(outputVc);
+    private static void processSite(final PanelOfNormalsSite site, final VariantContextWriter writer) {
+        if (site.getCount() > 1) {
+            writer.add(site.toVariantContext());
         }
     }
 }
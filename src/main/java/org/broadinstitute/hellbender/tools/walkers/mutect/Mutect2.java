@@ -1,5 +1,6 @@
 package org.broadinstitute.hellbender.tools.walkers.mutect;
 
+import com.google.common.annotations.VisibleForTesting;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.variant.variantcontext.writer.VariantContextWriter;
 import org.broadinstitute.barclay.argparser.Argument;
@@ -11,10 +12,12 @@ import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
 import org.broadinstitute.hellbender.cmdline.programgroups.ShortVariantDiscoveryProgramGroup;
 import org.broadinstitute.hellbender.engine.*;
 import org.broadinstitute.hellbender.engine.filters.ReadFilter;
+import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.downsampling.MutectDownsampler;
 import org.broadinstitute.hellbender.utils.downsampling.ReadsDownsampler;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -122,6 +125,7 @@ import java.util.List;
  )
 @DocumentedFeature
 public final class Mutect2 extends AssemblyRegionWalker {
+    public static final String THREADS_LONG_NAME = "threads";
 
     @ArgumentCollection
     protected M2ArgumentCollection MTAC = new M2ArgumentCollection();
@@ -129,10 +133,32 @@ public final class Mutect2 extends AssemblyRegionWalker {
     @Argument(fullName = StandardArgumentDefinitions.OUTPUT_LONG_NAME, shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME, doc = "File to which variants should be written")
     public File outputVCF;
 
+    /**
+     * Active regions are called by this many threads, each with its own engine, while the traversal, the reference
+     * index and the feature sources like the germline resource and panel of normals are shared by all of them.  The
+     * calls are written in the same order, and are the same, as with a single thread.
+     */
+    @Argument(fullName = THREADS_LONG_NAME, doc = "Number of threads that call active regions", optional = true, minValue = 1)
+    private int threads = 1;
+
     private VariantContextWriter vcfWriter;
 
     private Mutect2Engine m2Engine;
-    
+
+    private ParallelMutect2Engine parallelEngine;
+
+    public Mutect2() { }
+
+    /**
+     * A single-threaded Mutect2 that calls the regions passed to {@link #apply} with the given engine and writes to the
+     * given writer, without a traversal
+     */
+    @VisibleForTesting
+    Mutect2(final Mutect2Engine m2Engine, final VariantContextWriter vcfWriter) {
+        this.m2Engine = Utils.nonNull(m2Engine);
+        this.vcfWriter = Utils.nonNull(vcfWriter);
+    }
+
     @Override
     protected int defaultMinAssemblyRegionSize() { return 50; }
 
@@ -167,26 +193,59 @@ public final class Mutect2 extends AssemblyRegionWalker {
     @Override
     public AssemblyRegionEvaluator assemblyRegionEvaluator() { return m2Engine; }
 
+    @Override
+    protected String[] customCommandLineValidation() {
+        if ( threads > 1 && MTAC.bamOutputPath != null ) {
+            return new String[]{"A bamout can only be written with one thread, but --" + THREADS_LONG_NAME + " is " + threads};
+        }
+        return super.customCommandLineValidation();
+    }
+
     @Override
     public void onTraversalStart() {
         m2Engine = new Mutect2Engine(MTAC, createOutputBamIndex, createOutputBamMD5, getHeaderForReads(), referenceArguments.getReferenceFileName());
         final SAMSequenceDictionary sequenceDictionary = getHeaderForReads().getSequenceDictionary();
         vcfWriter = createVCFWriter(outputVCF);
         m2Engine.writeHeader(vcfWriter, sequenceDictionary, getDefaultToolVCFHeaderLines());
+
+        if ( threads > 1 ) {
+            logger.info("Calling active regions with " + threads + " threads");
+            // the engine above still finds the active regions, on the traversal thread
+            parallelEngine = new ParallelMutect2Engine(
+                    () -> new Mutect2Engine(MTAC, false, false, getHeaderForReads(), referenceArguments.getReferenceFileName()),
+                    () -> ReferenceDataSource.of(referenceArguments.getReferencePath()),
+                    Arrays.asList(MTAC.germlineResource, MTAC.pon), threads, vcfWriter::add);
+        }
     }
 
     @Override
     public Object onTraversalSuccess() {
+        if ( parallelEngine != null ) {
+            parallelEngine.finish();
+        }
         return "SUCCESS";
     }
 
     @Override
     public void apply(final AssemblyRegion region, final ReferenceContext referenceContext, final FeatureContext featureContext ) {
-        m2Engine.callRegion(region, referenceContext, featureContext).forEach(vcfWriter::add);
+        // with one thread or several, regions are called on copies of the reads, so the calls are the same; inactive
+        // regions aren't called at all
+        if ( region.isActive() ) {
+            Mutect2Engine.useCopiesOfReads(region);
+        }
+        if ( parallelEngine != null ) {
+            parallelEngine.callRegion(region, referenceContext, featureContext);
+        } else {
+            m2Engine.callRegion(region, referenceContext, featureContext).forEach(vcfWriter::add);
+        }
     }
 
     @Override
     public void closeTool() {
+        if ( parallelEngine != null ) {
+            parallelEngine.close();
+        }
+
         if ( vcfWriter != null ) {
             vcfWriter.close();
         }
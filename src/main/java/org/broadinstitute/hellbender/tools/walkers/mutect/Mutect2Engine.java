@@ -37,6 +37,7 @@ import org.broadinstitute.hellbender.utils.variant.GATKVCFConstants;
 import org.broadinstitute.hellbender.utils.variant.GATKVCFHeaderLines;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * Created by davidben on 9/15/16.
@@ -207,6 +208,21 @@ public final class Mutect2Engine implements AssemblyRegionEvaluator {
         return sampleLines;
     }
 
+    /**
+     * Replace the reads of a region with copies.  {@link #callRegion} adjusts the base qualities of overlapping mates in
+     * place, and the traversal shares reads between neighbouring regions, so calling a region with the traversal's own
+     * reads would change the reads of the regions after it.  With copies, every region is called with the reads as
+     * the traversal gave them, whichever regions were called before it and on whichever thread.
+     *
+     * @param region the region, whose reads are replaced
+     */
+    public static void useCopiesOfReads(final AssemblyRegion region) {
+        Utils.nonNull(region);
+        final List<GATKRead> copies = region.getReads().stream().map(GATKRead::copy).collect(Collectors.toList());
+        region.clearReads();
+        region.addAll(copies);
+    }
+
     public List<VariantContext> callRegion(final AssemblyRegion originalAssemblyRegion, final ReferenceContext referenceContext, final FeatureContext featureContext ) {
         if ( !originalAssemblyRegion.isActive() || originalAssemblyRegion.size() == 0 ) {
             return NO_CALLS;
@@ -277,6 +293,7 @@ public final class Mutect2Engine implements AssemblyRegionEvaluator {
     public void shutdown() {
         likelihoodCalculationEngine.close();
         aligner.close();
+        assemblyEngine.getHaplotypeAlignmentCache().logStatistics();
 
         if ( haplotypeBAMWriter.isPresent() ) {
             haplotypeBAMWriter.get().close();
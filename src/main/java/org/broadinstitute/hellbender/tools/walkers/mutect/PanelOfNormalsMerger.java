@@ -0,0 +1,301 @@
+package org.broadinstitute.hellbender.tools.walkers.mutect;
+
+import com.google.common.collect.Lists;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.util.CloseableIterator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.io.IOUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Merges the records of many coordinate-sorted normal VCFs into one {@link PanelOfNormalsSite} for each position at
+ * which any of them has a record, reading each VCF once, in order, alongside the others.
+ *
+ * <p>
+ *     Only the first five columns of each record are decoded, and only the next record of each VCF is held in memory, so
+ *     the memory used doesn't grow with the size of the VCFs.  When there are more VCFs than can be open at once, they
+ *     are merged in batches of consecutive VCFs into temporary files of merged sites, which are then merged in turn, as
+ *     many times as it takes.  Batches are merged on several threads.
+ * </p>
+ *
+ * <p>
+ *     Records at the same position are merged in the order of the VCFs, so the merged sites don't depend on how the VCFs
+ *     are batched or on the number of threads.
+ * </p>
+ */
+public final class PanelOfNormalsMerger {
+    private static final Logger logger = LogManager.getLogger(PanelOfNormalsMerger.class);
+
+    public static final int DEFAULT_MAX_OPEN_FILES = 500;
+
+    // the first line of every VCF text file, for any version of the format
+    private static final String VCF_FILE_FORMAT_PREFIX = "##fileformat=VCF";
+
+    private final SAMSequenceDictionary dictionary;
+    private final int maxOpenFiles;
+    private final int numThreads;
+
+    /**
+     * @param dictionary sequence dictionary giving the order of the contigs of the VCFs
+     * @param maxOpenFiles the most files to read at once on each thread; must be at least 2
+     * @param numThreads number of threads that merge batches of files; must be at least 1
+     */
+    public PanelOfNormalsMerger(final SAMSequenceDictionary dictionary, final int maxOpenFiles, final int numThreads) {
+        this.dictionary = Utils.nonNull(dictionary);
+        Utils.validateArg(maxOpenFiles >= 2, "maxOpenFiles must be at least 2");
+        Utils.validateArg(numThreads >= 1, "numThreads must be at least 1");
+        this.maxOpenFiles = maxOpenFiles;
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Merge the records of the VCFs
+     *
+     * @param vcfs VCFs, plain or gzipped, sorted by coordinate in the order of the sequence dictionary.  BCFs are not
+     *             supported, and are rejected before anything is merged.
+     * @param siteConsumer receives the merged sites, in coordinate order
+     */
+    public void merge(final List<File> vcfs, final Consumer<PanelOfNormalsSite> siteConsumer) {
+        Utils.nonNull(vcfs);
+        Utils.nonNull(siteConsumer);
+        vcfs.forEach(PanelOfNormalsMerger::checkIsVcfText);
+
+        List<File> inputs = vcfs;
+        boolean inputsAreVcfs = true;
+        while ( inputs.size() > maxOpenFiles ) {
+            final List<File> mergedBatches = mergeBatches(inputs, inputsAreVcfs);
+            if ( !inputsAreVcfs ) {
+                inputs.forEach(IOUtils::tryDelete);
+            }
+            inputs = mergedBatches;
+            inputsAreVcfs = false;
+        }
+
+        mergeFiles(inputs, inputsAreVcfs, siteConsumer);
+        if ( !inputsAreVcfs ) {
+            inputs.forEach(IOUtils::tryDelete);
+        }
+    }
+
+    /**
+     * Fail with a clear message for inputs that aren't VCF text, such as BCFs, rather than on their first record
+     */
+    private static void checkIsVcfText(final File vcf) {
+        final String firstLine;
+        try ( final BufferedReader reader = new BufferedReader(IOUtils.makeReaderMaybeGzipped(vcf)) ) {
+            firstLine = reader.readLine();
+        } catch ( final IOException e ) {
+            throw new UserException.CouldNotReadInputFile(vcf, e.getMessage());
+        }
+        if ( firstLine == null || !firstLine.startsWith(VCF_FILE_FORMAT_PREFIX) ) {
+            throw new UserException.BadInput(String.format("%s is not a VCF text file, plain or gzipped: it doesn't start with %s. " +
+                    "Other formats, such as BCF, are not supported and must be converted to VCF first.", vcf.getAbsolutePath(), VCF_FILE_FORMAT_PREFIX));
+        }
+    }
+
+    /**
+     * @return temporary files of the merged sites of batches of consecutive inputs, in the order of the batches
+     */
+    private List<File> mergeBatches(final List<File> inputs, final boolean inputsAreVcfs) {
+        final int numBatches = (inputs.size() + maxOpenFiles - 1) / maxOpenFiles;
+        final List<List<File>> batches = Lists.partition(inputs, (inputs.size() + numBatches - 1) / numBatches);
+        logger.info(String.format("Merging %d files in %d batches", inputs.size(), batches.size()));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            final List<Future<File>> mergedBatches = new ArrayList<>(batches.size());
+            for ( final List<File> batch : batches ) {
+                mergedBatches.add(executor.submit(() -> mergeBatch(batch, inputsAreVcfs)));
+            }
+            final List<File> outputs = new ArrayList<>(mergedBatches.size());
+            for ( final Future<File> mergedBatch : mergedBatches ) {
+                outputs.add(waitFor(mergedBatch));
+            }
+            return outputs;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private File mergeBatch(final List<File> batch, final boolean inputsAreVcfs) {
+        final File output = IOUtils.createTempFile("pon_sites", ".txt.gz");
+        try ( final PrintStream stream = IOUtils.makePrintStreamMaybeGzipped(output) ) {
+            mergeFiles(batch, inputsAreVcfs, site -> stream.println(site.encode()));
+            if ( stream.checkError() ) {
+                throw new UserException.CouldNotCreateOutputFile(output, "error writing merged sites");
+            }
+        } catch ( final IOException e ) {
+            throw new UserException.CouldNotCreateOutputFile(output, "error writing merged sites", e);
+        }
+        return output;
+    }
+
+    private static File waitFor(final Future<File> mergedBatch) {
+        try {
+            return mergedBatch.get();
+        } catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new GATKException("Interrupted while waiting for a batch to be merged", e);
+        } catch ( final ExecutionException e ) {
+            // rethrow exceptions about the input, like malformed records, as they are
+            if ( e.getCause() instanceof RuntimeException ) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new GATKException("Problem merging a batch", e.getCause());
+        }
+    }
+
+    /**
+     * The k-way merge: take the files' sites in order of position, ties going to the earlier file, and merge those at
+     * the same position
+     */
+    private void mergeFiles(final List<File> files, final boolean filesAreVcfs, final Consumer<PanelOfNormalsSite> siteConsumer) {
+        final List<SiteFileIterator> iterators = new ArrayList<>(files.size());
+        try {
+            for ( int i = 0; i < files.size(); i++ ) {
+                iterators.add(new SiteFileIterator(files.get(i), i, filesAreVcfs, dictionary));
+            }
+
+            final PriorityQueue<SiteFileIterator> queue = new PriorityQueue<>(Math.max(files.size(), 1),
+                    Comparator.comparingInt(SiteFileIterator::peekContigIndex)
+                            .thenComparingInt(SiteFileIterator::peekPosition)
+                            .thenComparingInt(SiteFileIterator::getFileIndex));
+            iterators.stream().filter(SiteFileIterator::hasNext).forEach(queue::add);
+
+            while ( !queue.isEmpty() ) {
+                final SiteFileIterator first = queue.poll();
+                final int contigIndex = first.peekContigIndex();
+                final PanelOfNormalsSite site = first.next();
+                if ( first.hasNext() ) {
+                    queue.add(first);
+                }
+
+                while ( !queue.isEmpty() && queue.peek().peekContigIndex() == contigIndex && queue.peek().peekPosition() == site.getPosition() ) {
+                    final SiteFileIterator next = queue.poll();
+                    site.add(next.next());
+                    if ( next.hasNext() ) {
+                        queue.add(next);
+                    }
+                }
+                siteConsumer.accept(site);
+            }
+        } finally {
+            iterators.forEach(SiteFileIterator::close);
+        }
+    }
+
+    /**
+     * Reads the sites of a VCF, or of a file of merged sites, one line ahead, and checks that they are sorted
+     */
+    private static final class SiteFileIterator implements CloseableIterator<PanelOfNormalsSite> {
+        private final File file;
+        private final int fileIndex;
+        private final boolean isVcf;
+        private final SAMSequenceDictionary dictionary;
+        private final BufferedReader reader;
+
+        private PanelOfNormalsSite nextSite;
+        private int nextContigIndex = -1;
+
+        private SiteFileIterator(final File file, final int fileIndex, final boolean isVcf, final SAMSequenceDictionary dictionary) {
+            this.file = file;
+            this.fileIndex = fileIndex;
+            this.isVcf = isVcf;
+            this.dictionary = dictionary;
+            try {
+                this.reader = new BufferedReader(IOUtils.makeReaderMaybeGzipped(file));
+            } catch ( final IOException e ) {
+                throw new UserException.CouldNotReadInputFile(file, e.getMessage());
+            }
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextSite != null;
+        }
+
+        @Override
+        public PanelOfNormalsSite next() {
+            if ( nextSite == null ) {
+                throw new NoSuchElementException();
+            }
+            final PanelOfNormalsSite site = nextSite;
+            advance();
+            return site;
+        }
+
+        private int peekContigIndex() {
+            return nextContigIndex;
+        }
+
+        private int peekPosition() {
+            return nextSite.getPosition();
+        }
+
+        private int getFileIndex() {
+            return fileIndex;
+        }
+
+        private void advance() {
+            final PanelOfNormalsSite previousSite = nextSite;
+            final int previousContigIndex = nextContigIndex;
+            nextSite = null;
+
+            final String line = readDataLine();
+            if ( line == null ) {
+                return;
+            }
+            nextSite = PanelOfNormalsSite.decode(line, !isVcf);
+            nextContigIndex = dictionary.getSequenceIndex(nextSite.getContig());
+            if ( nextContigIndex < 0 ) {
+                throw new UserException.BadInput(String.format("%s has a record on contig %s, which isn't in the header of the first input vcf",
+                        file.getAbsolutePath(), nextSite.getContig()));
+            }
+            if ( previousSite != null && (nextContigIndex < previousContigIndex ||
+                    (nextContigIndex == previousContigIndex && nextSite.getPosition() < previousSite.getPosition())) ) {
+                throw new UserException.BadInput(String.format("%s is not sorted by coordinate: %s:%d comes after %s:%d",
+                        file.getAbsolutePath(), nextSite.getContig(), nextSite.getPosition(), previousSite.getContig(), previousSite.getPosition()));
+            }
+        }
+
+        private String readDataLine() {
+            try {
+                String line = reader.readLine();
+                while ( line != null && (line.isEmpty() || line.startsWith("#")) ) {
+                    line = reader.readLine();
+                }
+                return line;
+            } catch ( final IOException e ) {
+                throw new UserException.CouldNotReadInputFile(file, e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                reader.close();
+            } catch ( final IOException e ) {
+                throw new UserException.CouldNotReadInputFile(file, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package org.broadinstitute.hellbender.tools.walkers.mutect;
+
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.VariantContextBuilder;
+import htsjdk.variant.vcf.VCFConstants;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The records of one or more normal VCFs that start at the same position, reduced to what a panel of normals needs:
+ * how many records there are, and their alleles merged as {@link org.broadinstitute.hellbender.utils.variant.GATKVariantContextUtils#simpleMerge}
+ * merges them.
+ *
+ * <p>
+ *     The reference allele is the longest of the records, and the alternate alleles of records with a shorter reference
+ *     are extended with the extra reference bases; symbolic alternate alleles of such records are dropped.  Alternate
+ *     alleles keep the order in which they were first seen.  Since this only depends on the alleles seen so far, sites
+ *     can be merged as they are read, and sites merged from different sets of records can be merged again.
+ * </p>
+ */
+public final class PanelOfNormalsSite {
+    private static final char FIELD_SEPARATOR = '\t';
+    private static final String ALLELE_SEPARATOR = ",";
+
+    private final String contig;
+    private final int position;
+    private int count;
+    private Allele ref;
+    private final List<Allele> alts;
+
+    /**
+     * @param contig contig of the records
+     * @param position start of the records
+     * @param count number of records
+     * @param ref reference allele
+     * @param alts alternate alleles, without duplicates
+     */
+    public PanelOfNormalsSite(final String contig, final int position, final int count, final Allele ref, final List<Allele> alts) {
+        this.contig = Utils.nonNull(contig);
+        Utils.validateArg(count >= 1, "count must be at least 1");
+        Utils.validateArg(Utils.nonNull(ref).isReference(), "ref must be a reference allele");
+        this.position = position;
+        this.count = count;
+        this.ref = ref;
+        this.alts = new ArrayList<>(Utils.nonNull(alts));
+    }
+
+    public String getContig() {
+        return contig;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * @return number of records merged into this site
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public Allele getReference() {
+        return ref;
+    }
+
+    public List<Allele> getAlternateAlleles() {
+        return alts;
+    }
+
+    /**
+     * Merge the records of another site at the same position into this one.  The alternate alleles of this site come
+     * before those of other.
+     */
+    public void add(final PanelOfNormalsSite other) {
+        Utils.nonNull(other);
+        Utils.validateArg(contig.equals(other.contig) && position == other.position,
+                () -> "Can't merge sites at different positions " + this + " and " + other);
+
+        count += other.count;
+        if ( other.ref.length() == ref.length() ) {
+            if ( !other.ref.equals(ref) ) {
+                throw new UserException.BadInput(String.format("The provided variant file(s) have inconsistent references for the same position(s) at %s:%d, %s vs. %s",
+                        contig, position, ref, other.ref));
+            }
+            addAlleles(other.alts, new byte[0]);
+        } else if ( other.ref.length() < ref.length() ) {
+            addAlleles(other.alts, Arrays.copyOfRange(ref.getBases(), other.ref.length(), ref.length()));
+        } else {
+            final List<Allele> oldAlts = new ArrayList<>(alts);
+            final byte[] extraBases = Arrays.copyOfRange(other.ref.getBases(), ref.length(), other.ref.length());
+            ref = other.ref;
+            alts.clear();
+            addAlleles(oldAlts, extraBases);
+            addAlleles(other.alts, new byte[0]);
+        }
+    }
+
+    private void addAlleles(final List<Allele> newAlts, final byte[] extraBases) {
+        for ( final Allele alt : newAlts ) {
+            if ( extraBases.length > 0 && alt.isSymbolic() ) {
+                continue;
+            }
+            final Allele extended = extraBases.length == 0 ? alt : Allele.extend(alt, extraBases);
+            if ( !alts.contains(extended) ) {
+                alts.add(extended);
+            }
+        }
+    }
+
+    /**
+     * @return a sites-only variant context with the merged alleles of this site
+     */
+    public VariantContext toVariantContext() {
+        final List<Allele> alleles = new ArrayList<>(alts.size() + 1);
+        alleles.add(ref);
+        alleles.addAll(alts);
+        return new VariantContextBuilder()
+                .loc(contig, position, position + ref.length() - 1)
+                .alleles(alleles)
+                .make();
+    }
+
+    /**
+     * Parse the site of a VCF data line, or of a line written by {@link #encode()}, decoding only the first five
+     * columns of the line.  In a VCF the third column is the ID, and the site counts as one record.  In an encoded
+     * site it is the count.
+     *
+     * @param line the line, which must not be a header line
+     * @param hasCount whether the third column is a count rather than the ID of a VCF record
+     */
+    public static PanelOfNormalsSite decode(final String line, final boolean hasCount) {
+        Utils.nonNull(line);
+        final String[] fields = new String[5];
+        int fieldStart = 0;
+        for ( int i = 0; i < fields.length; i++ ) {
+            int fieldEnd = line.indexOf(FIELD_SEPARATOR, fieldStart);
+            if ( fieldEnd < 0 ) {
+                if ( i < fields.length - 1 ) {
+                    throw new UserException.BadInput("Malformed line with fewer than five columns: " + line);
+                }
+                fieldEnd = line.length();
+            }
+            fields[i] = line.substring(fieldStart, fieldEnd);
+            fieldStart = fieldEnd + 1;
+        }
+
+        try {
+            final int position = Integer.parseInt(fields[1]);
+            final int count = hasCount ? Integer.parseInt(fields[2]) : 1;
+            final Allele ref = Allele.create(fields[3], true);
+            final List<Allele> alts = new ArrayList<>(1);
+            if ( !fields[4].equals(VCFConstants.EMPTY_ALTERNATE_ALLELE_FIELD) ) {
+                for ( final String alt : fields[4].split(ALLELE_SEPARATOR) ) {
+                    final Allele allele = Allele.create(alt, false);
+                    if ( !alts.contains(allele) ) {
+                        alts.add(allele);
+                    }
+                }
+            }
+            return new PanelOfNormalsSite(fields[0], position, count, ref, alts);
+        } catch ( final IllegalArgumentException e ) {
+            throw new UserException.BadInput("Malformed line: " + line, e);
+        }
+    }
+
+    /**
+     * @return this site as a line that {@link #decode(String, boolean)} reads back with hasCount true
+     */
+    public String encode() {
+        final StringBuilder line = new StringBuilder()
+                .append(contig).append(FIELD_SEPARATOR)
+                .append(position).append(FIELD_SEPARATOR)
+                .append(count).append(FIELD_SEPARATOR)
+                .append(ref.getDisplayString()).append(FIELD_SEPARATOR);
+        if ( alts.isEmpty() ) {
+            line.append(VCFConstants.EMPTY_ALTERNATE_ALLELE_FIELD);
+        } else {
+            for ( int i = 0; i < alts.size(); i++ ) {
+                line.append(i == 0 ? "" : ALLELE_SEPARATOR).append(alts.get(i).getDisplayString());
+            }
+        }
+        return line.toString();
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+}
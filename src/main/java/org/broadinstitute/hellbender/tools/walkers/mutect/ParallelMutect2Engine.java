@@ -0,0 +1,212 @@
+package org.broadinstitute.hellbender.tools.walkers.mutect;
+
+import htsjdk.tribble.Feature;
+import htsjdk.variant.variantcontext.VariantContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.engine.AssemblyRegion;
+import org.broadinstitute.hellbender.engine.FeatureContext;
+import org.broadinstitute.hellbender.engine.FeatureInput;
+import org.broadinstitute.hellbender.engine.ReferenceContext;
+import org.broadinstitute.hellbender.engine.ReferenceDataSource;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.tools.walkers.haplotypecaller.AssemblyBasedCallerUtils;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Calls the assembly regions of a traversal with several {@link Mutect2Engine}s, each used by one thread at a time,
+ * and passes on their calls in the order of the regions.
+ *
+ * <p>
+ *     Each engine has its own assembler, likelihood calculation engine and {@link SomaticGenotypingEngine}, and its
+ *     own reference data source for the reference context of the regions it calls.  The feature sources, with the
+ *     indexes of the germline resource and the panel of normals, stay with the traversal: before a region is handed
+ *     to an engine, the features it may need are fetched on the traversal thread into a {@link FeatureContext} that
+ *     no longer queries the feature sources.  The engines adjust the qualities of overlapping mates, so the reads of
+ *     each region must be its own, as {@link Mutect2Engine#useCopiesOfReads} makes them, rather than shared with its
+ *     neighbours.
+ * </p>
+ *
+ * <p>
+ *     The calls of each region are passed on only once those of every earlier region have been, so the output is
+ *     the same as that of a single engine calling the regions one at a time.
+ * </p>
+ */
+public final class ParallelMutect2Engine implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(ParallelMutect2Engine.class);
+
+    /**
+     * How long {@link #close()} waits for regions that are still being called, which can take a while for a large region
+     */
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 600;
+
+    private final List<Worker> workers;
+    private final BlockingQueue<Worker> idleWorkers;
+    private final ExecutorService executor;
+    private final List<FeatureInput<? extends Feature>> featureInputs;
+    private final Consumer<VariantContext> callConsumer;
+
+    /**
+     * Regions that have been submitted and whose calls have not yet been passed on, oldest first.  There are at most
+     * two for each worker, so that the traversal doesn't get far ahead of the workers.
+     */
+    private final Deque<Future<List<VariantContext>>> pendingRegions = new ArrayDeque<>();
+    private final int maxPendingRegions;
+
+    private boolean finished = false;
+
+    /**
+     * @param engineSupplier makes a new engine for each thread
+     * @param referenceSupplier makes a new reference data source for each engine
+     * @param featureInputs the feature inputs the engines query, like the germline resource and the panel of normals;
+     *                      null elements are ignored
+     * @param numThreads number of engines, and of threads that run them; must be at least 1
+     * @param callConsumer receives the calls of every region, in the order in which the regions were added
+     */
+    public ParallelMutect2Engine(final Supplier<Mutect2Engine> engineSupplier, final Supplier<ReferenceDataSource> referenceSupplier,
+                                 final Collection<? extends FeatureInput<? extends Feature>> featureInputs,
+                                 final int numThreads, final Consumer<VariantContext> callConsumer) {
+        Utils.nonNull(engineSupplier);
+        Utils.nonNull(referenceSupplier);
+        Utils.nonNull(featureInputs);
+        Utils.nonNull(callConsumer);
+        Utils.validateArg(numThreads >= 1, "numThreads must be at least 1");
+
+        this.workers = new ArrayList<>(numThreads);
+        this.idleWorkers = new ArrayBlockingQueue<>(numThreads);
+        for ( int i = 0; i < numThreads; i++ ) {
+            final Worker worker = new Worker(engineSupplier.get(), referenceSupplier.get());
+            workers.add(worker);
+            idleWorkers.add(worker);
+        }
+        this.executor = Executors.newFixedThreadPool(numThreads);
+        this.featureInputs = new ArrayList<>(featureInputs);
+        this.callConsumer = callConsumer;
+        this.maxPendingRegions = 2 * numThreads;
+    }
+
+    /**
+     * Add a region to be called by one of the engines.  Must be called from the thread that traverses the feature
+     * sources of featureContext.
+     *
+     * @param region the region, with reads that no other region shares; must not be used by the caller afterwards
+     * @param referenceContext reference context of the region, as given to {@link Mutect2Engine#callRegion}
+     * @param featureContext feature context of the region, as given to {@link Mutect2Engine#callRegion}
+     */
+    public void callRegion(final AssemblyRegion region, final ReferenceContext referenceContext, final FeatureContext featureContext) {
+        Utils.nonNull(region);
+        Utils.nonNull(referenceContext);
+        Utils.nonNull(featureContext);
+        Utils.validate(!finished, "finish() has already been called");
+
+        // inactive regions have no calls, so there's nothing to keep in order
+        if ( !region.isActive() || region.size() == 0 ) {
+            passOnCalls(false);
+            return;
+        }
+
+        // calls may come from anywhere on the haplotypes, which extend past the region by the assembly padding
+        final FeatureContext prefetchedFeatures = featureContext.prefetch(featureInputs,
+                AssemblyBasedCallerUtils.REFERENCE_PADDING_FOR_ASSEMBLY, AssemblyBasedCallerUtils.REFERENCE_PADDING_FOR_ASSEMBLY);
+        final SimpleInterval referenceInterval = referenceContext.getInterval();
+        final SimpleInterval referenceWindow = referenceContext.getWindow();
+
+        while ( pendingRegions.size() >= maxPendingRegions ) {
+            passOn(waitFor(pendingRegions.removeFirst()));
+        }
+        pendingRegions.addLast(executor.submit(() -> {
+            // there are as many workers as threads, so one is always idle when a region starts
+            final Worker worker = idleWorkers.take();
+            try {
+                return worker.engine.callRegion(region, new ReferenceContext(worker.reference, referenceInterval, referenceWindow), prefetchedFeatures);
+            } finally {
+                idleWorkers.put(worker);
+            }
+        }));
+        passOnCalls(false);
+    }
+
+    /**
+     * Wait for all of the regions to be called, and pass on the calls that haven't been yet
+     */
+    public void finish() {
+        Utils.validate(!finished, "finish() has already been called");
+        passOnCalls(true);
+        finished = true;
+    }
+
+    /**
+     * Stop the threads, shut down the engines and close their reference data sources
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        // after an error, regions may still be being called: wait for them before closing what they use
+        try {
+            if ( !executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS) ) {
+                logger.warn("Regions were still being called " + SHUTDOWN_TIMEOUT_SECONDS + " seconds after the threads were stopped");
+            }
+        } catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new GATKException("Interrupted while waiting for the threads calling regions to stop", e);
+        }
+        for ( final Worker worker : workers ) {
+            worker.engine.shutdown();
+            worker.reference.close();
+        }
+    }
+
+    /**
+     * Pass on the calls of the oldest regions, as long as they are done or all regions are to be waited for
+     */
+    private void passOnCalls(final boolean waitForAll) {
+        while ( !pendingRegions.isEmpty() && (waitForAll || pendingRegions.peekFirst().isDone()) ) {
+            passOn(waitFor(pendingRegions.removeFirst()));
+        }
+    }
+
+    private void passOn(final List<VariantContext> calls) {
+        calls.forEach(callConsumer);
+    }
+
+    private static List<VariantContext> waitFor(final Future<List<VariantContext>> region) {
+        try {
+            return region.get();
+        } catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new GATKException("Interrupted while waiting for a region to be called", e);
+        } catch ( final ExecutionException e ) {
+            // rethrow exceptions about the input, like malformed reads, as they are
+            if ( e.getCause() instanceof RuntimeException ) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new GATKException("Problem calling a region", e.getCause());
+        }
+    }
+
+    private static final class Worker {
+        private final Mutect2Engine engine;
+        private final ReferenceDataSource reference;
+
+        private Worker(final Mutect2Engine engine, final ReferenceDataSource reference) {
+            this.engine = engine;
+            this.reference = reference;
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package org.broadinstitute.hellbender.transformers;
 
+import com.google.common.annotations.VisibleForTesting;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMTag;
 import htsjdk.samtools.SAMUtils;
+import it.unimi.dsi.fastutil.longs.Long2ByteOpenHashMap;
 import org.broadinstitute.hellbender.exceptions.UserException.MalformedRead;
 import org.broadinstitute.hellbender.tools.ApplyBQSRArgumentCollection;
 import org.broadinstitute.hellbender.utils.QualityUtils;
@@ -49,6 +51,18 @@ public final class BQSRReadTransformer implements ReadTransformer {
     private byte[] staticQuantizedMapping;
     private final CovariateKeyCache keyCache;
 
+    /**
+     * Bases with the same covariate keys get the same final quality, and reads only have a small fraction of all the
+     * possible combinations of keys, so the final qualities are cached by their keys, packed into a long by
+     * {@link #packKeys}.  Null if the keys of the covariates don't fit into a long, or if caching is turned off.
+     */
+    private final Long2ByteOpenHashMap recalibratedQualCache;
+    private final long[] keyStrides;
+    private final int maxCachedQuals;
+
+    private static final byte NOT_CACHED = -1;
+    private static final int MAX_CACHED_QUALS = 1 << 22;
+
     /**
      * Constructor using a GATK Report file
      *
@@ -68,8 +82,9 @@ public final class BQSRReadTransformer implements ReadTransformer {
      * @param quantizationInfo quantization info
      * @param covariates standard covariate set
      * @param args ApplyBQSR arguments
+     * @param maxCachedQuals the most recalibrated qualities to cache, or 0 not to cache them
      */
-    private BQSRReadTransformer(final SAMFileHeader header, final RecalibrationTables recalibrationTables, final QuantizationInfo quantizationInfo, final StandardCovariateList covariates, final ApplyBQSRArgumentCollection args) {
+    private BQSRReadTransformer(final SAMFileHeader header, final RecalibrationTables recalibrationTables, final QuantizationInfo quantizationInfo, final StandardCovariateList covariates, final ApplyBQSRArgumentCollection args, final int maxCachedQuals) {
         this.header = header;
         this.recalibrationTables = recalibrationTables;
         this.covariates = covariates;
@@ -98,6 +113,48 @@ public final class BQSRReadTransformer implements ReadTransformer {
         //Note: We pre-create the varargs arrays that will be used in the calls. Otherwise we're spending a lot of time allocating those int[] objects
         empiricalQualCovsArgs = new RecalDatum[totalCovariateCount - specialCovariateCount];
         keyCache = new CovariateKeyCache();//one cache per transformer
+
+        this.maxCachedQuals = maxCachedQuals;
+        final int[] maximumKeyValues = new int[covariates.size()];
+        for (int i = 0; i < maximumKeyValues.length; i++) {
+            maximumKeyValues[i] = covariates.get(i).maximumKeyValue();
+        }
+        keyStrides = computeKeyStrides(maximumKeyValues);
+        if (keyStrides != null && maxCachedQuals > 0) {
+            recalibratedQualCache = new Long2ByteOpenHashMap();
+            recalibratedQualCache.defaultReturnValue(NOT_CACHED);
+        } else {
+            recalibratedQualCache = null;
+        }
+    }
+
+    /**
+     * @param maximumKeyValues the maximum key value of each covariate
+     * @return the multiplier of the key of each covariate, plus one, in a packed key of all the covariates, or null if
+     * the packed keys would overflow a long
+     */
+    @VisibleForTesting
+    static long[] computeKeyStrides(final int[] maximumKeyValues) {
+        final long[] strides = new long[maximumKeyValues.length];
+        long stride = 1;
+        try {
+            for (int i = 0; i < strides.length; i++) {
+                strides[i] = stride;
+                // keys go from -1 (for bases that don't have one) to the maximum key value
+                stride = Math.multiplyExact(stride, maximumKeyValues[i] + 2L);
+            }
+        } catch (final ArithmeticException e) {
+            return null;
+        }
+        return strides;
+    }
+
+    private long packKeys(final int[] keySet) {
+        long packed = 0;
+        for (int i = 0; i < keyStrides.length; i++) {
+            packed += (keySet[i] + 1) * keyStrides[i];
+        }
+        return packed;
     }
 
     /**
@@ -108,7 +165,28 @@ public final class BQSRReadTransformer implements ReadTransformer {
      * @param args a set of arguments to control how bqsr is applied
      */
     public BQSRReadTransformer(final SAMFileHeader header, final RecalibrationReport recalInfo, final ApplyBQSRArgumentCollection args) {
-        this(header, recalInfo.getRecalibrationTables(), recalInfo.getQuantizationInfo(), recalInfo.getCovariates(), args);
+        this(header, recalInfo, args, MAX_CACHED_QUALS);
+    }
+
+    /**
+     * Constructor using a RecalibrationReport, with a limit on the number of cached recalibrated qualities
+     *
+     * @param header header for the reads
+     * @param recalInfo the output of BaseRecalibration, containing the recalibration information
+     * @param args a set of arguments to control how bqsr is applied
+     * @param maxCachedQuals the most recalibrated qualities to cache, or 0 not to cache them
+     */
+    @VisibleForTesting
+    BQSRReadTransformer(final SAMFileHeader header, final RecalibrationReport recalInfo, final ApplyBQSRArgumentCollection args, final int maxCachedQuals) {
+        this(header, recalInfo.getRecalibrationTables(), recalInfo.getQuantizationInfo(), recalInfo.getCovariates(), args, maxCachedQuals);
+    }
+
+    /**
+     * @return the number of recalibrated qualities in the cache
+     */
+    @VisibleForTesting
+    int numberOfCachedQuals() {
+        return recalibratedQualCache == null ? 0 : recalibratedQualCache.size();
     }
 
     /**
@@ -174,28 +252,46 @@ public final class BQSRReadTransformer implements ReadTransformer {
             if (quals[offset] < preserveQLessThan) {
                 continue;
             }
-            Arrays.fill(empiricalQualCovsArgs, null);  //clear the array
             final int[] keySet = fullReadKeySet[offset];
 
-
-            final RecalDatum empiricalQualQS = qualityScoreTable.get3Keys(keySet[0], keySet[1], BASE_SUBSTITUTION_INDEX);
-
-            for (int i = specialCovariateCount; i < totalCovariateCount; i++) {
-                if (keySet[i] >= 0) {
-                    empiricalQualCovsArgs[i - specialCovariateCount] = recalibrationTables.getTable(i).get4Keys(keySet[0], keySet[1], keySet[i], BASE_SUBSTITUTION_INDEX);
+            // the read group, and so epsilon and empiricalQualRG, are part of the keys
+            if (recalibratedQualCache == null) {
+                quals[offset] = computeRecalibratedQual(keySet, epsilon, empiricalQualRG, qualityScoreTable, quantizedQuals);
+            } else {
+                final long cacheKey = packKeys(keySet);
+                byte recalibratedQual = recalibratedQualCache.get(cacheKey);
+                if (recalibratedQual == NOT_CACHED) {
+                    recalibratedQual = computeRecalibratedQual(keySet, epsilon, empiricalQualRG, qualityScoreTable, quantizedQuals);
+                    if (recalibratedQualCache.size() < maxCachedQuals) {
+                        recalibratedQualCache.put(cacheKey, recalibratedQual);
+                    }
                 }
+                quals[offset] = recalibratedQual;
             }
-            final double recalibratedQualDouble = hierarchicalBayesianQualityEstimate(epsilon, empiricalQualRG, empiricalQualQS, empiricalQualCovsArgs);
-
-            final byte recalibratedQualityScore = quantizedQuals.get(getRecalibratedQual(recalibratedQualDouble));
-
-            // Bin to static quals
-            quals[offset] = staticQuantizedMapping == null ? recalibratedQualityScore : staticQuantizedMapping[recalibratedQualityScore];
         }
         read.setBaseQualities(quals);
         return read;
     }
 
+    private byte computeRecalibratedQual(final int[] keySet, final double epsilon, final RecalDatum empiricalQualRG,
+                                         final NestedIntegerArray<RecalDatum> qualityScoreTable, final List<Byte> quantizedQuals) {
+        Arrays.fill(empiricalQualCovsArgs, null);  //clear the array
+
+        final RecalDatum empiricalQualQS = qualityScoreTable.get3Keys(keySet[0], keySet[1], BASE_SUBSTITUTION_INDEX);
+
+        for (int i = specialCovariateCount; i < totalCovariateCount; i++) {
+            if (keySet[i] >= 0) {
+                empiricalQualCovsArgs[i - specialCovariateCount] = recalibrationTables.getTable(i).get4Keys(keySet[0], keySet[1], keySet[i], BASE_SUBSTITUTION_INDEX);
+            }
+        }
+        final double recalibratedQualDouble = hierarchicalBayesianQualityEstimate(epsilon, empiricalQualRG, empiricalQualQS, empiricalQualCovsArgs);
+
+        final byte recalibratedQualityScore = quantizedQuals.get(getRecalibratedQual(recalibratedQualDouble));
+
+        // Bin to static quals
+        return staticQuantizedMapping == null ? recalibratedQualityScore : staticQuantizedMapping[recalibratedQualityScore];
+    }
+
     // recalibrated quality is bound between 1 and MAX_QUAL
     private byte getRecalibratedQual(final double recalibratedQualDouble) {
         return boundQual(fastRound(recalibratedQualDouble), MAX_RECALIBRATED_Q_SCORE);
@@ -1,5 +1,7 @@
 package org.broadinstitute.hellbender.utils;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.commons.math3.distribution.AbstractIntegerDistribution;
 import org.apache.commons.math3.distribution.HypergeometricDistribution;
 
@@ -9,10 +11,29 @@ import java.util.stream.DoubleStream;
 /**
  * Implements the Fisher's exact test for 2x2 tables
  * assuming the null hypothesis of odd ratio of 1.
+ *
+ * <p>
+ *     Strand bias tables have small counts once normalized and the same ones come up over and over, so p-values are
+ *     memoized in a bounded table shared by all threads.
+ * </p>
  */
 public final class FisherExactTest {
     private static final double REL_ERR = 1 - 10e-7;
 
+    /**
+     * Maximum number of p-values memoized.
+     */
+    private static final long MAXIMUM_CACHED_PVALUES = 100_000;
+
+    /**
+     * Tables are memoized only if all their counts are less than this, so that they fit in a long key.
+     */
+    private static final int MAXIMUM_CACHED_COUNT = 1 << 16;
+
+    private static final Cache<Long, Double> PVALUE_CACHE = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_CACHED_PVALUES)
+            .build();
+
     /**
      * Computes the 2-sided pvalue of the Fisher's exact test on a normalized table that ensures that the sum of
      * all four entries is less than 2 * 200.
@@ -23,8 +44,27 @@ public final class FisherExactTest {
         Utils.validateArg(normalizedTable[0] != null && normalizedTable[0].length == 2, () -> "input must be 2x2 " + Arrays.deepToString(normalizedTable));
         Utils.validateArg(normalizedTable[1] != null && normalizedTable[1].length == 2, () -> "input must be 2x2 " + Arrays.deepToString(normalizedTable));
 
-        //Note: this implementation follows the one in R base package
         final int[][] x= normalizedTable;
+        if (!isCacheable(x)) {
+            return computeTwoSidedPValue(x);
+        }
+        final Long key = ((long) x[0][0] << 48) | ((long) x[0][1] << 32) | ((long) x[1][0] << 16) | x[1][1];
+        final Double cached = PVALUE_CACHE.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        final double pValue = computeTwoSidedPValue(x);
+        PVALUE_CACHE.put(key, pValue);
+        return pValue;
+    }
+
+    private static boolean isCacheable(final int[][] table) {
+        return table[0][0] >= 0 && table[0][0] < MAXIMUM_CACHED_COUNT && table[0][1] >= 0 && table[0][1] < MAXIMUM_CACHED_COUNT
+                && table[1][0] >= 0 && table[1][0] < MAXIMUM_CACHED_COUNT && table[1][1] >= 0 && table[1][1] < MAXIMUM_CACHED_COUNT;
+    }
+
+    private static double computeTwoSidedPValue(final int[][] x) {
+        //Note: this implementation follows the one in R base package
         final int m = x[0][0] + x[0][1];
         final int n = x[1][0] + x[1][1];
         final int k = x[0][0] + x[1][0];
@@ -1,6 +1,5 @@
 package org.broadinstitute.hellbender.utils;
 
-import htsjdk.samtools.util.Histogram;
 import org.apache.commons.math3.distribution.NormalDistribution;
 import org.apache.log4j.Logger;
 
@@ -138,43 +137,22 @@ public class MannWhitneyU {
         }
     }
 
-    /**
-     * Key for the map from Integer[] to set of all permutations of that array.
-     */
-    private static class Key {
-        final Integer[] listToPermute;
-
-        private Key(Integer[] listToPermute) {
-            this.listToPermute = listToPermute;
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (o == null || getClass() != o.getClass()) return false;
-
-            Key that = (Key) o;
-            return (Arrays.deepEquals(this.listToPermute, that.listToPermute));
-        }
-
-        @Override
-        public int hashCode() {
-            int result = 17;
-            for (Integer i : listToPermute) {
-                result = 31 * result + listToPermute[i];
-            }
-            return result;
-        }
-    }
-
     // Constructs a normal distribution; this needs to be a standard normal in order to get a Z-score in the exact case
     private static final double NORMAL_MEAN = 0;
     private static final double NORMAL_SD = 1;
     private static final NormalDistribution NORMAL = new NormalDistribution(NORMAL_MEAN, NORMAL_SD);
 
     /**
-     * A map of an Integer[] of the labels to the set of all possible permutations of those labels.
+     * Maximum total number of observations for which the exact distribution of U without ties is cached.
+     */
+    private static final int MAXIMUM_CACHED_DISTRIBUTION_LENGTH = 40;
+
+    /**
+     * Exact distributions of U when there are no ties, by the lengths of the two series (see {@link #distributionKey}).
+     * Each is the number of ways to split the ranks so that the doubled rank sum of the first series is the index, as
+     * returned by {@link #countRankSums}.
      */
-    private static Map<Key, Set<List<Integer>>> PERMUTATIONS = new ConcurrentHashMap<Key, Set<List<Integer>>>();
+    private static final Map<Long, long[]> EXACT_DISTRIBUTIONS = new ConcurrentHashMap<>();
 
     /**
      * The minimum length for both data series in order to use a normal distribution
@@ -200,51 +178,72 @@ public class MannWhitneyU {
         TWO_SIDED
     }
 
-    public RankedData calculateRank(final double[] series1, final double[] series2) {
-        Arrays.sort(series1);
-        Arrays.sort(series2);
-
-        // Make a merged ranks array
-        final Rank[] ranks = new Rank[series1.length + series2.length];
-        {
-            int i = 0, j = 0, r = 0;
-            while (r < ranks.length) {
-                if (i >= series1.length) {
-                    ranks[r++] = new Rank(series2[j++], r, 2);
-                } else if (j >= series2.length) {
-                    ranks[r++] = new Rank(series1[i++], r, 1);
-                } else if (series1[i] <= series2[j]) {
-                    ranks[r++] = new Rank(series1[i++], r, 1);
-                } else {
-                    ranks[r++] = new Rank(series2[j++], r, 2);
-                }
-            }
-        }
+    /**
+     * Ranking of two series merged, in primitive arrays.
+     *
+     * <p>
+     *     Tied values get the average of their ranks. Ranks are kept in single precision, and summed in the order of the
+     *     merged values, as the test statistics have always been computed that way.
+     * </p>
+     */
+    private static final class Ranking {
+        final double[] values;
+        final float[] ranks;
+        final boolean[] inFirstSeries;
+        final int[] tieCounts;
+        int numberOfTieBands;
 
-        ArrayList<Integer> numOfTies = new ArrayList<>();
+        /**
+         * Sorts both series in place and ranks them.
+         */
+        private Ranking(final double[] series1, final double[] series2) {
+            Arrays.sort(series1);
+            Arrays.sort(series2);
+            final int length = series1.length + series2.length;
+            values = new double[length];
+            ranks = new float[length];
+            inFirstSeries = new boolean[length];
+            tieCounts = new int[length / 2];
+
+            for (int i = 0, j = 0, r = 0; r < length; r++) {
+                final boolean first = j >= series2.length || (i < series1.length && series1[i] <= series2[j]);
+                values[r] = first ? series1[i++] : series2[j++];
+                inFirstSeries[r] = first;
+                ranks[r] = r + 1;
+            }
 
-        // Now sort out any tie bands
-        for (int i = 0; i < ranks.length; ) {
-            float rank = ranks[i].rank;
-            int count = 1;
+            // Now sort out any tie bands
+            for (int i = 0; i < length; ) {
+                float rank = ranks[i];
+                int count = 1;
 
-            for (int j = i + 1; j < ranks.length && ranks[j].value == ranks[i].value; ++j) {
-                rank += ranks[j].rank;
-                ++count;
-            }
+                for (int j = i + 1; j < length && values[j] == values[i]; ++j) {
+                    rank += ranks[j];
+                    ++count;
+                }
 
-            if (count > 1) {
-                rank /= count;
-                for (int j = i; j < i + count; ++j) {
-                    ranks[j].rank = rank;
+                if (count > 1) {
+                    rank /= count;
+                    Arrays.fill(ranks, i, i + count, rank);
+                    tieCounts[numberOfTieBands++] = count;
                 }
-                numOfTies.add(count);
-            }
 
-            // Skip forward the right number of items
-            i += count;
+                // Skip forward the right number of items
+                i += count;
+            }
         }
+    }
 
+    public RankedData calculateRank(final double[] series1, final double[] series2) {
+        final Ranking ranking = new Ranking(series1, series2);
+        final Rank[] ranks = new Rank[ranking.values.length];
+        for (int r = 0; r < ranks.length; r++) {
+            ranks[r] = new Rank(ranking.values[r], ranking.ranks[r], ranking.inFirstSeries[r] ? 1 : 2);
+        }
+        final ArrayList<Integer> numOfTies = new ArrayList<>(ranking.numberOfTieBands);
+        for (int t = 0; t < ranking.numberOfTieBands; t++) {
+            numOfTies.add(ranking.tieCounts[t]);
+        }
         return new RankedData(ranks, numOfTies);
     }
 
@@ -252,18 +251,14 @@ public class MannWhitneyU {
      * Rank both groups together and return a TestStatistic object that includes U1, U2 and number of ties for sigma
      */
     public TestStatistic calculateU1andU2(final double[] series1, final double[] series2) {
-        RankedData ranked = calculateRank(series1, series2);
-        Rank[] ranks = ranked.getRank();
-        ArrayList<Integer> numOfTies = ranked.getNumOfTies();
-        int lengthOfRanks = ranks.length;
-
-        double numOfTiesForSigma = transformTies(lengthOfRanks, numOfTies);
+        final Ranking ranking = new Ranking(series1, series2);
+        final double numOfTiesForSigma = transformTies(ranking.values.length, ranking.tieCounts, ranking.numberOfTieBands);
 
         // Calculate R1 and R2 and U.
         float r1 = 0, r2 = 0;
-        for (Rank rank : ranks) {
-            if (rank.series == 1) r1 += rank.rank;
-            else r2 += rank.rank;
+        for (int r = 0; r < ranking.ranks.length; r++) {
+            if (ranking.inFirstSeries[r]) r1 += ranking.ranks[r];
+            else r2 += ranking.ranks[r];
         }
 
         double n1 = series1.length;
@@ -276,25 +271,26 @@ public class MannWhitneyU {
     }
 
     public double transformTies(int numOfRanks, ArrayList<Integer> numOfTies) {
+        return transformTies(numOfRanks, numOfTies.stream().mapToInt(Integer::intValue).toArray(), numOfTies.size());
+    }
+
+    private static double transformTies(final int numOfRanks, final int[] tieCounts, final int numberOfTieBands) {
         //Calculate number of ties transformed for formula for Sigma to calculate Z-score
-        ArrayList<Double> transformedTies = new ArrayList<>();
-        for (int count : numOfTies) {
+        double numOfTiesForSigma = 0.0;
+        for (int t = 0; t < numberOfTieBands; t++) {
+            final int count = tieCounts[t];
             //If every single datapoint is tied then we want to return a p-value of .5 and
             //the formula for sigma that includes the number of ties breaks down. Setting
             //the number of ties to 0 in this case gets the desired result in the normal
             //approximation case.
             if (count != numOfRanks) {
-                transformedTies.add((Math.pow(count, 3)) - count);
+                numOfTiesForSigma += (Math.pow(count, 3)) - count;
             }
         }
 
-        double numOfTiesForSigma = 0.0;
-        for (double count : transformedTies) {
-            numOfTiesForSigma += count;
-        }
-
         return(numOfTiesForSigma);
     }
+
     /**
      * Calculates the rank-sum test statisic U (sometimes W) from two sets of input data for a one-sided test
      * with an int indicating which group is the dominator. Returns a test statistic object with trueU and number of
@@ -413,70 +409,14 @@ public class MannWhitneyU {
         return new Result(u, z, p, Math.abs(median(series1) - median(series2)));
     }
 
-    private void swap(Integer[] arr, int i, int j) {
-        int temp = arr[i];
-        arr[i] = arr[j];
-        arr[j] = temp;
-    }
-
-    /**
-     * Uses a method that generates permutations in lexicographic order. (https://en.wikipedia.org/wiki/Permutation#Generation_in_lexicographic_order)
-     * @param temp Sorted list of elements to be permuted.
-     * @param allPermutations Empty set that will hold all possible permutations.
-     */
-    private void calculatePermutations(Integer[] temp, Set<List<Integer>> allPermutations) {
-        allPermutations.add(new ArrayList<>(Arrays.asList(temp)));
-        while (true) {
-            int k = -1;
-            for (int i = temp.length - 2; i >= 0; i--) {
-                if (temp[i] < temp[i + 1]) {
-                    k = i;
-                    break;
-                }
-            }
-
-            if (k == -1) {
-                break;
-            }
-
-            int l = -1;
-            for (int i = temp.length - 1; i >= k + 1; i--) {
-                if (temp[k] < temp[i]) {
-                    l = i;
-                    break;
-                }
-            }
-
-            swap(temp, k, l);
-
-            int end = temp.length - 1;
-            for (int begin = k + 1; begin < end; begin++) {
-                swap(temp, begin, end);
-                end--;
-            }
-            allPermutations.add(new ArrayList<>(Arrays.asList(temp)));
-        }
-    }
-
     /**
-     * Checks to see if the permutations have already been computed before creating them from scratch.
-     * @param listToPermute List of tags in numerical order to be permuted
-     * @param numOfPermutations The number of permutations this list will have (n1+n2 choose n1)
-     * @return Set of all possible permutations for the given list.
-     */
-    Set<List<Integer>> getPermutations(final Integer[] listToPermute, int numOfPermutations) {
-        Key key = new Key(listToPermute);
-        Set<List<Integer>> permutations = PERMUTATIONS.get(key);
-        if (permutations == null) {
-            permutations = new HashSet<>(numOfPermutations);
-            calculatePermutations(listToPermute, permutations);
-            PERMUTATIONS.put(key, permutations);
-        }
-        return permutations;
-    }
-
-    /**
-     * Creates histogram of test statistics from a permutation test.
+     * Computes the p-value of the exact test, from the distribution of U over all the possible ways to assign the ranks
+     * to the series.
+     *
+     * <p>
+     *     Rather than enumerating these assignments, they are counted by rank sum of the first series; when there are no
+     *     ties the counts only depend on the lengths of the series and are cached.
+     * </p>
      *
      * @param series1 Data from group 1
      * @param series2 Data from group 2
@@ -484,48 +424,15 @@ public class MannWhitneyU {
      * @return P-value based on histogram with u calculated for every possible permutation of group tag.
      */
     public double permutationTest(final double[] series1, final double[] series2, final double testStatU) {
-        final Histogram<Double> histo = new Histogram<>();
         final int n1 = series1.length;
         final int n2 = series2.length;
 
-        RankedData rankedGroups = calculateRank(series1, series2);
-        Rank[] ranks = rankedGroups.getRank();
-
-        Integer[] firstPermutation = new Integer[n1 + n2];
-
-        for (int i = 0; i < firstPermutation.length; i++) {
-            if (i < n1) {
-                firstPermutation[i] = 0;
-            } else {
-                firstPermutation[i] = 1;
-            }
-        }
-
-        final int numOfPerms = (int) MathUtils.binomialCoefficient(n1 + n2, n2);
-        Set<List<Integer>> allPermutations = getPermutations(firstPermutation, numOfPerms);
-
-        double[] newSeries1 = new double[n1];
-        double[] newSeries2 = new double[n2];
-
-        //iterate over all permutations
-        for (List<Integer> currPerm : allPermutations) {
-            int series1End = 0;
-            int series2End = 0;
-            for (int i = 0; i < currPerm.size(); i++) {
-                int grouping = currPerm.get(i);
-                if (grouping == 0) {
-                    newSeries1[series1End] = ranks[i].rank;
-                    series1End++;
-                } else {
-                    newSeries2[series2End] = ranks[i].rank;
-                    series2End++;
-                }
-            }
-            assert (series1End == n1);
-            assert (series2End == n2);
-
-            double newU = MathUtils.sum(newSeries1) - ((n1 * (n1 + 1)) / 2.0);
-            histo.increment(newU);
+        final Ranking ranking = new Ranking(series1, series2);
+        final long[] countsByDoubledRankSum;
+        if (ranking.numberOfTieBands == 0 && n1 + n2 <= MAXIMUM_CACHED_DISTRIBUTION_LENGTH) {
+            countsByDoubledRankSum = EXACT_DISTRIBUTIONS.computeIfAbsent(distributionKey(n1, n2), k -> countRankSums(ranking.ranks, n1));
+        } else {
+            countsByDoubledRankSum = countRankSums(ranking.ranks, n1);
         }
 
         /**
@@ -534,13 +441,60 @@ public class MannWhitneyU {
          * and dividing by the total count of everything in the histogram. Just using getCumulativeDistribution() gives
          * a p-value of 1 in the most extreme case which doesn't result in a usable z-score.
          */
-        double sumOfAllSmallerBins = histo.get(testStatU).getValue() / 2.0;
-
-        for (final Histogram.Bin<Double> bin : histo.values()) {
-            if (bin.getId() < testStatU) sumOfAllSmallerBins += bin.getValue();
+        long observedCount = 0;
+        long smallerCount = 0;
+        long totalCount = 0;
+        for (int doubledRankSum = 0; doubledRankSum < countsByDoubledRankSum.length; doubledRankSum++) {
+            final long count = countsByDoubledRankSum[doubledRankSum];
+            if (count == 0) {
+                continue;
+            }
+            // ranks are multiples of 1/2 so this is exactly the U of the permutations with this rank sum.
+            final double newU = doubledRankSum / 2.0 - ((n1 * (n1 + 1)) / 2.0);
+            if (newU == testStatU) {
+                observedCount += count;
+            } else if (newU < testStatU) {
+                smallerCount += count;
+            }
+            totalCount += count;
         }
 
-        return sumOfAllSmallerBins / histo.getCount();
+        return (observedCount / 2.0 + smallerCount) / totalCount;
+    }
+
+    private static Long distributionKey(final int n1, final int n2) {
+        return ((long) n1 << 32) | n2;
+    }
+
+    /**
+     * Counts the ways to pick {@code n1} of the ranks by the sum of the ranks picked.
+     *
+     * @param ranks ranks of all the observations, multiples of 1/2.
+     * @param n1 the number of ranks to pick.
+     * @return never {@code null}, the number of ways to pick {@code n1} ranks that add up to half of each index.
+     */
+    private static long[] countRankSums(final float[] ranks, final int n1) {
+        final int[] doubledRanks = new int[ranks.length];
+        int maximumDoubledRankSum = 0;
+        for (int r = 0; r < ranks.length; r++) {
+            doubledRanks[r] = Math.round(2 * ranks[r]);
+            maximumDoubledRankSum += doubledRanks[r];
+        }
+
+        // counts[m][s] is the number of ways to pick m of the ranks seen so far with doubled sum s.
+        final long[][] counts = new long[n1 + 1][maximumDoubledRankSum + 1];
+        counts[0][0] = 1;
+        for (int r = 0; r < doubledRanks.length; r++) {
+            final int doubledRank = doubledRanks[r];
+            for (int m = Math.min(r + 1, n1); m > 0; m--) {
+                final long[] previous = counts[m - 1];
+                final long[] current = counts[m];
+                for (int sum = maximumDoubledRankSum; sum >= doubledRank; sum--) {
+                    current[sum] += previous[sum - doubledRank];
+                }
+            }
+        }
+        return counts[n1];
     }
 
 }
@@ -169,8 +169,20 @@ public class ActivityProfile {
      */
     public void add(final ActivityProfileState state) {
         Utils.nonNull(state);
-        final SimpleInterval loc = state.getLoc();
+        extendSpanTo(state.getLoc());
 
+        final Collection<ActivityProfileState> processedStates = processState(state);
+        for ( final ActivityProfileState processedState : processedStates ) {
+            incorporateSingleState(processedState);
+        }
+    }
+
+    /**
+     * Extend the span of this profile to loc, the location of the state being added
+     *
+     * @param loc the location of the next state, which must immediately follow the end of this profile if it's not empty
+     */
+    protected void extendSpanTo(final SimpleInterval loc) {
         if ( regionStartLoc == null ) {
             regionStartLoc = loc;
             regionStopLoc = loc;
@@ -180,11 +192,6 @@ public class ActivityProfile {
                     "Bad add call to ActivityProfile: loc " + loc + " not immediately after last loc " + regionStopLoc);
             regionStopLoc = loc;
         }
-
-        final Collection<ActivityProfileState> processedStates = processState(state);
-        for ( final ActivityProfileState processedState : processedStates ) {
-            incorporateSingleState(processedState);
-        }
     }
 
     /**
@@ -317,18 +324,16 @@ public class ActivityProfile {
      * @return a fully formed assembly region, or null if none can be made
      */
     private AssemblyRegion popNextReadyAssemblyRegion( final int assemblyRegionExtension, final int minRegionSize, final int maxRegionSize, final boolean forceConversion ) {
-        if ( stateList.isEmpty() ) {
+        if ( isEmpty() ) {
             return null;
         }
 
         // If we are flushing the activity profile we need to trim off the excess states so that we don't create regions outside of our current processing interval
         if( forceConversion ) {
-            final List<ActivityProfileState> statesToTrimAway = new ArrayList<>(stateList.subList(getSpan().size(), stateList.size()));
-            stateList.removeAll(statesToTrimAway);
+            keepFirstStates(getSpan().size());
         }
 
-        final ActivityProfileState first = stateList.get(0);
-        final boolean isActiveRegion = first.isActiveProb() > activeProbThreshold;
+        final boolean isActiveRegion = getProb(0) > activeProbThreshold;
         final int offsetOfNextRegionEnd = findEndOfRegion(isActiveRegion, minRegionSize, maxRegionSize, forceConversion);
         if ( offsetOfNextRegionEnd == -1 ) {
             // couldn't find a valid ending offset, so we return null
@@ -336,20 +341,44 @@ public class ActivityProfile {
         }
 
         // we need to create the active region, and clip out the states we're extracting from this profile
-        final List<ActivityProfileState> sub = stateList.subList(0, offsetOfNextRegionEnd + 1);
-        final List<ActivityProfileState> supportingStates = new ArrayList<>(sub);
-        sub.clear();
+        final SimpleInterval regionLoc = new SimpleInterval(regionStartLoc.getContig(), regionStartLoc.getStart(), regionStartLoc.getStart() + offsetOfNextRegionEnd);
+        final List<ActivityProfileState> supportingStates = removeFirstStates(offsetOfNextRegionEnd + 1);
 
         // update the start and stop locations as necessary
-        if ( stateList.isEmpty() ) {
+        if ( isEmpty() ) {
             regionStartLoc = regionStopLoc = null;
         } else {
-            regionStartLoc = stateList.get(0).getLoc();
+            regionStartLoc = new SimpleInterval(regionLoc.getContig(), regionLoc.getEnd() + 1, regionLoc.getEnd() + 1);
         }
-        final SimpleInterval regionLoc = new SimpleInterval(first.getLoc().getContig(), first.getLoc().getStart(), first.getLoc().getStart() + offsetOfNextRegionEnd);
         return new AssemblyRegion(regionLoc, supportingStates, isActiveRegion, assemblyRegionExtension, samHeader);
     }
 
+    /**
+     * Remove all but the first n states from this profile
+     *
+     * @param n the number of states to keep
+     */
+    protected void keepFirstStates(final int n) {
+        if ( n < stateList.size() ) {
+            stateList.subList(n, stateList.size()).clear();
+        }
+    }
+
+    /**
+     * Remove the first n states from this profile
+     *
+     * Doesn't update the start and stop locations of this profile
+     *
+     * @param n the number of states to remove, no more than {@link #size()}
+     * @return a new list with the removed states, in order
+     */
+    protected List<ActivityProfileState> removeFirstStates(final int n) {
+        final List<ActivityProfileState> sub = stateList.subList(0, n);
+        final List<ActivityProfileState> removed = new ArrayList<>(sub);
+        sub.clear();
+        return removed;
+    }
+
     /**
      * Find the end of the current region, returning the index into the element isActive element, or -1 if the region isn't done
      *
@@ -371,7 +400,7 @@ public class ActivityProfile {
      * @return the index into stateList of the last element of this region, or -1 if it cannot be found
      */
     private int findEndOfRegion(final boolean isActiveRegion, final int minRegionSize, final int maxRegionSize, final boolean forceConversion) {
-        if ( ! forceConversion && stateList.size() < maxRegionSize + getMaxProbPropagationDistance() ) {
+        if ( ! forceConversion && size() < maxRegionSize + getMaxProbPropagationDistance() ) {
             // we really haven't finalized at the probability mass that might affect our decision, so keep
             // waiting until we do before we try to make any decisions
             return -1;
@@ -434,7 +463,7 @@ public class ActivityProfile {
     private int findFirstActivityBoundary(final boolean isActiveRegion, final int maxRegionSize) {
         Utils.validateArg(maxRegionSize > 0, "maxRegionSize must be > 0");
 
-        final int nStates = stateList.size();
+        final int nStates = size();
         int endOfActiveRegion = 0;
 
         while ( endOfActiveRegion < nStates && endOfActiveRegion < maxRegionSize ) {
@@ -452,8 +481,8 @@ public class ActivityProfile {
      * @param index a valid offset into the state list
      * @return the isActiveProb of the state at index
      */
-    private double getProb(final int index) {
-        Utils.validIndex(index, stateList.size());
+    protected double getProb(final int index) {
+        Utils.validIndex(index, size());
 
         return stateList.get(index).isActiveProb();
     }
@@ -468,9 +497,9 @@ public class ActivityProfile {
      * @return true if prob at state is a minimum, false otherwise
      */
     private boolean isMinimum(final int index) {
-        Utils.validIndex(index, stateList.size());
+        Utils.validIndex(index, size());
 
-        if ( index == stateList.size() - 1 ) {
+        if ( index == size() - 1 ) {
             // we cannot be at a minimum if the current position is the last in the state list
             return false;
         }
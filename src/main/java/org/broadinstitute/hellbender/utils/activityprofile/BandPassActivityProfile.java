@@ -2,13 +2,16 @@ package org.broadinstitute.hellbender.utils.activityprofile;
 
 
 import htsjdk.samtools.SAMFileHeader;
+import org.apache.commons.lang3.tuple.Pair;
 import org.broadinstitute.hellbender.utils.MathUtils;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.utils.Utils;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A band pass filtering version of the activity profile
@@ -21,6 +24,11 @@ public class BandPassActivityProfile extends ActivityProfile {
     private final static double MIN_PROB_TO_KEEP_IN_FILTER = 1e-5;
     public static final double DEFAULT_SIGMA = 17.0;
 
+    /**
+     * Kernels by filter size and sigma, shared by all profiles since every assembly region traversal makes new ones
+     */
+    private static final Map<Pair<Integer, Double>, double[]> KERNELS = new ConcurrentHashMap<>();
+
     private final int filterSize;
     private final double sigma;
     private final double[] gaussianKernel;
@@ -62,9 +70,8 @@ public class BandPassActivityProfile extends ActivityProfile {
 
         // setup the Gaussian kernel for the band pass filter
         this.sigma = sigma;
-        final double[] fullKernel = makeKernel(maxFilterSize, sigma);
-        this.filterSize = adaptiveFilterSize ? determineFilterSize(fullKernel, MIN_PROB_TO_KEEP_IN_FILTER) : maxFilterSize;
-        this.gaussianKernel = makeKernel(this.filterSize, sigma);
+        this.filterSize = adaptiveFilterSize ? determineFilterSize(getCachedKernel(maxFilterSize, sigma), MIN_PROB_TO_KEEP_IN_FILTER) : maxFilterSize;
+        this.gaussianKernel = getCachedKernel(this.filterSize, sigma);
     }
 
     protected static int determineFilterSize(final double[] kernel, final double minProbToKeepInFilter) {
@@ -79,6 +86,13 @@ public class BandPassActivityProfile extends ActivityProfile {
         return middle - filterEnd;
     }
 
+    /**
+     * Get the kernel made by {@link #makeKernel}, which is only computed once for each filter size and sigma.  Do not modify returned result
+     */
+    private static double[] getCachedKernel(final int filterSize, final double sigma) {
+        return KERNELS.computeIfAbsent(Pair.of(filterSize, sigma), key -> makeKernel(filterSize, sigma));
+    }
+
     protected static double[] makeKernel(final int filterSize, final double sigma) {
         final int bandSize = 2 * filterSize + 1;
         final double[] kernel = new double[bandSize];
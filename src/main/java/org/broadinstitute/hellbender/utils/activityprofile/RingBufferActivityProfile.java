@@ -0,0 +1,185 @@
+package org.broadinstitute.hellbender.utils.activityprofile;
+
+import htsjdk.samtools.SAMFileHeader;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A band pass filtering activity profile that keeps the probabilities of its states in a ring buffer of doubles
+ *
+ * Produces the same probabilities, and so the same assembly regions, as {@link BandPassActivityProfile}, but
+ * spreads each added state over the band directly in the buffer instead of making a new state for every site of
+ * the band.  {@link ActivityProfileState}s are only made for the states of the regions that are popped off the profile.
+ */
+public final class RingBufferActivityProfile extends BandPassActivityProfile {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * The probabilities of the states of this profile, the first of them at {@code first}.  The length is a power of 2.
+     */
+    private double[] probs = new double[INITIAL_CAPACITY];
+    private int first = 0;
+    private int size = 0;
+
+    /**
+     * Create a new RingBufferActivityProfile with default sigma and filter sizes
+     */
+    public RingBufferActivityProfile(final Set<SimpleInterval> restrictToIntervals,
+                                     final int maxProbPropagationDistance, final double activeProbThreshold,
+                                     final SAMFileHeader samHeader) {
+        this(restrictToIntervals, maxProbPropagationDistance, activeProbThreshold, MAX_FILTER_SIZE, DEFAULT_SIGMA, samHeader);
+    }
+
+    /**
+     * sets adaptiveFilterSize to true
+     */
+    public RingBufferActivityProfile(final Set<SimpleInterval> restrictToIntervals,
+                                     final int maxProbPropagationDistance, final double activeProbThreshold,
+                                     final int maxFilterSize, final double sigma, final SAMFileHeader samHeader) {
+        this(restrictToIntervals, maxProbPropagationDistance, activeProbThreshold, maxFilterSize, sigma, true, samHeader);
+    }
+
+    /**
+     * Create an activity profile that implements a band pass filter on the states
+     *
+     * @see BandPassActivityProfile#BandPassActivityProfile(Set, int, double, int, double, boolean, SAMFileHeader)
+     */
+    public RingBufferActivityProfile(final Set<SimpleInterval> restrictToIntervals, final int maxProbPropagationDistance,
+                                     final double activeProbThreshold, final int maxFilterSize, final double sigma, final boolean adaptiveFilterSize,
+                                     final SAMFileHeader samHeader) {
+        super(restrictToIntervals, maxProbPropagationDistance, activeProbThreshold, maxFilterSize, sigma, adaptiveFilterSize, samHeader);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get the states of this profile
+     * @return a new, ordered list of states, that aren't backed by this profile
+     */
+    @Override
+    protected List<ActivityProfileState> getStateList() {
+        return makeStates(0, size);
+    }
+
+    @Override
+    protected double[] getProbabilitiesAsArray() {
+        final double[] result = new double[size];
+        for ( int i = 0; i < size; i++ ) {
+            result[i] = getProb(i);
+        }
+        return result;
+    }
+
+    /**
+     * Add the next ActivityProfileState to this profile.
+     *
+     * Adds to the probabilities of this profile exactly what {@link BandPassActivityProfile#processState} would, in
+     * the same order.
+     *
+     * @param state a well-formed ActivityProfileState result to incorporate into this profile
+     */
+    @Override
+    public void add(final ActivityProfileState state) {
+        Utils.nonNull(state);
+        extendSpanTo(state.getLoc());
+
+        final int position = state.getLoc().getStart();
+        final double prob = state.isActiveProb();
+
+        // the states for high quality soft clips all have the probability of state, and their band is centered at state
+        int nStates = 1;
+        if ( state.getResultState().equals(ActivityProfileState.Type.HIGH_QUALITY_SOFT_CLIPS) ) {
+            final int numHQClips = Math.min(state.getResultValue().intValue(), getMaxProbPropagationDistance());
+            nStates = Math.min(position + numHQClips, contigLength) - Math.max(position - numHQClips, 1) + 1;
+        }
+
+        final double[] kernel = getKernel();
+        final int filterSize = getFilteredSize();
+        for ( int n = 0; n < nStates; n++ ) {
+            if ( prob > 0.0 ) {
+                for ( int i = -filterSize; i <= filterSize; i++ ) {
+                    final int start = position + i;
+                    if ( start >= 1 && start <= contigLength ) {
+                        incorporateProb(start, prob * kernel[i + filterSize]);
+                    }
+                }
+            } else {
+                incorporateProb(position, prob);
+            }
+        }
+    }
+
+    /**
+     * Add prob to the probability of the state at start, appending a new state if start is right after the last one
+     * and ignoring it if start is before the first one
+     */
+    private void incorporateProb(final int start, final double prob) {
+        final int offset = start - regionStartLoc.getStart();
+        if ( offset > size ) {
+            throw new IllegalArgumentException("Must add state contiguous to existing states: adding " + prob + " at " + start);
+        }
+
+        if ( offset >= 0 ) {
+            if ( offset == size ) {
+                if ( size == probs.length ) {
+                    grow();
+                }
+                probs[index(size++)] = prob;
+            } else {
+                probs[index(offset)] += prob;
+            }
+        }
+    }
+
+    private int index(final int offset) {
+        return (first + offset) & (probs.length - 1);
+    }
+
+    private void grow() {
+        final double[] grown = new double[probs.length * 2];
+        for ( int i = 0; i < size; i++ ) {
+            grown[i] = getProb(i);
+        }
+        probs = grown;
+        first = 0;
+    }
+
+    @Override
+    protected double getProb(final int index) {
+        return probs[index(index)];
+    }
+
+    @Override
+    protected void keepFirstStates(final int n) {
+        size = Math.min(size, n);
+    }
+
+    @Override
+    protected List<ActivityProfileState> removeFirstStates(final int n) {
+        final List<ActivityProfileState> removed = makeStates(0, n);
+        first = index(n);
+        size -= n;
+        return removed;
+    }
+
+    private List<ActivityProfileState> makeStates(final int from, final int to) {
+        final List<ActivityProfileState> states = new ArrayList<>(to - from);
+        for ( int i = from; i < to; i++ ) {
+            final int start = regionStartLoc.getStart() + i;
+            states.add(new ActivityProfileState(new SimpleInterval(regionStartLoc.getContig(), start, start), getProb(i)));
+        }
+        return states;
+    }
+}
@@ -17,6 +17,7 @@ import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.read.ReadUtils;
 
 import java.io.Serializable;
+import java.util.Arrays;
 
 /*
   The topology of the profile HMM:
@@ -142,28 +143,103 @@ public final class BAQ implements Serializable {
     private static final double EM = 0.33333333333;
     private static final double EI = 0.25;
 
-    private final double[][][] EPSILONS = new double[256][256][SAMUtils.MAX_PHRED_SCORE+1];
+    /**
+     * The same code, from 1 to 4, for upper and lower case versions of each of A, C, G and T, and 0 for every other
+     * base, which matches anything with probability 1
+     */
+    private static final int NUM_BASE_CODES = 5;
+    private static final byte[] BASE_CODES = new byte[256];
+    static {
+        final String bases = "ACGT";
+        for ( int i = 0; i < bases.length(); i++ ) {
+            BASE_CODES[bases.charAt(i)] = (byte) (i + 1);
+            BASE_CODES[Character.toLowerCase(bases.charAt(i))] = (byte) (i + 1);
+        }
+    }
 
-    private void initializeCachedData() {
-        for ( int i = 0; i < 256; i++ )
-            for ( int j = 0; j < 256; j++ )
-                for ( int q = 0; q <= SAMUtils.MAX_PHRED_SCORE; q++ ) {
-                    EPSILONS[i][j][q] = 1.0;
-                }
+    /**
+     * Emission probabilities, indexed by base quality, read base code and reference base code, so that each row of
+     * the HMM looks up the probabilities for its base once and then only indexes them by reference base
+     */
+    private final double[][][] EMISSIONS = new double[SAMUtils.MAX_PHRED_SCORE+1][NUM_BASE_CODES][NUM_BASE_CODES];
 
-        for ( char b1 : "ACGTacgt".toCharArray() ) {
-            for ( char b2 : "ACGTacgt".toCharArray() ) {
-                for ( int q = 0; q <= SAMUtils.MAX_PHRED_SCORE; q++ ) {
-                    double qual = qual2prob[q < minBaseQual ? minBaseQual : q];
-                    double e = Character.toLowerCase(b1) == Character.toLowerCase(b2) ? 1 - qual : qual * EM;
-                    EPSILONS[(byte)b1][(byte)b2][q] = e;
+    private void initializeCachedData() {
+        for ( int q = 0; q <= SAMUtils.MAX_PHRED_SCORE; q++ ) {
+            final double qual = qual2prob[q < minBaseQual ? minBaseQual : q];
+            for ( int readCode = 0; readCode < NUM_BASE_CODES; readCode++ ) {
+                for ( int refCode = 0; refCode < NUM_BASE_CODES; refCode++ ) {
+                    EMISSIONS[q][readCode][refCode] = readCode == 0 || refCode == 0 ? 1.0 : (readCode == refCode ? 1 - qual : qual * EM);
                 }
             }
         }
     }
 
     protected double calcEpsilon( byte ref, byte read, byte qualB ) {
-        return EPSILONS[ref][read][qualB];
+        return EMISSIONS[qualB][BASE_CODES[read & 0xff]][BASE_CODES[ref & 0xff]];
+    }
+
+    /**
+     * The matrices of hmm_glocal, kept from one call to the next so that they are allocated only when a read needs
+     * more room than any before it on the same thread.  They don't depend on the parameters of the HMM, so all
+     * instances share them.  Matrices grown past {@link #MAX_RETAINED_CELLS} for an unusually long read are let go
+     * after the call, so that every thread doesn't hold on to room for the longest read it has seen.
+     */
+    private static final ThreadLocal<HMMMatrices> MATRICES = ThreadLocal.withInitial(HMMMatrices::new);
+
+    /**
+     * The most cells of each of f and b, or reference bases, to keep between calls: enough for reads of a few thousand
+     * bases at the default band width
+     */
+    private static final int MAX_RETAINED_CELLS = 1 << 17;
+
+    private static final class HMMMatrices {
+        private double[][] f = new double[0][];
+        private double[][] b = new double[0][];
+        private double[] s = new double[0];
+        private byte[] refCodes = new byte[0];
+        private final double[] m = new double[9];
+        private long numCells = 0;
+
+        /**
+         * Make room for numRows rows of rowLength cells in f and b, all set to 0 as if newly allocated, numRows + 1
+         * scaling factors, and refLength reference bases
+         */
+        private void reset( final int numRows, final int rowLength, final int refLength ) {
+            if ( f.length < numRows ) {
+                f = Arrays.copyOf(f, numRows);
+                b = Arrays.copyOf(b, numRows);
+            }
+            for ( int i = 0; i < numRows; i++ ) {
+                if ( f[i] == null || f[i].length < rowLength ) {
+                    numCells += rowLength - (f[i] == null ? 0 : f[i].length);
+                    f[i] = new double[rowLength];
+                    b[i] = new double[rowLength];
+                } else {
+                    Arrays.fill(f[i], 0, rowLength, 0.0);
+                    Arrays.fill(b[i], 0, rowLength, 0.0);
+                }
+            }
+            // every scaling factor is set before it is used
+            if ( s.length < numRows + 1 ) {
+                s = new double[numRows + 1];
+            }
+            if ( refCodes.length < refLength ) {
+                refCodes = new byte[refLength];
+            }
+        }
+
+        /**
+         * Let go of the matrices if they have grown past {@link #MAX_RETAINED_CELLS}, to be allocated again as needed
+         */
+        private void releaseIfOversized() {
+            if ( numCells > MAX_RETAINED_CELLS || refCodes.length > MAX_RETAINED_CELLS ) {
+                f = new double[0][];
+                b = new double[0][];
+                s = new double[0];
+                refCodes = new byte[0];
+                numCells = 0;
+            }
+        }
     }
 
     // ####################################################################################################
@@ -204,17 +280,23 @@ public final class BAQ implements Serializable {
         //System.out.printf("c->bw = %d, bw = %d, l_ref = %d, l_query = %d\n", cb, bw, l_ref, l_query);
 		bw2 = bw * 2 + 1;
 
-        // allocate the forward and backward matrices f[][] and b[][] and the scaling array s[]
-		double[][] f = new double[l_query+1][bw2*3 + 6];
-		double[][] b = new double[l_query+1][bw2*3 + 6];
-		double[] s = new double[l_query+2];
+        // get the forward and backward matrices f[][] and b[][] and the scaling array s[] of this thread, cleared
+        final HMMMatrices matrices = MATRICES.get();
+        matrices.reset(l_query+1, bw2*3 + 6, l_ref);
+		final double[][] f = matrices.f;
+		final double[][] b = matrices.b;
+		final double[] s = matrices.s;
+
+		// look up the codes of the reference bases once, rather than for every cell of the band
+		final byte[] refCodes = matrices.refCodes;
+		for (k = 0; k < l_ref; ++k) refCodes[k] = BASE_CODES[ref[k] & 0xff];
 
 		// initialize transition probabilities
 		double sM, sI, bM, bI;
 		sM = sI = 1. / (2 * l_query + 2);
         bM = (1 - cd) / l_ref; bI = cd / l_ref; // (bM+bI)*l_ref==1
 
-		double[] m = new double[9];
+		final double[] m = matrices.m;
 		m[0*3+0] = (1 - cd - cd) * (1 - sM); m[0*3+1] = m[0*3+2] = cd * (1 - sM);
 		m[1*3+0] = (1 - ce) * (1 - sI); m[1*3+1] = ce * (1 - sI); m[1*3+2] = 0.;
 		m[2*3+0] = 1 - ce; m[2*3+1] = 0.; m[2*3+2] = ce;
@@ -227,9 +309,10 @@ public final class BAQ implements Serializable {
 			double[] fi = f[1];
 			double sum;
 			int beg = 1, end = l_ref < bw + 1? l_ref : bw + 1, _beg, _end;
+			final double[] e_i = EMISSIONS[_iqual[qstart]][BASE_CODES[query[qstart] & 0xff]];
 			for (k = beg, sum = 0.; k <= end; ++k) {
 				int u;
-                double e = calcEpsilon(ref[k-1], query[qstart], _iqual[qstart]);
+                double e = e_i[refCodes[k-1]];
 				u = set_u(bw, 1, k);
 				fi[u+0] = e * bM; fi[u+1] = EI * bI;
 				sum += fi[u] + fi[u+1];
@@ -245,12 +328,12 @@ public final class BAQ implements Serializable {
 			double[] fi = f[i], fi1 = f[i-1];
 			double sum;
 			int beg = 1, end = l_ref, x, _beg, _end;
-			byte qyi = query[qstart+i-1];
+			final double[] e_i = EMISSIONS[_iqual[qstart+i-1]][BASE_CODES[query[qstart+i-1] & 0xff]];
 			x = i - bw; beg = beg > x? beg : x; // band start
 			x = i + bw; end = end < x? end : x; // band end
 			for (k = beg, sum = 0.; k <= end; ++k) {
 				int u, v11, v01, v10;
-                double e = calcEpsilon(ref[k-1], qyi, _iqual[qstart+i-1]);
+                double e = e_i[refCodes[k-1]];
 				u = set_u(bw, i, k); v11 = set_u(bw, i-1, k-1); v10 = set_u(bw, i-1, k); v01 = set_u(bw, i, k-1);
 				fi[u+0] = e * (m[0] * fi1[v11+0] + m[3] * fi1[v11+1] + m[6] * fi1[v11+2]);
 				fi[u+1] = EI * (m[1] * fi1[v10+0] + m[4] * fi1[v10+1]);
@@ -286,13 +369,13 @@ public final class BAQ implements Serializable {
 			int beg = 1, end = l_ref, x, _beg, _end;
 			double[] bi = b[i], bi1 = b[i+1];
 			double y = (i > 1)? 1. : 0.;
-			byte qyi1 = query[qstart+i];
+			final double[] e_i = EMISSIONS[_iqual[qstart+i]][BASE_CODES[query[qstart+i] & 0xff]];
 			x = i - bw; beg = beg > x? beg : x;
 			x = i + bw; end = end < x? end : x;
 			for (k = end; k >= beg; --k) {
 				int u, v11, v01, v10;
 				u = set_u(bw, i, k); v11 = set_u(bw, i+1, k+1); v10 = set_u(bw, i+1, k); v01 = set_u(bw, i, k+1);
-                final double e = (k >= l_ref? 0 : calcEpsilon(ref[k], qyi1, _iqual[qstart+i])) * bi1[v11];
+                final double e = (k >= l_ref? 0 : e_i[refCodes[k]]) * bi1[v11];
                 bi[u+0] = e * m[0] + EI * m[1] * bi1[v10+1] + m[2] * bi[v01+2]; // bi1[v11] has been folded into e.
 				bi[u+1] = e * m[3] + EI * m[4] * bi1[v10+1];
 				bi[u+2] = (e * m[6] + m[8] * bi[v01+2]) * y;
@@ -306,9 +389,10 @@ public final class BAQ implements Serializable {
 		{ // b[0]
 			int beg = 1, end = l_ref < bw + 1? l_ref : bw + 1;
 			double sum = 0.;
+			final double[] e_i = EMISSIONS[_iqual[qstart]][BASE_CODES[query[qstart] & 0xff]];
 			for (k = end; k >= beg; --k) {
 				int u = set_u(bw, 1, k);
-                double e = calcEpsilon(ref[k-1], query[qstart], _iqual[qstart]);
+                double e = e_i[refCodes[k-1]];
                 if (u < 3 || u >= bw2*3+3) continue;
 				sum += e * b[1][u+0] * bM + EI * b[1][u+1] * bI;
 			}
@@ -338,6 +422,7 @@ public final class BAQ implements Serializable {
 			//System.out.println("("+pb+","+sum+")"+" ("+(i-1)+","+(max_k>>2)+","+(max_k&3)+","+max+")");
 		}
 
+		matrices.releaseIfOversized();
 		return 0;
 	}
 
@@ -0,0 +1,141 @@
+package org.broadinstitute.hellbender.utils.genotyper;
+
+import java.util.Arrays;
+
+/**
+ * Flat array of likelihood values backing a sample in {@link ReadLikelihoods}, either in double or in single precision.
+ *
+ * <p>
+ *     Values are always read and written as doubles, so all arithmetic on them is done in double precision; the single
+ *     precision implementation only rounds them when they are stored. Infinities and NaN are kept as they are and
+ *     log10 likelihoods within the float range lose at most about one part in ten million.
+ * </p>
+ *
+ * <p>
+ *     As long as only one of the implementations is in use in a JVM, calls to these methods are as cheap as
+ *     plain array accesses once compiled.
+ * </p>
+ */
+abstract class LikelihoodArray {
+
+    /**
+     * Creates a new array with all values set to 0.
+     *
+     * @param length the number of values.
+     * @param singlePrecision whether values are stored as floats.
+     */
+    static LikelihoodArray create(final int length, final boolean singlePrecision) {
+        return singlePrecision ? new SinglePrecision(new float[length]) : new DoublePrecision(new double[length]);
+    }
+
+    abstract boolean isSinglePrecision();
+
+    abstract double get(final int index);
+
+    abstract void set(final int index, final double value);
+
+    abstract void fill(final int from, final int to, final double value);
+
+    /**
+     * @return a new array of the same precision with the first {@code length} values of this one, padded with 0s if needed.
+     */
+    abstract LikelihoodArray copyOf(final int length);
+
+    /**
+     * Copies values to another array of the same precision.
+     */
+    abstract void copyTo(final int from, final LikelihoodArray dest, final int destFrom, final int length);
+
+    /**
+     * Copies values to a double array.
+     */
+    abstract void copyTo(final int from, final double[] dest, final int destFrom, final int length);
+
+    private static final class DoublePrecision extends LikelihoodArray {
+        private final double[] values;
+
+        private DoublePrecision(final double[] values) {
+            this.values = values;
+        }
+
+        @Override
+        boolean isSinglePrecision() {
+            return false;
+        }
+
+        @Override
+        double get(final int index) {
+            return values[index];
+        }
+
+        @Override
+        void set(final int index, final double value) {
+            values[index] = value;
+        }
+
+        @Override
+        void fill(final int from, final int to, final double value) {
+            Arrays.fill(values, from, to, value);
+        }
+
+        @Override
+        LikelihoodArray copyOf(final int length) {
+            return new DoublePrecision(Arrays.copyOf(values, length));
+        }
+
+        @Override
+        void copyTo(final int from, final LikelihoodArray dest, final int destFrom, final int length) {
+            System.arraycopy(values, from, ((DoublePrecision) dest).values, destFrom, length);
+        }
+
+        @Override
+        void copyTo(final int from, final double[] dest, final int destFrom, final int length) {
+            System.arraycopy(values, from, dest, destFrom, length);
+        }
+    }
+
+    private static final class SinglePrecision extends LikelihoodArray {
+        private final float[] values;
+
+        private SinglePrecision(final float[] values) {
+            this.values = values;
+        }
+
+        @Override
+        boolean isSinglePrecision() {
+            return true;
+        }
+
+        @Override
+        double get(final int index) {
+            return values[index];
+        }
+
+        @Override
+        void set(final int index, final double value) {
+            values[index] = (float) value;
+        }
+
+        @Override
+        void fill(final int from, final int to, final double value) {
+            Arrays.fill(values, from, to, (float) value);
+        }
+
+        @Override
+        LikelihoodArray copyOf(final int length) {
+            return new SinglePrecision(Arrays.copyOf(values, length));
+        }
+
+        @Override
+        void copyTo(final int from, final LikelihoodArray dest, final int destFrom, final int length) {
+            System.arraycopy(values, from, ((SinglePrecision) dest).values, destFrom, length);
+        }
+
+        @Override
+        void copyTo(final int from, final double[] dest, final int destFrom, final int length) {
+            for (int i = 0; i < length; i++) {
+                dest[destFrom + i] = values[from + i];
+            }
+        }
+    }
+}
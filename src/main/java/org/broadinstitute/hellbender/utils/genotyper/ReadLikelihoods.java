@@ -9,7 +9,6 @@ import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import org.apache.commons.collections.ListUtils;
 import org.apache.commons.math3.stat.descriptive.rank.Median;
 import org.broadinstitute.hellbender.tools.walkers.qc.Pileup;
-import org.broadinstitute.hellbender.utils.IndexRange;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.downsampling.AlleleBiasedDownsamplingUtils;
@@ -43,12 +42,22 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
     protected final GATKRead[][] readsBySampleIndex;
 
     /**
-     * Indexed per sample, allele and finally read (within sample).
+     * Likelihoods per sample, each sample's laid out as a single array, allele after allele.
      * <p>
-     *     valuesBySampleIndex[s][a][r] == lnLk(R_r | A_a) where R_r comes from Sample s.
+     *     valuesBySampleIndex[s].get(a * readCount(s) + r) == lnLk(R_r | A_a) where R_r comes from Sample s and
+     *     readCount(s) is the number of reads of that sample, {@code readsBySampleIndex[s].length}.
      * </p>
+     * <p>
+     *     The array may be longer than {@code alleleCount * readCount(s)}, as removing reads compacts the values in place;
+     *     anything past that length is garbage.
+     * </p>
+     */
+    protected final LikelihoodArray[] valuesBySampleIndex;
+
+    /**
+     * Whether likelihoods are stored in single precision.
      */
-    protected final double[][][] valuesBySampleIndex;
+    private final boolean singlePrecision;
 
     /**
      * Sample list
@@ -93,6 +102,26 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
      */
     private final LikelihoodMatrix<A>[] sampleMatrices;
 
+    /**
+     * Best alleles of each sample's reads, lazily computed (the elements not the array) by {@link #bestAlleles(int)}.
+     *
+     * <p>
+     *     Best alleles are requested by most annotations of a site, so they are searched for once and shared until the
+     *     likelihoods change. {@code null} when nothing is cached.
+     * </p>
+     */
+    private List<BestAllele>[] bestAllelesBySampleIndex;
+
+    /**
+     * Same as {@link #bestAllelesBySampleIndex} but considering only the alleles in {@link #bestAllelesCandidateIndices}.
+     */
+    private List<BestAllele>[] candidateBestAllelesBySampleIndex;
+
+    /**
+     * Sorted indices of the alleles considered in {@link #candidateBestAllelesBySampleIndex}.
+     */
+    private int[] bestAllelesCandidateIndices;
+
     /**
      * Is this container expected to have the per-allele liklihoods calculations filled in.
      */
@@ -100,6 +129,13 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
         return true;
     }
 
+    /**
+     * Whether the likelihoods are stored in single precision.
+     */
+    public boolean isSinglePrecision() {
+        return singlePrecision;
+    }
+
     /**
      * Constructs a new read-likelihood collection.
      *
@@ -116,23 +152,49 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
      * or {@code reads} is {@code null},
      *  or if they contain null values.
      */
-    @SuppressWarnings({"rawtypes", "unchecked"})
     public ReadLikelihoods(final SampleList samples,
                            final AlleleList<A> alleles,
                            final Map<String, List<GATKRead>> reads) {
+        this(samples, alleles, reads, false);
+    }
+
+    /**
+     * Constructs a new read-likelihood collection, possibly storing the likelihoods in single precision.
+     *
+     * <p>
+     *     Single precision halves the memory taken by the likelihoods, which dominates with many haplotypes and deep
+     *     coverage. Likelihoods are still computed in double precision and only rounded when stored, so for
+     *     log10 likelihoods the relative error of each value is below 1e-7.
+     * </p>
+     *
+     * @param samples all supported samples in the collection.
+     * @param alleles all supported alleles in the collection.
+     * @param reads reads stratified per sample.
+     * @param singlePrecision whether to store likelihoods as floats rather than doubles.
+     *
+     * @throws IllegalArgumentException if any of {@code allele}, {@code samples}
+     * or {@code reads} is {@code null},
+     *  or if they contain null values.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public ReadLikelihoods(final SampleList samples,
+                           final AlleleList<A> alleles,
+                           final Map<String, List<GATKRead>> reads,
+                           final boolean singlePrecision) {
         Utils.nonNull(alleles, "allele list cannot be null");
         Utils.nonNull(samples, "sample list cannot be null");
         Utils.nonNull(reads, "read map cannot be null");
 
         this.samples = samples;
         this.alleles = alleles;
+        this.singlePrecision = singlePrecision;
 
         final int sampleCount = samples.numberOfSamples();
         final int alleleCount = alleles.numberOfAlleles();
 
         readsBySampleIndex = new GATKRead[sampleCount][];
         readListBySampleIndex = (List<GATKRead>[])new List[sampleCount];
-        valuesBySampleIndex = new double[sampleCount][][];
+        valuesBySampleIndex = new LikelihoodArray[sampleCount];
         referenceAlleleIndex = findReferenceAllele(alleles);
 
         readIndexBySampleIndex = new Object2IntMap[sampleCount];
@@ -149,9 +211,11 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
                             final SampleList samples,
                             final GATKRead[][] readsBySampleIndex,
                             final Object2IntMap<GATKRead>[] readIndex,
-                            final double[][][] values) {
+                            final LikelihoodArray[] values,
+                            final boolean singlePrecision) {
         this.samples = samples;
         this.alleles = alleles;
+        this.singlePrecision = singlePrecision;
         this.readsBySampleIndex = readsBySampleIndex;
         this.valuesBySampleIndex = values;
         this.readIndexBySampleIndex = readIndex;
@@ -181,8 +245,7 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
                 : reads.toArray(new GATKRead[reads.size()]);
         final int sampleReadCount = readsBySampleIndex[sampleIndex].length;
 
-        final double[][] sampleValues = new double[alleleCount][sampleReadCount];
-        valuesBySampleIndex[sampleIndex] = sampleValues;
+        valuesBySampleIndex[sampleIndex] = LikelihoodArray.create(alleleCount * sampleReadCount, singlePrecision);
     }
 
     /**
@@ -194,7 +257,7 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
         final int sampleCount = samples.numberOfSamples();
         final int alleleCount = alleles.numberOfAlleles();
 
-        final double[][][] newLikelihoodValues = new double[sampleCount][alleleCount][];
+        final LikelihoodArray[] newLikelihoodValues = new LikelihoodArray[sampleCount];
 
         @SuppressWarnings({"unchecked", "rawtypes"})
         final Object2IntMap<GATKRead>[] newReadIndexBySampleIndex = new Object2IntMap[sampleCount];
@@ -202,9 +265,7 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
 
         for (int s = 0; s < sampleCount; s++) {
             newReadsBySampleIndex[s] = readsBySampleIndex[s].clone();
-            for (int a = 0; a < alleleCount; a++) {
-                newLikelihoodValues[s][a] = valuesBySampleIndex[s][a].clone();
-            }
+            newLikelihoodValues[s] = valuesBySampleIndex[s].copyOf(alleleCount * readsBySampleIndex[s].length);
         }
 
         // Finally we create the new read-likelihood
@@ -213,7 +274,8 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
                 samples,
                 newReadsBySampleIndex,
                 newReadIndexBySampleIndex,
-                newLikelihoodValues);
+                newLikelihoodValues,
+                singlePrecision);
     }
 
 
@@ -356,48 +418,51 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
             return;
         }
 
+        invalidateBestAlleles();
         for (int s = 0; s < valuesBySampleIndex.length; s++) {
-            final double[][] sampleValues = valuesBySampleIndex[s];
+            final LikelihoodArray sampleValues = valuesBySampleIndex[s];
             final int readCount = readsBySampleIndex[s].length;
             for (int r = 0; r < readCount; r++) {
-                normalizeLikelihoodsPerRead(bestToZero, maximumLikelihoodDifferenceCap, sampleValues, s, r);
+                normalizeLikelihoodsPerRead(bestToZero, maximumLikelihoodDifferenceCap, sampleValues, readCount, s, r);
             }
         }
     }
 
     // Does the normalizeLikelihoods job for each read.
     private void normalizeLikelihoodsPerRead(final boolean bestToZero, final double maximumBestAltLikelihoodDifference,
-                                             final double[][] sampleValues, final int sampleIndex, final int readIndex) {
+                                             final LikelihoodArray sampleValues, final int readCount, final int sampleIndex, final int readIndex) {
 
         final BestAllele bestAlternativeAllele = searchBestAllele(sampleIndex,readIndex,false);
 
         final double worstLikelihoodCap = bestAlternativeAllele.likelihood + maximumBestAltLikelihoodDifference;
 
         final double referenceLikelihood = referenceAlleleIndex == MISSING_REF ? Double.NEGATIVE_INFINITY :
-                sampleValues[referenceAlleleIndex][readIndex];
+                sampleValues.get(referenceAlleleIndex * readCount + readIndex);
 
         final double bestAbsoluteLikelihood = Math.max(bestAlternativeAllele.likelihood, referenceLikelihood);
 
         final int alleleCount = alleles.numberOfAlleles();
+        final int end = alleleCount * readCount;
         if (bestToZero) {
             if (bestAbsoluteLikelihood == Double.NEGATIVE_INFINITY) {
-                for (int a = 0; a < alleleCount; a++) {
-                    sampleValues[a][readIndex] = 0;
+                for (int i = readIndex; i < end; i += readCount) {
+                    sampleValues.set(i, 0);
                 }
             } else if (worstLikelihoodCap != Double.NEGATIVE_INFINITY) {
-                for (int a = 0; a < alleleCount; a++) {
-                    sampleValues[a][readIndex] = (sampleValues[a][readIndex] < worstLikelihoodCap ? worstLikelihoodCap : sampleValues[a][readIndex]) - bestAbsoluteLikelihood;
+                for (int i = readIndex; i < end; i += readCount) {
+                    final double value = sampleValues.get(i);
+                    sampleValues.set(i, (value < worstLikelihoodCap ? worstLikelihoodCap : value) - bestAbsoluteLikelihood);
                 }
             } else {
-                for (int a = 0; a < alleleCount; a++) {
-                    sampleValues[a][readIndex] -= bestAbsoluteLikelihood;
+                for (int i = readIndex; i < end; i += readCount) {
+                    sampleValues.set(i, sampleValues.get(i) - bestAbsoluteLikelihood);
                 }
             }
         } else {
             // Guarantee to be the case by enclosing code.
-            for (int a = 0; a < alleleCount; a++) {
-                if (sampleValues[a][readIndex] < worstLikelihoodCap) {
-                    sampleValues[a][readIndex] = worstLikelihoodCap;
+            for (int i = readIndex; i < end; i += readCount) {
+                if (sampleValues.get(i) < worstLikelihoodCap) {
+                    sampleValues.set(i, worstLikelihoodCap);
                 }
             }
         }
@@ -452,16 +517,51 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
             return new BestAllele(sampleIndex, readIndex, -1, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY);
         }
 
-        final double[][] sampleValues = valuesBySampleIndex[sampleIndex];
+        final LikelihoodArray sampleValues = valuesBySampleIndex[sampleIndex];
+        final int readCount = readsBySampleIndex[sampleIndex].length;
         int bestAlleleIndex = canBeReference || referenceAlleleIndex != 0 ? 0 : 1;
 
-        double bestLikelihood = sampleValues[bestAlleleIndex][readIndex];
+        double bestLikelihood = sampleValues.get(bestAlleleIndex * readCount + readIndex);
         double secondBestLikelihood = Double.NEGATIVE_INFINITY;
         for (int a = bestAlleleIndex + 1; a < alleleCount; a++) {
             if (!canBeReference && referenceAlleleIndex == a) {
                 continue;
             }
-            final double candidateLikelihood = sampleValues[a][readIndex];
+            final double candidateLikelihood = sampleValues.get(a * readCount + readIndex);
+            if (candidateLikelihood > bestLikelihood) {
+                bestAlleleIndex = a;
+                secondBestLikelihood = bestLikelihood;
+                bestLikelihood = candidateLikelihood;
+            } else if (candidateLikelihood > secondBestLikelihood) {
+                secondBestLikelihood = candidateLikelihood;
+            }
+        }
+        return new BestAllele(sampleIndex,readIndex,bestAlleleIndex,bestLikelihood,secondBestLikelihood);
+    }
+
+    /**
+     * Search the best allele for a read among some of the alleles.
+     *
+     * @param sampleIndex including sample index.
+     * @param readIndex  target read index.
+     * @param candidateAlleleIndices indices of the alleles to consider, in increasing order.
+     *
+     * @return never {@code null}, but with {@link BestAllele#allele allele} == {@code null}
+     * if there is no candidate allele.
+     */
+    private BestAllele searchBestAllele(final int sampleIndex, final int readIndex, final int[] candidateAlleleIndices) {
+        if (candidateAlleleIndices.length == 0) {
+            return new BestAllele(sampleIndex, readIndex, -1, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY);
+        }
+
+        final LikelihoodArray sampleValues = valuesBySampleIndex[sampleIndex];
+        final int readCount = readsBySampleIndex[sampleIndex].length;
+        int bestAlleleIndex = candidateAlleleIndices[0];
+        double bestLikelihood = sampleValues.get(bestAlleleIndex * readCount + readIndex);
+        double secondBestLikelihood = Double.NEGATIVE_INFINITY;
+        for (int i = 1; i < candidateAlleleIndices.length; i++) {
+            final int a = candidateAlleleIndices[i];
+            final double candidateLikelihood = sampleValues.get(a * readCount + readIndex);
             if (candidateLikelihood > bestLikelihood) {
                 bestAlleleIndex = a;
                 secondBestLikelihood = bestLikelihood;
@@ -474,6 +574,7 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
     }
 
     public void changeReads(final Map<GATKRead, GATKRead> readRealignments) {
+        invalidateBestAlleles();
         final int sampleCount = samples.numberOfSamples();
         for (int s = 0; s < sampleCount; s++) {
             final GATKRead[] sampleReads = readsBySampleIndex[s];
@@ -528,6 +629,7 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
         @SuppressWarnings("unchecked")
         final List<A> newAlleles = ListUtils.union(alleles.asListOfAlleles(), allelesToAdd);
         alleles = new IndexedAlleleList<>(newAlleles);
+        invalidateBestAlleles();
 
         // if we previously had no reference allele, update the reference index if a reference allele is added
         // if we previously had a reference and try to add another, throw an exception
@@ -542,14 +644,10 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
         //copy old allele likelihoods and set new allele likelihoods to the default value
         for (int s = 0; s < samples.numberOfSamples(); s++) {
             final int sampleReadCount = readsBySampleIndex[s].length;
-            final double[][] newValuesBySampleIndex = Arrays.copyOf(valuesBySampleIndex[s], newAlleleCount);
-            for (int a = oldAlleleCount; a < newAlleleCount; a++) {
-                newValuesBySampleIndex[a] = new double[sampleReadCount];
-                if (defaultLikelihood != 0.0) {
-                    Arrays.fill(newValuesBySampleIndex[a], defaultLikelihood);
-                }
-            }
-            valuesBySampleIndex[s] = newValuesBySampleIndex;
+            final LikelihoodArray newSampleValues = valuesBySampleIndex[s].copyOf(newAlleleCount * sampleReadCount);
+            // the copy may have brought along garbage from past the old end of the values, so we always fill.
+            newSampleValues.fill(oldAlleleCount * sampleReadCount, newAlleleCount * sampleReadCount, defaultLikelihood);
+            valuesBySampleIndex[s] = newSampleValues;
         }
         return true;
     }
@@ -580,7 +678,7 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
         final int[] oldToNewAlleleIndexMap = oldToNewAlleleIndexMap(newToOldAlleleMap, oldAlleleCount, newAlleles);
 
         // We calculate the marginal likelihoods.
-        final double[][][] newLikelihoodValues = marginalLikelihoods(oldAlleleCount, newAlleleCount, oldToNewAlleleIndexMap, null);
+        final LikelihoodArray[] newLikelihoodValues = marginalLikelihoods(oldAlleleCount, newAlleleCount, oldToNewAlleleIndexMap, null);
 
         final int sampleCount = samples.numberOfSamples();
 
@@ -596,7 +694,7 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
                 new IndexedAlleleList(newAlleles),
                 samples,
                 newReadsBySampleIndex,
-                newReadIndexBySampleIndex, newLikelihoodValues);
+                newReadIndexBySampleIndex, newLikelihoodValues, singlePrecision);
     }
 
 
@@ -634,7 +732,7 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
         final int[][] readsToKeep = overlappingReadIndicesBySampleIndex(overlap);
         // We calculate the marginal likelihoods.
 
-        final double[][][] newLikelihoodValues = marginalLikelihoods(oldAlleleCount, newAlleleCount, oldToNewAlleleIndexMap, readsToKeep);
+        final LikelihoodArray[] newLikelihoodValues = marginalLikelihoods(oldAlleleCount, newAlleleCount, oldToNewAlleleIndexMap, readsToKeep);
 
         final int sampleCount = samples.numberOfSamples();
 
@@ -660,7 +758,7 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
         // Finally we create the new read-likelihood
         return new ReadLikelihoods<>(new IndexedAlleleList<>(newAlleles), samples,
                 newReadsBySampleIndex,
-                newReadIndexBySampleIndex, newLikelihoodValues);
+                newReadIndexBySampleIndex, newLikelihoodValues, singlePrecision);
     }
 
     private int[][] overlappingReadIndicesBySampleIndex(final Locatable overlap) {
@@ -709,32 +807,32 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
     }
 
     // Calculate the marginal likelihoods considering the old -> new allele index mapping.
-    private double[][][] marginalLikelihoods(final int oldAlleleCount, final int newAlleleCount, final int[] oldToNewAlleleIndexMap, final int[][] readsToKeep) {
+    private LikelihoodArray[] marginalLikelihoods(final int oldAlleleCount, final int newAlleleCount, final int[] oldToNewAlleleIndexMap, final int[][] readsToKeep) {
 
         final int sampleCount = samples.numberOfSamples();
-        final double[][][] result = new double[sampleCount][][];
+        final LikelihoodArray[] result = new LikelihoodArray[sampleCount];
 
         for (int s = 0; s < sampleCount; s++) {
             final int sampleReadCount = readsBySampleIndex[s].length;
-            final double[][] oldSampleValues = valuesBySampleIndex[s];
+            final LikelihoodArray oldSampleValues = valuesBySampleIndex[s];
             final int[] sampleReadToKeep = readsToKeep == null || readsToKeep[s].length == sampleReadCount ? null : readsToKeep[s];
             final int newSampleReadCount = sampleReadToKeep == null ? sampleReadCount : sampleReadToKeep.length;
-            final double[][] newSampleValues = result[s] = new double[newAlleleCount][newSampleReadCount];
+            final LikelihoodArray newSampleValues = result[s] = LikelihoodArray.create(newAlleleCount * newSampleReadCount, singlePrecision);
             // We initiate all likelihoods to -Inf.
-            for (int a = 0; a < newAlleleCount; a++) {
-                Arrays.fill(newSampleValues[a], Double.NEGATIVE_INFINITY);
-            }
-            // For each old allele and read we update the new table keeping the maximum likelihood.
-            for (int r = 0; r < newSampleReadCount; r++) {
-                for (int a = 0; a < oldAlleleCount; a++) {
-                    final int oldReadIndex = newSampleReadCount == sampleReadCount ? r : sampleReadToKeep[r];
-                    final int newAlleleIndex = oldToNewAlleleIndexMap[a];
-                    if (newAlleleIndex == -1) {
-                        continue;
-                    }
-                    final double likelihood = oldSampleValues[a][oldReadIndex];
-                    if (likelihood > newSampleValues[newAlleleIndex][r]) {
-                        newSampleValues[newAlleleIndex][r] = likelihood;
+            newSampleValues.fill(0, newAlleleCount * newSampleReadCount, Double.NEGATIVE_INFINITY);
+            // For each old allele and read we update the new table keeping the maximum likelihood; we go
+            // allele by allele so that both the old and new values are read sequentially.
+            for (int a = 0; a < oldAlleleCount; a++) {
+                final int newAlleleIndex = oldToNewAlleleIndexMap[a];
+                if (newAlleleIndex == -1) {
+                    continue;
+                }
+                final int oldOffset = a * sampleReadCount;
+                final int newOffset = newAlleleIndex * newSampleReadCount;
+                for (int r = 0; r < newSampleReadCount; r++) {
+                    final double likelihood = oldSampleValues.get(oldOffset + (sampleReadToKeep == null ? r : sampleReadToKeep[r]));
+                    if (likelihood > newSampleValues.get(newOffset + r)) {
+                        newSampleValues.set(newOffset + r, likelihood);
                     }
                 }
             }
@@ -785,12 +883,19 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
         Utils.validateArg(alleles.numberOfAlleles() > 0, "unsupported for read-likelihood collections with no alleles");
         Utils.validateArg(!Double.isNaN(maximumErrorPerBase) && maximumErrorPerBase > 0.0, "the maximum error per base must be a positive number");
 
-        new IndexRange(0, samples.numberOfSamples()).forEach(s -> {
+        final int sampleCount = samples.numberOfSamples();
+        for (int s = 0; s < sampleCount; s++) {
             final GATKRead[] sampleReads = readsBySampleIndex[s];
-            final List<Integer> removeIndices = new IndexRange(0, sampleReads.length)
-                    .filter(r -> readIsPoorlyModelled(s, r, sampleReads[r], maximumErrorPerBase));
-            removeSampleReads(s, removeIndices, alleles.numberOfAlleles());
-        });
+            final boolean[] removeIndex = new boolean[sampleReads.length];
+            int removeCount = 0;
+            for (int r = 0; r < sampleReads.length; r++) {
+                if (readIsPoorlyModelled(s, r, sampleReads[r], maximumErrorPerBase)) {
+                    removeIndex[r] = true;
+                    removeCount++;
+                }
+            }
+            removeSampleReads(s, removeIndex, removeCount);
+        }
 
     }
 
@@ -800,9 +905,10 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
         final double log10MaxLikelihoodForTrueAllele = maxErrorsForRead * log10QualPerBase;
 
         final int alleleCount = alleles.numberOfAlleles();
-        final double[][] sampleValues = valuesBySampleIndex[sampleIndex];
+        final LikelihoodArray sampleValues = valuesBySampleIndex[sampleIndex];
+        final int readCount = readsBySampleIndex[sampleIndex].length;
         for (int a = 0; a < alleleCount; a++) {
-            if (sampleValues[a][readIndex] >= log10MaxLikelihoodForTrueAllele) {
+            if (sampleValues.get(a * readCount + readIndex) >= log10MaxLikelihoodForTrueAllele) {
                 return false;
             }
         }
@@ -837,24 +943,24 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
             final int sampleReadCount = readsBySampleIndex[sampleIndex].length;
             final int newSampleReadCount = sampleReadCount + newSampleReads.size();
 
-            appendReads(newSampleReads, sampleIndex, sampleReadCount, newSampleReadCount);
+            invalidateBestAlleles();
             extendsLikelihoodArrays(initialLikelihood, sampleIndex, sampleReadCount, newSampleReadCount);
+            appendReads(newSampleReads, sampleIndex, sampleReadCount, newSampleReadCount);
         }
     }
 
-    // Extends the likelihood arrays-matrices.
+    // Extends the likelihood arrays-matrices; the read count changes so the values need to be laid out anew.
     private void extendsLikelihoodArrays(final double initialLikelihood, final int sampleIndex, final int sampleReadCount, final int newSampleReadCount) {
-        final double[][] sampleValues = valuesBySampleIndex[sampleIndex];
+        final LikelihoodArray sampleValues = valuesBySampleIndex[sampleIndex];
         final int alleleCount = alleles.numberOfAlleles();
+        final LikelihoodArray newSampleValues = LikelihoodArray.create(alleleCount * newSampleReadCount, singlePrecision);
         for (int a = 0; a < alleleCount; a++) {
-            sampleValues[a] = Arrays.copyOf(sampleValues[a], newSampleReadCount);
-        }
-        if (initialLikelihood != 0.0) // the default array new value.
-        {
-            for (int a = 0; a < alleleCount; a++) {
-                Arrays.fill(sampleValues[a], sampleReadCount, newSampleReadCount, initialLikelihood);
+            sampleValues.copyTo(a * sampleReadCount, newSampleValues, a * newSampleReadCount, sampleReadCount);
+            if (initialLikelihood != 0.0) { // the default array new value.
+                newSampleValues.fill(a * newSampleReadCount + sampleReadCount, (a + 1) * newSampleReadCount, initialLikelihood);
             }
         }
+        valuesBySampleIndex[sampleIndex] = newSampleValues;
     }
 
     // Append the new read reference into the structure per-sample.
@@ -926,19 +1032,20 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
         if ( nonRefAlleleIndex < 0) {
             return;
         }
+        invalidateBestAlleles();
         final int alleleCount = alleles.numberOfAlleles();
         final int nonSymbolicAlleleCount = alleleCount - 1;
         // likelihood buffer reused across reads:
         final double[] qualifiedAlleleLikelihoods = new double[nonSymbolicAlleleCount];
         final Median medianCalculator = new Median();
         for (int s = 0; s < samples.numberOfSamples(); s++) {
-            final double[][] sampleValues = valuesBySampleIndex[s];
-            final int readCount = sampleValues[0].length;
+            final LikelihoodArray sampleValues = valuesBySampleIndex[s];
+            final int readCount = readsBySampleIndex[s].length;
             for (int r = 0; r < readCount; r++) {
                 final BestAllele bestAllele = searchBestAllele(s, r, true);
                 int numberOfQualifiedAlleleLikelihoods = 0;
                 for (int i = 0; i < alleleCount; i++) {
-                    final double alleleLikelihood = sampleValues[i][r];
+                    final double alleleLikelihood = sampleValues.get(i * readCount + r);
                     if (i != nonRefAlleleIndex && alleleLikelihood < bestAllele.likelihood
                             && !Double.isNaN(alleleLikelihood) && allelesToConsider.indexOfAllele(alleles.getAllele(i)) != -1) {
                         qualifiedAlleleLikelihoods[numberOfQualifiedAlleleLikelihoods++] = alleleLikelihood;
@@ -949,8 +1056,8 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
                 // so the read is not informative at all given the existing alleles. Unless there is only one (or zero) concrete
                 // alleles with give the same (the best) likelihood to the NON-REF. When there is only one (or zero) concrete
                 // alleles we set the NON-REF likelihood to NaN.
-                sampleValues[nonRefAlleleIndex][r] = !Double.isNaN(nonRefLikelihood) ? nonRefLikelihood
-                        : nonSymbolicAlleleCount <= 1 ? Double.NaN : bestAllele.likelihood;
+                sampleValues.set(nonRefAlleleIndex * readCount + r, !Double.isNaN(nonRefLikelihood) ? nonRefLikelihood
+                        : nonSymbolicAlleleCount <= 1 ? Double.NaN : bestAllele.likelihood);
             }
         }
     }
@@ -980,8 +1087,10 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
                 continue;
             }
             if (fraction >= 1.0) {
-                final List<Integer> removeIndices = IntStream.range(0, readsBySampleIndex[s].length).boxed().collect(Collectors.toList());
-                removeSampleReads(s, removeIndices, alleleCount);
+                final int sampleReadCount = readsBySampleIndex[s].length;
+                final boolean[] removeIndex = new boolean[sampleReadCount];
+                Arrays.fill(removeIndex, true);
+                removeSampleReads(s, removeIndex, sampleReadCount);
             } else {
                 final Map<A,List<GATKRead>> readsByBestAllelesMap = readsByBestAlleleMap(s);
                 removeSampleReads(s, AlleleBiasedDownsamplingUtils.selectAlleleBiasedReads(readsByBestAllelesMap, fraction),alleleCount);
@@ -1005,31 +1114,93 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
      *
      * @throws IllegalStateException if there is no alleles.
      *
-     * @return never {@code null}, one element per read in the read-likelihoods collection.
+     * @return never {@code null}, one element per read in the read-likelihoods collection; it cannot be modified.
      */
     public Collection<BestAllele> bestAlleles(final String sample) {
         final int sampleIndex = indexOfSample(sample);
         return bestAlleles(sampleIndex);
     }
 
+    /**
+     * Returns the collection of best allele estimates for one sample's reads considering only some of the alleles.
+     *
+     * <p>
+     *     The informative best alleles are the same as those from {@link #bestAlleles(String)} on these likelihoods
+     *     marginalized to {@code candidateAlleles}, each allele mapping to itself, but without copying the likelihoods and
+     *     sharing the search across calls with the same candidates.
+     * </p>
+     *
+     * @param sample the sample.
+     * @param candidateAlleles alleles to consider, all in this collection.
+     *
+     * @throws IllegalArgumentException if any of {@code candidateAlleles} is not in this collection.
+     *
+     * @return never {@code null}, one element per read of the sample; it cannot be modified.
+     */
+    public Collection<BestAllele> bestAlleles(final String sample, final Collection<A> candidateAlleles) {
+        Utils.nonNull(candidateAlleles, "the candidate alleles cannot be null");
+        final int sampleIndex = indexOfSample(sample);
+        Utils.validIndex(sampleIndex, numberOfSamples());
+        final int[] candidateAlleleIndices = candidateAlleles.stream().mapToInt(allele -> {
+            final int alleleIndex = indexOfAllele(allele);
+            Utils.validateArg(alleleIndex >= 0, () -> "the candidate allele " + allele + " is not in the read-likelihoods collection");
+            return alleleIndex;
+        }).sorted().distinct().toArray();
+        if (candidateAlleleIndices.length == numberOfAlleles()) {
+            return bestAlleles(sampleIndex);
+        }
+
+        if (candidateBestAllelesBySampleIndex == null || !Arrays.equals(bestAllelesCandidateIndices, candidateAlleleIndices)) {
+            candidateBestAllelesBySampleIndex = newBestAllelesArray();
+            bestAllelesCandidateIndices = candidateAlleleIndices;
+        }
+        if (candidateBestAllelesBySampleIndex[sampleIndex] == null) {
+            final int readCount = readsBySampleIndex[sampleIndex].length;
+            final List<BestAllele> result = new ArrayList<>(readCount);
+            for (int r = 0; r < readCount; r++) {
+                result.add(searchBestAllele(sampleIndex, r, candidateAlleleIndices));
+            }
+            candidateBestAllelesBySampleIndex[sampleIndex] = Collections.unmodifiableList(result);
+        }
+        return candidateBestAllelesBySampleIndex[sampleIndex];
+    }
+
     /**
      * Returns the collection of best allele estimates for one sample's reads reads based on the read-likelihoods.
      *
      * @throws IllegalStateException if there is no alleles.
      *
-     * @return never {@code null}, one element per read in the read-likelihoods collection.
+     * @return never {@code null}, one element per read in the read-likelihoods collection; it cannot be modified.
      */
-    private Collection<BestAllele> bestAlleles(final int sampleIndex) {
+    private List<BestAllele> bestAlleles(final int sampleIndex) {
         Utils.validIndex(sampleIndex, numberOfSamples());
 
-        final GATKRead[] sampleReads = readsBySampleIndex[sampleIndex];
-        final int readCount = sampleReads.length;
-        final List<BestAllele> result = new ArrayList<>(readCount);
-        for (int r = 0; r < readCount; r++) {
-            result.add(searchBestAllele(sampleIndex, r, true));
+        if (bestAllelesBySampleIndex == null) {
+            bestAllelesBySampleIndex = newBestAllelesArray();
+        }
+        if (bestAllelesBySampleIndex[sampleIndex] == null) {
+            final int readCount = readsBySampleIndex[sampleIndex].length;
+            final List<BestAllele> result = new ArrayList<>(readCount);
+            for (int r = 0; r < readCount; r++) {
+                result.add(searchBestAllele(sampleIndex, r, true));
+            }
+            bestAllelesBySampleIndex[sampleIndex] = Collections.unmodifiableList(result);
         }
+        return bestAllelesBySampleIndex[sampleIndex];
+    }
 
-        return result;
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<BestAllele>[] newBestAllelesArray() {
+        return new List[numberOfSamples()];
+    }
+
+    /**
+     * Drops the cached best alleles; to be called before any change to the alleles, reads or likelihoods.
+     */
+    private void invalidateBestAlleles() {
+        bestAllelesBySampleIndex = null;
+        candidateBestAllelesBySampleIndex = null;
+        bestAllelesCandidateIndices = null;
     }
 
 
@@ -1144,12 +1315,17 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
         final int locStart = location.getStart();
         final int locEnd = location.getEnd();
 
-        final int alleleCount = alleles.numberOfAlleles();
         for (int s = 0; s < sampleCount; s++) {
             final GATKRead[] sampleReads = readsBySampleIndex[s];
-            final List<Integer> removeIndices = new IndexRange(0, sampleReads.length)
-                    .filter(r -> !unclippedReadOverlapsRegion(sampleReads[r], locContig, locStart, locEnd));
-            removeSampleReads(s, removeIndices, alleleCount);
+            final boolean[] removeIndex = new boolean[sampleReads.length];
+            int removeCount = 0;
+            for (int r = 0; r < sampleReads.length; r++) {
+                if (!unclippedReadOverlapsRegion(sampleReads[r], locContig, locStart, locEnd)) {
+                    removeIndex[r] = true;
+                    removeCount++;
+                }
+            }
+            removeSampleReads(s, removeIndex, removeCount);
         }
     }
 
@@ -1199,39 +1375,51 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
         }
     }
 
-    private void removeSampleReads(final int sampleIndex, final List<Integer> removeIndices, final int alleleCount) {
-        if (removeIndices.isEmpty()) {
+    /**
+     * Removes the reads of a sample flagged in {@code removeIndex}.
+     *
+     * <p>
+     *     The likelihoods are compacted in place: the flat layout only ever moves values to lower positions when the
+     *     read count shrinks, so no new value array is needed.
+     * </p>
+     */
+    private void removeSampleReads(final int sampleIndex, final boolean[] removeIndex, final int removeCount) {
+        if (removeCount == 0) {
             return;
         }
+        invalidateBestAlleles();
 
-        final GATKRead[] sampleReads = readsBySampleIndex[sampleIndex];
-        final int sampleReadCount = sampleReads.length;
+        final GATKRead[] oldSampleReads = readsBySampleIndex[sampleIndex];
+        final int sampleReadCount = oldSampleReads.length;
+        final int newSampleReadCount = sampleReadCount - removeCount;
 
         final Object2IntMap<GATKRead> indexByRead = readIndexBySampleIndex[sampleIndex];
-        if (indexByRead != null) {
-            removeIndices.stream().forEach(n -> indexByRead.remove(sampleReads[n]));
-        }
-        final boolean[] removeIndex = new boolean[sampleReadCount];
-        final int firstDeleted = removeIndices.get(0);
-        removeIndices.stream().forEach(n -> removeIndex[n] = true);
-
-        final int newSampleReadCount = sampleReadCount - removeIndices.size();
-
-        // Now we skim out the removed reads from the read array.
-        final GATKRead[] oldSampleReads = readsBySampleIndex[sampleIndex];
         final GATKRead[] newSampleReads = new GATKRead[newSampleReadCount];
+        for (int r = 0, n = 0; r < sampleReadCount; r++) {
+            if (removeIndex[r]) {
+                if (indexByRead != null) {
+                    indexByRead.remove(oldSampleReads[r]);
+                }
+            } else {
+                if (indexByRead != null && n != r) {
+                    indexByRead.put(oldSampleReads[r], n);
+                }
+                newSampleReads[n++] = oldSampleReads[r];
+            }
+        }
 
-        System.arraycopy(oldSampleReads, 0, newSampleReads, 0, firstDeleted);
-        Utils.skimArray(oldSampleReads,firstDeleted, newSampleReads, firstDeleted, removeIndex, firstDeleted);
-
-        // Then we skim out the likelihoods of the removed reads.
-        final double[][] oldSampleValues = valuesBySampleIndex[sampleIndex];
-        final double[][] newSampleValues = new double[alleleCount][newSampleReadCount];
+        // Then we skim out the likelihoods of the removed reads; the write position never overtakes the read position.
+        final LikelihoodArray sampleValues = valuesBySampleIndex[sampleIndex];
+        final int alleleCount = alleles.numberOfAlleles();
+        int n = 0;
         for (int a = 0; a < alleleCount; a++) {
-            System.arraycopy(oldSampleValues[a], 0, newSampleValues[a], 0, firstDeleted);
-            Utils.skimArray(oldSampleValues[a], firstDeleted, newSampleValues[a], firstDeleted, removeIndex, firstDeleted);
+            final int offset = a * sampleReadCount;
+            for (int r = 0; r < sampleReadCount; r++) {
+                if (!removeIndex[r]) {
+                    sampleValues.set(n++, sampleValues.get(offset + r));
+                }
+            }
         }
-        valuesBySampleIndex[sampleIndex] = newSampleValues;
         readsBySampleIndex[sampleIndex] = newSampleReads;
         readListBySampleIndex[sampleIndex] = null; // reset the unmodifiable list.
     }
@@ -1239,59 +1427,27 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
 
     // Requires that the collection passed iterator can remove elements, and it can be modified.
     public void removeSampleReads(final int sampleIndex, final Collection<GATKRead> readsToRemove, final int alleleCount) {
-        final GATKRead[] sampleReads = readsBySampleIndex[sampleIndex];
-        final int sampleReadCount = sampleReads.length;
+        final int sampleReadCount = readsBySampleIndex[sampleIndex].length;
 
         final Object2IntMap<GATKRead> indexByRead = readIndexBySampleIndex(sampleIndex);
-        // Count how many we are going to remove, which ones (indexes) and remove entry from the read-index map.
+        // Count how many we are going to remove and which ones (indexes).
         final boolean[] removeIndex = new boolean[sampleReadCount];
         int removeCount = 0; // captures the number of deletions.
-        int firstDeleted = sampleReadCount;    // captures the first position that was deleted.
 
         final Iterator<GATKRead> readsToRemoveIterator = readsToRemove.iterator();
         while (readsToRemoveIterator.hasNext()) {
             final GATKRead read = readsToRemoveIterator.next();
             if (indexByRead.containsKey(read)) {
                 final int index = indexByRead.getInt(read);
-                if (firstDeleted > index) {
-                    firstDeleted = index;
+                if (!removeIndex[index]) {
+                    removeCount++;
+                    removeIndex[index] = true;
                 }
-                removeCount++;
-                removeIndex[index] = true;
                 readsToRemoveIterator.remove();
-                indexByRead.remove(read);
             }
         }
 
-        // Nothing to remove we just finish here.
-        if (removeCount == 0) {
-            return;
-        }
-
-        final int newSampleReadCount = sampleReadCount - removeCount;
-
-        // Now we skim out the removed reads from the read array.
-        final GATKRead[] oldSampleReads = readsBySampleIndex[sampleIndex];
-        final GATKRead[] newSampleReads = new GATKRead[newSampleReadCount];
-
-        System.arraycopy(oldSampleReads,0,newSampleReads,0,firstDeleted);
-        Utils.skimArray(oldSampleReads,firstDeleted, newSampleReads, firstDeleted, removeIndex, firstDeleted);
-
-        // Update the indices for the extant reads from the first deletion onwards.
-        for (int r = firstDeleted; r < newSampleReadCount; r++) {
-            indexByRead.put(newSampleReads[r], r);
-        }
-
-        // Then we skim out the likelihoods of the removed reads.
-        final double[][] oldSampleValues = valuesBySampleIndex[sampleIndex];
-        final double[][] newSampleValues = new double[alleleCount][newSampleReadCount];
-        for (int a = 0; a < alleleCount; a++) {
-            System.arraycopy(oldSampleValues[a],0,newSampleValues[a],0,firstDeleted);
-            Utils.skimArray(oldSampleValues[a], firstDeleted, newSampleValues[a], firstDeleted, removeIndex, firstDeleted);
-        }
-        valuesBySampleIndex[sampleIndex] = newSampleValues;
-        readsBySampleIndex[sampleIndex] = newSampleReads;
-        readListBySampleIndex[sampleIndex] = null; // reset the unmodifiable list.
+        removeSampleReads(sampleIndex, removeIndex, removeCount);
     }
 
 
@@ -1342,16 +1498,17 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
 
         @Override
         public void set(final int alleleIndex, final int readIndex, final double value) {
-            Utils.validIndex(alleleIndex, valuesBySampleIndex[sampleIndex].length);
-            Utils.validIndex(readIndex, valuesBySampleIndex[sampleIndex][alleleIndex].length);
-            valuesBySampleIndex[sampleIndex][alleleIndex][readIndex] = value;
+            Utils.validIndex(alleleIndex, numberOfAlleles());
+            Utils.validIndex(readIndex, numberOfReads());
+            invalidateBestAlleles();
+            valuesBySampleIndex[sampleIndex].set(alleleIndex * numberOfReads() + readIndex, value);
         }
 
         @Override
         public double get(final int alleleIndex, final int readIndex) {
-            Utils.validIndex(alleleIndex, valuesBySampleIndex[sampleIndex].length);
-            Utils.validIndex(readIndex, valuesBySampleIndex[sampleIndex][alleleIndex].length);
-            return valuesBySampleIndex[sampleIndex][alleleIndex][readIndex];
+            Utils.validIndex(alleleIndex, numberOfAlleles());
+            Utils.validIndex(readIndex, numberOfReads());
+            return valuesBySampleIndex[sampleIndex].get(alleleIndex * numberOfReads() + readIndex);
         }
 
         @Override
@@ -1391,8 +1548,8 @@ public class ReadLikelihoods<A extends Allele> implements SampleList, AlleleList
         @Override
         public void copyAlleleLikelihoods(final int alleleIndex, final double[] dest, final int offset) {
             Utils.nonNull(dest);
-            Utils.validIndex(alleleIndex, valuesBySampleIndex[sampleIndex].length);
-            System.arraycopy(valuesBySampleIndex[sampleIndex][alleleIndex], 0, dest, offset, numberOfReads());
+            Utils.validIndex(alleleIndex, numberOfAlleles());
+            valuesBySampleIndex[sampleIndex].copyTo(alleleIndex * numberOfReads(), dest, offset, numberOfReads());
         }
     }
 }
@@ -50,8 +50,9 @@ public class UnfilledReadsLikelihoods<A extends Allele> extends ReadLikelihoods<
                             final SampleList samples,
                             final GATKRead[][] readsBySampleIndex,
                             final Object2IntMap<GATKRead>[] readIndex,
-                            final double[][][] values) {
-       super(alleles, samples, readsBySampleIndex, readIndex, values);
+                            final LikelihoodArray[] values,
+                            final boolean singlePrecision) {
+       super(alleles, samples, readsBySampleIndex, readIndex, values, singlePrecision);
     }
 
     /**
@@ -90,7 +91,7 @@ public class UnfilledReadsLikelihoods<A extends Allele> extends ReadLikelihoods<
         final int sampleCount = samples.numberOfSamples();
         final int alleleCount = alleles.numberOfAlleles();
 
-        final double[][][] newLikelihoodValues = new double[sampleCount][alleleCount][];
+        final LikelihoodArray[] newLikelihoodValues = new LikelihoodArray[sampleCount];
 
         @SuppressWarnings({"unchecked", "rawtypes"})
         final Object2IntMap<GATKRead>[] newReadIndexBySampleIndex = new Object2IntMap[sampleCount];
@@ -98,9 +99,7 @@ public class UnfilledReadsLikelihoods<A extends Allele> extends ReadLikelihoods<
 
         for (int s = 0; s < sampleCount; s++) {
             newReadsBySampleIndex[s] = readsBySampleIndex[s].clone();
-            for (int a = 0; a < alleleCount; a++) {
-                newLikelihoodValues[s][a] = valuesBySampleIndex[s][a].clone();
-            }
+            newLikelihoodValues[s] = valuesBySampleIndex[s].copyOf(alleleCount * readsBySampleIndex[s].length);
         }
 
         // Finally we create the new read-likelihood
@@ -109,7 +108,8 @@ public class UnfilledReadsLikelihoods<A extends Allele> extends ReadLikelihoods<
                 samples,
                 newReadsBySampleIndex,
                 newReadIndexBySampleIndex,
-                newLikelihoodValues);
+                newLikelihoodValues,
+                isSinglePrecision());
     }
 
     // Methods Which Modify Reads that must be turned off
@@ -25,6 +25,7 @@ import org.broadinstitute.hellbender.utils.recalibration.covariates.Covariate;
 import org.broadinstitute.hellbender.utils.recalibration.covariates.CovariateKeyCache;
 import org.broadinstitute.hellbender.utils.recalibration.covariates.ReadCovariates;
 import org.broadinstitute.hellbender.utils.recalibration.covariates.StandardCovariateList;
+import org.broadinstitute.hellbender.utils.variant.KnownSitesBitSet;
 
 import java.io.Serializable;
 import java.util.Arrays;
@@ -60,6 +61,14 @@ public final class BaseRecalibrationEngine implements Serializable {
 
     private RecalibrationArgumentCollection recalArgs;
 
+    /**
+     * The data collected from the reads processed so far
+     */
+    private DenseRecalibrationTables recalCounts;
+
+    /**
+     * The final recalibration tables, made by finalizeData()
+     */
     private RecalibrationTables recalTables;
 
     private SAMFileHeader readsHeader;
@@ -95,7 +104,7 @@ public final class BaseRecalibrationEngine implements Serializable {
         if ( numReadGroups < 1 ) {
             throw new UserException("Number of read groups must be >= 1, but is " + numReadGroups);
         }
-        recalTables = new RecalibrationTables(covariates, numReadGroups);
+        recalCounts = new DenseRecalibrationTables(covariates, numReadGroups);
         keyCache = new CovariateKeyCache();
         cachedEventTypes = recalArgs.computeIndelBQSRTables ? EventType.values() : new EventType[]{EventType.BASE_SUBSTITUTION};
     }
@@ -119,6 +128,25 @@ public final class BaseRecalibrationEngine implements Serializable {
             return; // the whole read was inside the adaptor so skip it
         }
 
+        processTransformedRead(read, refDS, calculateKnownSites(read, knownSites));
+    }
+
+    /**
+     * As {@link #processRead(GATKRead, ReferenceDataSource, Iterable)}, with the known sites looked up in a
+     * {@link KnownSitesBitSet} rather than passed in as features
+     */
+    public void processRead( final GATKRead originalRead, final ReferenceDataSource refDS, final KnownSitesBitSet knownSites ) {
+        final ReadTransformer transform = makeReadTransform();
+        final GATKRead read = transform.apply(originalRead);
+
+        if( read.isEmpty() ) {
+            return; // the whole read was inside the adaptor so skip it
+        }
+
+        processTransformedRead(read, refDS, calculateKnownSites(read, knownSites));
+    }
+
+    private void processTransformedRead( final GATKRead read, final ReferenceDataSource refDS, final boolean[] knownSitesArray ) {
         RecalUtils.parsePlatformForRead(read, readsHeader, recalArgs);
 
         int[] isSNP = new int[read.getLength()];
@@ -134,7 +162,7 @@ public final class BaseRecalibrationEngine implements Serializable {
 
         if( baqArray != null ) { // some reads just can't be BAQ'ed
             final ReadCovariates covariates = RecalUtils.computeCovariates(read, readsHeader, this.covariates, true, keyCache);
-            final boolean[] skip = calculateSkipArray(read, knownSites); // skip known sites of variation as well as low quality and non-regular bases
+            final boolean[] skip = calculateSkipArray(read, knownSitesArray); // skip known sites of variation as well as low quality and non-regular bases
             final double[] snpErrors = calculateFractionalErrorArray(isSNP, baqArray);
             final double[] insertionErrors = calculateFractionalErrorArray(isInsertion, baqArray);
             final double[] deletionErrors = calculateFractionalErrorArray(isDeletion, baqArray);
@@ -147,6 +175,20 @@ public final class BaseRecalibrationEngine implements Serializable {
         numReadsProcessed++;
     }
 
+    /**
+     * Add the data collected by another engine, made with the same arguments and header, to the data of this one
+     *
+     * Must be called before finalizeData() on both engines.
+     *
+     * @param other engine whose counts are added to this one's; not modified
+     */
+    public void combine( final BaseRecalibrationEngine other ) {
+        Utils.nonNull(other);
+        Utils.validate(!finalized && !other.finalized, "Cannot combine engines after finalizeData() has been called");
+        recalCounts.combine(other.recalCounts);
+        numReadsProcessed += other.numReadsProcessed;
+    }
+
     /**
      * Finalize, if appropriate, all derived data in recalibrationTables.
      *
@@ -157,6 +199,7 @@ public final class BaseRecalibrationEngine implements Serializable {
      */
     public void finalizeData() {
         Utils.validate(!finalized, "FinalizeData() has already been called");
+        recalTables = recalCounts.toRecalibrationTables();
         finalizeRecalibrationTables(recalTables);
         finalized = true;
     }
@@ -208,9 +251,19 @@ public final class BaseRecalibrationEngine implements Serializable {
 
     /**
      * Get a possibly not-final recalibration table, to deal with distributed execution.
+     *
+     * Before finalizeData() has been called, this makes new tables with the data collected so far.
      */
     public RecalibrationTables getRecalibrationTables() {
-        return recalTables;
+        return finalized ? recalTables : recalCounts.toRecalibrationTables();
+    }
+
+    /**
+     * Get the data collected so far, which is cheaper to combine with that of other engines than
+     * {@link #getRecalibrationTables()}.
+     */
+    public DenseRecalibrationTables getDenseRecalibrationTables() {
+        return recalCounts;
     }
 
     /**
@@ -244,31 +297,13 @@ public final class BaseRecalibrationEngine implements Serializable {
 
         final GATKRead read = recalInfo.getRead();
         final ReadCovariates readCovariates = recalInfo.getCovariatesValues();
-        final NestedIntegerArray<RecalDatum> qualityScoreTable = recalTables.getQualityScoreTable();
 
-        final int nCovariates = covariates.size();
-        final int nSpecialCovariates = covariates.numberOfSpecialCovariates();
         final int readLength = read.getLength();
         for( int offset = 0; offset < readLength; offset++ ) {
             if( ! recalInfo.skip(offset) ) {
                 for (int idx = 0; idx < cachedEventTypes.length; idx++) { //Note: we loop explicitly over cached values for speed
                     final EventType eventType = cachedEventTypes[idx];
-                    final int[] keys = readCovariates.getKeySet(offset, eventType);
-                    final int eventIndex = eventType.ordinal();
-                    final byte qual = recalInfo.getQual(eventType, offset);
-                    final double isError = recalInfo.getErrorFraction(eventType, offset);
-
-                    final int key0 = keys[0];
-                    final int key1 = keys[1];
-
-                    RecalUtils.incrementDatumOrPutIfNecessary3keys(qualityScoreTable, qual, isError, key0, key1, eventIndex);
-
-                    for (int i = nSpecialCovariates; i < nCovariates; i++) {
-                        final int keyi = keys[i];
-                        if (keyi >= 0) {
-                            RecalUtils.incrementDatumOrPutIfNecessary4keys(recalTables.getTable(i), qual, isError, key0, key1, keyi, eventIndex);
-                        }
-                    }
+                    recalCounts.increment(readCovariates.getKeySet(offset, eventType), eventType.ordinal(), recalInfo.getErrorFraction(eventType, offset));
                 }
             }
         }
@@ -316,10 +351,9 @@ public final class BaseRecalibrationEngine implements Serializable {
         return read;
     }
 
-    private boolean[] calculateSkipArray( final GATKRead read, final Iterable<? extends Locatable> knownSites ) {
+    private boolean[] calculateSkipArray( final GATKRead read, final boolean[] knownSitesArray ) {
         final int readLength = read.getLength();
         final boolean[] skip = new boolean[readLength];
-        final boolean[] knownSitesArray = calculateKnownSites(read, knownSites);
         for(int i = 0; i < readLength; i++ ) {
             skip[i] = !BaseUtils.isRegularBase(read.getBase(i)) || read.getBaseQuality(i) < recalArgs.PRESERVE_QSCORES_LESS_THAN || knownSitesArray[i];
         }
@@ -337,23 +371,55 @@ public final class BaseRecalibrationEngine implements Serializable {
                 // knownSite is outside clipping window for the read, ignore
                 continue;
             }
-            int featureStartOnRead = ReadUtils.getReadCoordinateForReferenceCoordinate(softStart, cigar, knownSite.getStart(), ReadUtils.ClippingTail.LEFT_TAIL, true);
-            if( featureStartOnRead == ReadUtils.CLIPPING_GOAL_NOT_REACHED ) {
-                featureStartOnRead = 0;
-            }
+            markKnownSite(knownSitesArray, cigar, softStart, knownSite.getStart(), knownSite.getEnd());
+        }
+        return knownSitesArray;
+    }
 
-            int featureEndOnRead = ReadUtils.getReadCoordinateForReferenceCoordinate(softStart, cigar, knownSite.getEnd(), ReadUtils.ClippingTail.LEFT_TAIL, true);
-            if( featureEndOnRead == ReadUtils.CLIPPING_GOAL_NOT_REACHED ) {
-                featureEndOnRead = readLength;
-            }
+    /**
+     * As {@link #calculateKnownSites(GATKRead, Iterable)}, for the runs of consecutive known positions in the bit set.
+     * Known sites that are next to each other make a single run, so an insertion in the read between them is skipped
+     * as well.
+     */
+    protected boolean[] calculateKnownSites( final GATKRead read, final KnownSitesBitSet knownSites ) {
+        final boolean[] knownSitesArray = new boolean[read.getLength()];//initializes to all false
+        final Cigar cigar = read.getCigar();
+        final String contig = read.getContig();
+        final int softStart = read.getSoftStart();
+        final int softEnd = read.getSoftEnd();
+        int runStart = knownSites.nextKnownSite(contig, softStart, softEnd);
+        while ( runStart != -1 ) {
+            final int nextUnknown = knownSites.nextUnknownSite(contig, runStart, softEnd);
+            final int runEnd = nextUnknown == -1 ? softEnd : nextUnknown - 1;
+            // runs that go on past the ends of the read are marked from past those ends, like the known sites they come from
+            final int start = runStart == softStart && knownSites.isKnownSite(contig, softStart - 1) ? softStart - 1 : runStart;
+            final int end = runEnd == softEnd && knownSites.isKnownSite(contig, softEnd + 1) ? softEnd + 1 : runEnd;
+            markKnownSite(knownSitesArray, cigar, softStart, start, end);
+            runStart = nextUnknown == -1 ? -1 : knownSites.nextKnownSite(contig, nextUnknown, softEnd);
+        }
+        return knownSitesArray;
+    }
 
-            if( featureStartOnRead > readLength ) {
-                featureStartOnRead = featureEndOnRead = readLength;
-            }
+    /**
+     * Mark the read bases aligned to the reference span [start, end] as known sites
+     */
+    private static void markKnownSite( final boolean[] knownSitesArray, final Cigar cigar, final int softStart, final int start, final int end ) {
+        final int readLength = knownSitesArray.length;
+        int featureStartOnRead = ReadUtils.getReadCoordinateForReferenceCoordinate(softStart, cigar, start, ReadUtils.ClippingTail.LEFT_TAIL, true);
+        if( featureStartOnRead == ReadUtils.CLIPPING_GOAL_NOT_REACHED ) {
+            featureStartOnRead = 0;
+        }
 
-            Arrays.fill(knownSitesArray, Math.max(0, featureStartOnRead), Math.min(readLength, featureEndOnRead + 1), true);
+        int featureEndOnRead = ReadUtils.getReadCoordinateForReferenceCoordinate(softStart, cigar, end, ReadUtils.ClippingTail.LEFT_TAIL, true);
+        if( featureEndOnRead == ReadUtils.CLIPPING_GOAL_NOT_REACHED ) {
+            featureEndOnRead = readLength;
         }
-        return knownSitesArray;
+
+        if( featureStartOnRead > readLength ) {
+            featureStartOnRead = featureEndOnRead = readLength;
+        }
+
+        Arrays.fill(knownSitesArray, Math.max(0, featureStartOnRead), Math.min(readLength, featureEndOnRead + 1), true);
     }
 
     /**
@@ -0,0 +1,308 @@
+package org.broadinstitute.hellbender.utils.recalibration;
+
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.collections.NestedIntegerArray;
+import org.broadinstitute.hellbender.utils.recalibration.covariates.StandardCovariateList;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Observation counts and error sums of the recalibration tables, kept in flat primitive arrays so that the data of
+ * every base can be collected without walking down a {@link NestedIntegerArray} or touching a {@link RecalDatum}.
+ *
+ * <p>
+ *     The cells of the quality score table are at offsets computed from their read group, quality and event type.
+ *     The keys of the additional covariates are too many for all of their cells to be allocated (the context covariate
+ *     alone has about a million for each read group, quality and event type), so each additional table numbers the cells
+ *     as they are first seen and keeps their data at those offsets.
+ * </p>
+ *
+ * <p>
+ *     Error sums are kept in fixed point, as longs counting {@link #ERROR_UNITS_PER_MISMATCH}ths of a mismatch, rather
+ *     than as doubles.  Each observation's error is rounded once, when it is added, and the sums are then exact, so they
+ *     don't depend on the order in which observations are added or tables are combined: tables filled by several
+ *     threads, each with its own share of the reads, add up to exactly the tables of a single thread.
+ * </p>
+ *
+ * <p>
+ *     Combining two of these adds up their arrays. {@link #toRecalibrationTables()} makes {@link RecalibrationTables}
+ *     with the same cells and observation counts as incrementing {@link RecalDatum}s would, to be finalized and written
+ *     to the recalibration report.  Integer errors, as without BAQ, give the same error sums too.  Fractional BAQ
+ *     errors are rounded, so a sum can differ from that of the increments by up to half a unit for each observation.
+ * </p>
+ */
+public final class DenseRecalibrationTables implements Serializable {
+    private static final long serialVersionUID = 2L;
+
+    /**
+     * Resolution of the error sums.  Errors are at most 1 per observation, so a cell can hold up to 2^43 mismatches,
+     * more than the bases of any run, and each observation's error is within 2^-21 of the double it was added as.
+     */
+    public static final double ERROR_UNITS_PER_MISMATCH = 1L << 20;
+
+    private final StandardCovariateList covariates;
+    private final int numReadGroups;
+    private final int qualDimension;
+    private final int eventDimension = EventType.values().length;
+
+    private final long[] qualityScoreCounts;
+    private final long[] qualityScoreErrors;
+
+    private final AdditionalTable[] additionalTables;
+
+    public DenseRecalibrationTables(final StandardCovariateList covariates) {
+        this(covariates, covariates.getReadGroupCovariate().maximumKeyValue() + 1);
+    }
+
+    public DenseRecalibrationTables(final StandardCovariateList covariates, final int numReadGroups) {
+        this.covariates = Utils.nonNull(covariates);
+        Utils.validateArg(numReadGroups > 0, "numReadGroups must be > 0");
+        this.numReadGroups = numReadGroups;
+        this.qualDimension = covariates.getQualityScoreCovariate().maximumKeyValue() + 1;
+
+        final int numCells = numReadGroups * qualDimension * eventDimension;
+        this.qualityScoreCounts = new long[numCells];
+        this.qualityScoreErrors = new long[numCells];
+
+        this.additionalTables = new AdditionalTable[covariates.size() - covariates.numberOfSpecialCovariates()];
+        for ( int i = 0; i < additionalTables.length; i++ ) {
+            additionalTables[i] = new AdditionalTable(covariates.get(i + covariates.numberOfSpecialCovariates()).maximumKeyValue() + 1);
+        }
+    }
+
+    /**
+     * Add one observation to every table, as {@link RecalUtils#incrementDatumOrPutIfNecessary3keys} and
+     * {@link RecalUtils#incrementDatumOrPutIfNecessary4keys} would for the quality score and additional tables.
+     *
+     * The reported quality of new cells is their quality score covariate key, which is the quality itself.
+     *
+     * @param keys the keys of all the covariates for this observation, in the order of the covariate list; additional
+     *             covariates with a negative key are skipped
+     * @param eventIndex the ordinal of the event type
+     * @param isError the error value for this observation
+     */
+    public void increment(final int[] keys, final int eventIndex, final double isError) {
+        final int readGroup = keys[0];
+        final int qual = keys[1];
+        if ( readGroup < 0 || readGroup >= numReadGroups || qual < 0 || qual >= qualDimension || eventIndex < 0 || eventIndex >= eventDimension ) {
+            throw new IllegalArgumentException("Keys " + Arrays.toString(keys) + " and event " + eventIndex + " are out of the bounds of the tables");
+        }
+        final long errorUnits = Math.round(isError * ERROR_UNITS_PER_MISMATCH);
+        final int qualOffset = readGroup * qualDimension + qual;
+
+        final int qualityScoreCell = qualOffset * eventDimension + eventIndex;
+        qualityScoreCounts[qualityScoreCell]++;
+        qualityScoreErrors[qualityScoreCell] = Math.addExact(qualityScoreErrors[qualityScoreCell], errorUnits);
+
+        for ( int i = 0; i < additionalTables.length; i++ ) {
+            final int key = keys[i + covariates.numberOfSpecialCovariates()];
+            if ( key >= 0 ) {
+                additionalTables[i].increment(qualOffset, key, eventIndex, eventDimension, errorUnits);
+            }
+        }
+    }
+
+    /**
+     * Add all of the data from toMerge into this set of tables
+     *
+     * @return this set of tables
+     */
+    public DenseRecalibrationTables combine(final DenseRecalibrationTables toMerge) {
+        Utils.nonNull(toMerge);
+        Utils.validateArg(numReadGroups == toMerge.numReadGroups && qualDimension == toMerge.qualDimension
+                && additionalTables.length == toMerge.additionalTables.length, "Attempting to merge DenseRecalibrationTables with different sizes");
+
+        for ( int i = 0; i < qualityScoreCounts.length; i++ ) {
+            qualityScoreCounts[i] += toMerge.qualityScoreCounts[i];
+            qualityScoreErrors[i] = Math.addExact(qualityScoreErrors[i], toMerge.qualityScoreErrors[i]);
+        }
+        for ( int i = 0; i < additionalTables.length; i++ ) {
+            additionalTables[i].combine(toMerge.additionalTables[i]);
+        }
+        return this;
+    }
+
+    /**
+     * Combines the right tables into the left tables, in-place (without making a copy)
+     *
+     * @param left first tables to combine
+     * @param right second tables to combine
+     * @return modified version of left with the contents of right incorporated into it
+     */
+    public static DenseRecalibrationTables inPlaceCombine(final DenseRecalibrationTables left, final DenseRecalibrationTables right) {
+        Utils.nonNull(left);
+        Utils.nonNull(right);
+
+        return left.combine(right);
+    }
+
+    /**
+     * @return the number of observations in the quality score table, one for each base and event type
+     */
+    public long getNumObservations() {
+        long numObservations = 0;
+        for ( final long count : qualityScoreCounts ) {
+            numObservations += count;
+        }
+        return numObservations;
+    }
+
+    /**
+     * Get the empirical quality of each cell of the quality score table, as {@link RecalDatum#getEmpiricalQuality()}
+     * would compute it from the data collected so far
+     *
+     * @param minObservations cells with fewer observations than this get NaN
+     * @return the empirical qualities, indexed by the offsets of the cells; the same cells have the same index in
+     *         every set of tables made with the same covariates and number of read groups
+     */
+    public double[] getQualityScoreEmpiricalQualities(final long minObservations) {
+        final double[] empiricalQualities = new double[qualityScoreCounts.length];
+        for ( int cell = 0; cell < qualityScoreCounts.length; cell++ ) {
+            if ( qualityScoreCounts[cell] > 0 && qualityScoreCounts[cell] >= minObservations ) {
+                final byte qual = (byte) ((cell / eventDimension) % qualDimension);
+                empiricalQualities[cell] = RecalDatum.fromScaledMismatches(qualityScoreCounts[cell], toScaledMismatches(qualityScoreErrors[cell]), qual).getEmpiricalQuality();
+            } else {
+                empiricalQualities[cell] = Double.NaN;
+            }
+        }
+        return empiricalQualities;
+    }
+
+    /**
+     * Make the recalibration tables with the data collected here, with a {@link RecalDatum} for every cell that has
+     * any observation.  The read group table is left empty, to be filled in by
+     * {@link BaseRecalibrationEngine#finalizeRecalibrationTables}.
+     *
+     * @return new, not finalized recalibration tables
+     */
+    public RecalibrationTables toRecalibrationTables() {
+        final RecalibrationTables tables = new RecalibrationTables(covariates, numReadGroups);
+
+        final NestedIntegerArray<RecalDatum> qualityScoreTable = tables.getQualityScoreTable();
+        for ( int cell = 0; cell < qualityScoreCounts.length; cell++ ) {
+            if ( qualityScoreCounts[cell] > 0 ) {
+                final int eventIndex = cell % eventDimension;
+                final int qual = (cell / eventDimension) % qualDimension;
+                final int readGroup = cell / eventDimension / qualDimension;
+                qualityScoreTable.put(RecalDatum.fromScaledMismatches(qualityScoreCounts[cell], toScaledMismatches(qualityScoreErrors[cell]), (byte) qual),
+                        readGroup, qual, eventIndex);
+            }
+        }
+
+        for ( int i = 0; i < additionalTables.length; i++ ) {
+            final AdditionalTable additionalTable = additionalTables[i];
+            final NestedIntegerArray<RecalDatum> table = tables.getTable(i + covariates.numberOfSpecialCovariates());
+            for ( int cell = 0; cell < additionalTable.size; cell++ ) {
+                long key = additionalTable.cellKeys[cell];
+                final int eventIndex = (int) (key % eventDimension);
+                key /= eventDimension;
+                final int covariateKey = (int) (key % additionalTable.covariateDimension);
+                key /= additionalTable.covariateDimension;
+                final int qual = (int) (key % qualDimension);
+                final int readGroup = (int) (key / qualDimension);
+                table.put(RecalDatum.fromScaledMismatches(additionalTable.counts[cell], toScaledMismatches(additionalTable.errors[cell]), (byte) qual),
+                        readGroup, qual, covariateKey, eventIndex);
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * @return the sum of errors as kept by {@link RecalDatum}, multiplied by {@link RecalDatum#MULTIPLIER}
+     */
+    private static double toScaledMismatches(final long errorUnits) {
+        return errorUnits * (RecalDatum.MULTIPLIER / ERROR_UNITS_PER_MISMATCH);
+    }
+
+    /**
+     * Cells of the table of an additional covariate, in the order in which they were first seen
+     *
+     * The key of a cell packs its read group, quality, covariate key and event type, like an offset into the full
+     * table.  Cells are found through an open addressing index of their keys.
+     */
+    private static final class AdditionalTable implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private final int covariateDimension;
+
+        private long[] cellKeys = new long[INITIAL_CAPACITY];
+        private long[] counts = new long[INITIAL_CAPACITY];
+        private long[] errors = new long[INITIAL_CAPACITY];
+        private int size = 0;
+
+        /**
+         * One more than the cell of each slot, 0 for empty slots.  The length is a power of 2, and at least twice the
+         * number of cells.
+         */
+        private int[] slots = new int[2 * INITIAL_CAPACITY];
+
+        private AdditionalTable(final int covariateDimension) {
+            this.covariateDimension = covariateDimension;
+        }
+
+        private void increment(final int qualOffset, final int covariateKey, final int eventIndex, final int eventDimension, final long errorUnits) {
+            if ( covariateKey >= covariateDimension ) {
+                throw new IllegalArgumentException("Key " + covariateKey + " is too large for the covariate (max is " + (covariateDimension - 1) + ")");
+            }
+            final int cell = cellFor(((long) qualOffset * covariateDimension + covariateKey) * eventDimension + eventIndex);
+            counts[cell]++;
+            errors[cell] = Math.addExact(errors[cell], errorUnits);
+        }
+
+        private void combine(final AdditionalTable other) {
+            Utils.validateArg(covariateDimension == other.covariateDimension, "Attempting to merge tables of different covariates");
+            for ( int otherCell = 0; otherCell < other.size; otherCell++ ) {
+                final int cell = cellFor(other.cellKeys[otherCell]);
+                counts[cell] += other.counts[otherCell];
+                errors[cell] = Math.addExact(errors[cell], other.errors[otherCell]);
+            }
+        }
+
+        /**
+         * @return the cell with this key, adding an empty one if there is none
+         */
+        private int cellFor(final long key) {
+            final int mask = slots.length - 1;
+            int slot = slotOf(key, mask);
+            while ( slots[slot] != 0 ) {
+                final int cell = slots[slot] - 1;
+                if ( cellKeys[cell] == key ) {
+                    return cell;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            if ( size == cellKeys.length ) {
+                cellKeys = Arrays.copyOf(cellKeys, 2 * size);
+                counts = Arrays.copyOf(counts, 2 * size);
+                errors = Arrays.copyOf(errors, 2 * size);
+            }
+            final int cell = size++;
+            cellKeys[cell] = key;
+            slots[slot] = cell + 1;
+            if ( 2 * size > slots.length ) {
+                rehash();
+            }
+            return cell;
+        }
+
+        private void rehash() {
+            slots = new int[2 * slots.length];
+            final int mask = slots.length - 1;
+            for ( int cell = 0; cell < size; cell++ ) {
+                int slot = slotOf(cellKeys[cell], mask);
+                while ( slots[slot] != 0 ) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = cell + 1;
+            }
+        }
+
+        private static int slotOf(final long key, final int mask) {
+            // Fibonacci hashing spreads the packed keys, whose low bits mostly vary with the event type and covariate key
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        }
+    }
+}
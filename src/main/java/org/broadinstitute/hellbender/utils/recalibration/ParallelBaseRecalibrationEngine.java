@@ -0,0 +1,264 @@
+package org.broadinstitute.hellbender.utils.recalibration;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.util.Locatable;
+import org.broadinstitute.hellbender.engine.ReferenceDataSource;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.variant.KnownSitesBitSet;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Collects the recalibration data of a stream of reads with several {@link BaseRecalibrationEngine}s, each used by
+ * one thread at a time.
+ *
+ * <p>
+ *     Reads are handed to the engines in batches of consecutive reads, so each batch is a disjoint shard of the
+ *     traversal.  The known sites overlapping each read must already have been looked up by the caller, since feature
+ *     sources can't be shared between threads; the lists of known sites are only read by the engines.  Known sites in a
+ *     {@link KnownSitesBitSet} are instead looked up by the engines themselves, as the bit set is read-only.  Each engine has
+ *     its own tables, its own reference data source and its own copy of the header, so the threads share nothing
+ *     while they process reads and need no locking.
+ * </p>
+ *
+ * <p>
+ *     {@link #finish()} waits for all of the batches and adds up the tables of the engines into the first engine.
+ *     Batches go to whichever engine is idle, so which engine adds up which reads depends on the scheduling of the
+ *     threads, but the tables only hold counts and fixed-point error sums ({@link DenseRecalibrationTables}), whose
+ *     additions are exact.  The merged tables, and the quantization and report made from them, are therefore the same
+ *     as those of a single engine that processed every read, for any number of threads and any batch size.
+ * </p>
+ */
+public final class ParallelBaseRecalibrationEngine implements AutoCloseable {
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final List<Worker> workers;
+    private final BlockingQueue<Worker> idleWorkers;
+    private final ExecutorService executor;
+    private final int batchSize;
+    private final int numReadGroups;
+    private final KnownSitesBitSet knownSitesBitSet;
+
+    /**
+     * Batches that have been submitted and not yet waited for, oldest first.  There are at most two for each worker,
+     * so that the traversal doesn't get far ahead of the workers.
+     */
+    private final Deque<Future<?>> pendingBatches = new ArrayDeque<>();
+    private final int maxPendingBatches;
+
+    private List<GATKRead> batchReads;
+    private List<List<? extends Locatable>> batchKnownSites;
+    private boolean finished = false;
+
+    /**
+     * @param recalArgs arguments for every engine
+     * @param readsHeader header of the reads; each engine gets its own copy
+     * @param referenceSupplier makes a new reference data source for each engine
+     * @param numThreads number of engines, and of threads that run them; must be at least 1
+     * @param batchSize number of consecutive reads handed to an engine at once; must be at least 1
+     */
+    public ParallelBaseRecalibrationEngine(final RecalibrationArgumentCollection recalArgs, final SAMFileHeader readsHeader,
+                                           final Supplier<ReferenceDataSource> referenceSupplier,
+                                           final int numThreads, final int batchSize) {
+        this(recalArgs, readsHeader, referenceSupplier, null, numThreads, batchSize);
+    }
+
+    /**
+     * @param recalArgs arguments for every engine
+     * @param readsHeader header of the reads; each engine gets its own copy
+     * @param referenceSupplier makes a new reference data source for each engine
+     * @param knownSitesBitSet known sites for the reads added with {@link #processRead(GATKRead)}; may be null if
+     *                         known sites are always passed in with the reads
+     * @param numThreads number of engines, and of threads that run them; must be at least 1
+     * @param batchSize number of consecutive reads handed to an engine at once; must be at least 1
+     */
+    public ParallelBaseRecalibrationEngine(final RecalibrationArgumentCollection recalArgs, final SAMFileHeader readsHeader,
+                                           final Supplier<ReferenceDataSource> referenceSupplier,
+                                           final KnownSitesBitSet knownSitesBitSet,
+                                           final int numThreads, final int batchSize) {
+        Utils.nonNull(recalArgs);
+        Utils.nonNull(readsHeader);
+        Utils.nonNull(referenceSupplier);
+        Utils.validateArg(numThreads >= 1, "numThreads must be at least 1");
+        Utils.validateArg(batchSize >= 1, "batchSize must be at least 1");
+
+        this.workers = new ArrayList<>(numThreads);
+        this.idleWorkers = new ArrayBlockingQueue<>(numThreads);
+        for ( int i = 0; i < numThreads; i++ ) {
+            // the engines set the platform of read groups in their header, so they can't share it
+            final Worker worker = new Worker(new BaseRecalibrationEngine(recalArgs, readsHeader.clone()), referenceSupplier.get());
+            workers.add(worker);
+            idleWorkers.add(worker);
+        }
+        this.executor = Executors.newFixedThreadPool(numThreads);
+        this.batchSize = batchSize;
+        this.numReadGroups = readsHeader.getReadGroups().size();
+        this.knownSitesBitSet = knownSitesBitSet;
+        this.maxPendingBatches = 2 * numThreads;
+        startBatch();
+    }
+
+    /**
+     * Add a read to be processed by one of the engines
+     *
+     * @param read the read; must not be used by the caller afterwards
+     * @param knownSites the known sites overlapping the read; must not be modified afterwards
+     */
+    public void processRead(final GATKRead read, final List<? extends Locatable> knownSites) {
+        Utils.nonNull(read);
+        Utils.nonNull(knownSites);
+        Utils.validate(!finished, "finish() has already been called");
+
+        addToBatch(read, knownSites);
+    }
+
+    /**
+     * Add a read to be processed by one of the engines, with the known sites of the bit set given to the constructor
+     *
+     * @param read the read; must not be used by the caller afterwards
+     */
+    public void processRead(final GATKRead read) {
+        Utils.nonNull(read);
+        Utils.validate(knownSitesBitSet != null, "no known sites bit set was given");
+        Utils.validate(!finished, "finish() has already been called");
+
+        // a null list of known sites stands for the bit set
+        addToBatch(read, null);
+    }
+
+    private void addToBatch(final GATKRead read, final List<? extends Locatable> knownSites) {
+        batchReads.add(read);
+        batchKnownSites.add(knownSites);
+        if ( batchReads.size() == batchSize ) {
+            submitBatch();
+        }
+    }
+
+    /**
+     * Wait for all of the reads to be processed, and combine the data of all the engines
+     *
+     * @return the engine that holds the data of every read, not yet finalized
+     */
+    public BaseRecalibrationEngine finish() {
+        Utils.validate(!finished, "finish() has already been called");
+        awaitReads();
+        finished = true;
+
+        final BaseRecalibrationEngine combined = workers.get(0).engine;
+        for ( int i = 1; i < workers.size(); i++ ) {
+            combined.combine(workers.get(i).engine);
+        }
+        return combined;
+    }
+
+    /**
+     * Wait for all of the reads added so far to be processed, and add up the data of all the engines into new tables,
+     * leaving the tables of the engines as they are
+     *
+     * @return tables with the data of all of the reads added so far
+     */
+    public DenseRecalibrationTables combineCounts() {
+        Utils.validate(!finished, "finish() has already been called");
+        awaitReads();
+
+        final DenseRecalibrationTables combined = new DenseRecalibrationTables(workers.get(0).engine.getCovariates(), numReadGroups);
+        for ( final Worker worker : workers ) {
+            combined.combine(worker.engine.getDenseRecalibrationTables());
+        }
+        return combined;
+    }
+
+    /**
+     * Stop the threads and close the reference data sources of the engines
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        for ( final Worker worker : workers ) {
+            worker.reference.close();
+        }
+    }
+
+    private void awaitReads() {
+        submitBatch();
+        while ( ! pendingBatches.isEmpty() ) {
+            waitFor(pendingBatches.removeFirst());
+        }
+    }
+
+    private void startBatch() {
+        batchReads = new ArrayList<>(batchSize);
+        batchKnownSites = new ArrayList<>(batchSize);
+    }
+
+    private void submitBatch() {
+        if ( batchReads.isEmpty() ) {
+            return;
+        }
+        while ( pendingBatches.size() >= maxPendingBatches ) {
+            waitFor(pendingBatches.removeFirst());
+        }
+
+        final List<GATKRead> reads = batchReads;
+        final List<List<? extends Locatable>> knownSites = batchKnownSites;
+        pendingBatches.addLast(executor.submit(() -> {
+            // there are as many workers as threads, so one is always idle when a batch starts; which one it is
+            // doesn't matter, since the sums in the tables don't depend on the order in which reads are added
+            final Worker worker = idleWorkers.take();
+            try {
+                worker.process(reads, knownSites, knownSitesBitSet);
+            } finally {
+                idleWorkers.put(worker);
+            }
+            return null;
+        }));
+        startBatch();
+    }
+
+    private static void waitFor(final Future<?> batch) {
+        try {
+            batch.get();
+        } catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new GATKException("Interrupted while waiting for reads to be recalibrated", e);
+        } catch ( final ExecutionException e ) {
+            // rethrow exceptions about the input, like malformed reads, as they are
+            if ( e.getCause() instanceof RuntimeException ) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new GATKException("Problem recalibrating reads", e.getCause());
+        }
+    }
+
+    private static final class Worker {
+        private final BaseRecalibrationEngine engine;
+        private final ReferenceDataSource reference;
+
+        private Worker(final BaseRecalibrationEngine engine, final ReferenceDataSource reference) {
+            this.engine = engine;
+            this.reference = reference;
+        }
+
+        private void process(final List<GATKRead> reads, final List<List<? extends Locatable>> knownSites, final KnownSitesBitSet knownSitesBitSet) {
+            for ( int i = 0; i < reads.size(); i++ ) {
+                if ( knownSites.get(i) == null ) {
+                    engine.processRead(reads.get(i), reference, knownSitesBitSet);
+                } else {
+                    engine.processRead(reads.get(i), reference, knownSites.get(i));
+                }
+            }
+        }
+    }
+}
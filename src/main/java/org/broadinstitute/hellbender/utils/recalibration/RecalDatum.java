@@ -16,7 +16,7 @@ public final class RecalDatum implements Serializable {
     public static final byte MAX_RECALIBRATED_Q_SCORE = SAMUtils.MAX_PHRED_SCORE;
     private static final double UNINITIALIZED = -1.0;
     private static final long serialVersionUID = 1L;
-    private static final double MULTIPLIER = 100000.0;  //See discussion in numMismatches about what the multiplier is.
+    static final double MULTIPLIER = 100000.0;  //See discussion in numMismatches about what the multiplier is.
 
     /**
      * estimated reported quality score based on combined data's individual q-reporteds and number of observations
@@ -85,6 +85,21 @@ public final class RecalDatum implements Serializable {
         this.empiricalQuality = copy.empiricalQuality;
     }
 
+    /**
+     * Create a new RecalDatum whose number of mismatches is already multiplied by {@link #MULTIPLIER}, for the error
+     * sums of {@link DenseRecalibrationTables}
+     *
+     * @param numObservations       observations
+     * @param scaledNumMismatches   mismatches times {@link #MULTIPLIER}
+     * @param reportedQuality       Qreported
+     */
+    static RecalDatum fromScaledMismatches(final long numObservations, final double scaledNumMismatches, final byte reportedQuality) {
+        final RecalDatum datum = new RecalDatum(numObservations, 0.0, reportedQuality);
+        if ( scaledNumMismatches < 0.0 ) throw new IllegalArgumentException("numMismatches < 0");
+        datum.numMismatches = scaledNumMismatches;
+        return datum;
+    }
+
     /**
      * Add in all of the data from other into this object, updating the reported quality from the expected
      * error rate implied by the two reported qualities
@@ -0,0 +1,90 @@
+package org.broadinstitute.hellbender.utils.recalibration;
+
+import org.broadinstitute.hellbender.utils.Utils;
+
+/**
+ * Decides when the recalibration tables have seen enough data, by following how much the empirical qualities of the
+ * quality score table change as batches of reads are added to them.
+ *
+ * <p>
+ *     After each batch, the empirical quality of every cell with at least {@link #MIN_OBSERVATIONS} observations is
+ *     compared with what it was after the previous batch.  Cells with fewer observations are too noisy to tell
+ *     anything, and are left out until they have enough.  The tables have converged once the largest change has been
+ *     below the threshold for a number of batches in a row.  Batches that add fewer than {@link #MIN_OBSERVATIONS}
+ *     observations, like those from regions without coverage, are ignored.
+ * </p>
+ *
+ * <p>
+ *     The largest change over the last batch estimates the error in the empirical qualities that comes from
+ *     stopping there rather than using all of the data, provided the batches are random samples of the data.
+ * </p>
+ */
+public final class RecalibrationConvergence {
+    public static final long MIN_OBSERVATIONS = 10_000L;
+
+    private final double threshold;
+    private final int numBatchesRequired;
+
+    private double[] previousQualities = null;
+    private long previousNumObservations = 0L;
+    private double lastChange = Double.POSITIVE_INFINITY;
+    private int numBatchesBelowThreshold = 0;
+
+    /**
+     * @param threshold largest change in empirical quality, in Phred units, for a batch to count as converged
+     * @param numBatchesRequired number of batches in a row below the threshold for the tables to have converged
+     */
+    public RecalibrationConvergence(final double threshold, final int numBatchesRequired) {
+        Utils.validateArg(threshold >= 0.0, "threshold must be >= 0");
+        Utils.validateArg(numBatchesRequired > 0, "numBatchesRequired must be > 0");
+        this.threshold = threshold;
+        this.numBatchesRequired = numBatchesRequired;
+    }
+
+    /**
+     * Compare the tables after another batch of reads with the tables after the previous one
+     *
+     * @param tables all of the data collected so far
+     * @return true if the tables have converged
+     */
+    public boolean update(final DenseRecalibrationTables tables) {
+        Utils.nonNull(tables);
+        final long numObservations = tables.getNumObservations();
+        if ( numObservations - previousNumObservations < MIN_OBSERVATIONS ) {
+            return hasConverged();
+        }
+
+        final double[] qualities = tables.getQualityScoreEmpiricalQualities(MIN_OBSERVATIONS);
+        if ( previousQualities != null ) {
+            Utils.validateArg(qualities.length == previousQualities.length, "tables have a different size than before");
+            // with no cell to compare yet, there's no sign of convergence
+            double largestChange = Double.POSITIVE_INFINITY;
+            boolean anyCompared = false;
+            for ( int cell = 0; cell < qualities.length; cell++ ) {
+                if ( ! Double.isNaN(qualities[cell]) && ! Double.isNaN(previousQualities[cell]) ) {
+                    final double change = Math.abs(qualities[cell] - previousQualities[cell]);
+                    largestChange = anyCompared ? Math.max(largestChange, change) : change;
+                    anyCompared = true;
+                }
+            }
+            lastChange = largestChange;
+            numBatchesBelowThreshold = lastChange < threshold ? numBatchesBelowThreshold + 1 : 0;
+        }
+
+        previousQualities = qualities;
+        previousNumObservations = numObservations;
+        return hasConverged();
+    }
+
+    public boolean hasConverged() {
+        return numBatchesBelowThreshold >= numBatchesRequired;
+    }
+
+    /**
+     * @return the largest change in empirical quality over the last batch that was compared, or positive infinity
+     *         if no batch has been compared yet
+     */
+    public double getLastChange() {
+        return lastChange;
+    }
+}
@@ -2,8 +2,6 @@ package org.broadinstitute.hellbender.utils.recalibration.covariates;
 
 import com.google.common.annotations.VisibleForTesting;
 import htsjdk.samtools.SAMFileHeader;
-import it.unimi.dsi.fastutil.ints.IntArrayList;
-import it.unimi.dsi.fastutil.ints.IntList;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.broadinstitute.barclay.argparser.CommandLineException;
@@ -24,6 +22,10 @@ public final class ContextCovariate implements Covariate {
     private final int mismatchesKeyMask;
     private final int indelsKeyMask;
 
+    // the offsets of the most recent base in the keys of the contexts
+    private final int mismatchesNewBaseOffset;
+    private final int indelsNewBaseOffset;
+
     private static final int LENGTH_BITS = 4;
     private static final int LENGTH_MASK = 15;
 
@@ -53,48 +55,71 @@ public final class ContextCovariate implements Covariate {
 
         mismatchesKeyMask = createMask(mismatchesContextSize);
         indelsKeyMask = createMask(indelsContextSize);
+        mismatchesNewBaseOffset = 2 * (mismatchesContextSize - 1) + LENGTH_BITS;
+        indelsNewBaseOffset = 2 * (indelsContextSize - 1) + LENGTH_BITS;
     }
 
+    /**
+     * Records the mismatch and indel context keys of every base of the read, in one pass over the read in the
+     * direction of its strand.
+     *
+     * The keys are built in shift registers of 2 bits per base, and are the same as those of
+     * {@link #keyFromContext(String)} for the last bases of the stranded read up to each base, after
+     * {@link #getStrandedClippedBytes} writes Ns over the low quality tails.  A base gets no context (-1) unless it
+     * and the bases before it make up a full context of A, C, G and T.
+     */
     @Override
     public void recordValues(final GATKRead read, final SAMFileHeader header, final ReadCovariates values, final boolean recordIndelValues) {
+        final int readLength = read.getLength();
 
-        final int originalReadLength = read.getLength();
-
-        // store the original bases and then write Ns over low quality ones
-        final byte[] strandedClippedBases = getStrandedClippedBytes(read, lowQualTail);  //Note: this makes a copy of the read
-
-        //Note: we're using a non-standard library here because boxing came up on profiling as taking 20% of time in applyBQSR.
-        //IntList avoids boxing
-        final IntList mismatchKeys = contextWith(strandedClippedBases, mismatchesContextSize, mismatchesKeyMask);
-
-        final int readLengthAfterClipping = strandedClippedBases.length;
+        // the bases in the low quality tails count as Ns
+        int firstUnclippedBase = 0;
+        while (firstUnclippedBase < readLength && read.getBaseQuality(firstUnclippedBase) <= lowQualTail) {
+            firstUnclippedBase++;
+        }
+        int lastUnclippedBase = readLength - 1;
+        while (lastUnclippedBase >= 0 && read.getBaseQuality(lastUnclippedBase) <= lowQualTail) {
+            lastUnclippedBase--;
+        }
 
-        // this is necessary to ensure that we don't keep historical data in the ReadCovariates values
-        // since the context covariate may not span the entire set of values in read covariates
-        // due to the clipping of the low quality bases
-        if ( readLengthAfterClipping != originalReadLength) {
-            // don't bother zeroing out if we are going to overwrite the whole array
-            for ( int i = 0; i < originalReadLength; i++ ){
-                // this base has been clipped off, so zero out the covariate values here
+        if (firstUnclippedBase > lastUnclippedBase) {
+            // the whole read is clipped off, so zero out the covariate values of every base
+            for (int i = 0; i < readLength; i++) {
                 values.addCovariate(0, 0, 0, i);
             }
+            return;
         }
 
         final boolean negativeStrand = read.isReverseStrand();
 
-        //Note: duplicated the loop to avoid checking recordIndelValues on each iteration
-        if (recordIndelValues) {
-            final IntList indelKeys = contextWith(strandedClippedBases, indelsContextSize, indelsKeyMask);
-            for (int i = 0; i < readLengthAfterClipping; i++) {
-                final int readOffset = getStrandedOffset(negativeStrand, i, readLengthAfterClipping);
-                final int indelKey = indelKeys.getInt(i);
-                values.addCovariate(mismatchKeys.getInt(i), indelKey, indelKey, readOffset);
+        // the context bits of the keys, and the number of consecutive ACGT bases that they were made from
+        int mismatchKey = 0;
+        int indelKey = 0;
+        int contextLength = 0;
+        for (int i = 0; i < readLength; i++) {
+            final int readOffset = getStrandedOffset(negativeStrand, i, readLength);
+
+            final int baseIndex;
+            if (readOffset < firstUnclippedBase || readOffset > lastUnclippedBase) {
+                baseIndex = -1;
+            } else {
+                final byte base = read.getBase(readOffset);
+                baseIndex = BaseUtils.simpleBaseToBaseIndex(negativeStrand ? BaseUtils.simpleComplement(base) : base);
             }
-        } else {
-            for (int i = 0; i < readLengthAfterClipping; i++) {
-                final int readOffset = getStrandedOffset(negativeStrand, i, readLengthAfterClipping);
-                values.addCovariate(mismatchKeys.getInt(i), 0, 0, readOffset);
+
+            if (baseIndex == -1) { // ignore non-ACGT bases
+                contextLength = 0;
+            } else {
+                // shift everything 2 bits, mask out the oldest base, and add the new base
+                contextLength++;
+                mismatchKey = ((mismatchKey >> 2) & mismatchesKeyMask) | (baseIndex << mismatchesNewBaseOffset);
+                indelKey = ((indelKey >> 2) & indelsKeyMask) | (baseIndex << indelsNewBaseOffset);
             }
+
+            //Note: the keys for indels are 0 when they are not recorded
+            final int mismatch = contextLength >= mismatchesContextSize ? mismatchKey | mismatchesContextSize : -1;
+            final int indel = ! recordIndelValues ? 0 : contextLength >= indelsContextSize ? indelKey | indelsContextSize : -1;
+            values.addCovariate(mismatch, indel, indel, readOffset);
         }
     }
 
@@ -153,72 +178,6 @@ public final class ContextCovariate implements Covariate {
         return mask << LENGTH_BITS;
     }
 
-    /**
-     * calculates the context of a base independent of the covariate mode (mismatch, insertion or deletion)
-     *
-     * @param bases       the bases in the read to build the context from
-     * @param contextSize context size to use building the context
-     * @param mask        mask for pulling out just the context bits
-     */
-    private static IntList contextWith(final byte[] bases, final int contextSize, final int mask) {
-
-        final int readLength = bases.length;
-
-        //Note: we use a specialized collection to avoid the cost of boxing and unboxing that otherwise comes up on the profiler.
-        final IntList keys = new IntArrayList(readLength);
-
-        // the first contextSize-1 bases will not have enough previous context
-        for (int i = 1; i < contextSize && i <= readLength; i++) {
-            keys.add(-1);
-        }
-
-        if (readLength < contextSize) {
-            return keys;
-        }
-
-        final int newBaseOffset = 2 * (contextSize - 1) + LENGTH_BITS;
-
-        // get (and add) the key for the context starting at the first base
-        int currentKey = keyFromContext(bases, 0, contextSize);
-        keys.add(currentKey);
-
-        // if the first key was -1 then there was an N in the context; figure out how many more consecutive contexts it affects
-        int currentNPenalty = 0;
-        if (currentKey == -1) {
-            currentKey = 0;
-            currentNPenalty = contextSize - 1;
-            int offset = newBaseOffset;
-            while (bases[currentNPenalty] != 'N') {
-                final int baseIndex = BaseUtils.simpleBaseToBaseIndex(bases[currentNPenalty]);
-                currentKey |= (baseIndex << offset);
-                offset -= 2;
-                currentNPenalty--;
-            }
-        }
-
-        for (int currentIndex = contextSize; currentIndex < readLength; currentIndex++) {
-            final int baseIndex = BaseUtils.simpleBaseToBaseIndex(bases[currentIndex]);
-            if (baseIndex == -1) { // ignore non-ACGT bases
-                currentNPenalty = contextSize;
-                currentKey = 0; // reset the key
-            } else {
-                // push this base's contribution onto the key: shift everything 2 bits, mask out the non-context bits, and add the new base and the length in
-                currentKey = (currentKey >> 2) & mask;
-                currentKey |= (baseIndex << newBaseOffset);
-                currentKey |= contextSize;
-            }
-
-            if (currentNPenalty == 0) {
-                keys.add(currentKey);
-            } else {
-                currentNPenalty--;
-                keys.add(-1);
-            }
-        }
-
-        return keys;
-    }
-
     public static int keyFromContext(final String dna) {
         return keyFromContext(dna.getBytes(), 0, dna.length());
     }
@@ -20,20 +20,26 @@ public final class CycleCovariate implements Covariate {
     }
 
     // Used to pick out the covariate's value from attributes of the read
+    // The cycles of consecutive bases differ by the same increment, so they are computed incrementally with the same
+    // values as cycleKey
     @Override
     public void recordValues(final GATKRead read, final SAMFileHeader header, final ReadCovariates values, final boolean recordIndelValues) {
         final int readLength = read.getLength();
+        final int readOrderFactor = read.isPaired() && read.isSecondOfPair() ? -1 : 1;
+        final int increment = read.isReverseStrand() ? -readOrderFactor : readOrderFactor;
+        int cycle = read.isReverseStrand() ? readLength * readOrderFactor : readOrderFactor;
+
         //Note: duplicate the loop to void checking recordIndelValues on every iteration
         if (recordIndelValues) {
-            for (int i = 0; i < readLength; i++) {
-                final int substitutionKey = cycleKey(i, read, false, MAXIMUM_CYCLE_VALUE);
-                final int indelKey = cycleKey(i, read, true, MAXIMUM_CYCLE_VALUE);
+            final int maxCycleForIndels = readLength - CUSHION_FOR_INDELS - 1;
+            for (int i = 0; i < readLength; i++, cycle += increment) {
+                final int substitutionKey = keyFromCycle(cycle, MAXIMUM_CYCLE_VALUE);
+                final int indelKey = i < CUSHION_FOR_INDELS || i > maxCycleForIndels ? -1 : substitutionKey;
                 values.addCovariate(substitutionKey, indelKey, indelKey, i);
             }
         } else {
-            for (int i = 0; i < readLength; i++) {
-                final int substitutionKey = cycleKey(i, read, false, MAXIMUM_CYCLE_VALUE);
-                values.addCovariate(substitutionKey, 0, 0, i);
+            for (int i = 0; i < readLength; i++, cycle += increment) {
+                values.addCovariate(keyFromCycle(cycle, MAXIMUM_CYCLE_VALUE), 0, 0, i);
             }
         }
     }
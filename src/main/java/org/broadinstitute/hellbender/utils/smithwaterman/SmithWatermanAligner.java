@@ -69,7 +69,19 @@ public interface SmithWatermanAligner extends Closeable {
         /**
          * use the pure java implementation of Smith-Waterman, works on all hardware
          */
-        JAVA(SmithWatermanJavaAligner::getInstance);
+        JAVA(SmithWatermanJavaAligner::getInstance),
+
+        /**
+         * use the pure java implementation of Smith-Waterman restricted to a band of diagonals, which gives the same
+         * alignments as {@link #JAVA} but is much faster on similar sequences
+         */
+        JAVA_BANDED(() -> SmithWatermanJavaAligner.getInstance(SmithWatermanJavaAligner.Mode.BANDED)),
+
+        /**
+         * use the pure java implementation of Smith-Waterman computed over a striped query profile, which gives the same
+         * alignments as {@link #JAVA} without allocating matrices for each alignment
+         */
+        JAVA_STRIPED(() -> SmithWatermanJavaAligner.getInstance(SmithWatermanJavaAligner.Mode.STRIPED));
 
         private final Supplier<SmithWatermanAligner> alignerSupplier;
 
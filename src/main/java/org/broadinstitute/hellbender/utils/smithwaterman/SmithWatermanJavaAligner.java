@@ -16,15 +16,65 @@ import java.util.List;
 /**
  * Pairwise discrete smith-waterman alignment implemented in pure java
  *
+ * Three modes of computation are available (see {@link Mode}). All of them produce exactly the same alignments;
+ * the banded and striped modes are only faster ways of getting there, and silently fall back to the full
+ * computation whenever they cannot guarantee an identical result.
+ *
  * ************************************************************************
  * ****                    IMPORTANT NOTE:                             ****
  * ****  This class assumes that all bytes come from UPPERCASED chars! ****
  * ************************************************************************
  */
 public final class SmithWatermanJavaAligner implements SmithWatermanAligner {
-    private static final SmithWatermanJavaAligner ALIGNER = new SmithWatermanJavaAligner();
+    private static final SmithWatermanJavaAligner ALIGNER = new SmithWatermanJavaAligner(Mode.FULL);
+    private static final SmithWatermanJavaAligner BANDED_ALIGNER = new SmithWatermanJavaAligner(Mode.BANDED);
+    private static final SmithWatermanJavaAligner STRIPED_ALIGNER = new SmithWatermanJavaAligner(Mode.STRIPED);
+
+    private static final int MATRIX_MIN_CUTOFF = (int) -1.0e8;   // never let matrix elements drop below this cutoff
+    private static final int LOW_INIT_VALUE = Integer.MIN_VALUE/2;
+
+    /**
+     * Initial half-width of the band (in diagonals, on each side of the expected diagonals) used by {@link Mode#BANDED}.
+     * The band is doubled until the result can be proven to be optimal.
+     */
+    static final int INITIAL_BAND_WIDTH = 16;
+
+    /**
+     * Number of lanes of the striped query profile used by {@link Mode#STRIPED}
+     */
+    static final int STRIPED_LANES = 8;
+
+    /**
+     * Per thread scratch space shared by the banded and striped modes so that they don't need to allocate
+     * any matrix per alignment.
+     */
+    private static final ThreadLocal<ScratchBuffers> SCRATCH = ThreadLocal.withInitial(ScratchBuffers::new);
+
+    private final Mode mode;
     private long totalComputeTime = 0;
 
+    /**
+     * The way the Smith-Waterman matrices are computed
+     */
+    public enum Mode {
+        /**
+         * compute the complete n*m matrices
+         */
+        FULL,
+
+        /**
+         * compute only a band of diagonals around the expected alignment, widening it until the alignment is
+         * provably the same as the one of the full computation
+         */
+        BANDED,
+
+        /**
+         * compute the matrices row by row using a Farrar-style striped query profile, with the horizontal gaps
+         * resolved by a lazy correction pass
+         */
+        STRIPED
+    }
+
     /**
      * return the stateless singleton instance of SmithWatermanJavaAligner
      */
@@ -32,6 +82,18 @@ public final class SmithWatermanJavaAligner implements SmithWatermanAligner {
         return ALIGNER;
     }
 
+    /**
+     * return the stateless singleton instance of SmithWatermanJavaAligner that uses the requested mode
+     */
+    public static SmithWatermanJavaAligner getInstance(final Mode mode) {
+        Utils.nonNull(mode);
+        switch (mode) {
+            case BANDED: return BANDED_ALIGNER;
+            case STRIPED: return STRIPED_ALIGNER;
+            default: return ALIGNER;
+        }
+    }
+
     /**
      * The state of a trace step through the matrix
      */
@@ -46,7 +108,16 @@ public final class SmithWatermanJavaAligner implements SmithWatermanAligner {
      * Create a new SW pairwise aligner, this has no state so instead of creating new instances, we create a singleton which is
      * accessible via {@link #getInstance}
      */
-    private SmithWatermanJavaAligner(){}
+    private SmithWatermanJavaAligner(final Mode mode){
+        this.mode = mode;
+    }
+
+    /**
+     * @return the mode used to compute the alignments
+     */
+    public Mode getMode() {
+        return mode;
+    }
 
     /**
      * Aligns the alternate sequence to the reference sequence
@@ -80,21 +151,33 @@ public final class SmithWatermanJavaAligner implements SmithWatermanAligner {
             lce.add(makeElement(State.MATCH, alternate.length));
             alignmentResult = new SWPairwiseAlignmentResult(AlignmentUtils.consolidateCigar(new Cigar(lce)), matchIndex);
         }
+        else if (mode == Mode.BANDED && canSkipCells(reference.length, alternate.length, parameters)) {
+            alignmentResult = alignBanded(reference, alternate, parameters, overhangStrategy);
+        }
+        else if (mode == Mode.STRIPED && canSkipCells(reference.length, alternate.length, parameters)) {
+            alignmentResult = alignStriped(reference, alternate, parameters, overhangStrategy);
+        }
         else {
-            // run full Smith-Waterman
-            final int n = reference.length+1;
-            final int m = alternate.length+1;
-            final int[][] sw = new int[n][m];
-            final int[][] btrack=new int[n][m];
-
-            calculateMatrix(reference, alternate, sw, btrack, overhangStrategy, parameters);
-            alignmentResult = calculateCigar(sw, btrack, overhangStrategy); // length of the segment (continuous matches, insertions or deletions)
+            alignmentResult = alignFull(reference, alternate, parameters, overhangStrategy);
         }
 
         totalComputeTime += System.nanoTime() - startTime;
         return alignmentResult;
     }
 
+    /**
+     * Runs the full Smith-Waterman computation
+     */
+    private static SWPairwiseAlignmentResult alignFull(final byte[] reference, final byte[] alternate, final SWParameters parameters, final SWOverhangStrategy overhangStrategy) {
+        final int n = reference.length+1;
+        final int m = alternate.length+1;
+        final int[][] sw = new int[n][m];
+        final int[][] btrack=new int[n][m];
+
+        calculateMatrix(reference, alternate, sw, btrack, overhangStrategy, parameters);
+        return calculateCigar(reference.length, alternate.length, new FullMatrix(sw, btrack), overhangStrategy);
+    }
+
     /**
      * Calculates the SW matrices for the given sequences
      * @param reference  ref sequence
@@ -113,9 +196,7 @@ public final class SmithWatermanJavaAligner implements SmithWatermanAligner {
         final int ncol = sw[0].length;//alternate.length+1; formerly m
         final int nrow = sw.length;// reference.length+1; formerly n
 
-        final int MATRIX_MIN_CUTOFF = (int) -1.0e8;   // never let matrix elements drop below this cutoff
-
-        final int lowInitValue= Integer.MIN_VALUE/2;
+        final int lowInitValue= LOW_INIT_VALUE;
         final int[] best_gap_v = new int[ncol+1];
         Arrays.fill(best_gap_v, lowInitValue);
         final int[] gap_size_v = new int[ncol+1];
@@ -225,6 +306,550 @@ public final class SmithWatermanJavaAligner implements SmithWatermanAligner {
         }
     }
 
+    /**
+     * The banded and striped modes rely on the following properties, which hold for every sensible set of parameters:
+     * a match is the best thing that can happen to a diagonal step, a single long gap always beats several shorter
+     * ones of the same total length, and no cell of the matrix can ever get close to {@link #MATRIX_MIN_CUTOFF}.
+     * When they don't hold we simply run the full computation.
+     */
+    private static boolean canSkipCells(final int refLength, final int altLength, final SWParameters parameters) {
+        final int w_match = parameters.getMatchValue();
+        final int w_mismatch = parameters.getMismatchPenalty();
+        final int w_open = parameters.getGapOpenPenalty();
+        final int w_extend = parameters.getGapExtendPenalty();
+        if ( w_match < 0 || w_mismatch > w_match || w_extend > 0 || w_open > w_extend ) {
+            return false;
+        }
+        final long maxStep = Math.max(Math.max(w_match, -w_mismatch), -w_open);
+        return (refLength + altLength + STRIPED_LANES + 2L) * maxStep < -(long) MATRIX_MIN_CUTOFF;
+    }
+
+    /**
+     * Runs Smith-Waterman over a band of diagonals of the matrix.
+     *
+     * The band covers all the diagonals between the top left corner and the bottom right corner of the matrix,
+     * plus {@code bandWidth} diagonals on each side. After filling it we compute an upper bound for the score of
+     * any path that goes through a cell outside of the band. If that bound is strictly below the best score found
+     * inside the band, then all the cells that the full computation would visit during the backtrack, and all the
+     * decisions it would make there (including ties), are the same in the band, so the CIGAR is identical.
+     * Otherwise the band is doubled, until it covers the whole matrix.
+     */
+    private static SWPairwiseAlignmentResult alignBanded(final byte[] reference, final byte[] alternate, final SWParameters parameters, final SWOverhangStrategy overhangStrategy) {
+        final int n = reference.length;
+        final int m = alternate.length;
+        final ScratchBuffers scratch = SCRATCH.get();
+        final int[] row0 = scratch.get(ScratchBuffers.ROW0, m + 1);
+        final int[] col0 = scratch.get(ScratchBuffers.COL0, n + 1);
+        initializeEdges(row0, m, col0, n, overhangStrategy, parameters);
+
+        final int expectedLow = Math.min(0, m - n);
+        final int expectedHigh = Math.max(0, m - n);
+        for ( int bandWidth = INITIAL_BAND_WIDTH; ; bandWidth *= 2 ) {
+            final int lowDiagonal = expectedLow - bandWidth;
+            final int highDiagonal = expectedHigh + bandWidth;
+            if ( lowDiagonal <= 1 - n && highDiagonal >= m - 1 ) {
+                // the band covers all the cells anyway
+                return alignFull(reference, alternate, parameters, overhangStrategy);
+            }
+
+            final BandedMatrix matrix = new BandedMatrix(reference, alternate, row0, col0, lowDiagonal, highDiagonal, scratch);
+            matrix.fill(parameters);
+            if ( outOfBandScoreUpperBound(row0, col0, n, m, lowDiagonal, highDiagonal, parameters) < bestFinalScore(n, m, matrix, overhangStrategy) ) {
+                return calculateCigar(n, m, matrix, overhangStrategy);
+            }
+        }
+    }
+
+    /**
+     * Initializes the first row and column of the matrix the same way {@link #calculateMatrix} does
+     */
+    private static void initializeEdges(final int[] row0, final int m, final int[] col0, final int n,
+                                        final SWOverhangStrategy overhangStrategy, final SWParameters parameters) {
+        Arrays.fill(row0, 0, m + 1, 0);
+        Arrays.fill(col0, 0, n + 1, 0);
+        if ( overhangStrategy == SWOverhangStrategy.INDEL || overhangStrategy == SWOverhangStrategy.LEADING_INDEL ) {
+            int currentValue = parameters.getGapOpenPenalty();
+            for ( int j = 1; j <= m; j++ ) {
+                row0[j] = currentValue;
+                currentValue += parameters.getGapExtendPenalty();
+            }
+            currentValue = parameters.getGapOpenPenalty();
+            for ( int i = 1; i <= n; i++ ) {
+                col0[i] = currentValue;
+                currentValue += parameters.getGapExtendPenalty();
+            }
+        }
+    }
+
+    /**
+     * Upper bound for the score of any path that starts on the first row or column of the matrix and goes through
+     * at least one cell (not on the first row or column) whose diagonal is outside of [lowDiagonal, highDiagonal].
+     *
+     * Diagonal steps never change the diagonal and score at most a match, so a path starting on diagonal d with r rows
+     * and c columns left can make at most min(r, c) of them, and needs gaps of total length at least e to reach a
+     * diagonal at distance e. Such gaps cost at least as much as a single gap of length e.
+     */
+    private static long outOfBandScoreUpperBound(final int[] row0, final int[] col0, final int n, final int m,
+                                                 final int lowDiagonal, final int highDiagonal, final SWParameters parameters) {
+        long bound = Long.MIN_VALUE;
+        for ( int j = 0; j < m; j++ ) {
+            bound = Math.max(bound, pathScoreUpperBound(row0[j], n, m - j, j, lowDiagonal, highDiagonal, parameters));
+        }
+        for ( int i = 1; i < n; i++ ) {
+            bound = Math.max(bound, pathScoreUpperBound(col0[i], n - i, m, -i, lowDiagonal, highDiagonal, parameters));
+        }
+        return bound;
+    }
+
+    private static long pathScoreUpperBound(final int startScore, final int rowsLeft, final int columnsLeft, final int diagonal,
+                                            final int lowDiagonal, final int highDiagonal, final SWParameters parameters) {
+        final long maxDiagonalSteps = Math.min(rowsLeft, columnsLeft);
+        if ( diagonal < lowDiagonal || diagonal > highDiagonal ) {
+            return startScore + maxDiagonalSteps * parameters.getMatchValue();
+        }
+        final int gapLength = Math.min(diagonal - lowDiagonal, highDiagonal - diagonal) + 1;
+        if ( gapLength > rowsLeft + columnsLeft ) {
+            return Long.MIN_VALUE;
+        }
+        return startScore + Math.min(maxDiagonalSteps, (rowsLeft + columnsLeft - gapLength) / 2) * parameters.getMatchValue()
+                + parameters.getGapOpenPenalty() + (gapLength - 1L) * parameters.getGapExtendPenalty();
+    }
+
+    /**
+     * @return the score of the cell the backtrack starts from in {@link #calculateCigar}
+     */
+    private static int bestFinalScore(final int refLength, final int altLength, final AlignmentMatrix matrix, final SWOverhangStrategy overhangStrategy) {
+        if ( overhangStrategy == SWOverhangStrategy.INDEL ) {
+            return matrix.getScore(refLength, altLength);
+        }
+        int best = Integer.MIN_VALUE;
+        for ( int i = 1; i <= refLength; i++ ) {
+            best = Math.max(best, matrix.getScore(i, altLength));
+        }
+        if ( overhangStrategy != SWOverhangStrategy.LEADING_INDEL ) {
+            for ( int j = 1; j <= altLength; j++ ) {
+                best = Math.max(best, matrix.getScore(refLength, j));
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Runs Smith-Waterman row by row over a striped query profile of the alternate sequence, in the manner of
+     * Farrar (Bioinformatics, 2007).
+     *
+     * Each row is computed in three passes: diagonal and vertical moves (which only depend on the previous row),
+     * horizontal moves first within each lane of the stripe and then lazily carried over from one lane to the next,
+     * and finally the choice between the three moves. Because a single long gap always scores at least as well as
+     * a shorter one opened after a horizontal move, the horizontal gaps can be computed before that choice is made
+     * without changing their scores or lengths.
+     */
+    private static SWPairwiseAlignmentResult alignStriped(final byte[] reference, final byte[] alternate, final SWParameters parameters, final SWOverhangStrategy overhangStrategy) {
+        final int n = reference.length;
+        final int m = alternate.length;
+        final ScratchBuffers scratch = SCRATCH.get();
+        final int[] row0 = scratch.get(ScratchBuffers.ROW0, m + 1);
+        final int[] col0 = scratch.get(ScratchBuffers.COL0, n + 1);
+        initializeEdges(row0, m, col0, n, overhangStrategy, parameters);
+
+        final StripedMatrix matrix = new StripedMatrix(reference, alternate, row0, col0, scratch);
+        matrix.fill(parameters);
+        return calculateCigar(n, m, matrix, overhangStrategy);
+    }
+
+    /**
+     * Read access to the scores and backtrack information computed by one of the modes
+     */
+    private interface AlignmentMatrix {
+        /**
+         * @return the score of cell (i, j), for 1 <= i <= refLength and 1 <= j <= altLength
+         */
+        int getScore(final int i, final int j);
+
+        /**
+         * @return the backtrack value of cell (i, j): 0 for a diagonal move, the length of the gap for a vertical move,
+         * minus the length of the gap for a horizontal move
+         */
+        int getBacktrack(final int i, final int j);
+    }
+
+    private static final class FullMatrix implements AlignmentMatrix {
+        private final int[][] sw;
+        private final int[][] btrack;
+
+        FullMatrix(final int[][] sw, final int[][] btrack) {
+            this.sw = sw;
+            this.btrack = btrack;
+        }
+
+        @Override
+        public int getScore(final int i, final int j) {
+            return sw[i][j];
+        }
+
+        @Override
+        public int getBacktrack(final int i, final int j) {
+            return btrack[i][j];
+        }
+    }
+
+    /**
+     * Scores and backtrack of the cells (i, j) with lowDiagonal <= j - i <= highDiagonal, stored row by row.
+     * Cell (i, j) is found at index i * width + j - i - lowDiagonal. Cells out of the band behave as if their
+     * score was {@link #LOW_INIT_VALUE}.
+     */
+    private static final class BandedMatrix implements AlignmentMatrix {
+        private final byte[] reference;
+        private final byte[] alternate;
+        private final int[] row0;
+        private final int[] col0;
+        private final int lowDiagonal;
+        private final int highDiagonal;
+        private final int width;
+        private final int[] scores;
+        private final int[] btrack;
+        private final int[] bestGapV;
+        private final int[] gapSizeV;
+
+        BandedMatrix(final byte[] reference, final byte[] alternate, final int[] row0, final int[] col0,
+                     final int lowDiagonal, final int highDiagonal, final ScratchBuffers scratch) {
+            this.reference = reference;
+            this.alternate = alternate;
+            this.row0 = row0;
+            this.col0 = col0;
+            this.lowDiagonal = lowDiagonal;
+            this.highDiagonal = highDiagonal;
+            this.width = highDiagonal - lowDiagonal + 1;
+            final int size = (reference.length + 1) * width;
+            this.scores = scratch.get(ScratchBuffers.SCORES, size);
+            this.btrack = scratch.get(ScratchBuffers.BACKTRACK, size);
+            this.bestGapV = scratch.get(ScratchBuffers.BEST_GAP_V, alternate.length + 1);
+            this.gapSizeV = scratch.get(ScratchBuffers.GAP_SIZE_V, alternate.length + 1);
+        }
+
+        void fill(final SWParameters parameters) {
+            final int n = reference.length;
+            final int m = alternate.length;
+            final int w_open = parameters.getGapOpenPenalty();
+            final int w_extend = parameters.getGapExtendPenalty();
+            final int w_match = parameters.getMatchValue();
+            final int w_mismatch = parameters.getMismatchPenalty();
+
+            // column j enters the band at row max(1, j - highDiagonal), by then the only vertical gap
+            // that the band knows about is the one starting from the first row
+            for ( int j = 1; j <= m; j++ ) {
+                final int firstRow = Math.max(1, j - highDiagonal);
+                if ( firstRow == 1 ) {
+                    bestGapV[j] = LOW_INIT_VALUE;
+                    gapSizeV[j] = 0;
+                } else {
+                    bestGapV[j] = row0[j] + w_open + (firstRow - 2) * w_extend;
+                    gapSizeV[j] = firstRow - 1;
+                }
+            }
+
+            for ( int i = 1; i <= n; i++ ) {
+                final int firstColumn = Math.max(1, i + lowDiagonal);
+                final int lastColumn = Math.min(m, i + highDiagonal);
+                if ( firstColumn > lastColumn ) {
+                    continue;
+                }
+                final byte a_base = reference[i-1];
+
+                // same as above for the horizontal gaps
+                int bestGapH;
+                int gapSizeH;
+                if ( firstColumn == 1 ) {
+                    bestGapH = LOW_INIT_VALUE;
+                    gapSizeH = 0;
+                } else {
+                    bestGapH = col0[i] + w_open + (firstColumn - 2) * w_extend;
+                    gapSizeH = firstColumn - 1;
+                }
+
+                final int rowStart = i * width - i - lowDiagonal;
+                for ( int j = firstColumn; j <= lastColumn; j++ ) {
+                    final int index = rowStart + j;
+                    final int offset = j - i - lowDiagonal;
+
+                    final int diagScore = i == 1 ? row0[j-1] : (j == 1 ? col0[i-1] : scores[index - width]);
+                    final int step_diag = diagScore + (a_base == alternate[j-1] ? w_match : w_mismatch);
+
+                    final int upScore = i == 1 ? row0[j] : (offset < width - 1 ? scores[index - width + 1] : LOW_INIT_VALUE);
+                    int prev_gap = upScore + w_open;
+                    bestGapV[j] += w_extend;
+                    if ( prev_gap > bestGapV[j] ) {
+                        bestGapV[j] = prev_gap;
+                        gapSizeV[j] = 1;
+                    } else {
+                        gapSizeV[j]++;
+                    }
+                    final int step_down = bestGapV[j];
+
+                    final int leftScore = j == 1 ? col0[i] : (offset > 0 ? scores[index - 1] : LOW_INIT_VALUE);
+                    prev_gap = leftScore + w_open;
+                    bestGapH += w_extend;
+                    if ( prev_gap > bestGapH ) {
+                        bestGapH = prev_gap;
+                        gapSizeH = 1;
+                    } else {
+                        gapSizeH++;
+                    }
+                    final int step_right = bestGapH;
+
+                    if ( step_diag >= step_down && step_diag >= step_right ) {
+                        scores[index] = Math.max(MATRIX_MIN_CUTOFF, step_diag);
+                        btrack[index] = 0;
+                    } else if ( step_right >= step_down ) {
+                        scores[index] = Math.max(MATRIX_MIN_CUTOFF, step_right);
+                        btrack[index] = -gapSizeH;
+                    } else {
+                        scores[index] = Math.max(MATRIX_MIN_CUTOFF, step_down);
+                        btrack[index] = gapSizeV[j];
+                    }
+                }
+            }
+        }
+
+        private boolean isInBand(final int i, final int j) {
+            final int diagonal = j - i;
+            return diagonal >= lowDiagonal && diagonal <= highDiagonal;
+        }
+
+        @Override
+        public int getScore(final int i, final int j) {
+            return isInBand(i, j) ? scores[i * width + j - i - lowDiagonal] : LOW_INIT_VALUE;
+        }
+
+        @Override
+        public int getBacktrack(final int i, final int j) {
+            Utils.validate(isInBand(i, j), "the backtrack left the band");
+            return btrack[i * width + j - i - lowDiagonal];
+        }
+    }
+
+    /**
+     * Scores and backtrack computed over a striped layout of the alternate sequence: with {@link #STRIPED_LANES} lanes
+     * of {@code segmentLength} segments each, alternate position q (column q + 1) is stored at
+     * (q % segmentLength) * STRIPED_LANES + q / segmentLength, so that consecutive elements of each segment are
+     * independent of each other within a row.
+     */
+    private static final class StripedMatrix implements AlignmentMatrix {
+        private final byte[] reference;
+        private final byte[] alternate;
+        private final int[] row0;
+        private final int[] col0;
+        private final int segmentLength;
+        private final int stride;
+        private final int[] profile;
+        private final int[] profileIndex;
+        private final int[] previousRow;
+        private final int[] currentRow;
+        private final int[] diagonalStep;
+        private final int[] bestGapV;
+        private final int[] gapSizeV;
+        private final int[] bestGapH;
+        private final int[] gapSizeH;
+        private final int[] btrack;
+        private final int[] lastColumn;
+
+        StripedMatrix(final byte[] reference, final byte[] alternate, final int[] row0, final int[] col0, final ScratchBuffers scratch) {
+            this.reference = reference;
+            this.alternate = alternate;
+            this.row0 = row0;
+            this.col0 = col0;
+            this.segmentLength = (alternate.length + STRIPED_LANES - 1) / STRIPED_LANES;
+            this.stride = segmentLength * STRIPED_LANES;
+            this.profileIndex = scratch.profileIndex();
+            this.profile = scratch.get(ScratchBuffers.PROFILE, distinctBases(reference, profileIndex) * stride);
+            this.previousRow = scratch.get(ScratchBuffers.PREVIOUS_ROW, stride);
+            this.currentRow = scratch.get(ScratchBuffers.CURRENT_ROW, stride);
+            this.diagonalStep = scratch.get(ScratchBuffers.DIAGONAL_STEP, stride);
+            this.bestGapV = scratch.get(ScratchBuffers.BEST_GAP_V, stride);
+            this.gapSizeV = scratch.get(ScratchBuffers.GAP_SIZE_V, stride);
+            this.bestGapH = scratch.get(ScratchBuffers.BEST_GAP_H, stride);
+            this.gapSizeH = scratch.get(ScratchBuffers.GAP_SIZE_H, stride);
+            this.btrack = scratch.get(ScratchBuffers.BACKTRACK, (reference.length + 1) * stride);
+            this.lastColumn = scratch.get(ScratchBuffers.SCORES, reference.length + 1);
+        }
+
+        /**
+         * Assigns consecutive indexes to the distinct bases of the reference
+         * @return the number of distinct bases
+         */
+        private static int distinctBases(final byte[] reference, final int[] profileIndex) {
+            Arrays.fill(profileIndex, -1);
+            int count = 0;
+            for ( final byte base : reference ) {
+                if ( profileIndex[base & 0xFF] == -1 ) {
+                    profileIndex[base & 0xFF] = count++;
+                }
+            }
+            return count;
+        }
+
+        private int stripedPosition(final int q) {
+            return (q % segmentLength) * STRIPED_LANES + q / segmentLength;
+        }
+
+        void fill(final SWParameters parameters) {
+            final int n = reference.length;
+            final int m = alternate.length;
+            final int w_open = parameters.getGapOpenPenalty();
+            final int w_extend = parameters.getGapExtendPenalty();
+            final int w_match = parameters.getMatchValue();
+            final int w_mismatch = parameters.getMismatchPenalty();
+            final int last = (segmentLength - 1) * STRIPED_LANES;
+
+            // striped query profile: the score of a diagonal step for each distinct reference base and alternate position;
+            // the padding positions past the end of the alternate sequence never feed into real cells
+            for ( int base = 0; base < 256; base++ ) {
+                final int profileOffset = profileIndex[base] * stride;
+                if ( profileOffset < 0 ) {
+                    continue;
+                }
+                for ( int q = 0; q < stride; q++ ) {
+                    profile[profileOffset + stripedPosition(q)] = q < m && alternate[q] == (byte) base ? w_match : w_mismatch;
+                }
+            }
+
+            for ( int q = 0; q < stride; q++ ) {
+                previousRow[stripedPosition(q)] = q < m ? row0[q + 1] : w_mismatch;
+            }
+            Arrays.fill(bestGapV, 0, stride, LOW_INIT_VALUE);
+            Arrays.fill(gapSizeV, 0, stride, 0);
+
+            int[] previous = previousRow;
+            int[] current = currentRow;
+            for ( int i = 1; i <= n; i++ ) {
+                final int profileOffset = profileIndex[reference[i-1] & 0xFF] * stride;
+
+                // diagonal steps: the first segment is fed by the last segment of the previous row shifted by one lane
+                diagonalStep[0] = col0[i-1] + profile[profileOffset];
+                for ( int lane = 1; lane < STRIPED_LANES; lane++ ) {
+                    diagonalStep[lane] = previous[last + lane - 1] + profile[profileOffset + lane];
+                }
+                for ( int pos = STRIPED_LANES; pos < stride; pos++ ) {
+                    diagonalStep[pos] = previous[pos - STRIPED_LANES] + profile[profileOffset + pos];
+                }
+
+                // vertical steps, and the best of the two moves that don't depend on the current row
+                for ( int pos = 0; pos < stride; pos++ ) {
+                    final int prev_gap = previous[pos] + w_open;
+                    final int extended = bestGapV[pos] + w_extend;
+                    final boolean opened = prev_gap > extended;
+                    bestGapV[pos] = opened ? prev_gap : extended;
+                    gapSizeV[pos] = opened ? 1 : gapSizeV[pos] + 1;
+                    current[pos] = Math.max(diagonalStep[pos], bestGapV[pos]);
+                }
+
+                // horizontal steps within each lane
+                bestGapH[0] = col0[i] + w_open;
+                gapSizeH[0] = 1;
+                for ( int lane = 1; lane < STRIPED_LANES; lane++ ) {
+                    bestGapH[lane] = current[last + lane - 1] + w_open;
+                    gapSizeH[lane] = 1;
+                }
+                for ( int pos = STRIPED_LANES; pos < stride; pos++ ) {
+                    final int prev_gap = current[pos - STRIPED_LANES] + w_open;
+                    final int extended = bestGapH[pos - STRIPED_LANES] + w_extend;
+                    final boolean opened = prev_gap > extended;
+                    bestGapH[pos] = opened ? prev_gap : extended;
+                    gapSizeH[pos] = opened ? 1 : gapSizeH[pos - STRIPED_LANES] + 1;
+                }
+
+                // lazily carry the horizontal gaps over from one lane to the next; a gap carried from the previous lane
+                // is always longer than the ones opened within the lane, so it wins ties
+                for ( int lane = 1; lane < STRIPED_LANES; lane++ ) {
+                    int carry = bestGapH[last + lane - 1] + w_extend;
+                    int carrySize = gapSizeH[last + lane - 1] + 1;
+                    for ( int pos = lane; pos < stride && carry >= bestGapH[pos]; pos += STRIPED_LANES ) {
+                        bestGapH[pos] = carry;
+                        gapSizeH[pos] = carrySize;
+                        carry += w_extend;
+                        carrySize++;
+                    }
+                }
+
+                // choice between the three moves
+                final int btrackOffset = i * stride;
+                for ( int pos = 0; pos < stride; pos++ ) {
+                    final int step_diag = diagonalStep[pos];
+                    final int step_down = bestGapV[pos];
+                    final int step_right = bestGapH[pos];
+                    if ( step_diag >= step_down && step_diag >= step_right ) {
+                        current[pos] = step_diag;
+                        btrack[btrackOffset + pos] = 0;
+                    } else if ( step_right >= step_down ) {
+                        current[pos] = step_right;
+                        btrack[btrackOffset + pos] = -gapSizeH[pos];
+                    } else {
+                        current[pos] = step_down;
+                        btrack[btrackOffset + pos] = gapSizeV[pos];
+                    }
+                }
+                lastColumn[i] = current[stripedPosition(m - 1)];
+
+                final int[] tmp = previous;
+                previous = current;
+                current = tmp;
+            }
+            if ( previous != previousRow ) {
+                System.arraycopy(previous, 0, previousRow, 0, stride);
+            }
+        }
+
+        @Override
+        public int getScore(final int i, final int j) {
+            if ( j == alternate.length ) {
+                return lastColumn[i];
+            }
+            Utils.validate(i == reference.length, "only the last row and column of the striped matrix are kept");
+            return previousRow[stripedPosition(j - 1)];
+        }
+
+        @Override
+        public int getBacktrack(final int i, final int j) {
+            return btrack[i * stride + stripedPosition(j - 1)];
+        }
+    }
+
+    /**
+     * Growable per thread buffers, each of the matrices picks the slots it needs
+     */
+    private static final class ScratchBuffers {
+        static final int ROW0 = 0;
+        static final int COL0 = 1;
+        static final int SCORES = 2;
+        static final int BACKTRACK = 3;
+        static final int BEST_GAP_V = 4;
+        static final int GAP_SIZE_V = 5;
+        static final int BEST_GAP_H = 6;
+        static final int GAP_SIZE_H = 7;
+        static final int PREVIOUS_ROW = 8;
+        static final int CURRENT_ROW = 9;
+        static final int DIAGONAL_STEP = 10;
+        static final int PROFILE = 11;
+        private static final int NUMBER_OF_SLOTS = 12;
+
+        private final int[][] buffers = new int[NUMBER_OF_SLOTS][0];
+        private final int[] profileIndex = new int[256];
+
+        /**
+         * @return a buffer of at least the requested size, whose content is undefined
+         */
+        int[] get(final int slot, final int size) {
+            if ( buffers[slot].length < size ) {
+                buffers[slot] = new int[Math.max(size, buffers[slot].length * 2)];
+            }
+            return buffers[slot];
+        }
+
+        int[] profileIndex() {
+            return profileIndex;
+        }
+    }
+
     /*
      * Class to store the result of calculating the CIGAR from the back track matrix
      */
@@ -251,18 +876,16 @@ public final class SmithWatermanJavaAligner implements SmithWatermanAligner {
     /**
      * Calculates the CIGAR for the alignment from the back track matrix
      *
-     * @param sw                   the Smith-Waterman matrix to use
-     * @param btrack               the back track matrix to use
+     * @param refLength            length of the reference sequence
+     * @param altLength            length of the alternate sequence
+     * @param matrix               the Smith-Waterman and back track matrices to use
      * @param overhangStrategy    the strategy to use for dealing with overhangs
      * @return non-null SWPairwiseAlignmentResult object
      */
-    private static SWPairwiseAlignmentResult calculateCigar(final int[][] sw, final int[][] btrack, final SWOverhangStrategy overhangStrategy) {
+    private static SWPairwiseAlignmentResult calculateCigar(final int refLength, final int altLength, final AlignmentMatrix matrix, final SWOverhangStrategy overhangStrategy) {
         // p holds the position we start backtracking from; we will be assembling a cigar in the backwards order
         int p1 = 0, p2 = 0;
 
-        final int refLength = sw.length-1;
-        final int altLength = sw[0].length-1;
-
         int maxscore = Integer.MIN_VALUE; // sw scores are allowed to be negative
         int segment_length = 0; // length of the segment (continuous matches, insertions or deletions)
 
@@ -277,8 +900,8 @@ public final class SmithWatermanJavaAligner implements SmithWatermanAligner {
             //excluding high scoring local alignments
             p2=altLength;
 
-            for(int i=1;i<sw.length;i++)  {
-               final int curScore = sw[i][altLength];
+            for(int i=1;i<=refLength;i++)  {
+               final int curScore = matrix.getScore(i, altLength);
                if (curScore >= maxscore ) {
                     p1 = i;
                     maxscore = curScore;
@@ -286,9 +909,8 @@ public final class SmithWatermanJavaAligner implements SmithWatermanAligner {
             }
             // now look for a larger score on the bottom-most row
             if ( overhangStrategy != SWOverhangStrategy.LEADING_INDEL ) {
-                final int[] bottomRow=sw[refLength];
-                for ( int j = 1 ; j < bottomRow.length; j++) {
-                    final int curScore=bottomRow[j];
+                for ( int j = 1 ; j <= altLength; j++) {
+                    final int curScore=matrix.getScore(refLength, j);
                     // data_offset is the offset of [n][j]
                     if ( curScore > maxscore ||
                             (curScore == maxscore && Math.abs(refLength - j) < Math.abs(p1 - p2) ) ) {
@@ -311,7 +933,7 @@ public final class SmithWatermanJavaAligner implements SmithWatermanAligner {
 
         State state = State.MATCH;
         do {
-            final int btr = btrack[p1][p2];
+            final int btr = matrix.getBacktrack(p1, p2);
             final State new_state;
             int step_length = 1;
             if ( btr > 0 ) {
@@ -388,6 +1010,6 @@ public final class SmithWatermanJavaAligner implements SmithWatermanAligner {
 
     @Override
     public void close() {
-        logger.info(String.format("Total compute time in java Smith-Waterman : %.2f sec", totalComputeTime * 1e-9));
+        logger.info(String.format("Total compute time in java Smith-Waterman (%s) : %.2f sec", mode, totalComputeTime * 1e-9));
     }
 }
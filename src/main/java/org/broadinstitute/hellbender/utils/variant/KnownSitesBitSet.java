@@ -0,0 +1,226 @@
+package org.broadinstitute.hellbender.utils.variant;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.util.Locatable;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The reference positions covered by known sites of variation, as one bit set per contig, read from a file made by
+ * {@link #write}.
+ *
+ * <p>
+ *     Every position from the start to the end of a known site is set, so indels cover their whole span.  The file
+ *     is mapped into memory read-only, so opening it costs next to nothing, and the bits are shared by every
+ *     process that opens the same file.  Files that can't be mapped, like those on cloud storage, are read into memory.
+ * </p>
+ *
+ * <p>
+ *     The file, in big-endian order, is made of a header and the bits of each contig in the order of the header.  The
+ *     header has a magic number, a version, the number of contigs and then, for each contig, its name (as written by
+ *     {@link DataOutputStream#writeUTF}), its length and the offset in the file of its bits.  The bits of a contig are
+ *     longs, with the 1-based position p at bit p % 64 of long p / 64.
+ * </p>
+ */
+public final class KnownSitesBitSet {
+    private static final Logger logger = LogManager.getLogger(KnownSitesBitSet.class);
+
+    public static final String FILE_EXTENSION = ".knownsites";
+
+    private static final long MAGIC = 0x4B4E4F574E534954L; // "KNOWNSIT"
+    private static final int VERSION = 1;
+
+    private final Map<String, LongBuffer> contigBits = new LinkedHashMap<>();
+
+    /**
+     * Open a known sites file made by {@link #write}
+     */
+    public KnownSitesBitSet(final Path path) {
+        Utils.nonNull(path);
+        final Map<String, Long> contigOffsets = new LinkedHashMap<>();
+        final Map<String, Integer> contigNumWords = new LinkedHashMap<>();
+        try ( final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path))) ) {
+            if ( in.readLong() != MAGIC || in.readInt() != VERSION ) {
+                throw new UserException.MalformedFile(path, "not a known sites file, or made by a different version");
+            }
+            final int numContigs = in.readInt();
+            for ( int i = 0; i < numContigs; i++ ) {
+                final String contig = in.readUTF();
+                final int length = in.readInt();
+                contigOffsets.put(contig, in.readLong());
+                contigNumWords.put(contig, numWords(length));
+            }
+        } catch ( final IOException e ) {
+            throw new UserException.CouldNotReadInputFile(path, e);
+        }
+
+        try ( final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ) ) {
+            for ( final Map.Entry<String, Long> contig : contigOffsets.entrySet() ) {
+                final int numWords = contigNumWords.get(contig.getKey());
+                contigBits.put(contig.getKey(), readWords(channel, contig.getValue(), numWords));
+            }
+        } catch ( final IOException e ) {
+            throw new UserException.CouldNotReadInputFile(path, e);
+        }
+    }
+
+    private static LongBuffer readWords(final FileChannel channel, final long offset, final int numWords) throws IOException {
+        try {
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, offset, 8L * numWords).asLongBuffer();
+        } catch ( final UnsupportedOperationException e ) {
+            final ByteBuffer bytes = ByteBuffer.allocate(8 * numWords);
+            channel.position(offset);
+            while ( bytes.hasRemaining() ) {
+                if ( channel.read(bytes) < 0 ) {
+                    throw new IOException("Known sites file ends before the bits of all of its contigs");
+                }
+            }
+            bytes.flip();
+            return bytes.asLongBuffer();
+        }
+    }
+
+    /**
+     * Write the positions covered by the given known sites
+     *
+     * @param output file to write
+     * @param dictionary contigs of the reference; known sites on other contigs are skipped, with a warning
+     * @param knownSites known sites, in any order
+     */
+    public static void write(final Path output, final SAMSequenceDictionary dictionary, final Iterator<? extends Locatable> knownSites) {
+        Utils.nonNull(output);
+        Utils.nonNull(dictionary);
+        Utils.nonNull(knownSites);
+
+        // only contigs with known sites get their bits allocated
+        final Map<String, long[]> bits = new LinkedHashMap<>();
+        final Map<String, Integer> skippedSites = new LinkedHashMap<>();
+        while ( knownSites.hasNext() ) {
+            final Locatable site = knownSites.next();
+            final SAMSequenceRecord contig = dictionary.getSequence(site.getContig());
+            if ( contig == null ) {
+                skippedSites.merge(site.getContig(), 1, Integer::sum);
+                continue;
+            }
+            final long[] words = bits.computeIfAbsent(contig.getSequenceName(), c -> new long[numWords(contig.getSequenceLength())]);
+            final int end = Math.min(site.getEnd(), contig.getSequenceLength());
+            for ( int position = Math.max(site.getStart(), 1); position <= end; position++ ) {
+                words[position >>> 6] |= 1L << position;
+            }
+        }
+        skippedSites.forEach((contig, numSites) ->
+                logger.warn("Skipped " + numSites + " known sites on contig " + contig + ", which isn't in the sequence dictionary"));
+
+        try ( final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(output))) ) {
+            // the bits start after the header, aligned to longs; the size of the header doesn't depend on the offsets
+            final int headerSize = makeHeader(dictionary, 0L).length;
+            final long firstOffset = (headerSize + 7) / 8 * 8;
+            out.write(makeHeader(dictionary, firstOffset));
+            for ( long i = headerSize; i < firstOffset; i++ ) {
+                out.writeByte(0);
+            }
+            for ( final SAMSequenceRecord contig : dictionary.getSequences() ) {
+                final long[] words = bits.get(contig.getSequenceName());
+                final int numWords = numWords(contig.getSequenceLength());
+                for ( int i = 0; i < numWords; i++ ) {
+                    out.writeLong(words == null ? 0L : words[i]);
+                }
+            }
+        } catch ( final IOException e ) {
+            throw new UserException.CouldNotCreateOutputFile(output.toString(), e);
+        }
+    }
+
+    private static byte[] makeHeader(final SAMSequenceDictionary dictionary, final long firstOffset) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try ( final DataOutputStream header = new DataOutputStream(bytes) ) {
+            header.writeLong(MAGIC);
+            header.writeInt(VERSION);
+            header.writeInt(dictionary.size());
+            long offset = firstOffset;
+            for ( final SAMSequenceRecord contig : dictionary.getSequences() ) {
+                header.writeUTF(contig.getSequenceName());
+                header.writeInt(contig.getSequenceLength());
+                header.writeLong(offset);
+                offset += 8L * numWords(contig.getSequenceLength());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static int numWords(final int contigLength) {
+        // position 0 is never set, so that positions can be used as indices
+        return (contigLength >>> 6) + 1;
+    }
+
+    /**
+     * @return true if the 1-based position on contig is covered by a known site
+     */
+    public boolean isKnownSite(final String contig, final int position) {
+        final LongBuffer words = contigBits.get(contig);
+        if ( words == null || position < 0 || (position >>> 6) >= words.limit() ) {
+            return false;
+        }
+        return (words.get(position >>> 6) & (1L << position)) != 0;
+    }
+
+    /**
+     * @return the first position from {@code from} to {@code to} (inclusive) on contig that is covered by a known site,
+     *         or -1 if there is none
+     */
+    public int nextKnownSite(final String contig, final int from, final int to) {
+        return nextPosition(contig, from, to, true);
+    }
+
+    /**
+     * @return the first position from {@code from} to {@code to} (inclusive) on contig that is not covered by a known
+     *         site, or -1 if there is none
+     */
+    public int nextUnknownSite(final String contig, final int from, final int to) {
+        return nextPosition(contig, from, to, false);
+    }
+
+    private int nextPosition(final String contig, final int from, final int to, final boolean known) {
+        final LongBuffer words = contigBits.get(contig);
+        final int start = Math.max(from, 0);
+        final int lastPosition = words == null ? -1 : Math.min(to, 64 * words.limit() - 1);
+        if ( start > lastPosition ) {
+            // positions outside of the bits are not known sites
+            return known || from > to ? -1 : Math.max(from, 0);
+        }
+
+        int wordIndex = start >>> 6;
+        long word = (known ? words.get(wordIndex) : ~words.get(wordIndex)) & (-1L << start);
+        while ( word == 0 ) {
+            if ( ++wordIndex > (lastPosition >>> 6) ) {
+                return known || lastPosition >= to ? -1 : lastPosition + 1;
+            }
+            word = known ? words.get(wordIndex) : ~words.get(wordIndex);
+        }
+        final int position = (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+        if ( position <= lastPosition ) {
+            return position;
+        }
+        return known || lastPosition >= to ? -1 : lastPosition + 1;
+    }
+}
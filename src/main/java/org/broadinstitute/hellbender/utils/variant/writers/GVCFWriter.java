@@ -1,6 +1,5 @@
 package org.broadinstitute.hellbender.utils.variant.writers;
 
-import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Range;
 import com.google.common.collect.RangeMap;
 import com.google.common.collect.TreeRangeMap;
@@ -71,8 +70,7 @@ public final class GVCFWriter implements VariantContextWriter {
      * @param gqPartitions proposed GQ partitions
      * @return a list of HomRefBlocks accepting bands of genotypes qualities split at the points specified in gqPartitions
      */
-    @VisibleForTesting
-    static RangeMap<Integer,Range<Integer>> parsePartitions(final List<Integer> gqPartitions) {
+    public static RangeMap<Integer,Range<Integer>> parsePartitions(final List<Integer> gqPartitions) {
         Utils.nonEmpty(gqPartitions);
         Utils.containsNoNull(gqPartitions, "The list of GQ partitions contains a null integer");
         final RangeMap<Integer, Range<Integer>> result = TreeRangeMap.create();
@@ -175,6 +173,36 @@ public final class GVCFWriter implements VariantContextWriter {
         return result;
     }
 
+    /**
+     * Add the sites of a band to this gVCF hom-ref state tracking one at a time, as {@link #addHomRefSite} would do
+     * for a VariantContext per site, writing out any block that gets completed.
+     *
+     * @param band a non-null band
+     */
+    private void addHomRefBand(final ReferenceConfidenceBand band) {
+        for (int site = 0; site < band.numberOfSites(); site++) {
+            final int position = band.getStart() + site;
+            if (nextAvailableStart != -1) {
+                if (position <= nextAvailableStart && band.getContig().equals(contigOfNextAvailableStart)) {
+                    continue;
+                }
+                nextAvailableStart = -1;
+                contigOfNextAvailableStart = null;
+            }
+
+            if (currentBlock == null || !band.canAddSiteTo(currentBlock, site)) {
+                emitCurrentBlock();
+                final int gq = Math.min(band.getGQ(site), MAX_GENOTYPE_QUAL);
+                final Range<Integer> partition = gqPartitions.get(gq);
+                if (partition == null) {
+                    throw new GATKException("GQ " + gq + " at " + band.getContig() + ":" + position + " didn't fit into any partition");
+                }
+                currentBlock = band.newBlockAt(site, partition.lowerEndpoint(), partition.upperEndpoint());
+            }
+            band.addSiteTo(currentBlock, site);
+        }
+    }
+
     private boolean genotypeCanBeMergedInCurrentBlock(final Genotype g) {
         return currentBlock != null
                 && currentBlock.withinBounds(Math.min(g.getGQ(), MAX_GENOTYPE_QUAL))
@@ -254,6 +282,26 @@ public final class GVCFWriter implements VariantContextWriter {
 
     }
 
+    /**
+     * Add the hom-ref sites of a band to this writer for emission, as if each of them had been given to {@link #add}
+     * as a VariantContext of its own
+     *
+     * @param band a non-null band of the same sample as the VariantContexts given to this writer
+     */
+    public void addBand(final ReferenceConfidenceBand band) {
+        Utils.nonNull(band);
+
+        if (sampleName == null) {
+            sampleName = band.getSampleName();
+        }
+
+        if (currentBlock != null && !currentBlock.isContiguous(band.getContig(), band.getStart())) {
+            // we've made a non-contiguous step (across interval, onto another chr), so finalize
+            emitCurrentBlock();
+        }
+        addHomRefBand(band);
+    }
+
     @Override
     public void setHeader(VCFHeader header) {
         underlyingWriter.setHeader(header);
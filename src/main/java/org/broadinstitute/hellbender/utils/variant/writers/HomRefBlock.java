@@ -7,16 +7,16 @@ import htsjdk.variant.variantcontext.GenotypeBuilder;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.variantcontext.VariantContextBuilder;
 import htsjdk.variant.vcf.VCFConstants;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import org.broadinstitute.hellbender.exceptions.GATKException;
 import org.broadinstitute.hellbender.utils.MathUtils;
 import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.variant.GATKVCFConstants;
 import org.broadinstitute.hellbender.utils.variant.GATKVariantContextUtils;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
-import java.util.List;
 
 /**
  * Helper class for calculating a GQ band in the GVCF writer
@@ -32,7 +32,7 @@ final class HomRefBlock implements Locatable {
 
     private final VariantContext startingVC;
     private final int minGQ, maxGQ;
-    private final List<Integer> DPs = new ArrayList<>();
+    private final IntArrayList DPs = new IntArrayList();
     private final Allele ref;
     private final int ploidy;
 
@@ -102,27 +102,43 @@ final class HomRefBlock implements Locatable {
     public void add(final int pos, final Genotype genotype) {
         Utils.nonNull(genotype, "genotype cannot be null");
         if ( ! genotype.hasPL() ) { throw new IllegalArgumentException("genotype must have PL field");}
-        if ( pos != end + 1 ) { throw new IllegalArgumentException("adding genotype at pos " + pos + " isn't contiguous with previous end " + end); }
         if ( genotype.getPloidy() != ploidy) { throw new IllegalArgumentException("cannot add a genotype with a different ploidy: " + genotype.getPloidy() + " != " + ploidy); }
+        final int[] pls = genotype.getPL();
+        add(pos, genotype.getGQ(), pls, 0, pls.length, genotype.getDP());
+    }
+
+    /**
+     * Add a hom-ref site of this band's ploidy given by its GQ, PLs and DP, as kept by {@link ReferenceConfidenceBand}.
+     *
+     * Treats GQ values > 99 as 99.
+     *
+     * @param pos Current genomic position. Must be 1 base after the previous position
+     * @param GQ the GQ of the site
+     * @param pls array that holds the PLs of the site; these are copied, not kept
+     * @param plsOffset the index of the first PL of the site in {@code pls}
+     * @param plCount the number of PLs of the site
+     * @param DP the DP of the site
+     */
+    void add(final int pos, final int GQ, final int[] pls, final int plsOffset, final int plCount, final int DP) {
+        if ( pos != end + 1 ) { throw new IllegalArgumentException("adding genotype at pos " + pos + " isn't contiguous with previous end " + end); }
         // Make sure the GQ is within the bounds of this band. Treat GQs > 99 as 99.
-        if ( !withinBounds(Math.min(genotype.getGQ(), VCFConstants.MAX_GENOTYPE_QUAL))) {
-            throw new IllegalArgumentException("cannot add a genotype with GQ=" + genotype.getGQ() + " because it's not within bounds ["
+        if ( !withinBounds(Math.min(GQ, VCFConstants.MAX_GENOTYPE_QUAL))) {
+            throw new IllegalArgumentException("cannot add a genotype with GQ=" + GQ + " because it's not within bounds ["
                     + this.getGQLowerBound() + ',' + this.getGQUpperBound() + ')');
         }
 
         if( minPLs == null ) {
-            minPLs = genotype.getPL();
+            minPLs = Arrays.copyOfRange(pls, plsOffset, plsOffset + plCount);
         } else { // otherwise take the min with the provided genotype's PLs
-            final int[] pls = genotype.getPL();
-            if (pls.length != minPLs.length) {
-                throw new GATKException("trying to merge different PL array sizes: " + pls.length + " != " + minPLs.length);
+            if (plCount != minPLs.length) {
+                throw new GATKException("trying to merge different PL array sizes: " + plCount + " != " + minPLs.length);
             }
-            for (int i = 0; i < pls.length; i++) {
-                minPLs[i] = Math.min(minPLs[i], pls[i]);
+            for (int i = 0; i < plCount; i++) {
+                minPLs[i] = Math.min(minPLs[i], pls[plsOffset + i]);
             }
         }
         end = pos;
-        DPs.add(Math.max(genotype.getDP(), 0)); // DP must be >= 0
+        DPs.add(Math.max(DP, 0)); // DP must be >= 0
     }
 
     /**
@@ -158,7 +174,14 @@ final class HomRefBlock implements Locatable {
     }
 
     public boolean isContiguous(final VariantContext vc) {
-        return (vc.getEnd() == getEnd() + 1) && startingVC.getContig().equals(vc.getContig());
+        return isContiguous(vc.getContig(), vc.getEnd());
+    }
+
+    /**
+     * @return whether a site at the given position would extend this block.
+     */
+    boolean isContiguous(final String contig, final int position) {
+        return (position == getEnd() + 1) && startingVC.getContig().equals(contig);
     }
 
     public VariantContext getStartingVC() {
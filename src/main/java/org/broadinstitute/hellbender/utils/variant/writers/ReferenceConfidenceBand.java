@@ -0,0 +1,240 @@
+package org.broadinstitute.hellbender.utils.variant.writers;
+
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeMap;
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.GenotypeBuilder;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.VariantContextBuilder;
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static htsjdk.variant.vcf.VCFConstants.MAX_GENOTYPE_QUAL;
+
+/**
+ * A run of contiguous hom-ref sites of a single sample whose GQs fall in the same GQ band, as produced by the
+ * reference confidence model.
+ *
+ * <p>
+ *     A band keeps the reference base, GQ, PLs and DP of every site in primitive arrays. It is not a VariantContext:
+ *     it is written with {@link GVCFWriter#addBand}, which merges its sites with the records around it exactly as if it
+ *     had been given one VariantContext per site.
+ * </p>
+ */
+public final class ReferenceConfidenceBand {
+
+    private final String source;
+    private final String contig;
+    private final int start;
+    private final String sampleName;
+    private final int ploidy;
+    private final byte[] refBases;
+    private final int[] genotypeQualities;
+    private final int[] likelihoods;
+    private final int[] depths;
+    private final int likelihoodCount;
+
+    private ReferenceConfidenceBand(final String source, final String contig, final int start, final String sampleName, final int ploidy,
+                                    final byte[] refBases, final int[] genotypeQualities, final int[] likelihoods, final int[] depths) {
+        this.source = source;
+        this.contig = contig;
+        this.start = start;
+        this.sampleName = sampleName;
+        this.ploidy = ploidy;
+        this.refBases = refBases;
+        this.genotypeQualities = genotypeQualities;
+        this.likelihoods = likelihoods;
+        this.depths = depths;
+        this.likelihoodCount = ploidy + 1;
+    }
+
+    public String getContig() {
+        return contig;
+    }
+
+    /**
+     * @return the position of the first site of this band.
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * @return the position of the last site of this band.
+     */
+    public int getEnd() {
+        return start + refBases.length - 1;
+    }
+
+    public String getSampleName() {
+        return sampleName;
+    }
+
+    /**
+     * @return the number of sites in this band.
+     */
+    public int numberOfSites() {
+        return refBases.length;
+    }
+
+    public int getPloidy() {
+        return ploidy;
+    }
+
+    /**
+     * @return the reference base of the {@code site}-th site of this band.
+     */
+    public byte getRefBase(final int site) {
+        return refBases[site];
+    }
+
+    /**
+     * @return the GQ of the {@code site}-th site of this band.
+     */
+    public int getGQ(final int site) {
+        return genotypeQualities[site];
+    }
+
+    /**
+     * @return the DP of the {@code site}-th site of this band.
+     */
+    public int getDP(final int site) {
+        return depths[site];
+    }
+
+    /**
+     * @return a copy of the PLs of the {@code site}-th site of this band.
+     */
+    public int[] getPL(final int site) {
+        return Arrays.copyOfRange(likelihoods, site * likelihoodCount, (site + 1) * likelihoodCount);
+    }
+
+    /**
+     * Adds the {@code site}-th site of this band to a block.
+     */
+    void addSiteTo(final HomRefBlock block, final int site) {
+        block.add(start + site, genotypeQualities[site], likelihoods, site * likelihoodCount, likelihoodCount, depths[site]);
+    }
+
+    /**
+     * @return whether the {@code site}-th site of this band can be added to the block.
+     */
+    boolean canAddSiteTo(final HomRefBlock block, final int site) {
+        return block.withinBounds(Math.min(genotypeQualities[site], MAX_GENOTYPE_QUAL))
+                && block.getPloidy() == ploidy
+                && (block.getMinPLs() == null || block.getMinPLs().length == likelihoodCount);
+    }
+
+    /**
+     * Creates a new block that starts at the {@code site}-th site of this band, which is not added to it.
+     */
+    HomRefBlock newBlockAt(final int site, final int lowerGQBound, final int upperGQBound) {
+        final Allele refAllele = Allele.create(refBases[site], true);
+        final VariantContext startingVC = new VariantContextBuilder(source, contig, start + site, start + site, Arrays.asList(refAllele, Allele.NON_REF_ALLELE))
+                .genotypes(new GenotypeBuilder(sampleName, Collections.nCopies(ploidy, refAllele)).make())
+                .make();
+        return new HomRefBlock(startingVC, lowerGQBound, upperGQBound, ploidy);
+    }
+
+    /**
+     * Collects the hom-ref sites of a sample, one at a time and in order, into {@link ReferenceConfidenceBand}s.
+     *
+     * Instances are not thread-safe.
+     */
+    public static final class Builder {
+        private final String source;
+        private final String sampleName;
+        private final int ploidy;
+        private final RangeMap<Integer, Range<Integer>> gqPartitions;
+
+        private final ByteArrayList refBases = new ByteArrayList();
+        private final IntArrayList genotypeQualities = new IntArrayList();
+        private final IntArrayList likelihoods = new IntArrayList();
+        private final IntArrayList depths = new IntArrayList();
+        private String contig;
+        private int start;
+        private Range<Integer> partition;
+
+        /**
+         * @param source the source of the records.
+         * @param sampleName the name of the sample.
+         * @param ploidy the ploidy of the sample.
+         * @param gqPartitions the GQ bands, as given by {@link GVCFWriter#parsePartitions}.
+         */
+        public Builder(final String source, final String sampleName, final int ploidy, final RangeMap<Integer, Range<Integer>> gqPartitions) {
+            this.source = Utils.nonNull(source, "source cannot be null");
+            this.sampleName = Utils.nonNull(sampleName, "sampleName cannot be null");
+            Utils.validateArg(ploidy > 0, () -> "ploidy must be positive but was " + ploidy);
+            this.ploidy = ploidy;
+            this.gqPartitions = Utils.nonNull(gqPartitions, "gqPartitions cannot be null");
+        }
+
+        public boolean isEmpty() {
+            return refBases.isEmpty();
+        }
+
+        /**
+         * @return whether a site can be added to the band being built.
+         */
+        public boolean canAdd(final String contig, final int position, final int GQ) {
+            return !isEmpty() && contig.equals(this.contig) && position == start + refBases.size()
+                    && partition.contains(Math.min(GQ, MAX_GENOTYPE_QUAL));
+        }
+
+        /**
+         * Adds a site to the band being built, or starts a new one if it is empty.
+         *
+         * @param contig the contig of the site.
+         * @param position the position of the site.
+         * @param refBase the reference base at the site.
+         * @param GQ the GQ of the site.
+         * @param pls the PLs of the site, one per hom-ref, het and hom-var genotype.
+         * @param DP the DP of the site.
+         * @throws IllegalArgumentException if the band is not empty and {@link #canAdd} is false for the site.
+         */
+        public void add(final String contig, final int position, final byte refBase, final int GQ, final int[] pls, final int DP) {
+            Utils.nonNull(contig, "contig cannot be null");
+            Utils.validateArg(pls.length == ploidy + 1, () -> "expected " + (ploidy + 1) + " PLs but got " + pls.length);
+            if (isEmpty()) {
+                this.contig = contig;
+                this.start = position;
+                this.partition = gqPartitions.get(Math.min(GQ, MAX_GENOTYPE_QUAL));
+                if (partition == null) {
+                    throw new GATKException("GQ " + GQ + " at " + contig + ":" + position + " didn't fit into any partition");
+                }
+            } else {
+                Utils.validateArg(canAdd(contig, position, GQ), () -> "the site at " + contig + ":" + position + " with GQ " + GQ
+                        + " cannot be added to the band that starts at " + this.contig + ":" + start);
+            }
+            refBases.add(refBase);
+            genotypeQualities.add(GQ);
+            for (final int pl : pls) {
+                likelihoods.add(pl);
+            }
+            depths.add(DP);
+        }
+
+        /**
+         * Returns the band with the sites added so far and empties this builder.
+         *
+         * @throws IllegalStateException if no site was added.
+         */
+        public ReferenceConfidenceBand build() {
+            Utils.validate(!isEmpty(), "the band has no sites");
+            final ReferenceConfidenceBand result = new ReferenceConfidenceBand(source, contig, start, sampleName, ploidy,
+                    refBases.toByteArray(), genotypeQualities.toIntArray(), likelihoods.toIntArray(), depths.toIntArray());
+            refBases.clear();
+            genotypeQualities.clear();
+            likelihoods.clear();
+            depths.clear();
+            contig = null;
+            partition = null;
+            return result;
+        }
+    }
+}
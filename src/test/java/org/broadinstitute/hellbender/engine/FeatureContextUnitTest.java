@@ -13,6 +13,9 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
 public final class FeatureContextUnitTest extends GATKBaseTest {
 
@@ -65,4 +68,47 @@ public final class FeatureContextUnitTest extends GATKBaseTest {
                     " not a VCFHeader");
         }
     }
+
+    @Test
+    public void testPrefetch() {
+        final ArtificialFeatureContainingCommandLineProgram toolInstance = new ArtificialFeatureContainingCommandLineProgram();
+        try (final FeatureManager featureManager = new FeatureManager(toolInstance)) {
+            final FeatureContext featureContext = new FeatureContext(featureManager, new SimpleInterval("1", 200, 285));
+            final FeatureContext prefetched = featureContext.prefetch(Arrays.asList(toolInstance.featureArgument), 100, 100);
+
+            Assert.assertEquals(prefetched.getInterval(), featureContext.getInterval());
+            Assert.assertTrue(prefetched.hasBackingDataSource());
+            Assert.assertEquals(asStrings(prefetched.getValues(toolInstance.featureArgument)), asStrings(featureContext.getValues(toolInstance.featureArgument)));
+            Assert.assertEquals(asStrings(prefetched.getValues(toolInstance.featureArgument, 200)), asStrings(featureContext.getValues(toolInstance.featureArgument, 200)));
+            for ( final SimpleInterval query : Arrays.asList(new SimpleInterval("1", 100, 385), new SimpleInterval("1", 199, 199),
+                    new SimpleInterval("1", 286, 385), new SimpleInterval("1", 300, 385)) ) {
+                Assert.assertEquals(asStrings(prefetched.getValues(toolInstance.featureArgument, query)),
+                        asStrings(featureContext.getValues(toolInstance.featureArgument, query)), "Wrong features for " + query);
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testPrefetchQueryOutsideOfWindow() {
+        final ArtificialFeatureContainingCommandLineProgram toolInstance = new ArtificialFeatureContainingCommandLineProgram();
+        try (final FeatureManager featureManager = new FeatureManager(toolInstance)) {
+            final FeatureContext prefetched = new FeatureContext(featureManager, new SimpleInterval("1", 200, 285))
+                    .prefetch(Arrays.asList(toolInstance.featureArgument), 100, 100);
+            prefetched.getValues(toolInstance.featureArgument, new SimpleInterval("1", 99, 200));
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testPrefetchQueryOnOtherInput() {
+        final ArtificialFeatureContainingCommandLineProgram toolInstance = new ArtificialFeatureContainingCommandLineProgram();
+        try (final FeatureManager featureManager = new FeatureManager(toolInstance)) {
+            final FeatureContext prefetched = new FeatureContext(featureManager, new SimpleInterval("1", 200, 285))
+                    .prefetch(Collections.emptyList(), 0, 0);
+            prefetched.getValues(toolInstance.featureArgument);
+        }
+    }
+
+    private static List<String> asStrings(final List<Feature> features) {
+        return features.stream().map(Object::toString).collect(Collectors.toList());
+    }
 }
@@ -9,6 +9,7 @@ import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.test.IntegrationTestSpec;
 import org.broadinstitute.hellbender.utils.test.SamAssertionUtils;
 import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.variant.KnownSitesBitSet;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
@@ -96,6 +97,13 @@ public final class BaseRecalibratorIntegrationTest extends CommandLineProgramTes
                 {new BQSRTest(hg18Reference, HiSeqBam_chr17, dbSNPb37_chr17, "-indels --enable-baq " +"--quantizing-levels 6", getResourceDir() + "expected.NA12878.chr17_69k_70k.quantizing_levels6.txt")},
                 {new BQSRTest(hg18Reference, HiSeqBam_chr17, dbSNPb37_chr17, "-indels --enable-baq " +"--mismatches-context-size 4", getResourceDir() + "expected.NA12878.chr17_69k_70k.mismatches_context_size4.txt")},
                 {new BQSRTest(b36Reference, origQualsBam_chr1, dbSNPb36_chr1, "-indels --enable-baq " +"-OQ", getResourceDir() + "expected.originalQuals.1kg.chr1.1-1K.1RG.dictFix.OQ.txt")},
+
+                // the report must not depend on the number of threads
+                {new BQSRTest(GRCh37Ref_chr2021, hiSeqBam_chr20, dbSNPb37_chr20, "--" + BaseRecalibrator.THREADS_LONG_NAME + " 4", getResourceDir() + BQSRTestData.EXPECTED_WGS_B37_CH20_1M_1M1K_NOINDEL_NOBAQ_RECAL)},
+                {new BQSRTest(hg18Reference, HiSeqBam_chr17, dbSNPb37_chr17, "-indels --enable-baq " + "--" + BaseRecalibrator.THREADS_LONG_NAME + " 3", getResourceDir() + "expected.NA12878.chr17_69k_70k.txt")},
+
+                // tables that never converge visit every shard, and so every read once
+                {new BQSRTest(GRCh37Ref_chr2021, hiSeqBam_chr20, dbSNPb37_chr20, "--" + BaseRecalibrator.STOP_AT_CONVERGENCE_LONG_NAME + " --" + BaseRecalibrator.CONVERGENCE_THRESHOLD_LONG_NAME + " 0 --" + BaseRecalibrator.CONVERGENCE_SHARD_SIZE_LONG_NAME + " 100000", getResourceDir() + BQSRTestData.EXPECTED_WGS_B37_CH20_1M_1M1K_NOINDEL_NOBAQ_RECAL)},
         };
     }
     @Test(dataProvider = "BQSRTest")
@@ -106,6 +114,38 @@ public final class BaseRecalibratorIntegrationTest extends CommandLineProgramTes
         spec.executeTest("testBQSR-" + params.args, this);
     }
 
+    @DataProvider(name = "knownSitesBitSetArgs")
+    public Object[][] createKnownSitesBitSetArgs() {
+        return new Object[][]{
+                {""},
+                {"-indels --enable-baq"},
+                {"--" + BaseRecalibrator.THREADS_LONG_NAME + " 4"},
+                {"-indels --enable-baq --" + BaseRecalibrator.THREADS_LONG_NAME + " 3"},
+        };
+    }
+
+    // a bit set made from the known sites must give the same report as the known sites themselves
+    @Test(dataProvider = "knownSitesBitSetArgs")
+    public void testKnownSitesBitSet(final String args) throws IOException {
+        final String GRCh37Ref_chr2021 = "src/test/resources/large/human_g1k_v37.20.21.fasta";
+        final String hiSeqBam_chr20 = getResourceDir() + WGS_B37_CH20_1M_1M1K_BAM;
+        final String dbSNPb37_chr20 = getResourceDir() + DBSNP_138_B37_CH20_1M_1M1K_VCF;
+
+        final File bitSet = createTempFile("dbsnp", KnownSitesBitSet.FILE_EXTENSION);
+        final String argsBitSet = "-R " + GRCh37Ref_chr2021 + " --known-sites " + dbSNPb37_chr20 + " -O " + bitSet.getAbsolutePath();
+        new CreateKnownSitesBitSet().instanceMain(Utils.escapeExpressions(argsBitSet));
+
+        final File expectedTable = createTempFile("knownSites", ".table");
+        final String argsKnownSites = "-R " + GRCh37Ref_chr2021 + " -I " + hiSeqBam_chr20 + " " + args + " --known-sites " + dbSNPb37_chr20 + " -O " + expectedTable.getAbsolutePath();
+        new BaseRecalibrator().instanceMain(Utils.escapeExpressions(argsKnownSites));
+
+        final File actualTable = createTempFile("knownSitesBitSet", ".table");
+        final String argsKnownSitesBitSet = "-R " + GRCh37Ref_chr2021 + " -I " + hiSeqBam_chr20 + " " + args + " --" + BaseRecalibrator.KNOWN_SITES_BITSET_LONG_NAME + " " + bitSet.getAbsolutePath() + " -O " + actualTable.getAbsolutePath();
+        new BaseRecalibrator().instanceMain(Utils.escapeExpressions(argsKnownSitesBitSet));
+
+        IntegrationTestSpec.assertEqualTextFiles(actualTable, expectedTable);
+    }
+
     @Test(description = "This is to test https://github.com/broadinstitute/hellbender/issues/322")
     public void testPlottingWorkflow() throws IOException {
         final String resourceDir = getTestDataDir() + "/" + "BQSR" + "/";
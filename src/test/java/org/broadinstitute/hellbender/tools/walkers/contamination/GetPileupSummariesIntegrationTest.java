@@ -6,6 +6,8 @@ import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.List;
 
 /**
@@ -59,6 +61,28 @@ public class GetPileupSummariesIntegrationTest extends CommandLineProgramTest {
 
     }
 
+    @Test
+    public void testStreamReads() throws IOException {
+        final File thousandGenomes = new File(largeFileTestDir, "1000G.phase3.broad.withGenotypes.chr20.10100000.vcf");
+
+        final File queriedOutput = createTempFile("queried", ".table");
+        final File streamedOutput = createTempFile("streamed", ".table");
+        for ( final File output : new File[]{queriedOutput, streamedOutput} ) {
+            final String[] args = {
+                    "-I", NA12878.getAbsolutePath(),
+                    "-V", thousandGenomes.getAbsolutePath(),
+                    "-L", "20:10000000-10200000",
+                    "-O", output.getAbsolutePath(),
+                    "-" + GetPileupSummaries.MAX_SITE_AF_SHORT_NAME, "0.9",
+                    "--" + GetPileupSummaries.STREAM_READS_LONG_NAME, Boolean.toString(output == streamedOutput)
+            };
+            runCommandLine(args);
+        }
+
+        Assert.assertFalse(PileupSummary.readFromFile(queriedOutput).isEmpty());
+        Assert.assertEquals(Files.readAllLines(streamedOutput.toPath()), Files.readAllLines(queriedOutput.toPath()));
+    }
+
     @Test(expectedExceptions = UserException.BadInput.class)
     public void testNoAFFieldInHeader() {
         final File vcfWithoutAF = new File(publicTestDir, "empty.vcf");
@@ -0,0 +1,85 @@
+package org.broadinstitute.hellbender.tools.walkers.contamination;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.TextCigarCodec;
+import org.broadinstitute.hellbender.GATKBaseTest;
+import org.broadinstitute.hellbender.utils.GATKProtectedVariantContextUtils;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+public final class SiteBaseCounterUnitTest extends GATKBaseTest {
+    private static final List<String> CIGARS = Arrays.asList("50M", "10S40M", "40M10S", "20M5D30M", "20M5I25M", "15M100N35M",
+            "5H45M", "20M1D10M2I18M", "25=1X24=");
+    private static final byte[] BASES = {'A', 'C', 'G', 'T', 'N'};
+
+    @DataProvider(name = "siteSpacings")
+    public Object[][] siteSpacings() {
+        return new Object[][] { {1}, {7}, {60}, {500} };
+    }
+
+    @Test(dataProvider = "siteSpacings")
+    public void testSameCountsAsPileups(final int siteSpacing) {
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader(3, 1, 2000);
+        final Random random = new Random(siteSpacing);
+        final List<GATKRead> reads = new ArrayList<>();
+        for ( int i = 0; i < 300; i++ ) {
+            final String cigar = CIGARS.get(random.nextInt(CIGARS.size()));
+            final int length = TextCigarCodec.decode(cigar).getReadLength();
+            final byte[] bases = new byte[length];
+            for ( int j = 0; j < length; j++ ) {
+                bases[j] = BASES[random.nextInt(BASES.length)];
+            }
+            // no reads on the second contig
+            final int contigIndex = random.nextBoolean() ? 0 : 2;
+            reads.add(ArtificialReadUtils.createArtificialRead(header, "read" + i, contigIndex, 1 + random.nextInt(1500),
+                    bases, Utils.dupBytes((byte) 30, length), cigar));
+        }
+        reads.sort(Comparator.comparingInt(GATKRead::getAssignedStart));
+        reads.sort(Comparator.comparingInt(read -> header.getSequenceIndex(read.getAssignedContig())));
+
+        final SiteBaseCounter counter = new SiteBaseCounter(reads.iterator(), header.getSequenceDictionary());
+        for ( final String contig : Arrays.asList("1", "2", "3") ) {
+            for ( int position = 1; position <= 2000; position += siteSpacing ) {
+                final SimpleInterval site = new SimpleInterval(contig, position, position);
+                final List<GATKRead> overlappingReads = reads.stream()
+                        .filter(read -> read.getContig().equals(contig) && read.getStart() <= site.getStart() && site.getStart() <= read.getEnd()).collect(Collectors.toList());
+                final int[] expected = GATKProtectedVariantContextUtils.getPileup(site, overlappingReads).getBaseCounts();
+                Assert.assertEquals(counter.getBaseCounts(contig, position), expected, "Wrong counts at " + site);
+            }
+        }
+    }
+
+    @Test
+    public void testRepeatedSiteAndUnknownContig() {
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader(1, 1, 100);
+        final GATKRead read = ArtificialReadUtils.createArtificialRead(header, "read", 0, 10, new byte[]{'A', 'C', 'G'}, Utils.dupBytes((byte) 30, 3), "3M");
+        final SiteBaseCounter counter = new SiteBaseCounter(Collections.singletonList(read).iterator(), header.getSequenceDictionary());
+
+        Assert.assertEquals(counter.getBaseCounts("1", 11), new int[]{0, 1, 0, 0});
+        Assert.assertEquals(counter.getBaseCounts("1", 11), new int[]{0, 1, 0, 0});
+        Assert.assertEquals(counter.getBaseCounts("unknown", 5), new int[]{0, 0, 0, 0});
+        Assert.assertEquals(counter.getBaseCounts("1", 12), new int[]{0, 0, 1, 0});
+        Assert.assertEquals(counter.getBaseCounts("1", 13), new int[]{0, 0, 0, 0});
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testSitesOutOfOrder() {
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader(2, 1, 100);
+        final SiteBaseCounter counter = new SiteBaseCounter(Collections.<GATKRead>emptyList().iterator(), header.getSequenceDictionary());
+        counter.getBaseCounts("2", 10);
+        counter.getBaseCounts("1", 20);
+    }
+}
@@ -9,6 +9,7 @@ import org.testng.annotations.Test;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.stream.IntStream;
 
 public final class GenotypeLikelihoodCalculatorsUnitTest extends GATKBaseTest {
 
@@ -90,6 +91,31 @@ public final class GenotypeLikelihoodCalculatorsUnitTest extends GATKBaseTest {
         new GenotypeLikelihoodCalculators().genotypeCount(1, -1);
     }
 
+    @Test
+    public void testGenotypeCountLargePloidy() {
+        Assert.assertEquals(calcs.genotypeCount(20, 5), 10626);
+        Assert.assertEquals(calcs.genotypeCount(100, 2), 101);
+        // C(65536, 2) is just below Integer.MAX_VALUE.
+        Assert.assertEquals(calcs.genotypeCount(2, 65535), 2147450880);
+        Assert.assertThrows(IllegalArgumentException.class, () -> calcs.genotypeCount(2, 65537));
+    }
+
+    @Test
+    public void testConcurrentInstances() {
+        // calculators requested from several threads, in no particular order, must all see complete genotype tables.
+        IntStream.range(0, 200).parallel().forEach(i -> {
+            final int ploidy = 1 + i % 6;
+            final int alleleCount = 1 + (i * 7) % 9;
+            final GenotypeLikelihoodCalculator calculator = new GenotypeLikelihoodCalculators().getInstance(ploidy, alleleCount);
+            GenotypeAlleleCounts expected = GenotypeAlleleCounts.first(ploidy);
+            for (int g = 0; g < calculator.genotypeCount(); g++) {
+                Assert.assertEquals(calculator.genotypeAlleleCountsAt(g), expected);
+                Assert.assertEquals(calculator.genotypeAlleleCountsAt(g).index(), g);
+                expected = expected.next();
+            }
+        });
+    }
+
     @Test
     public void testComputeMaxAcceptableAlleleCount(){
         Assert.assertEquals(1024, GenotypeLikelihoodCalculators.computeMaxAcceptableAlleleCount(1, 1024));
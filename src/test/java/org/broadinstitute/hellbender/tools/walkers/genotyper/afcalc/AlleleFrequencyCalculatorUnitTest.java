@@ -6,6 +6,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.broadinstitute.hellbender.tools.walkers.genotyper.GenotypeLikelihoodCalculator;
 import org.broadinstitute.hellbender.tools.walkers.genotyper.GenotypeLikelihoodCalculators;
 import org.broadinstitute.hellbender.GATKBaseTest;
+import org.broadinstitute.hellbender.utils.MathUtils;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -170,6 +171,24 @@ public class AlleleFrequencyCalculatorUnitTest extends GATKBaseTest {
         }
     }
 
+    @Test
+    public void testDiploidPosteriorsMatchGeneralPath() {
+        final Random random = new Random(13);
+        for (final int numAlleles : new int[] {BIALLELIC, TRIALLELIC, 4}) {
+            final GenotypeLikelihoodCalculator glCalc = GL_CALCS.getInstance(DIPLOID, numAlleles);
+            final double[] diploidPosteriors = new double[glCalc.genotypeCount()];
+            for (int trial = 0; trial < 100; trial++) {
+                final int[] pls = IntStream.range(0, glCalc.genotypeCount()).map(n -> random.nextInt(200)).toArray();
+                final Genotype genotype = makeGenotype(DIPLOID, pls);
+                final double[] log10AlleleFrequencies = MathUtils.normalizeLog10(random.doubles(numAlleles, -3, 0).toArray());
+
+                AlleleFrequencyCalculator.log10NormalizedDiploidGenotypePosteriors(genotype, log10AlleleFrequencies, diploidPosteriors);
+                final double[] generalPosteriors = AlleleFrequencyCalculator.log10NormalizedGenotypePosteriors(genotype, glCalc, log10AlleleFrequencies);
+                Assert.assertTrue(Arrays.equals(diploidPosteriors, generalPosteriors), Arrays.toString(pls));
+            }
+        }
+    }
+
     // make PLs that correspond to an obvious call i.e. one PL is relatively big and the rest are zero
     // alleleCounts is the GenotypeAlleleCounts format for the obvious genotype, with repeats but in no particular order
     private static int[] PLsForObviousCall(final int ploidy, final int numAlleles, final int[] alleleCounts, final int PL)   {
@@ -4,8 +4,11 @@ import com.google.common.base.Strings;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMReadGroupRecord;
 import htsjdk.variant.variantcontext.*;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import htsjdk.variant.vcf.VCFHeader;
 import htsjdk.variant.vcf.VCFHeaderLine;
 import htsjdk.variant.vcf.VCFSimpleHeaderLine;
+import org.broadinstitute.hellbender.engine.AlignmentContext;
 import org.broadinstitute.hellbender.engine.AssemblyRegion;
 import org.broadinstitute.hellbender.tools.walkers.genotyper.HomogeneousPloidyModel;
 import org.broadinstitute.hellbender.tools.walkers.genotyper.IndependentSampleGenotypesModel;
@@ -18,6 +21,7 @@ import org.broadinstitute.hellbender.utils.genotyper.IndexedAlleleList;
 import org.broadinstitute.hellbender.utils.genotyper.ReadLikelihoods;
 import org.broadinstitute.hellbender.utils.genotyper.SampleList;
 import org.broadinstitute.hellbender.utils.haplotype.Haplotype;
+import org.broadinstitute.hellbender.utils.locusiterator.LocusIteratorByState;
 import org.broadinstitute.hellbender.utils.pileup.ReadPileup;
 import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
@@ -26,6 +30,7 @@ import org.broadinstitute.hellbender.GATKBaseTest;
 import org.broadinstitute.hellbender.utils.variant.GATKVCFConstants;
 import org.broadinstitute.hellbender.utils.variant.GATKVariantContextUtils;
 import org.broadinstitute.hellbender.utils.variant.HomoSapiensConstants;
+import org.broadinstitute.hellbender.utils.variant.writers.GVCFWriter;
 import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeMethod;
@@ -284,6 +289,73 @@ public final class ReferenceConfidenceModelUnitTest extends GATKBaseTest {
         }
     }
 
+    /**
+     * The bands given to a GVCFWriter must be written exactly as one VariantContext per site would be
+     */
+    @Test
+    public void testBandsWriteSameGVCFAsSites() {
+        final List<Integer> gqBands = Arrays.asList(1, 2, 3, 4, 5, 6, 8, 10, 20, 30);
+        final ReferenceConfidenceModel bandingModel = new ReferenceConfidenceModel(samples, header, 10, gqBands);
+        final PloidyModel ploidyModel = new HomogeneousPloidyModel(samples, 2);
+        final RefConfData data = new RefConfData("ACGTAACCGGTTACGTAACCGGTT", 5);
+        // overlapping reads so that the depth, and with it the GQ, changes along the region
+        for ( final int[] startAndLength : new int[][] { {0, 20}, {2, 5}, {3, 12}, {6, 15}, {8, 3}, {10, 12} } ) {
+            data.getActiveRegion().add(data.makeRead(startAndLength[0], startAndLength[1]));
+        }
+        final List<Haplotype> haplotypes = Arrays.asList(data.getRefHap());
+        final ReadLikelihoods<Haplotype> likelihoods = createDummyStratifiedReadMap(data.getRefHap(), samples, data.getActiveRegion());
+
+        final List<VariantContext> fromSites = new ArrayList<>();
+        final GVCFWriter writerOfSites = new GVCFWriter(collectingWriter(fromSites), gqBands, 2);
+        bandingModel.calculateRefConfidence(data.getRefHap(), haplotypes, data.getPaddedRefLoc(), data.getActiveRegion(), likelihoods,
+                ploidyModel, Collections.emptyList()).forEach(writerOfSites::add);
+        writerOfSites.close();
+
+        final List<VariantContext> fromBands = new ArrayList<>();
+        final GVCFWriter writerOfBands = new GVCFWriter(collectingWriter(fromBands), gqBands, 2);
+        bandingModel.calculateRefConfidence(data.getRefHap(), haplotypes, data.getPaddedRefLoc(), data.getActiveRegion(), likelihoods,
+                ploidyModel, Collections.emptyList(), writerOfBands::add, writerOfBands::addBand);
+        writerOfBands.close();
+
+        Assert.assertTrue(fromSites.size() > 1);
+        Assert.assertEquals(fromBands.size(), fromSites.size());
+        for ( int i = 0; i < fromSites.size(); i++ ) {
+            Assert.assertEquals(fromBands.get(i).toStringDecodeGenotypes(), fromSites.get(i).toStringDecodeGenotypes());
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBandsNeedGQBands() {
+        final RefConfData data = new RefConfData("ACGTAACCGGTT", 0);
+        final List<Haplotype> haplotypes = Arrays.asList(data.getRefHap());
+        final ReadLikelihoods<Haplotype> likelihoods = createDummyStratifiedReadMap(data.getRefHap(), samples, data.getActiveRegion());
+        model.calculateRefConfidence(data.getRefHap(), haplotypes, data.getPaddedRefLoc(), data.getActiveRegion(), likelihoods,
+                new HomogeneousPloidyModel(samples, 2), Collections.emptyList(), vc -> {}, band -> {});
+    }
+
+    private static VariantContextWriter collectingWriter(final List<VariantContext> written) {
+        return new VariantContextWriter() {
+            @Override
+            public void writeHeader(final VCFHeader header) { }
+
+            @Override
+            public void setHeader(final VCFHeader header) { }
+
+            @Override
+            public void close() { }
+
+            @Override
+            public boolean checkError() {
+                return false;
+            }
+
+            @Override
+            public void add(final VariantContext vc) {
+                written.add(vc);
+            }
+        };
+    }
+
     @Test
     public void testRefConfidenceWithCalls() {
         final RefConfData xxxdata = new RefConfData("ACGTAACCGGTT", 0);
@@ -321,6 +393,59 @@ public final class ReferenceConfidenceModelUnitTest extends GATKBaseTest {
         }
     }
 
+    @Test
+    public void testRefVsAnyOverSpanMatchesPileups() {
+        final String ref = "ACGTAACCGGTTACGTAACCGGTT";
+        final RefConfData data = new RefConfData(ref, 0);
+        final AssemblyRegion region = data.getActiveRegion();
+        // reads with deletions, insertions, soft clips, mismatches and low quality bases
+        region.add(makeRead(data, 0, "ACGTAACCGGTT", "12M"));
+        region.add(makeRead(data, 1, "CGTCCGG", "3M2D4M"));
+        region.add(makeRead(data, 2, "GTAGGACCGG", "3M2I5M"));
+        region.add(makeRead(data, 4, "TTAACCGGTTAC", "2S10M"));
+        final GATKRead lowQualityRead = makeRead(data, 5, "ACCTGTTACGTA", "12M");
+        lowQualityRead.setBaseQualities(new byte[]{30, 5, 30, 6, 7, 30, 30, 2, 30, 30, 30, 30});
+        region.add(lowQualityRead);
+        region.add(makeRead(data, 8, "GGTTCGTA", "4M1D3M1S"));
+
+        final SimpleInterval span = region.getSpan();
+        final byte[] refBases = data.getRefHap().getBases();
+        final ReferenceConfidenceModel.RegionRefVsAnyResult result =
+                model.calcGenotypeLikelihoodsOfRefVsAnyOverSpan(2, region.getReads(), span, refBases, 0, new boolean[span.size()]);
+
+        final LocusIteratorByState libs = new LocusIteratorByState(region.getReads().iterator(), LocusIteratorByState.NO_DOWNSAMPLING,
+                false, samples.asSetOfSamples(), header, true);
+        final boolean[] seen = new boolean[span.size()];
+        while ( libs.hasNext() ) {
+            final AlignmentContext context = libs.next();
+            final int offset = context.getStart() - span.getStart();
+            if ( offset < 0 || offset >= span.size() ) {
+                continue;
+            }
+            seen[offset] = true;
+            final ReadPileup pileup = context.getBasePileup();
+            final ReferenceConfidenceModel.RefVsAnyResult expected = model.calcGenotypeLikelihoodsOfRefVsAny(2, pileup, refBases[offset], ReferenceConfidenceModel.BASE_QUAL_THRESHOLD, null);
+            final ReferenceConfidenceModel.RefVsAnyResult actual = result.getResult(offset);
+            Assert.assertTrue(Arrays.equals(actual.genotypeLikelihoods, expected.genotypeLikelihoods), "likelihoods differ at " + context.getStart());
+            Assert.assertEquals(actual.refDepth, expected.refDepth, "ref depth differs at " + context.getStart());
+            Assert.assertEquals(actual.nonRefDepth, expected.nonRefDepth, "non-ref depth differs at " + context.getStart());
+            Assert.assertEquals(result.indelInformativeReads[offset], model.calcNIndelInformativeReads(pileup, offset, refBases, 10));
+        }
+        for ( int offset = 0; offset < span.size(); offset++ ) {
+            if ( !seen[offset] ) {
+                Assert.assertEquals(result.getDP(offset), 0);
+                Assert.assertEquals(result.indelInformativeReads[offset], 0);
+            }
+        }
+    }
+
+    private GATKRead makeRead(final RefConfData data, final int start, final String bases, final String cigar) {
+        final GATKRead read = ArtificialReadUtils.createArtificialRead(header, "read " + data.readCounter++, 0, start + data.getStart(),
+                bases.getBytes(), Utils.dupBytes((byte)30, bases.length()), cigar);
+        read.setReadGroup(rg.getId());
+        return read;
+    }
+
     /**
      * Create a context that maps each read to the reference haplotype with log10 L of 0
      * @param refHaplotype a non-null reference haplotype
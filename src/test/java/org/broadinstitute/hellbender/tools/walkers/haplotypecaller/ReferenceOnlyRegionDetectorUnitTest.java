@@ -0,0 +1,68 @@
+package org.broadinstitute.hellbender.tools.walkers.haplotypecaller;
+
+import org.broadinstitute.hellbender.GATKBaseTest;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public final class ReferenceOnlyRegionDetectorUnitTest extends GATKBaseTest {
+
+    private static final String REFERENCE = "GATCGTAGCTAGGCATTACGGATCCAGTTGCAACTGGTACCGTAGAATTCGCGATAGCTTAC";
+    private static final int KMER_SIZE = 10;
+    private static final byte MIN_BASE_QUALITY = 10;
+
+    private static GATKRead read(final String bases, final byte quality) {
+        return ArtificialReadUtils.createArtificialRead(bases.getBytes(), Utils.dupBytes(quality, bases.length()), bases.length() + "M");
+    }
+
+    private static GATKRead read(final String bases) {
+        return read(bases, (byte) 30);
+    }
+
+    @DataProvider(name = "Regions")
+    public Object[][] makeRegions() {
+        final String snp = REFERENCE.substring(10, 30) + 'A' + REFERENCE.substring(31, 50);
+        final String deletion = REFERENCE.substring(5, 25) + REFERENCE.substring(28, 50);
+        final String junction = REFERENCE.substring(0, 15) + REFERENCE.substring(40, 55);
+        final byte[] qualities = Utils.dupBytes((byte) 30, snp.length());
+        qualities[20] = 2;
+        return new Object[][]{
+                {REFERENCE, Collections.emptyList(), true},
+                {REFERENCE, Arrays.asList(read(REFERENCE.substring(0, 30)), read(REFERENCE.substring(20, 60))), true},
+                {REFERENCE, Collections.singletonList(read(Utils.dupString("T", KMER_SIZE - 1))), true}, // too short to make a kmer
+                {REFERENCE, Arrays.asList(read(REFERENCE.substring(0, 30)), read(snp)), false},
+                {REFERENCE, Collections.singletonList(read(deletion)), false},
+                {REFERENCE, Collections.singletonList(read(junction)), false},
+                // the low quality base splits the read into two reference stretches
+                {REFERENCE, Collections.singletonList(ArtificialReadUtils.createArtificialRead(snp.getBytes(), qualities, snp.length() + "M")), true},
+                {REFERENCE, Collections.singletonList(read(snp, (byte) 5)), true},
+                {REFERENCE, Collections.singletonList(read(REFERENCE.substring(10, 30).replace('T', 'N'))), true},
+                {REFERENCE, Collections.singletonList(read(REFERENCE.substring(10, 30).replace('T', 'R'))), false},
+                // repeated kmers in the reference mean that reference reads can still make non-reference paths
+                {REFERENCE + REFERENCE.substring(0, 20), Collections.singletonList(read(REFERENCE.substring(0, 30))), false},
+                {REFERENCE.toLowerCase(), Collections.singletonList(read(REFERENCE.substring(0, 30))), false},
+        };
+    }
+
+    @Test(dataProvider = "Regions")
+    public void testIsReferenceOnly(final String reference, final List<GATKRead> reads, final boolean expected) {
+        Assert.assertEquals(ReferenceOnlyRegionDetector.isReferenceOnly(reference.getBytes(), reads, KMER_SIZE, MIN_BASE_QUALITY), expected);
+    }
+
+    @Test
+    public void testLargeKmerSizes() {
+        // kmer sizes above what fits in a long are checked with the largest size that fits
+        final String reference = REFERENCE + REFERENCE.replace('A', 'T').replace('C', 'G');
+        Assert.assertTrue(ReferenceOnlyRegionDetector.isReferenceOnly(reference.getBytes(),
+                Collections.singletonList(read(reference.substring(10, 100))), 45, MIN_BASE_QUALITY));
+        Assert.assertFalse(ReferenceOnlyRegionDetector.isReferenceOnly(reference.getBytes(),
+                Collections.singletonList(read(reference.substring(10, 50) + reference.substring(51, 100))), 45, MIN_BASE_QUALITY));
+    }
+}
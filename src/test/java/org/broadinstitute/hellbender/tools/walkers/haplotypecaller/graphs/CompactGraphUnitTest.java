@@ -0,0 +1,145 @@
+package org.broadinstitute.hellbender.tools.walkers.haplotypecaller.graphs;
+
+import org.broadinstitute.hellbender.GATKBaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+public final class CompactGraphUnitTest extends GATKBaseTest {
+
+    private static SeqGraph createGraph() {
+        final SeqGraph graph = new SeqGraph(11);
+        final SeqVertex v1 = new SeqVertex("A");
+        final SeqVertex v2 = new SeqVertex("C");
+        final SeqVertex v3 = new SeqVertex("G");
+        final SeqVertex v4 = new SeqVertex("T");
+        final SeqVertex v5 = new SeqVertex("AC");
+        final SeqVertex v6 = new SeqVertex("GT");
+        graph.addVertices(v1, v2, v3, v4, v5, v6);
+        graph.addEdge(v1, v2, new BaseEdge(true, 3));
+        graph.addEdge(v2, v4, new BaseEdge(true, 2));
+        graph.addEdge(v3, v2, new BaseEdge(false, 1));
+        graph.addEdge(v2, v3, new BaseEdge(false, 5));
+        graph.addEdge(v4, v5, new BaseEdge(false, 7));
+        return graph;
+    }
+
+    @Test
+    public void testStructureMatchesGraph() {
+        final SeqGraph graph = createGraph();
+        final CompactGraph<SeqVertex, BaseEdge> compactGraph = new CompactGraph<>(graph);
+        Assert.assertEquals(compactGraph.numberOfVertices(), graph.vertexSet().size());
+        Assert.assertEquals(compactGraph.numberOfEdges(), graph.edgeSet().size());
+        assertSameStructure(compactGraph, graph);
+        Assert.assertEquals(compactGraph.getVertexId(new SeqVertex("A")), -1);
+    }
+
+    /**
+     * One snapshot used for all the steps of pruning must be the graph that each step leaves, and leave the same graph
+     * as steps that each take their own
+     */
+    @Test
+    public void testSnapshotFollowsPruning() {
+        final SeqGraph graph = createGraph();
+        final SeqGraph expected = graph.clone();
+        expected.pruneLowWeightChains(2);
+        expected.removeSingletonOrphanVertices();
+        expected.removePathsNotConnectedToRef();
+
+        final CompactGraph<SeqVertex, BaseEdge> compactGraph = new CompactGraph<>(graph);
+        graph.pruneLowWeightChains(2, compactGraph);
+        Assert.assertTrue(compactGraph.isSnapshotOf(graph));
+        assertSameStructure(compactGraph, graph);
+        graph.removeSingletonOrphanVertices(compactGraph);
+        graph.removePathsNotConnectedToRef(compactGraph);
+        Assert.assertTrue(compactGraph.isSnapshotOf(graph));
+        assertSameStructure(compactGraph, graph);
+        Assert.assertTrue(BaseGraph.graphEquals(graph, expected));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testStaleSnapshot() {
+        final SeqGraph graph = createGraph();
+        final CompactGraph<SeqVertex, BaseEdge> compactGraph = new CompactGraph<>(graph);
+        graph.addVertex(new SeqVertex("TT"));
+        graph.removePathsNotConnectedToRef(compactGraph);
+    }
+
+    private static void assertSameStructure(final CompactGraph<SeqVertex, BaseEdge> compactGraph, final SeqGraph graph) {
+        final Set<SeqVertex> vertices = new HashSet<>();
+        for ( int v = 0; v < compactGraph.numberOfVertices(); v++ ) {
+            if ( compactGraph.isRemovedVertex(v) ) {
+                Assert.assertFalse(graph.containsVertex(compactGraph.getVertex(v)));
+                continue;
+            }
+            final SeqVertex vertex = compactGraph.getVertex(v);
+            vertices.add(vertex);
+            Assert.assertEquals(compactGraph.getVertexId(vertex), v);
+            Assert.assertEquals(compactGraph.outDegreeOf(v), graph.outDegreeOf(vertex));
+            Assert.assertEquals(compactGraph.inDegreeOf(v), graph.inDegreeOf(vertex));
+
+            final Set<BaseEdge> outgoing = new HashSet<>();
+            for ( int i = 0; i < compactGraph.outDegreeOf(v); i++ ) {
+                final int e = compactGraph.outgoingEdge(v, i);
+                Assert.assertEquals(compactGraph.getEdgeSource(e), v);
+                outgoing.add(compactGraph.getEdge(e));
+            }
+            Assert.assertEquals(outgoing, graph.outgoingEdgesOf(vertex));
+
+            final Set<BaseEdge> incoming = new HashSet<>();
+            for ( int i = 0; i < compactGraph.inDegreeOf(v); i++ ) {
+                final int e = compactGraph.incomingEdge(v, i);
+                Assert.assertEquals(compactGraph.getEdgeTarget(e), v);
+                incoming.add(compactGraph.getEdge(e));
+            }
+            Assert.assertEquals(incoming, graph.incomingEdgesOf(vertex));
+        }
+
+        Assert.assertEquals(vertices, graph.vertexSet());
+
+        for ( int e = 0; e < compactGraph.numberOfEdges(); e++ ) {
+            final BaseEdge edge = compactGraph.getEdge(e);
+            if ( compactGraph.isRemovedEdge(e) ) {
+                Assert.assertFalse(graph.containsEdge(edge));
+                continue;
+            }
+            Assert.assertEquals(compactGraph.getVertex(compactGraph.getEdgeSource(e)), graph.getEdgeSource(edge));
+            Assert.assertEquals(compactGraph.getVertex(compactGraph.getEdgeTarget(e)), graph.getEdgeTarget(edge));
+            Assert.assertEquals(compactGraph.getPruningMultiplicity(e), edge.getPruningMultiplicity());
+            Assert.assertEquals(compactGraph.isRef(e), edge.isRef());
+        }
+    }
+
+    @Test
+    public void testReachability() {
+        final SeqGraph graph = createGraph();
+        final CompactGraph<SeqVertex, BaseEdge> compactGraph = new CompactGraph<>(graph);
+        final SeqVertex v2 = graph.outgoingVerticesOf(graph.getReferenceSourceVertex()).iterator().next();
+        final int start = compactGraph.getVertexId(v2);
+
+        final Set<String> forward = reachedSequences(compactGraph, compactGraph.reachableFrom(start, false, true));
+        Assert.assertEquals(forward, new HashSet<>(Arrays.asList("C", "G", "T", "AC")));
+
+        final Set<String> backward = reachedSequences(compactGraph, compactGraph.reachableFrom(start, true, false));
+        Assert.assertEquals(backward, new HashSet<>(Arrays.asList("A", "C", "G")));
+
+        final Set<String> both = reachedSequences(compactGraph, compactGraph.reachableFrom(start, true, true));
+        Assert.assertEquals(both, new HashSet<>(Arrays.asList("A", "C", "G", "T", "AC")));
+
+        Assert.assertEquals(reachedSequences(compactGraph, compactGraph.reachableFrom(start, false, false)), Collections.singleton("C"));
+    }
+
+    private static Set<String> reachedSequences(final CompactGraph<SeqVertex, BaseEdge> compactGraph, final boolean[] reached) {
+        final Set<String> result = new HashSet<>();
+        for ( int v = 0; v < reached.length; v++ ) {
+            if ( reached[v] ) {
+                result.add(compactGraph.getVertex(v).getSequenceString());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,150 @@
+package org.broadinstitute.hellbender.tools.walkers.haplotypecaller.graphs;
+
+import org.broadinstitute.hellbender.GATKBaseTest;
+import org.broadinstitute.hellbender.utils.haplotype.Haplotype;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+public final class LazyKBestHaplotypeFinderUnitTest extends GATKBaseTest {
+
+    private static final String[] BASES = {"A", "C", "G", "T"};
+
+    /**
+     * A chain of bubbles with random multiplicities, with the reference going through the first branch of each bubble
+     */
+    private static SeqGraph createBubbleChain(final Random random, final int numberOfBubbles, final int branchesPerBubble) {
+        final SeqGraph graph = new SeqGraph(11);
+        SeqVertex previous = new SeqVertex("ACGTTA");
+        graph.addVertex(previous);
+        for ( int i = 0; i < numberOfBubbles; i++ ) {
+            final SeqVertex next = new SeqVertex("GATTACA" + BASES[i % 4]);
+            graph.addVertex(next);
+            for ( int j = 0; j < branchesPerBubble; j++ ) {
+                final SeqVertex branch = new SeqVertex(BASES[j] + BASES[i % 4]);
+                graph.addVertex(branch);
+                final int multiplicity = 1 + random.nextInt(5);
+                graph.addEdge(previous, branch, new BaseEdge(j == 0, multiplicity));
+                graph.addEdge(branch, next, new BaseEdge(j == 0, multiplicity));
+            }
+            previous = next;
+        }
+        return graph;
+    }
+
+    @DataProvider(name = "BubbleChains")
+    public Object[][] makeBubbleChains() {
+        final List<Object[]> tests = new ArrayList<>();
+        for ( final int numberOfBubbles : Arrays.asList(1, 3, 6) ) {
+            for ( final int branchesPerBubble : Arrays.asList(1, 2, 3) ) {
+                tests.add(new Object[]{numberOfBubbles, branchesPerBubble});
+            }
+        }
+        return tests.toArray(new Object[][]{});
+    }
+
+    @Test(dataProvider = "BubbleChains")
+    public void testSameScoresAsExhaustiveFinder(final int numberOfBubbles, final int branchesPerBubble) {
+        final SeqGraph graph = createBubbleChain(new Random(numberOfBubbles * 10 + branchesPerBubble), numberOfBubbles, branchesPerBubble);
+        final KBestHaplotypeFinder exhaustive = new KBestHaplotypeFinder(graph);
+        final LazyKBestHaplotypeFinder lazy = new LazyKBestHaplotypeFinder(graph);
+
+        final List<KBestHaplotype> expected = new ArrayList<>(exhaustive);
+        final List<KBestHaplotype> actual = lazy.findBestHaplotypes(Integer.MAX_VALUE);
+        Assert.assertEquals(actual.size(), expected.size());
+        Assert.assertFalse(lazy.hasReachedSearchLimit());
+
+        final Map<Haplotype, Double> expectedScores = new HashMap<>();
+        for ( int i = 0; i < expected.size(); i++ ) {
+            Assert.assertEquals(actual.get(i).score(), expected.get(i).score(), 1e-10);
+            Assert.assertEquals(actual.get(i).rank(), i);
+            expectedScores.put(expected.get(i).haplotype(), expected.get(i).score());
+        }
+        for ( final KBestHaplotype haplotype : actual ) {
+            Assert.assertEquals(haplotype.haplotype().getScore(), expectedScores.get(haplotype.haplotype()), 1e-10);
+            Assert.assertEquals(lazy.score(haplotype.haplotype()), exhaustive.score(haplotype.haplotype()), 1e-10);
+        }
+
+        // the reference goes through the first branch of every bubble, which is also the only one flagged as reference
+        final long referenceHaplotypes = actual.stream().filter(KBestHaplotype::isReference).count();
+        Assert.assertEquals(referenceHaplotypes, 1);
+    }
+
+    @Test
+    public void testIteratorIsLazyAndRepeatable() {
+        final SeqGraph graph = createBubbleChain(new Random(1), 8, 3);
+        final LazyKBestHaplotypeFinder finder = new LazyKBestHaplotypeFinder(graph);
+        final List<KBestHaplotype> first = finder.findBestHaplotypes(5);
+        Assert.assertEquals(first.size(), 5);
+        final int expandedPaths = finder.getExpandedPaths();
+        Assert.assertTrue(expandedPaths < 3 * 3 * 3 * 3 * 3 * 3 * 3 * 3);
+
+        final List<KBestHaplotype> again = finder.findBestHaplotypes(5);
+        Assert.assertEquals(again, first);
+        Assert.assertEquals(finder.getExpandedPaths(), expandedPaths);
+
+        final List<KBestHaplotype> more = finder.findBestHaplotypes(10);
+        Assert.assertEquals(more.subList(0, 5), first);
+        Assert.assertEquals(more.size(), 10);
+    }
+
+    @Test
+    public void testSearchLimits() {
+        final SeqGraph graph = createBubbleChain(new Random(2), 10, 3);
+        final List<KBestHaplotype> unbounded = new LazyKBestHaplotypeFinder(graph).findBestHaplotypes(100);
+
+        final LazyKBestHaplotypeFinder fewExpansions = new LazyKBestHaplotypeFinder(graph, graph.getSources(), graph.getSinks(), 50, 1000);
+        final List<KBestHaplotype> bounded = fewExpansions.findBestHaplotypes(100);
+        Assert.assertTrue(fewExpansions.hasReachedSearchLimit());
+        Assert.assertTrue(bounded.size() < 100);
+        Assert.assertEquals(bounded, unbounded.subList(0, bounded.size()));
+
+        final LazyKBestHaplotypeFinder smallQueue = new LazyKBestHaplotypeFinder(graph, graph.getSources(), graph.getSinks(), 100_000, 5);
+        smallQueue.findBestHaplotypes(100);
+        Assert.assertTrue(smallQueue.hasReachedSearchLimit());
+    }
+
+    @Test
+    public void testCyclesAndDeadEnds() {
+        final SeqGraph g = new SeqGraph(3);
+        final SeqVertex v1 = new SeqVertex("a");
+        final SeqVertex v2 = new SeqVertex("b");
+        final SeqVertex v3 = new SeqVertex("c");
+        final SeqVertex v4 = new SeqVertex("d");
+        final SeqVertex v5 = new SeqVertex("e");
+        g.addVertices(v1, v2, v3, v4, v5);
+        g.addEdge(v1, v2);
+        g.addEdge(v2, v3);
+        g.addEdge(v3, v2); //cycle
+        g.addEdge(v2, v5);
+        g.addEdge(v1, v4);
+
+        final List<KBestHaplotype> toV4 = new LazyKBestHaplotypeFinder(g, v1, v4).findBestHaplotypes(10);
+        Assert.assertEquals(toV4.size(), 1);
+        Assert.assertEquals(new String(toV4.get(0).bases()), "ad");
+
+        Assert.assertEquals(new LazyKBestHaplotypeFinder(g).findBestHaplotypes(10).size(), new KBestHaplotypeFinder(g).size());
+    }
+
+    @Test
+    public void testNoSourceOrSink() {
+        final SeqGraph g = new SeqGraph(3);
+        final SeqVertex v1 = new SeqVertex("a");
+        final SeqVertex v2 = new SeqVertex("b");
+        g.addVertices(v1, v2);
+        g.addEdge(v1, v2);
+        Assert.assertTrue(new LazyKBestHaplotypeFinder(g, Collections.emptySet(), Collections.singleton(v2), 10, 10).findBestHaplotypes(10).isEmpty());
+        Assert.assertTrue(new LazyKBestHaplotypeFinder(g, Collections.singleton(v1), Collections.emptySet(), 10, 10).findBestHaplotypes(10).isEmpty());
+        Assert.assertTrue(Double.isNaN(new LazyKBestHaplotypeFinder(g).score("aa".getBytes())));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBadLimits() {
+        final SeqGraph g = new SeqGraph(3);
+        final SeqVertex v1 = new SeqVertex("a");
+        g.addVertex(v1);
+        new LazyKBestHaplotypeFinder(g, g.getSources(), g.getSinks(), 0, 10);
+    }
+}
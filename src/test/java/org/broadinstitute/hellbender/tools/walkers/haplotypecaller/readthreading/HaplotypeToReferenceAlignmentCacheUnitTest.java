@@ -0,0 +1,80 @@
+package org.broadinstitute.hellbender.tools.walkers.haplotypecaller.readthreading;
+
+import htsjdk.samtools.Cigar;
+import org.broadinstitute.hellbender.GATKBaseTest;
+import org.broadinstitute.hellbender.utils.read.CigarUtils;
+import org.broadinstitute.hellbender.utils.smithwaterman.SmithWatermanAligner;
+import org.broadinstitute.hellbender.utils.smithwaterman.SmithWatermanJavaAligner;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public final class HaplotypeToReferenceAlignmentCacheUnitTest extends GATKBaseTest {
+
+    private static final SmithWatermanAligner ALIGNER = SmithWatermanJavaAligner.getInstance();
+    private static final byte[] REF = "ACGTTGCAACGGGTACGTACCATGACTGACGATCGATCGGGATCCCATGACAACGT".getBytes();
+    private static final byte[] SNP = "ACGTTGCAACGGGTACGTACCATGACTGACCATCGATCGGGATCCCATGACAACGT".getBytes();
+    private static final byte[] DELETION = "ACGTTGCAACGGGTACGTACCATGACTGATCGATCGGGATCCCATGACAACGT".getBytes();
+
+    @Test
+    public void testSameAlignmentsAsWithoutCache() {
+        final HaplotypeToReferenceAlignmentCache cache = new HaplotypeToReferenceAlignmentCache(1 << 20);
+        for ( int i = 0; i < 3; i++ ) {
+            for ( final byte[] haplotype : new byte[][]{REF, SNP, DELETION} ) {
+                final Cigar expected = CigarUtils.calculateCigar(REF, haplotype, ALIGNER);
+                Assert.assertEquals(cache.calculateCigar(REF.clone(), haplotype.clone(), ALIGNER), expected);
+            }
+        }
+        Assert.assertEquals(cache.getMisses(), 3);
+        Assert.assertEquals(cache.getHits(), 6);
+        Assert.assertEquals(cache.getHitRate(), 6 / 9.0, 1e-10);
+        Assert.assertEquals(cache.size(), 3);
+        Assert.assertEquals(cache.getEvictions(), 0);
+    }
+
+    @Test
+    public void testReferenceWindowIsPartOfTheKey() {
+        final HaplotypeToReferenceAlignmentCache cache = new HaplotypeToReferenceAlignmentCache(1 << 20);
+        cache.calculateCigar(REF, SNP, ALIGNER);
+        final Cigar cigar = cache.calculateCigar(DELETION, SNP, ALIGNER);
+        Assert.assertEquals(cigar, CigarUtils.calculateCigar(DELETION, SNP, ALIGNER));
+        Assert.assertEquals(cache.getMisses(), 2);
+        Assert.assertEquals(cache.getHits(), 0);
+    }
+
+    @Test
+    public void testReturnedCigarsAreIndependentCopies() {
+        final HaplotypeToReferenceAlignmentCache cache = new HaplotypeToReferenceAlignmentCache(1 << 20);
+        final Cigar first = cache.calculateCigar(REF, SNP, ALIGNER);
+        final Cigar expected = new Cigar(first.getCigarElements());
+        first.add(first.getCigarElement(0));
+        Assert.assertEquals(cache.calculateCigar(REF, SNP, ALIGNER), expected);
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        final HaplotypeToReferenceAlignmentCache cache = new HaplotypeToReferenceAlignmentCache(1000);
+        final byte[][] haplotypes = {REF, SNP, DELETION};
+        for ( int i = 0; i < 30; i++ ) {
+            final byte[] haplotype = haplotypes[i % 3];
+            Assert.assertEquals(cache.calculateCigar(REF, haplotype, ALIGNER), CigarUtils.calculateCigar(REF, haplotype, ALIGNER));
+            Assert.assertTrue(cache.getSizeInBytes() <= 1000);
+        }
+        Assert.assertTrue(cache.getEvictions() > 0);
+        Assert.assertTrue(cache.size() < 3);
+    }
+
+    @Test
+    public void testDisabledCache() {
+        final HaplotypeToReferenceAlignmentCache cache = new HaplotypeToReferenceAlignmentCache(0);
+        for ( int i = 0; i < 2; i++ ) {
+            Assert.assertEquals(cache.calculateCigar(REF, SNP, ALIGNER), CigarUtils.calculateCigar(REF, SNP, ALIGNER));
+        }
+        Assert.assertEquals(cache.size(), 0);
+        Assert.assertEquals(cache.getHits() + cache.getMisses(), 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeSize() {
+        new HaplotypeToReferenceAlignmentCache(-1);
+    }
+}
@@ -82,4 +82,43 @@ public class CreateSomaticPanelOfNormalsIntegrationTest extends CommandLineProgr
         Assert.assertEquals(vc5.getNAlleles(), 2);
         Assert.assertTrue(vc5.getAlternateAllele(0).basesMatch("C"));
     }
-}
\ No newline at end of file
+
+    /**
+     * With a copy of sample1.vcf as a third input, every site of sample1.vcf is in the PoN, and with at most two files
+     * open at once the three vcfs are merged in two batches, on two threads.
+     */
+    @Test
+    public void testBatches() throws IOException {
+        final File vcf1 = new File(PON_VCFS_DIR, "sample1.vcf");
+        final File vcf2 = new File(PON_VCFS_DIR, "sample2.vcf");
+        final File vcf1Copy = createTempFile("sample1_copy", ".vcf");
+        FileUtils.copyFile(vcf1, vcf1Copy);
+
+        final File outputVcf = createTempFile("pon", ".vcf");
+        final String[] args = {
+                "-" + CreateSomaticPanelOfNormals.INPUT_VCFS_LIST_SHORT_NAME, vcf1.getAbsolutePath(),
+                "-" + CreateSomaticPanelOfNormals.INPUT_VCFS_LIST_SHORT_NAME, vcf2.getAbsolutePath(),
+                "-" + CreateSomaticPanelOfNormals.INPUT_VCFS_LIST_SHORT_NAME, vcf1Copy.getAbsolutePath(),
+                "-O", outputVcf.getAbsolutePath(),
+                "--" + CreateSomaticPanelOfNormals.DUPLICATE_SAMPLE_STRATEGY_LONG_NAME, "ALLOW_ALL",
+                "--" + CreateSomaticPanelOfNormals.MAX_OPEN_FILES_LONG_NAME, "2",
+                "--" + CreateSomaticPanelOfNormals.THREADS_LONG_NAME, "2"
+        };
+
+        runCommandLine(args);
+
+        final List<VariantContext> ponVariants =
+                StreamSupport.stream(new FeatureDataSource<VariantContext>(outputVcf).spliterator(), false)
+                .collect(Collectors.toList());
+        final List<VariantContext> sample1Variants =
+                StreamSupport.stream(new FeatureDataSource<VariantContext>(vcf1).spliterator(), false)
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(ponVariants.size(), sample1Variants.size());
+        for (int i = 0; i < ponVariants.size(); i++) {
+            Assert.assertEquals(ponVariants.get(i).getStart(), sample1Variants.get(i).getStart());
+            Assert.assertEquals(ponVariants.get(i).getAlleles(), sample1Variants.get(i).getAlleles());
+        }
+        Assert.assertTrue(ponVariants.stream().noneMatch(vc -> vc.getStart() == 9080929));
+    }
+}
@@ -228,6 +228,32 @@ public class Mutect2IntegrationTest extends CommandLineProgramTest {
         Assert.assertTrue(numVariantsPassingFilters < 2);
     }
 
+    // calling with several threads must give the same calls, in the same order, as calling with one
+    @Test
+    public void testThreadsGiveSameCallsAsOneThread() throws Exception {
+        final File oneThreadVcf = createTempFile("one-thread", ".vcf");
+        final File fourThreadsVcf = createTempFile("four-threads", ".vcf");
+
+        for ( final File outputVcf : Arrays.asList(oneThreadVcf, fourThreadsVcf) ) {
+            Utils.resetRandomGenerator();
+            final String[] args = {
+                    "-I", NA12878_20_21_WGS_bam,
+                    "-" + M2ArgumentCollection.TUMOR_SAMPLE_SHORT_NAME, "NA12878",
+                    "-R", b37_reference_20_21,
+                    "-L", "20:10000000-10010000",
+                    "--" + M2ArgumentCollection.GERMLINE_RESOURCE_LONG_NAME, GNOMAD.getAbsolutePath(),
+                    "--" + Mutect2.THREADS_LONG_NAME, outputVcf == oneThreadVcf ? "1" : "4",
+                    "-O", outputVcf.getAbsolutePath()
+            };
+            runCommandLine(args);
+        }
+
+        final List<String> oneThreadCalls = Files.readAllLines(oneThreadVcf.toPath()).stream().filter(line -> !line.startsWith("#")).collect(Collectors.toList());
+        final List<String> fourThreadsCalls = Files.readAllLines(fourThreadsVcf.toPath()).stream().filter(line -> !line.startsWith("#")).collect(Collectors.toList());
+        Assert.assertFalse(oneThreadCalls.isEmpty());
+        Assert.assertEquals(fourThreadsCalls, oneThreadCalls);
+    }
+
     @Test
     public void testContaminationFilter() throws Exception {
         Utils.resetRandomGenerator();
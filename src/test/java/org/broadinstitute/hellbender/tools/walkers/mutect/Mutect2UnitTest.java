@@ -0,0 +1,72 @@
+package org.broadinstitute.hellbender.tools.walkers.mutect;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMReadGroupRecord;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import org.broadinstitute.hellbender.GATKBaseTest;
+import org.broadinstitute.hellbender.engine.AssemblyRegion;
+import org.broadinstitute.hellbender.engine.FeatureContext;
+import org.broadinstitute.hellbender.engine.ReferenceContext;
+import org.broadinstitute.hellbender.engine.ReferenceDataSource;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.io.IOUtils;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.variant.GATKVariantContextUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public final class Mutect2UnitTest extends GATKBaseTest {
+    private static final String SAMPLE = "tumor";
+
+    /**
+     * Mates that overlap each other, and both of two adjacent regions: calling the first region must not change the
+     * qualities of the reads that the second region gets from the traversal, even with a single thread
+     */
+    @Test
+    public void testOverlappingMatesAcrossAdjacentRegions() {
+        try ( final ReferenceDataSource reference = ReferenceDataSource.of(IOUtils.getPath(hg19MiniReference)) ) {
+            final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader(reference.getSequenceDictionary());
+            final SAMReadGroupRecord readGroup = new SAMReadGroupRecord("rg");
+            readGroup.setSample(SAMPLE);
+            header.addReadGroup(readGroup);
+
+            final int readLength = 100;
+            final List<GATKRead> mates = ArtificialReadUtils.createPair(header, "pair", readLength, 1000, 1050, true, false);
+            for ( final GATKRead mate : mates ) {
+                mate.setBases(reference.queryAndPrefetch("1", mate.getStart(), mate.getEnd()).getBases());
+                mate.setBaseQualities(Utils.dupBytes((byte) 30, readLength));
+                mate.setMappingQuality(60);
+                mate.setReadGroup(readGroup.getId());
+            }
+            final List<byte[]> originalQuals = Arrays.asList(mates.get(0).getBaseQualities(), mates.get(1).getBaseQualities());
+
+            final M2ArgumentCollection MTAC = new M2ArgumentCollection();
+            MTAC.tumorSampleName = SAMPLE;
+            final Mutect2Engine engine = new Mutect2Engine(MTAC, false, false, header, hg19MiniReference);
+            final VariantContextWriter writer = GATKVariantContextUtils.createVCFWriter(createTempFile("calls", ".vcf"), header.getSequenceDictionary(), false);
+            engine.writeHeader(writer, header.getSequenceDictionary(), Collections.emptySet());
+            final Mutect2 mutect2 = new Mutect2(engine, writer);
+            try {
+                for ( final SimpleInterval span : Arrays.asList(new SimpleInterval("1", 1040, 1075), new SimpleInterval("1", 1076, 1110)) ) {
+                    final AssemblyRegion region = new AssemblyRegion(span, Collections.emptyList(), true, 100, header);
+                    mates.forEach(region::add);
+                    mutect2.apply(region, new ReferenceContext(reference, region.getExtendedSpan()), new FeatureContext());
+
+                    // the engine worked on copies, whose overlapping qualities it may lower, and left the traversal's reads alone
+                    Assert.assertTrue(region.getReads().stream().noneMatch(read -> mates.stream().anyMatch(mate -> mate == read)));
+                    for ( int i = 0; i < mates.size(); i++ ) {
+                        Assert.assertEquals(mates.get(i).getBaseQualities(), originalQuals.get(i));
+                    }
+                }
+            } finally {
+                mutect2.closeTool();
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.broadinstitute.hellbender.tools.walkers.mutect;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.VariantContextBuilder;
+import org.apache.commons.io.FileUtils;
+import org.broadinstitute.hellbender.GATKBaseTest;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.tools.walkers.haplotypecaller.AssemblyBasedCallerUtils;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+public final class PanelOfNormalsMergerUnitTest extends GATKBaseTest {
+    private static final SAMSequenceDictionary DICTIONARY = new SAMSequenceDictionary(Arrays.asList(
+            new SAMSequenceRecord("chr1", 1000), new SAMSequenceRecord("chr2", 1000)));
+    private static final String VCF_HEADER = "##fileformat=VCFv4.2\n#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\tSAMPLE";
+
+    @DataProvider(name = "allelesToMerge")
+    public Object[][] allelesToMerge() {
+        return new Object[][] {
+                { Arrays.asList(Arrays.asList("A", "C"), Arrays.asList("A", "C")) },
+                { Arrays.asList(Arrays.asList("A", "C"), Arrays.asList("A", "G,C")) },
+                { Arrays.asList(Arrays.asList("A", "C"), Arrays.asList("AT", "A")) },
+                { Arrays.asList(Arrays.asList("ATT", "A"), Arrays.asList("A", "G"), Arrays.asList("AT", "A,<DEL>")) },
+                { Arrays.asList(Arrays.asList("A", "<DEL>"), Arrays.asList("A", "T")) },
+        };
+    }
+
+    @Test(dataProvider = "allelesToMerge")
+    public void testSameAllelesAsSimpleMerge(final List<List<String>> records) {
+        final List<VariantContext> vcs = new ArrayList<>();
+        PanelOfNormalsSite site = null;
+        for ( final List<String> record : records ) {
+            final String line = String.join("\t", "chr1", "100", ".", record.get(0), record.get(1), ".", "PASS", ".");
+            final PanelOfNormalsSite recordSite = PanelOfNormalsSite.decode(line, false);
+            vcs.add(new VariantContextBuilder(recordSite.toVariantContext()).source("vc" + vcs.size()).make());
+            if ( site == null ) {
+                site = recordSite;
+            } else {
+                site.add(recordSite);
+            }
+        }
+
+        final VariantContext expected = AssemblyBasedCallerUtils.makeMergedVariantContext(vcs);
+        final VariantContext merged = site.toVariantContext();
+        Assert.assertEquals(site.getCount(), records.size());
+        Assert.assertEquals(merged.getAlleles(), expected.getAlleles());
+        Assert.assertEquals(merged.getEnd(), expected.getEnd());
+    }
+
+    @Test
+    public void testEncodeAndDecode() {
+        final PanelOfNormalsSite site = new PanelOfNormalsSite("chr2", 17, 5, Allele.create("AC", true),
+                Arrays.asList(Allele.create("A"), Allele.create("TC")));
+        final PanelOfNormalsSite decoded = PanelOfNormalsSite.decode(site.encode(), true);
+        Assert.assertEquals(decoded.getContig(), "chr2");
+        Assert.assertEquals(decoded.getPosition(), 17);
+        Assert.assertEquals(decoded.getCount(), 5);
+        Assert.assertEquals(decoded.getReference(), site.getReference());
+        Assert.assertEquals(decoded.getAlternateAlleles(), site.getAlternateAlleles());
+    }
+
+    @Test(expectedExceptions = UserException.BadInput.class)
+    public void testInconsistentReferences() {
+        PanelOfNormalsSite.decode("chr1\t100\t.\tA\tC", false).add(PanelOfNormalsSite.decode("chr1\t100\t.\tG\tC", false));
+    }
+
+    @DataProvider(name = "batching")
+    public Object[][] batching() {
+        return new Object[][] { {2, 1}, {2, 3}, {3, 2}, {7, 4} };
+    }
+
+    @Test(dataProvider = "batching")
+    public void testBatchesGiveSameSitesAsOneMerge(final int maxOpenFiles, final int numThreads) throws IOException {
+        final Random random = new Random(maxOpenFiles * 10 + numThreads);
+        final List<File> vcfs = new ArrayList<>();
+        for ( int i = 0; i < 12; i++ ) {
+            vcfs.add(writeVcf(randomRecords(random)));
+        }
+
+        final List<PanelOfNormalsSite> expected = new ArrayList<>();
+        new PanelOfNormalsMerger(DICTIONARY, vcfs.size(), 1).merge(vcfs, expected::add);
+        final List<PanelOfNormalsSite> batched = new ArrayList<>();
+        new PanelOfNormalsMerger(DICTIONARY, maxOpenFiles, numThreads).merge(vcfs, batched::add);
+
+        Assert.assertEquals(batched.stream().map(PanelOfNormalsSite::encode).collect(Collectors.toList()),
+                expected.stream().map(PanelOfNormalsSite::encode).collect(Collectors.toList()));
+
+        // every record is counted once, at the one site of its position
+        final List<String> lines = new ArrayList<>();
+        for ( final File vcf : vcfs ) {
+            FileUtils.readLines(vcf).stream().filter(line -> !line.startsWith("#")).forEach(lines::add);
+        }
+        Assert.assertEquals(expected.stream().mapToInt(PanelOfNormalsSite::getCount).sum(), lines.size());
+        Assert.assertEquals(expected.size(), lines.stream().map(line -> line.split("\t")[0] + ":" + line.split("\t")[1]).distinct().count());
+        for ( int i = 1; i < expected.size(); i++ ) {
+            final PanelOfNormalsSite previous = expected.get(i - 1);
+            final PanelOfNormalsSite site = expected.get(i);
+            Assert.assertTrue(previous.getContig().compareTo(site.getContig()) < 0 ||
+                    (previous.getContig().equals(site.getContig()) && previous.getPosition() < site.getPosition()));
+        }
+    }
+
+    @Test(expectedExceptions = UserException.BadInput.class)
+    public void testUnsortedVcf() throws IOException {
+        final File vcf = writeVcf(Arrays.asList("chr2\t10\t.\tA\tC", "chr1\t20\t.\tA\tC"));
+        new PanelOfNormalsMerger(DICTIONARY, 2, 1).merge(Arrays.asList(vcf, vcf), site -> {});
+    }
+
+    @Test(expectedExceptions = UserException.BadInput.class)
+    public void testUnknownContig() throws IOException {
+        final File vcf = writeVcf(Arrays.asList("chr3\t10\t.\tA\tC"));
+        new PanelOfNormalsMerger(DICTIONARY, 2, 1).merge(Arrays.asList(vcf), site -> {});
+    }
+
+    @Test(expectedExceptions = UserException.BadInput.class)
+    public void testBcfIsRejected() throws IOException {
+        final File vcf = writeVcf(Arrays.asList("chr1\t10\t.\tA\tC"));
+        final File bcf = createTempFile("normal", ".bcf");
+        FileUtils.writeByteArrayToFile(bcf, new byte[] {'B', 'C', 'F', 2, 2, 0, 0, 0, 0});
+        new PanelOfNormalsMerger(DICTIONARY, 2, 1).merge(Arrays.asList(vcf, bcf), site -> Assert.fail("nothing should be merged"));
+    }
+
+    private static List<String> randomRecords(final Random random) {
+        final List<String> records = new ArrayList<>();
+        for ( final String contig : Arrays.asList("chr1", "chr2") ) {
+            int position = 0;
+            for ( int i = 0; i < 10; i++ ) {
+                // repeating a position now and then gives records at the same position in one vcf
+                position += random.nextInt(4);
+                final String alleles = random.nextBoolean() ? "A\tC" : (random.nextBoolean() ? "AT\tA" : "A\tG,AC");
+                records.add(String.join("\t", contig, Integer.toString(Math.max(position, 1)), ".", alleles, ".", "PASS", ".", "GT", "0/1"));
+            }
+        }
+        return records;
+    }
+
+    private File writeVcf(final List<String> records) throws IOException {
+        final File vcf = createTempFile("normal", ".vcf");
+        final List<String> lines = new ArrayList<>();
+        lines.add(VCF_HEADER);
+        lines.addAll(records);
+        FileUtils.writeLines(vcf, lines);
+        return vcf;
+    }
+}
@@ -1,11 +1,19 @@
 package org.broadinstitute.hellbender.transformers;
 
+import org.broadinstitute.hellbender.engine.ReadsDataSource;
+import org.broadinstitute.hellbender.tools.ApplyBQSRArgumentCollection;
 import org.broadinstitute.hellbender.utils.QualityUtils;
+import org.broadinstitute.hellbender.utils.io.IOUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.recalibration.RecalDatum;
 import org.broadinstitute.hellbender.GATKBaseTest;
+import org.broadinstitute.hellbender.utils.recalibration.RecalibrationReport;
 import org.testng.Assert;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -89,4 +97,44 @@ public final class BQSRReadTransformerUnitTest extends GATKBaseTest {
             }
         }
     }
+
+    @DataProvider(name = "cacheSizes")
+    public Object[][] cacheSizes() {
+        // no limit to speak of, and a limit that the reads reach long before their last base
+        return new Object[][] { {Integer.MAX_VALUE}, {50} };
+    }
+
+    @Test(dataProvider = "cacheSizes")
+    public void testCachedQualsAreTheComputedQuals(final int maxCachedQuals) {
+        final String resourceDir = toolsTestDir + "BQSR/";
+        final File recalFile = new File(resourceDir + "HiSeq.20mb.1RG.table.gz");
+        final List<GATKRead> reads = new ArrayList<>();
+        try ( final ReadsDataSource readsSource = new ReadsDataSource(IOUtils.getPath(resourceDir + "HiSeq.1mb.1RG.2k_lines.alternate.bam")) ) {
+            readsSource.forEach(reads::add);
+
+            final BQSRReadTransformer uncached = new BQSRReadTransformer(readsSource.getHeader(), new RecalibrationReport(recalFile), new ApplyBQSRArgumentCollection(), 0);
+            final BQSRReadTransformer cached = new BQSRReadTransformer(readsSource.getHeader(), new RecalibrationReport(recalFile), new ApplyBQSRArgumentCollection(), maxCachedQuals);
+            for ( final GATKRead read : reads ) {
+                final byte[] expected = uncached.apply(read.copy()).getBaseQualities();
+                Assert.assertEquals(cached.apply(read.copy()).getBaseQualities(), expected, read.getName());
+                // once more, from the cache if the first time filled it
+                Assert.assertEquals(cached.apply(read.copy()).getBaseQualities(), expected, read.getName());
+            }
+            Assert.assertEquals(uncached.numberOfCachedQuals(), 0);
+            Assert.assertTrue(cached.numberOfCachedQuals() > 0);
+            Assert.assertTrue(cached.numberOfCachedQuals() <= maxCachedQuals);
+        }
+    }
+
+    @Test
+    public void testKeyStrides() {
+        Assert.assertEquals(BQSRReadTransformer.computeKeyStrides(new int[]{3, 0, 9}), new long[]{1, 5, 10});
+    }
+
+    @Test
+    public void testKeyStridesThatOverflowALong() {
+        // (2^31 + 1)^3 keys is more than a long can hold, (2^31 + 1)^2 is not
+        Assert.assertNull(BQSRReadTransformer.computeKeyStrides(new int[]{Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE}));
+        Assert.assertNotNull(BQSRReadTransformer.computeKeyStrides(new int[]{Integer.MAX_VALUE, Integer.MAX_VALUE}));
+    }
 }
@@ -54,4 +54,13 @@ public final class FisherExactTestUnitTest{
         final double pvalue = FisherExactTest.twoSidedPValue(contingencyTable);
         Assert.assertEquals(pvalue, expectedPvalue, DELTA_PRECISION, "Pvalues");
     }
+
+    @Test(dataProvider = "UsingTable")
+    public void testRepeatedCallsGiveSameValue(final int refpos, final int refneg, final int altpos, final int altneg, double expectedPvalue) {
+        // the second call may come from the memoized p-values.
+        final double first = FisherExactTest.twoSidedPValue(new int[][]{{refpos, refneg}, {altpos, altneg}});
+        final double second = FisherExactTest.twoSidedPValue(new int[][]{{refpos, refneg}, {altpos, altneg}});
+        Assert.assertEquals(second, first);
+        Assert.assertEquals(second, expectedPvalue, DELTA_PRECISION, "Pvalues");
+    }
 }
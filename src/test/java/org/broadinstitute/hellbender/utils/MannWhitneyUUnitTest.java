@@ -10,6 +10,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 public class MannWhitneyUUnitTest extends GATKBaseTest {
     private static double DELTA_PRECISION = 0.00001;
@@ -97,6 +100,68 @@ public class MannWhitneyUUnitTest extends GATKBaseTest {
         Assert.assertEquals(rst.transformTies(64890, listOfNumberOfTies), 8.41378729572e+12);
     }
 
+    @DataProvider(name = "exactTestData")
+    public Object[][] exactTestData() {
+        return new Object[][] {
+                {new double[] {1,2,3,4,5}, new double[] {6,7,8,9,10}},
+                {new double[] {6,7,8,9,10}, new double[] {1,2,3,4,5}},
+                {new double[] {3,9,1}, new double[] {2,8,4,7,5,6}},
+                {new double[] {13,14,15,15,16}, new double[] {16,20,20,21,21}},
+                {new double[] {20,20,20,20,21}, new double[] {20,20,20,20,21}},
+                {new double[] {16,20,20,21,21,21,21,21,20}, new double[] {22,23,27,16,20,20,20,20,21}},
+                {new double[] {0.5,1.5,1.5}, new double[] {1.5,2.5,0.5,7}},
+        };
+    }
+
+    @Test(dataProvider = "exactTestData")
+    public void testPermutationTestMatchesEnumeration(final double[] series1, final double[] series2) {
+        final double u = rst.calculateOneSidedU(series1.clone(), series2.clone(), MannWhitneyU.TestType.FIRST_DOMINATES).getTrueU();
+        Assert.assertEquals(rst.permutationTest(series1.clone(), series2.clone(), u), enumeratedPermutationTest(series1, series2, u));
+        // a second call uses the cached distribution when there are no ties.
+        Assert.assertEquals(rst.permutationTest(series1.clone(), series2.clone(), u), enumeratedPermutationTest(series1, series2, u));
+    }
+
+    // p-value of the exact test computed by going through all the ways to split the ranks between the two series.
+    private static double enumeratedPermutationTest(final double[] series1, final double[] series2, final double u) {
+        final int n1 = series1.length;
+        final double[] values = Doubles.concat(series1, series2);
+        Arrays.sort(values);
+        final float[] ranks = new float[values.length];
+        for (int i = 0; i < values.length; ) {
+            int count = 1;
+            float rank = i + 1;
+            while (i + count < values.length && values[i + count] == values[i]) {
+                rank += i + count + 1;
+                count++;
+            }
+            Arrays.fill(ranks, i, i + count, rank / count);
+            i += count;
+        }
+
+        final SortedMap<Double, Long> histogram = new TreeMap<>();
+        for (int mask = 0; mask < (1 << values.length); mask++) {
+            if (Integer.bitCount(mask) != n1) {
+                continue;
+            }
+            double sum = 0;
+            for (int i = 0; i < values.length; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    sum += ranks[i];
+                }
+            }
+            histogram.merge(sum - ((n1 * (n1 + 1)) / 2.0), 1L, Long::sum);
+        }
+        double result = histogram.getOrDefault(u, 0L) / 2.0;
+        long total = 0;
+        for (final Map.Entry<Double, Long> entry : histogram.entrySet()) {
+            if (entry.getKey() < u) {
+                result += entry.getValue();
+            }
+            total += entry.getValue();
+        }
+        return result / total;
+    }
+
     @DataProvider(name = "DistributionData")
     public Object[][] makeDistributionData() {
         List<Object[]> tests = new ArrayList<>();
@@ -0,0 +1,97 @@
+package org.broadinstitute.hellbender.utils.activityprofile;
+
+import htsjdk.samtools.SAMFileHeader;
+import org.broadinstitute.hellbender.GATKBaseTest;
+import org.broadinstitute.hellbender.engine.AssemblyRegion;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class RingBufferActivityProfileUnitTest extends GATKBaseTest {
+    private final static int MAX_PROB_PROPAGATION_DISTANCE = 50;
+    private final static double ACTIVE_PROB_THRESHOLD = 0.002;
+    private final static int CONTIG_LENGTH = 5000;
+
+    private final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader(2, 1, CONTIG_LENGTH);
+
+    @DataProvider(name = "SameRegionsTest")
+    public Object[][] makeSameRegionsTest() {
+        final List<Object[]> tests = new ArrayList<>();
+        int seed = 0;
+        for ( final double activeFraction : new double[]{0.0, 0.01, 0.1, 0.5} ) {
+            for ( final int maxRegionSize : new int[]{50, 300} ) {
+                for ( final double sigma : new double[]{1.0, BandPassActivityProfile.DEFAULT_SIGMA} ) {
+                    tests.add(new Object[]{ seed++, activeFraction, maxRegionSize, sigma });
+                }
+            }
+        }
+        return tests.toArray(new Object[][]{});
+    }
+
+    @Test(dataProvider = "SameRegionsTest")
+    public void testSameRegionsAsBandPassActivityProfile(final int seed, final double activeFraction, final int maxRegionSize, final double sigma) {
+        final ActivityProfile expected = new BandPassActivityProfile(null, MAX_PROB_PROPAGATION_DISTANCE, ACTIVE_PROB_THRESHOLD,
+                BandPassActivityProfile.MAX_FILTER_SIZE, sigma, header);
+        final ActivityProfile actual = new RingBufferActivityProfile(null, MAX_PROB_PROPAGATION_DISTANCE, ACTIVE_PROB_THRESHOLD,
+                BandPassActivityProfile.MAX_FILTER_SIZE, sigma, header);
+        final Random random = Utils.getRandomGenerator();
+        random.setSeed(seed);
+
+        // two stretches on the first contig, one reaching its end, and one at the start of the second contig
+        final List<SimpleInterval> stretches = new ArrayList<>();
+        stretches.add(new SimpleInterval("1", 1, 2000));
+        stretches.add(new SimpleInterval("1", 2500, CONTIG_LENGTH));
+        stretches.add(new SimpleInterval("2", 1, 1000));
+        for ( final SimpleInterval stretch : stretches ) {
+            for ( int position = stretch.getStart(); position <= stretch.getEnd(); position++ ) {
+                final boolean forceConversion = ! actual.isEmpty() && (position != actual.getEnd() + 1 || ! stretch.getContig().equals(actual.getContig()));
+                Assert.assertEquals(actual.isEmpty(), expected.isEmpty());
+                if ( ! expected.isEmpty() ) {
+                    assertSameRegions(actual.popReadyAssemblyRegions(0, 1, maxRegionSize, forceConversion),
+                            expected.popReadyAssemblyRegions(0, 1, maxRegionSize, forceConversion));
+                }
+
+                final SimpleInterval loc = new SimpleInterval(stretch.getContig(), position, position);
+                // each profile gets its own state, as ActivityProfile may keep it and change its probability
+                if ( random.nextDouble() < activeFraction / 10 ) {
+                    final double prob = random.nextDouble();
+                    final int softClipSize = random.nextInt(100) + 1;
+                    actual.add(new ActivityProfileState(loc, prob, ActivityProfileState.Type.HIGH_QUALITY_SOFT_CLIPS, softClipSize));
+                    expected.add(new ActivityProfileState(loc, prob, ActivityProfileState.Type.HIGH_QUALITY_SOFT_CLIPS, softClipSize));
+                } else {
+                    final double prob = random.nextDouble() < activeFraction ? random.nextDouble() : 0.0;
+                    actual.add(new ActivityProfileState(loc, prob));
+                    expected.add(new ActivityProfileState(loc, prob));
+                }
+                Assert.assertEquals(actual.size(), expected.size());
+                Assert.assertTrue(Arrays.equals(actual.getProbabilitiesAsArray(), expected.getProbabilitiesAsArray()));
+            }
+        }
+        assertSameRegions(actual.popReadyAssemblyRegions(0, 1, maxRegionSize, true), expected.popReadyAssemblyRegions(0, 1, maxRegionSize, true));
+        Assert.assertTrue(actual.isEmpty());
+    }
+
+    private static void assertSameRegions(final List<AssemblyRegion> actual, final List<AssemblyRegion> expected) {
+        Assert.assertEquals(actual.size(), expected.size());
+        for ( int i = 0; i < actual.size(); i++ ) {
+            Assert.assertEquals(actual.get(i).getSpan(), expected.get(i).getSpan());
+            Assert.assertEquals(actual.get(i).isActive(), expected.get(i).isActive());
+
+            final List<ActivityProfileState> actualStates = actual.get(i).getSupportingStates();
+            final List<ActivityProfileState> expectedStates = expected.get(i).getSupportingStates();
+            Assert.assertEquals(actualStates.size(), expectedStates.size());
+            for ( int j = 0; j < actualStates.size(); j++ ) {
+                Assert.assertEquals(actualStates.get(j).getLoc(), expectedStates.get(j).getLoc());
+                Assert.assertEquals(actualStates.get(j).isActiveProb(), expectedStates.get(j).isActiveProb());
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.broadinstitute.hellbender.utils.baq;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Timing test for the BAQ HMM.
+ */
+public final class BAQTimingTest {
+    private static final int N_READS = 20000;
+    private static final int N_ROUNDS = 5;
+    private static final int BANDWIDTH = 7;
+
+    private static final class HMMInput {
+        private final byte[] ref;
+        private final byte[] query;
+        private final byte[] quals;
+
+        private HMMInput(final byte[] ref, final byte[] query, final byte[] quals) {
+            this.ref = ref;
+            this.query = query;
+            this.quals = quals;
+        }
+    }
+
+    /**
+     * Reads of random lengths, made from random references with substitutions, small indels, Ns and lower case bases
+     */
+    private static List<HMMInput> makeInputs(final Random rng) {
+        final byte[] bases = "ACGTACGTACGTACGTacgtN".getBytes();
+        final List<HMMInput> inputs = new ArrayList<>(N_READS);
+        for ( int n = 0; n < N_READS; n++ ) {
+            final byte[] ref = new byte[10 + rng.nextInt(250)];
+            for ( int i = 0; i < ref.length; i++ ) {
+                ref[i] = bases[rng.nextInt(bases.length)];
+            }
+            final StringBuilder query = new StringBuilder();
+            for ( int i = BANDWIDTH / 2; i < ref.length - BANDWIDTH / 2; i++ ) {
+                final int event = rng.nextInt(100);
+                if ( event < 3 ) {
+                    query.append((char) bases[rng.nextInt(bases.length)]);
+                } else if ( event < 4 ) {
+                    query.append((char) ref[i]).append("AC", 0, 1 + rng.nextInt(2));
+                } else if ( event < 5 ) {
+                    i += rng.nextInt(2);
+                } else {
+                    query.append((char) ref[i]);
+                }
+            }
+            if ( query.length() == 0 ) {
+                query.append('A');
+            }
+            final byte[] quals = new byte[query.length()];
+            for ( int i = 0; i < quals.length; i++ ) {
+                quals[i] = (byte) rng.nextInt(61);
+            }
+            inputs.add(new HMMInput(ref, query.toString().getBytes(), quals));
+        }
+        return inputs;
+    }
+
+    public static void main( final String[] args ) {
+        final List<HMMInput> inputs = makeInputs(new Random(0xdeadbeef));
+        final BAQ baq = new BAQ(1.0e-3, 0.1, BANDWIDTH, (byte) 4);
+
+        for ( int round = 0; round != N_ROUNDS; ++round ) {
+            final long nanosecs = System.nanoTime();
+            for ( final HMMInput input : inputs ) {
+                baq.hmm_glocal(input.ref, input.query, 0, input.query.length, input.quals, new int[input.query.length], new byte[input.query.length]);
+            }
+            System.out.println("BAQ HMM round " + round + ": " + (System.nanoTime() - nanosecs)/1.E9);
+        }
+    }
+}
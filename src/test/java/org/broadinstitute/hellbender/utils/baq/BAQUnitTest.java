@@ -174,6 +174,76 @@ public final class BAQUnitTest extends GATKBaseTest {
         }
     }
 
+    @DataProvider(name = "hmmData")
+    public Object[][] makeHMMData() {
+        // reference, read bases, read qualities as phred + 33, offset of the first base to align, and the expected states and
+        // qualities of the HMM: an exact match, a substitution, an insertion, a deletion, Ns and lower case bases, a read much
+        // longer than the reference, a single base, and an offset read
+        return new Object[][] {
+                { "ACGTTGCAAGCTTACGGATC", "TTGCAAGCTTACGG", "??????????????", 0,
+                        new int[]{12, 16, 20, 24, 28, 32, 36, 40, 44, 48, 52, 56, 60, 64},
+                        new byte[]{33, 36, 67, 84, 64, 64, 94, 94, 64, 64, 83, 66, 36, 33}},
+                { "ACGTTGCAAGCTTACGGATC", "TTGCAAGATTACGG", "???????%??????", 0,
+                        new int[]{12, 16, 20, 24, 28, 32, 36, 40, 44, 48, 52, 56, 60, 64},
+                        new byte[]{33, 36, 67, 84, 64, 64, 67, 62, 61, 62, 83, 66, 36, 33}},
+                { "ACGTTGCAAGCTTACGGATC", "TTGCAAGACCTTACGG", "????????55??????", 0,
+                        new int[]{12, 16, 20, 24, 28, 32, 36, 37, 37, 40, 44, 48, 52, 56, 60, 64},
+                        new byte[]{33, 36, 67, 78, 45, 25, 22, 22, 18, 20, 42, 45, 78, 66, 36, 33}},
+                { "ACGTTGCAAGCTTACGGATC", "TTGCAACTTACGG", "?????????????", 0,
+                        new int[]{12, 16, 20, 24, 28, 32, 40, 44, 48, 52, 56, 60, 64},
+                        new byte[]{33, 36, 66, 69, 34, 32, 35, 62, 63, 81, 66, 36, 33}},
+                { "ACGTnGCAAGCTNACGgatc", "TTGcaaGCTNACGG", "??#??(????!???", 0,
+                        new int[]{12, 16, 20, 24, 28, 32, 36, 40, 44, 48, 52, 56, 60, 64},
+                        new byte[]{33, 36, 58, 72, 63, 63, 75, 87, 59, 57, 58, 64, 36, 33}},
+                { "GATTACAGATTACA", "GATTACATTTTTTTTTTGATTACA", "????????????????????????", 0,
+                        new int[]{0, 4, 8, 12, 16, 20, 24, 25, 25, 25, 25, 25, 25, 25, 25, 25, 25, 28, 32, 36, 40, 44, 48, 52},
+                        new byte[]{36, 52, 63, 64, 72, 67, 34, 32, 32, 32, 32, 32, 32, 32, 32, 32, 32, 34, 61, 61, 63, 85, 91, 92}},
+                { "CCCCAGGGG", "A", "?", 0,
+                        new int[]{16},
+                        new byte[]{23}},
+                { "TTAGGCATCGATCGGATTAC", "NNGGCATCCATCGGAT", "!!]]]]]]]]]]]]]]", 2,
+                        new int[]{0, 0, 12, 16, 20, 24, 28, 32, 36, 40, 44, 48, 52, 56, 60, 64},
+                        new byte[]{0, 0, 33, 36, 55, 52, 50, 4, 4, 37, 37, 37, 37, 37, 37, 29}}
+        };
+    }
+
+    /**
+     * The HMM keeps its matrices between reads, of whatever length, so each read is run twice, after the reads of the
+     * cases before it on the same thread
+     */
+    @Test(dataProvider = "hmmData")
+    public void testHMMStatesAndQualities(final String refBases, final String readBases, final String readQuals, final int qstart,
+                                          final int[] expectedStates, final byte[] expectedQuals) {
+        final BAQ baq = new BAQ(1.0e-3, 0.1, 7, (byte) 4);
+        final byte[] ref = refBases.getBytes();
+        final byte[] query = readBases.getBytes();
+        final byte[] quals = SAMUtils.fastqToPhred(readQuals);
+        for ( int round = 0; round < 2; round++ ) {
+            final int[] state = new int[query.length];
+            final byte[] q = new byte[query.length];
+            baq.hmm_glocal(ref, query, qstart, query.length - qstart, quals, state, q);
+            Assert.assertEquals(state, expectedStates);
+            Assert.assertEquals(q, expectedQuals);
+        }
+    }
+
+    @Test
+    public void testBAQEpsilons() {
+        final byte minBaseQual = 4;
+        final BAQ baq = new BAQ(1.0e-3, 0.1, 7, minBaseQual);
+        final String bases = "ACGTacgt";
+        for ( final byte ref : "ACGTacgtNnRx".getBytes() ) {
+            for ( final byte read : "ACGTacgtNnRx".getBytes() ) {
+                for ( int q = 0; q <= SAMUtils.MAX_PHRED_SCORE; q++ ) {
+                    final double errorProb = Math.pow(10, -Math.max(q, minBaseQual) / 10.);
+                    final double expected = bases.indexOf(ref) < 0 || bases.indexOf(read) < 0 ? 1.0
+                            : Character.toUpperCase(ref) == Character.toUpperCase(read) ? 1 - errorProb : errorProb * 0.33333333333;
+                    Assert.assertEquals(baq.calcEpsilon(ref, read, (byte) q), expected);
+                }
+            }
+        }
+    }
+
     @Test
     public void testBAQOverwritesExistingTagWithNull() {
         final Path reference = IOUtils.getPath(hg19_chr1_1M_Reference);
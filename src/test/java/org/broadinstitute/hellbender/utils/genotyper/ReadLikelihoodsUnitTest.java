@@ -98,6 +98,53 @@ public final class ReadLikelihoodsUnitTest {
         }
     }
 
+    @Test(dataProvider = "dataSets")
+    public void testBestAllelesAmongCandidates(final String[] samples, final Allele[] alleles, final Map<String,List<GATKRead>> reads) {
+        final ReadLikelihoods<Allele> original = new ReadLikelihoods<>(new IndexedSampleList(samples), new IndexedAlleleList<>(alleles), reads);
+        fillWithRandomLikelihoods(samples,alleles,original);
+        final List<Allele> candidates = new ArrayList<>();
+        for (int a = 0; a < alleles.length; a += 2) {
+            candidates.add(alleles[a]);
+        }
+        final Map<Allele,List<Allele>> identityMap = new LinkedHashMap<>();
+        candidates.forEach(a -> identityMap.put(a, Collections.singletonList(a)));
+        final ReadLikelihoods<Allele> marginal = original.marginalize(identityMap);
+
+        for (final String sample : samples) {
+            final List<ReadLikelihoods<Allele>.BestAllele> expected = new ArrayList<>(marginal.bestAlleles(sample));
+            final List<ReadLikelihoods<Allele>.BestAllele> actual = new ArrayList<>(original.bestAlleles(sample, candidates));
+            Assert.assertEquals(actual.size(), expected.size());
+            for (int r = 0; r < expected.size(); r++) {
+                Assert.assertEquals(actual.get(r).read, expected.get(r).read);
+                Assert.assertEquals(actual.get(r).allele, expected.get(r).allele);
+                Assert.assertEquals(actual.get(r).likelihood, expected.get(r).likelihood);
+                Assert.assertEquals(actual.get(r).confidence, expected.get(r).confidence);
+            }
+        }
+    }
+
+    @Test(dataProvider = "dataSets")
+    public void testBestAllelesFollowLikelihoodChanges(final String[] samples, final Allele[] alleles, final Map<String,List<GATKRead>> reads) {
+        final ReadLikelihoods<Allele> original = new ReadLikelihoods<>(new IndexedSampleList(samples), new IndexedAlleleList<>(alleles), reads);
+        fillWithRandomLikelihoods(samples,alleles,original);
+        if (alleles.length == 0) {
+            return;
+        }
+        for (int s = 0; s < samples.length; s++) {
+            if (original.sampleReadCount(s) == 0) {
+                continue;
+            }
+            final Allele lastAllele = alleles[alleles.length - 1];
+            // the first call fills the cache, which must then be dropped when a likelihood changes.
+            Assert.assertEquals(original.bestAlleles(samples[s]).size(), original.sampleReadCount(s));
+            Assert.assertEquals(original.bestAlleles(samples[s], Collections.singletonList(lastAllele)).size(), original.sampleReadCount(s));
+            original.sampleMatrix(s).set(alleles.length - 1, 0, 1.0);
+            Assert.assertEquals(original.bestAlleles(samples[s]).iterator().next().likelihood, 1.0);
+            Assert.assertEquals(original.bestAlleles(samples[s]).iterator().next().allele, lastAllele);
+            Assert.assertEquals(original.bestAlleles(samples[s], Collections.singletonList(lastAllele)).iterator().next().likelihood, 1.0);
+        }
+    }
+
     @Test(dataProvider = "dataSets")
     public void testBestAlleleMap(final String[] samples, final Allele[] alleles, final Map<String,List<GATKRead>> reads) {
         final ReadLikelihoods<Allele> original = new ReadLikelihoods<>(new IndexedSampleList(samples), new IndexedAlleleList<>(alleles), reads);
@@ -192,6 +239,85 @@ public final class ReadLikelihoodsUnitTest {
         testLikelihoodMatrixQueries(samples,result,newLikelihoods);
     }
 
+    @Test(dataProvider = "dataSets")
+    public void testAddAllelesAndReadsAfterFilter(final String[] samples, final Allele[] alleles, final Map<String,List<GATKRead>> reads) {
+        final ReadLikelihoods<Allele> original = new ReadLikelihoods<>(new IndexedSampleList(samples), new IndexedAlleleList<>(alleles), reads);
+        final SimpleInterval evenReadOverlap = new SimpleInterval(SAM_HEADER.getSequenceDictionary().getSequences().get(0).getSequenceName(), EVEN_READ_START, EVEN_READ_START);
+        fillWithRandomLikelihoods(samples, alleles, original);
+        final ReadLikelihoods<Allele> result = original.copy();
+        // filtering compacts the likelihoods in place, so the values left past the new end must not leak into
+        // the alleles and reads added afterwards.
+        result.filterToOnlyOverlappingUnclippedReads(evenReadOverlap);
+        final Allele newAllele = Allele.create("ACCCCCAAAATTTAAAGGG".getBytes(), false);
+        result.addMissingAlleles(Collections.singletonList(newAllele), -12.5);
+        final Map<String, List<GATKRead>> newReads = new LinkedHashMap<>();
+        for (final String sample : samples) {
+            newReads.put(sample, Collections.singletonList(ArtificialReadUtils.createArtificialRead(SAM_HEADER, "new_" + sample, 0, EVEN_READ_START, 10)));
+        }
+        result.addReads(newReads, -3.5);
+
+        for (int s = 0; s < samples.length; s++) {
+            final LikelihoodMatrix<Allele> oldSampleMatrix = original.sampleMatrix(s);
+            final LikelihoodMatrix<Allele> newSampleMatrix = result.sampleMatrix(s);
+            final int keptReadCount = (original.sampleReadCount(s) + 1) / 2;
+            Assert.assertEquals(newSampleMatrix.numberOfReads(), keptReadCount + 1);
+            Assert.assertEquals(newSampleMatrix.numberOfAlleles(), alleles.length + 1);
+            for (int r = 0; r < keptReadCount; r++) {
+                for (int a = 0; a < alleles.length; a++) {
+                    Assert.assertEquals(newSampleMatrix.get(a, r), oldSampleMatrix.get(a, r << 1));
+                }
+                Assert.assertEquals(newSampleMatrix.get(alleles.length, r), -12.5);
+            }
+            for (int a = 0; a <= alleles.length; a++) {
+                Assert.assertEquals(newSampleMatrix.get(a, keptReadCount), -3.5);
+            }
+        }
+    }
+
+    @Test(dataProvider = "marginalizationDataSets")
+    public void testSinglePrecisionMatchesDoublePrecision(final String[] samples, final Allele[] alleles, final Map<String,List<GATKRead>> reads, final Map<Allele,List<Allele>> newToOldAlleleMapping) {
+        final ReadLikelihoods<Allele> doublePrecision = new ReadLikelihoods<>(new IndexedSampleList(samples), new IndexedAlleleList<>(alleles), reads);
+        final ReadLikelihoods<Allele> singlePrecision = new ReadLikelihoods<>(new IndexedSampleList(samples), new IndexedAlleleList<>(alleles), reads, true);
+        Assert.assertFalse(doublePrecision.isSinglePrecision());
+        Assert.assertTrue(singlePrecision.isSinglePrecision());
+
+        // pair-hmm like values: large negative log10 likelihoods, some of them far below the best.
+        final Random rnd = Utils.getRandomGenerator();
+        for (int s = 0; s < samples.length; s++) {
+            for (int a = 0; a < alleles.length; a++) {
+                for (int r = 0; r < doublePrecision.sampleReadCount(s); r++) {
+                    final double value = -10.0 * Math.abs(rnd.nextGaussian()) - 100.0 * rnd.nextInt(3);
+                    doublePrecision.sampleMatrix(s).set(a, r, value);
+                    singlePrecision.sampleMatrix(s).set(a, r, value);
+                }
+            }
+        }
+        doublePrecision.normalizeLikelihoods(false, -4.5);
+        singlePrecision.normalizeLikelihoods(false, -4.5);
+        final SimpleInterval evenReadOverlap = new SimpleInterval(SAM_HEADER.getSequenceDictionary().getSequences().get(0).getSequenceName(), EVEN_READ_START, EVEN_READ_START);
+        final ReadLikelihoods<Allele> doubleMarginal = doublePrecision.marginalize(newToOldAlleleMapping, evenReadOverlap);
+        final ReadLikelihoods<Allele> singleMarginal = singlePrecision.marginalize(newToOldAlleleMapping, evenReadOverlap);
+        Assert.assertTrue(singleMarginal.isSinglePrecision());
+        doubleMarginal.normalizeLikelihoods(true, Double.NEGATIVE_INFINITY);
+        singleMarginal.normalizeLikelihoods(true, Double.NEGATIVE_INFINITY);
+
+        for (int s = 0; s < samples.length; s++) {
+            final LikelihoodMatrix<Allele> expected = doubleMarginal.sampleMatrix(s);
+            final LikelihoodMatrix<Allele> actual = singleMarginal.sampleMatrix(s);
+            Assert.assertEquals(actual.numberOfReads(), expected.numberOfReads());
+            for (int a = 0; a < expected.numberOfAlleles(); a++) {
+                for (int r = 0; r < expected.numberOfReads(); r++) {
+                    final double expectedValue = expected.get(a, r);
+                    if (Double.isInfinite(expectedValue)) {
+                        Assert.assertEquals(actual.get(a, r), expectedValue);
+                    } else {
+                        Assert.assertEquals(actual.get(a, r), expectedValue, Math.max(1e-4, Math.abs(expectedValue) * 1e-6));
+                    }
+                }
+            }
+        }
+    }
+
     @Test(dataProvider = "marginalizationDataSets")
     public void testMarginalizationWithOverlap(final String[] samples, final Allele[] alleles, final Map<String,List<GATKRead>> reads, final Map<Allele,List<Allele>> newToOldAlleleMapping) {
         final ReadLikelihoods<Allele> original = new ReadLikelihoods<>(new IndexedSampleList(samples), new IndexedAlleleList<>(alleles), reads);
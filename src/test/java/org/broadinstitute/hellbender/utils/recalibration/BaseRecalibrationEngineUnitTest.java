@@ -1,17 +1,21 @@
 package org.broadinstitute.hellbender.utils.recalibration;
 
+import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.TextCigarCodec;
 import org.broadinstitute.hellbender.engine.ReferenceDataSource;
 import org.broadinstitute.hellbender.engine.ReferenceMemorySource;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.io.IOUtils;
 import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.reference.ReferenceBases;
+import org.broadinstitute.hellbender.utils.variant.KnownSitesBitSet;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -145,4 +149,52 @@ public final class BaseRecalibrationEngineUnitTest {
         final int[] actual = (mode == EventType.BASE_INSERTION ? isInsertion : isDeletion);
         Assert.assertEquals(actual, expected, "calculateIsSNPOrIndel() failed with " + mode + " and cigar " + cigar + " Expected " + Arrays.toString(expected) + " but got " + Arrays.toString(actual));
     }
-}
\ No newline at end of file
+
+    @DataProvider(name = "KnownSitesCigars")
+    public Object[][] makeKnownSitesCigars() {
+        return new Object[][]{
+                {"40M"}, {"5S35M"}, {"5S10M2D10M3I10M2S"}, {"10M10D30M"}, {"3I37M"}, {"37M3I"}, {"20M1I19M"}
+        };
+    }
+
+    @Test(dataProvider = "KnownSitesCigars")
+    public void testKnownSitesFromBitSet(final String cigar) {
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeaderWithGroups(1, 1, 1000, 1);
+        final GATKRead read = ArtificialReadUtils.createArtificialRead(header, "read", 0, 100,
+                Utils.repeatBytes((byte) 'A', 40), Utils.repeatBytes((byte) 30, 40), cigar);
+
+        // no two sites are next to each other, so the bit set must skip the same bases
+        final List<SimpleInterval> sites = Arrays.asList(new SimpleInterval("1", 90, 97), new SimpleInterval("1", 99, 99),
+                new SimpleInterval("1", 103, 104), new SimpleInterval("1", 111, 112), new SimpleInterval("1", 119, 119),
+                new SimpleInterval("1", 125, 125), new SimpleInterval("1", 130, 131), new SimpleInterval("1", 136, 150));
+        final File file = IOUtils.createTempFile("knownSites", KnownSitesBitSet.FILE_EXTENSION);
+        KnownSitesBitSet.write(file.toPath(), header.getSequenceDictionary(), sites.iterator());
+
+        final BaseRecalibrationEngine engine = new BaseRecalibrationEngine(new RecalibrationArgumentCollection(), header);
+        Assert.assertEquals(engine.calculateKnownSites(read, new KnownSitesBitSet(file.toPath())), engine.calculateKnownSites(read, sites));
+    }
+
+    /**
+     * Adjacent known sites make one run of the bit set, so an insertion in the read between them is skipped too, unlike
+     * with the sites as features
+     */
+    @Test
+    public void testKnownSitesFromBitSetSkipInsertionBetweenAdjacentSites() {
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeaderWithGroups(1, 1, 1000, 1);
+        final GATKRead read = ArtificialReadUtils.createArtificialRead(header, "read", 0, 100,
+                Utils.repeatBytes((byte) 'A', 40), Utils.repeatBytes((byte) 30, 40), "20M1I19M");
+
+        // the last base before the insertion, at offset 19, and the first base after it, at offset 21
+        final List<SimpleInterval> sites = Arrays.asList(new SimpleInterval("1", 119, 119), new SimpleInterval("1", 120, 120));
+        final File file = IOUtils.createTempFile("knownSites", KnownSitesBitSet.FILE_EXTENSION);
+        KnownSitesBitSet.write(file.toPath(), header.getSequenceDictionary(), sites.iterator());
+
+        final BaseRecalibrationEngine engine = new BaseRecalibrationEngine(new RecalibrationArgumentCollection(), header);
+        final boolean[] fromFeatures = engine.calculateKnownSites(read, sites);
+        final boolean[] fromBitSet = engine.calculateKnownSites(read, new KnownSitesBitSet(file.toPath()));
+        for ( int i = 0; i < read.getLength(); i++ ) {
+            Assert.assertEquals(fromFeatures[i], i == 19 || i == 21, "offset " + i);
+            Assert.assertEquals(fromBitSet[i], i >= 19 && i <= 21, "offset " + i);
+        }
+    }
+}
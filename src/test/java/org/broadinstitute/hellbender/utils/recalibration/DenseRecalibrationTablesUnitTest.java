@@ -0,0 +1,146 @@
+package org.broadinstitute.hellbender.utils.recalibration;
+
+import org.broadinstitute.hellbender.GATKBaseTest;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.collections.NestedIntegerArray;
+import org.broadinstitute.hellbender.utils.recalibration.covariates.StandardCovariateList;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public final class DenseRecalibrationTablesUnitTest extends GATKBaseTest {
+    private static final int NUM_READ_GROUPS = 3;
+
+    private final StandardCovariateList covariates = new StandardCovariateList(new RecalibrationArgumentCollection(),
+            IntStream.range(0, NUM_READ_GROUPS).mapToObj(i -> "readgroup" + i).collect(Collectors.toList()));
+
+    /**
+     * Adds random observations to both tables, including many to the same cells
+     */
+    private void fillTables(final DenseRecalibrationTables dense, final RecalibrationTables tables, final int seed) {
+        final Random random = Utils.getRandomGenerator();
+        random.setSeed(seed);
+        final int contextDimension = covariates.get(2).maximumKeyValue() + 1;
+        final int cycleDimension = covariates.get(3).maximumKeyValue() + 1;
+        for ( int i = 0; i < 20000; i++ ) {
+            final int[] keys = {
+                    random.nextInt(NUM_READ_GROUPS),
+                    random.nextInt(5) * 10,
+                    random.nextInt(10) == 0 ? -1 : random.nextInt(50) * (contextDimension / 50),
+                    random.nextInt(cycleDimension)
+            };
+            final int eventIndex = random.nextInt(EventType.values().length);
+            final double isError = random.nextBoolean() ? 0.0 : random.nextDouble();
+
+            dense.increment(keys, eventIndex, isError);
+            RecalUtils.incrementDatumOrPutIfNecessary3keys(tables.getQualityScoreTable(), (byte) keys[1], isError, keys[0], keys[1], eventIndex);
+            for ( int j = 2; j < keys.length; j++ ) {
+                if ( keys[j] >= 0 ) {
+                    RecalUtils.incrementDatumOrPutIfNecessary4keys(tables.getTable(j), (byte) keys[1], isError, keys[0], keys[1], keys[j], eventIndex);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSameTablesAsRecalDatums() {
+        final DenseRecalibrationTables dense = new DenseRecalibrationTables(covariates, NUM_READ_GROUPS);
+        final RecalibrationTables expected = new RecalibrationTables(covariates, NUM_READ_GROUPS);
+        fillTables(dense, expected, 1);
+
+        // errors are rounded to ERROR_UNITS_PER_MISMATCH as they are added, so the sums differ from those of RecalDatum by
+        // up to half a unit for each observation
+        assertSameTables(dense.toRecalibrationTables(), expected, true);
+    }
+
+    @Test
+    public void testCombine() {
+        final DenseRecalibrationTables dense1 = new DenseRecalibrationTables(covariates, NUM_READ_GROUPS);
+        final DenseRecalibrationTables dense2 = new DenseRecalibrationTables(covariates, NUM_READ_GROUPS);
+        final RecalibrationTables expected1 = new RecalibrationTables(covariates, NUM_READ_GROUPS);
+        final RecalibrationTables expected2 = new RecalibrationTables(covariates, NUM_READ_GROUPS);
+        fillTables(dense1, expected1, 1);
+        fillTables(dense2, expected2, 2);
+
+        final DenseRecalibrationTables combined = DenseRecalibrationTables.inPlaceCombine(dense1, dense2);
+        Assert.assertSame(combined, dense1);
+        final RecalibrationTables expected = RecalibrationTables.inPlaceCombine(expected1, expected2);
+
+        // combining RecalDatums goes through unscaled error sums, so these may differ in the last bits
+        final RecalibrationTables actual = combined.toRecalibrationTables();
+        for ( int i = 0; i < expected.numTables(); i++ ) {
+            final List<NestedIntegerArray.Leaf<RecalDatum>> leaves = expected.getTable(i).getAllLeaves();
+            Assert.assertEquals(actual.getTable(i).getAllLeaves().size(), leaves.size());
+            for ( final NestedIntegerArray.Leaf<RecalDatum> leaf : leaves ) {
+                final RecalDatum datum = actual.getTable(i).get(leaf.keys);
+                Assert.assertNotNull(datum);
+                Assert.assertEquals(datum.getNumObservations(), leaf.value.getNumObservations());
+                Assert.assertEquals(datum.getNumMismatches(), leaf.value.getNumMismatches(), roundingTolerance(leaf.value));
+                Assert.assertEquals(datum.getEstimatedQReported(), leaf.value.getEstimatedQReported(), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void testCombineIsExact() {
+        final DenseRecalibrationTables together = new DenseRecalibrationTables(covariates, NUM_READ_GROUPS);
+        fillTables(together, new RecalibrationTables(covariates, NUM_READ_GROUPS), 1);
+        fillTables(together, new RecalibrationTables(covariates, NUM_READ_GROUPS), 2);
+
+        final DenseRecalibrationTables dense1 = new DenseRecalibrationTables(covariates, NUM_READ_GROUPS);
+        final DenseRecalibrationTables dense2 = new DenseRecalibrationTables(covariates, NUM_READ_GROUPS);
+        fillTables(dense1, new RecalibrationTables(covariates, NUM_READ_GROUPS), 1);
+        fillTables(dense2, new RecalibrationTables(covariates, NUM_READ_GROUPS), 2);
+
+        // error sums are exact, so neither splitting the observations nor the order of combination changes them
+        final RecalibrationTables expected = together.toRecalibrationTables();
+        final DenseRecalibrationTables reversed = new DenseRecalibrationTables(covariates, NUM_READ_GROUPS).combine(dense2).combine(dense1);
+        assertSameTables(reversed.toRecalibrationTables(), expected, false);
+        assertSameTables(dense1.combine(dense2).toRecalibrationTables(), expected, false);
+    }
+
+    @Test
+    public void testEmpty() {
+        final RecalibrationTables tables = new DenseRecalibrationTables(covariates, NUM_READ_GROUPS).toRecalibrationTables();
+        Assert.assertTrue(tables.isEmpty());
+        Assert.assertEquals(tables.numTables(), covariates.size());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testKeyOutOfBounds() {
+        final DenseRecalibrationTables dense = new DenseRecalibrationTables(covariates, NUM_READ_GROUPS);
+        dense.increment(new int[]{ 0, 30, 0, covariates.get(3).maximumKeyValue() + 1 }, 0, 0.0);
+    }
+
+    /**
+     * @return how far the error sum of a datum can be from that of the dense tables, which round each error
+     */
+    private static double roundingTolerance(final RecalDatum datum) {
+        return datum.getNumObservations() / (2 * DenseRecalibrationTables.ERROR_UNITS_PER_MISMATCH) + 1e-9;
+    }
+
+    /**
+     * @param roundedErrors whether the expected tables have the error sums of the increments, before rounding to
+     *                      {@link DenseRecalibrationTables#ERROR_UNITS_PER_MISMATCH}, rather than exactly the same ones
+     */
+    private static void assertSameTables(final RecalibrationTables actual, final RecalibrationTables expected, final boolean roundedErrors) {
+        final double tolerance = roundedErrors ? 1e-6 : 0.0;
+        Assert.assertEquals(actual.numTables(), expected.numTables());
+        for ( int i = 0; i < expected.numTables(); i++ ) {
+            final List<NestedIntegerArray.Leaf<RecalDatum>> leaves = expected.getTable(i).getAllLeaves();
+            Assert.assertEquals(actual.getTable(i).getAllLeaves().size(), leaves.size());
+            for ( final NestedIntegerArray.Leaf<RecalDatum> leaf : leaves ) {
+                final RecalDatum datum = actual.getTable(i).get(leaf.keys);
+                Assert.assertNotNull(datum);
+                Assert.assertEquals(datum.getNumObservations(), leaf.value.getNumObservations());
+                Assert.assertEquals(datum.getNumMismatches(), leaf.value.getNumMismatches(), roundedErrors ? roundingTolerance(leaf.value) : 0.0);
+                Assert.assertEquals(datum.getEstimatedQReported(), leaf.value.getEstimatedQReported(), tolerance);
+                Assert.assertEquals(datum.getEmpiricalQuality(), leaf.value.getEmpiricalQuality(), tolerance);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.broadinstitute.hellbender.utils.recalibration;
+
+import htsjdk.samtools.CigarElement;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.TextCigarCodec;
+import org.broadinstitute.hellbender.GATKBaseTest;
+import org.broadinstitute.hellbender.engine.ReferenceDataSource;
+import org.broadinstitute.hellbender.engine.ReferenceMemorySource;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.collections.NestedIntegerArray;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.reference.ReferenceBases;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+public final class ParallelBaseRecalibrationEngineUnitTest extends GATKBaseTest {
+    private static final int CONTIG_LENGTH = 1000;
+    private static final byte[] BASES = {'A', 'C', 'G', 'T'};
+    private static final List<String> CIGARS = Arrays.asList("60M", "25M2D35M", "25M2I33M", "5S50M5S", "20M1D20M1I19M");
+
+    @DataProvider(name = "threadsAndBatchSizes")
+    public Object[][] threadsAndBatchSizes() {
+        return new Object[][] { {2, 1}, {3, 7}, {4, 13}, {8, 50} };
+    }
+
+    /**
+     * Many small batches, with BAQ and therefore fractional errors, run several times, since the batches an engine gets
+     * depend on the scheduling of the threads
+     */
+    @Test(dataProvider = "threadsAndBatchSizes", invocationCount = 5)
+    public void testSameTablesAsOneEngine(final int numThreads, final int batchSize) {
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeaderWithGroups(1, 1, CONTIG_LENGTH, 2);
+        final Random random = new Random(numThreads * 100 + batchSize);
+        final byte[] referenceBases = new byte[CONTIG_LENGTH];
+        for ( int i = 0; i < referenceBases.length; i++ ) {
+            referenceBases[i] = BASES[random.nextInt(BASES.length)];
+        }
+        final Supplier<ReferenceDataSource> referenceSupplier = () -> new ReferenceMemorySource(
+                new ReferenceBases(referenceBases, new SimpleInterval("1", 1, CONTIG_LENGTH)), header.getSequenceDictionary());
+        final List<GATKRead> reads = new ArrayList<>();
+        for ( int i = 0; i < 400; i++ ) {
+            reads.add(makeRead(header, referenceBases, random, i));
+        }
+
+        final RecalibrationArgumentCollection recalArgs = new RecalibrationArgumentCollection();
+        recalArgs.enableBAQ = true;
+        recalArgs.computeIndelBQSRTables = true;
+
+        final BaseRecalibrationEngine serial = new BaseRecalibrationEngine(recalArgs, header.clone());
+        final ReferenceDataSource reference = referenceSupplier.get();
+        for ( final GATKRead read : reads ) {
+            serial.processRead(read.copy(), reference, Collections.emptyList());
+        }
+
+        final BaseRecalibrationEngine combined;
+        try ( final ParallelBaseRecalibrationEngine parallel = new ParallelBaseRecalibrationEngine(recalArgs, header,
+                referenceSupplier, numThreads, batchSize) ) {
+            for ( final GATKRead read : reads ) {
+                parallel.processRead(read.copy(), Collections.emptyList());
+            }
+            combined = parallel.finish();
+        }
+
+        Assert.assertEquals(combined.getNumReadsProcessed(), serial.getNumReadsProcessed());
+        assertSameTables(combined.getDenseRecalibrationTables().toRecalibrationTables(),
+                serial.getDenseRecalibrationTables().toRecalibrationTables());
+    }
+
+    /**
+     * A read copying the reference with about one base in ten substituted, so that there are errors for BAQ to spread
+     */
+    private static GATKRead makeRead(final SAMFileHeader header, final byte[] referenceBases, final Random random, final int index) {
+        final String cigar = CIGARS.get(random.nextInt(CIGARS.size()));
+        final int start = 100 + random.nextInt(CONTIG_LENGTH - 300);
+        final ByteArrayOutputStream bases = new ByteArrayOutputStream();
+        int referenceOffset = start - 1;
+        for ( final CigarElement element : TextCigarCodec.decode(cigar).getCigarElements() ) {
+            for ( int i = 0; i < element.getLength(); i++ ) {
+                if ( element.getOperator().consumesReadBases() ) {
+                    final boolean substitute = !element.getOperator().consumesReferenceBases() || random.nextInt(10) == 0;
+                    bases.write(substitute ? BASES[random.nextInt(BASES.length)] : referenceBases[referenceOffset]);
+                }
+                if ( element.getOperator().consumesReferenceBases() ) {
+                    referenceOffset++;
+                }
+            }
+        }
+        final byte[] quals = new byte[bases.size()];
+        for ( int i = 0; i < quals.length; i++ ) {
+            quals[i] = (byte) (10 + random.nextInt(30));
+        }
+        final GATKRead read = ArtificialReadUtils.createArtificialRead(header, "read" + index, 0, start, bases.toByteArray(), quals, cigar);
+        read.setReadGroup(header.getReadGroups().get(random.nextInt(header.getReadGroups().size())).getId());
+        read.setIsReverseStrand(random.nextBoolean());
+        return read;
+    }
+
+    private static void assertSameTables(final RecalibrationTables actual, final RecalibrationTables expected) {
+        Assert.assertEquals(actual.numTables(), expected.numTables());
+        for ( int i = 0; i < expected.numTables(); i++ ) {
+            final List<NestedIntegerArray.Leaf<RecalDatum>> leaves = expected.getTable(i).getAllLeaves();
+            Assert.assertEquals(actual.getTable(i).getAllLeaves().size(), leaves.size());
+            for ( final NestedIntegerArray.Leaf<RecalDatum> leaf : leaves ) {
+                final RecalDatum datum = actual.getTable(i).get(leaf.keys);
+                Assert.assertNotNull(datum);
+                Assert.assertEquals(datum.getNumObservations(), leaf.value.getNumObservations());
+                // exactly the same, not just close
+                Assert.assertEquals(Double.doubleToLongBits(datum.getNumMismatches()), Double.doubleToLongBits(leaf.value.getNumMismatches()),
+                        "Different errors in table " + i + " at " + Arrays.toString(leaf.keys));
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.broadinstitute.hellbender.utils.recalibration;
+
+import org.broadinstitute.hellbender.GATKBaseTest;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.recalibration.covariates.StandardCovariateList;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.Random;
+
+public final class RecalibrationConvergenceUnitTest extends GATKBaseTest {
+    private final StandardCovariateList covariates = new StandardCovariateList(new RecalibrationArgumentCollection(), Collections.singletonList("readgroup"));
+
+    /**
+     * Adds observations of quality 30 bases with the given error rate
+     */
+    private static void addObservations(final DenseRecalibrationTables tables, final Random random, final int numObservations, final double errorRate) {
+        for ( int i = 0; i < numObservations; i++ ) {
+            tables.increment(new int[]{ 0, 30, -1, -1 }, EventType.BASE_SUBSTITUTION.ordinal(), random.nextDouble() < errorRate ? 1.0 : 0.0);
+        }
+    }
+
+    @Test
+    public void testConvergesWithStableErrorRate() {
+        final Random random = Utils.getRandomGenerator();
+        final DenseRecalibrationTables tables = new DenseRecalibrationTables(covariates, 1);
+        final RecalibrationConvergence convergence = new RecalibrationConvergence(0.2, 2);
+
+        addObservations(tables, random, 1_000_000, 0.001);
+        Assert.assertFalse(convergence.update(tables));
+        Assert.assertEquals(convergence.getLastChange(), Double.POSITIVE_INFINITY);
+
+        addObservations(tables, random, 100_000, 0.001);
+        Assert.assertFalse(convergence.update(tables));
+        Assert.assertTrue(convergence.getLastChange() < 0.2);
+
+        addObservations(tables, random, 100_000, 0.001);
+        Assert.assertTrue(convergence.update(tables));
+        Assert.assertTrue(convergence.hasConverged());
+    }
+
+    @Test
+    public void testDoesNotConvergeWhenErrorRateChanges() {
+        final Random random = Utils.getRandomGenerator();
+        final DenseRecalibrationTables tables = new DenseRecalibrationTables(covariates, 1);
+        final RecalibrationConvergence convergence = new RecalibrationConvergence(0.1, 1);
+
+        addObservations(tables, random, 100_000, 0.001);
+        Assert.assertFalse(convergence.update(tables));
+        addObservations(tables, random, 100_000, 0.01);
+        Assert.assertFalse(convergence.update(tables));
+        Assert.assertTrue(convergence.getLastChange() > 1.0);
+    }
+
+    @Test
+    public void testIgnoresBatchesWithTooFewObservations() {
+        final Random random = Utils.getRandomGenerator();
+        final DenseRecalibrationTables tables = new DenseRecalibrationTables(covariates, 1);
+        final RecalibrationConvergence convergence = new RecalibrationConvergence(0.1, 1);
+
+        addObservations(tables, random, 100_000, 0.001);
+        Assert.assertFalse(convergence.update(tables));
+        // batches without new data, like those from regions without coverage, don't count as stable
+        for ( int i = 0; i < 5; i++ ) {
+            Assert.assertFalse(convergence.update(tables));
+        }
+        Assert.assertEquals(convergence.getLastChange(), Double.POSITIVE_INFINITY);
+    }
+}
@@ -46,6 +46,53 @@ public final class ContextCovariateUnitTest extends GATKBaseTest {
         }
     }
 
+    @Test
+    public void testContextsWithNsAndLowQualityTails() {
+        final Random rnd = Utils.getRandomGenerator();
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader();
+        final byte[] alphabet = {'A', 'C', 'G', 'T', 'N', 'a', 't'};
+
+        for (final int contextSize : new int[]{1, 2, 3, 6}) {
+            final RecalibrationArgumentCollection args = new RecalibrationArgumentCollection();
+            args.MISMATCHES_CONTEXT_SIZE = contextSize;
+            args.INDELS_CONTEXT_SIZE = contextSize + 1;
+            final ContextCovariate contextCovariate = new ContextCovariate(args);
+
+            for (int i = 0; i < 50; i++) {
+                final int readLength = rnd.nextInt(20) + 1;
+                final byte[] bases = new byte[readLength];
+                final byte[] quals = new byte[readLength];
+                for (int j = 0; j < readLength; j++) {
+                    bases[j] = alphabet[rnd.nextInt(alphabet.length)];
+                    quals[j] = (byte) rnd.nextInt(10);
+                }
+                final GATKRead read = ArtificialReadUtils.createArtificialRead(header, bases, quals, readLength + "M");
+                read.setIsReverseStrand(rnd.nextBoolean());
+
+                final ReadCovariates readCovariates = new ReadCovariates(readLength, 1, new CovariateKeyCache());
+                contextCovariate.recordValues(read, header, readCovariates, true);
+
+                final byte[] strandedBases = getStrandedClippedBytes(read, args.LOW_QUAL_TAIL);
+                for (int offset = 0; offset < readLength; offset++) {
+                    if (strandedBases.length == 0) {
+                        Assert.assertEquals(readCovariates.getMismatchesKeySet(offset)[0], 0);
+                        Assert.assertEquals(readCovariates.getInsertionsKeySet(offset)[0], 0);
+                    } else {
+                        final int strandedOffset = getStrandedOffset(read.isReverseStrand(), offset, readLength);
+                        Assert.assertEquals(readCovariates.getMismatchesKeySet(offset)[0], expectedKey(strandedBases, strandedOffset, contextSize));
+                        Assert.assertEquals(readCovariates.getInsertionsKeySet(offset)[0], expectedKey(strandedBases, strandedOffset, contextSize + 1));
+                        Assert.assertEquals(readCovariates.getDeletionsKeySet(offset)[0], expectedKey(strandedBases, strandedOffset, contextSize + 1));
+                    }
+                }
+            }
+        }
+    }
+
+    private static int expectedKey(final byte[] strandedBases, final int strandedOffset, final int contextSize) {
+        final int contextStart = strandedOffset - contextSize + 1;
+        return contextStart < 0 ? -1 : ContextCovariate.keyFromContext(new String(strandedBases, contextStart, contextSize));
+    }
+
     public static void verifyCovariateArray(int[][] values, int contextSize, GATKRead read, Covariate contextCovariate, final byte lowQualTail) {
         for (int i = 0; i < values.length; i++) {
             Assert.assertEquals(contextCovariate.formatKey(values[i][0]), expectedContext(read, i, contextSize, lowQualTail), "offset " + i);
@@ -0,0 +1,10 @@
+package org.broadinstitute.hellbender.utils.smithwaterman;
+
+public final class SmithWatermanJavaAlignerBandedUnitTest extends SmithWatermanAlignerAbstractUnitTest {
+
+    @Override
+    protected SmithWatermanJavaAligner getAligner() {
+        return SmithWatermanJavaAligner.getInstance(SmithWatermanJavaAligner.Mode.BANDED);
+    }
+
+}
@@ -0,0 +1,57 @@
+package org.broadinstitute.hellbender.utils.smithwaterman;
+
+import org.broadinstitute.gatk.nativebindings.smithwaterman.SWOverhangStrategy;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.read.CigarUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Timing test for the modes of {@link SmithWatermanJavaAligner}, and the AVX aligner when it can be loaded, on
+ * haplotype-to-reference and read-to-haplotype sized alignments.
+ */
+public final class SmithWatermanJavaAlignerTimingTest {
+
+    public static void main(final String[] args) {
+        final Random random = new Random(7);
+        final List<byte[][]> haplotypePairs = new ArrayList<>();
+        final List<byte[][]> readPairs = new ArrayList<>();
+        for ( int i = 0; i < 500; i++ ) {
+            final String ref = SmithWatermanJavaAlignerUnitTest.randomSequence(random, 400, "ACGT");
+            final String hap = SmithWatermanJavaAlignerUnitTest.mutate(random, ref, 3, "ACGT");
+            haplotypePairs.add(new byte[][]{ref.getBytes(), hap.getBytes()});
+            final int readStart = random.nextInt(hap.length() - 150);
+            readPairs.add(new byte[][]{hap.getBytes(), SmithWatermanJavaAlignerUnitTest.mutate(random, hap.substring(readStart, readStart + 150), 2, "ACGT").getBytes()});
+        }
+
+        final List<SmithWatermanAligner> aligners = new ArrayList<>();
+        for ( final SmithWatermanJavaAligner.Mode mode : SmithWatermanJavaAligner.Mode.values() ) {
+            aligners.add(SmithWatermanJavaAligner.getInstance(mode));
+        }
+        try {
+            aligners.add(new SmithWatermanIntelAligner());
+        } catch ( final UserException.HardwareFeatureException e ) {
+            System.out.println("AVX SmithWaterman is not available, timing only the java implementations");
+        }
+
+        for ( final SmithWatermanAligner aligner : aligners ) {
+            final String name = aligner instanceof SmithWatermanJavaAligner ?
+                    "java " + ((SmithWatermanJavaAligner) aligner).getMode() : aligner.getClass().getSimpleName();
+            for ( int round = 0; round < 5; round++ ) {
+                final long startTime = System.nanoTime();
+                for ( final byte[][] pair : haplotypePairs ) {
+                    aligner.align(pair[0], pair[1], SmithWatermanAligner.STANDARD_NGS, SWOverhangStrategy.LEADING_INDEL);
+                }
+                final long haplotypeTime = System.nanoTime() - startTime;
+                for ( final byte[][] pair : readPairs ) {
+                    aligner.align(pair[0], pair[1], CigarUtils.NEW_SW_PARAMETERS, SWOverhangStrategy.SOFTCLIP);
+                }
+                final long readTime = System.nanoTime() - startTime - haplotypeTime;
+                System.out.println(String.format("%s round %d: haplotype to reference %.1f ms, read to haplotype %.1f ms",
+                        name, round, haplotypeTime / 1e6, readTime / 1e6));
+            }
+        }
+    }
+}
@@ -1,10 +1,91 @@
 package org.broadinstitute.hellbender.utils.smithwaterman;
 
+import org.broadinstitute.gatk.nativebindings.smithwaterman.SWOverhangStrategy;
+import org.broadinstitute.gatk.nativebindings.smithwaterman.SWParameters;
+import org.broadinstitute.hellbender.utils.read.CigarUtils;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 public final class SmithWatermanJavaAlignerUnitTest extends SmithWatermanAlignerAbstractUnitTest {
 
+    private static final SWParameters[] PARAMETERS = {SmithWatermanAligner.ORIGINAL_DEFAULT, SmithWatermanAligner.STANDARD_NGS,
+            CigarUtils.NEW_SW_PARAMETERS, new SWParameters(1, -1, -1, -1), new SWParameters(2, -3, -5, -2)};
+
     @Override
     protected SmithWatermanJavaAligner getAligner() {
         return SmithWatermanJavaAligner.getInstance();
     }
 
+    static String randomSequence(final Random random, final int length, final String alphabet) {
+        final StringBuilder builder = new StringBuilder(length);
+        for ( int i = 0; i < length; i++ ) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+
+    static String mutate(final Random random, final String sequence, final int numberOfEvents, final String alphabet) {
+        final StringBuilder builder = new StringBuilder(sequence);
+        for ( int event = 0; event < numberOfEvents && builder.length() > 2; event++ ) {
+            final int position = random.nextInt(builder.length());
+            final int length = 1 + random.nextInt(8);
+            switch ( random.nextInt(3) ) {
+                case 0: builder.setCharAt(position, alphabet.charAt(random.nextInt(alphabet.length()))); break;
+                case 1: builder.insert(position, randomSequence(random, length, alphabet)); break;
+                default: builder.delete(position, Math.min(builder.length() - 1, position + length));
+            }
+        }
+        return builder.toString();
+    }
+
+    @DataProvider(name = "RandomPairs")
+    public Object[][] makeRandomPairs() {
+        final Random random = new Random(13);
+        final List<Object[]> tests = new ArrayList<>();
+        for ( final String alphabet : new String[]{"ACGT", "AC", "A"} ) {
+            for ( int i = 0; i < 40; i++ ) {
+                final String ref = randomSequence(random, 1 + random.nextInt(i % 2 == 0 ? 20 : 300), alphabet);
+                final String alt;
+                switch ( i % 3 ) {
+                    case 0: alt = randomSequence(random, 1 + random.nextInt(200), alphabet); break;
+                    case 1: alt = mutate(random, ref, random.nextInt(4), alphabet); break;
+                    default: alt = mutate(random, ref.substring(random.nextInt(ref.length())), random.nextInt(20), alphabet);
+                }
+                for ( final SWOverhangStrategy strategy : SWOverhangStrategy.values() ) {
+                    tests.add(new Object[]{ref, alt.isEmpty() ? "A" : alt, strategy});
+                }
+            }
+        }
+        return tests.toArray(new Object[][]{});
+    }
+
+    @Test(dataProvider = "RandomPairs")
+    public void testModesGiveIdenticalAlignments(final String ref, final String alt, final SWOverhangStrategy strategy) {
+        final SmithWatermanJavaAligner full = SmithWatermanJavaAligner.getInstance(SmithWatermanJavaAligner.Mode.FULL);
+        for ( final SWParameters parameters : PARAMETERS ) {
+            final SmithWatermanAlignment expected = full.align(ref.getBytes(), alt.getBytes(), parameters, strategy);
+            for ( final SmithWatermanJavaAligner.Mode mode : SmithWatermanJavaAligner.Mode.values() ) {
+                final SmithWatermanAlignment actual = SmithWatermanJavaAligner.getInstance(mode).align(ref.getBytes(), alt.getBytes(), parameters, strategy);
+                Assert.assertEquals(actual.getCigar(), expected.getCigar(), mode.toString());
+                Assert.assertEquals(actual.getAlignmentOffset(), expected.getAlignmentOffset(), mode.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testGetInstance() {
+        Assert.assertSame(SmithWatermanJavaAligner.getInstance(SmithWatermanJavaAligner.Mode.FULL), SmithWatermanJavaAligner.getInstance());
+        for ( final SmithWatermanJavaAligner.Mode mode : SmithWatermanJavaAligner.Mode.values() ) {
+            Assert.assertEquals(SmithWatermanJavaAligner.getInstance(mode).getMode(), mode);
+        }
+        Assert.assertEquals(((SmithWatermanJavaAligner) SmithWatermanAligner.getAligner(SmithWatermanAligner.Implementation.JAVA_BANDED)).getMode(),
+                SmithWatermanJavaAligner.Mode.BANDED);
+        Assert.assertEquals(((SmithWatermanJavaAligner) SmithWatermanAligner.getAligner(SmithWatermanAligner.Implementation.JAVA_STRIPED)).getMode(),
+                SmithWatermanJavaAligner.Mode.STRIPED);
+    }
 }
@@ -0,0 +1,97 @@
+package org.broadinstitute.hellbender.utils.variant;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import org.broadinstitute.hellbender.GATKBaseTest;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public final class KnownSitesBitSetUnitTest extends GATKBaseTest {
+    private static final SAMSequenceDictionary DICTIONARY = new SAMSequenceDictionary(Arrays.asList(
+            new SAMSequenceRecord("1", 1000), new SAMSequenceRecord("2", 200), new SAMSequenceRecord("3", 64)));
+
+    private static final List<SimpleInterval> SITES = Arrays.asList(
+            new SimpleInterval("1", 500, 500),
+            new SimpleInterval("1", 1, 1),
+            new SimpleInterval("1", 60, 70),   // crosses from the first long into the second
+            new SimpleInterval("1", 128, 128),
+            new SimpleInterval("1", 1000, 1000),
+            new SimpleInterval("3", 63, 64));
+
+    private KnownSitesBitSet writeAndOpen(final List<SimpleInterval> sites) {
+        final File file = createTempFile("knownSites", KnownSitesBitSet.FILE_EXTENSION);
+        KnownSitesBitSet.write(file.toPath(), DICTIONARY, sites.iterator());
+        return new KnownSitesBitSet(file.toPath());
+    }
+
+    @Test
+    public void testIsKnownSite() {
+        final KnownSitesBitSet knownSites = writeAndOpen(SITES);
+        for ( final SAMSequenceRecord contig : DICTIONARY.getSequences() ) {
+            for ( int position = 0; position <= contig.getSequenceLength() + 100; position++ ) {
+                final SimpleInterval site = new SimpleInterval(contig.getSequenceName(), Math.max(position, 1), Math.max(position, 1));
+                final boolean expected = position > 0 && SITES.stream().anyMatch(s -> s.overlaps(site));
+                Assert.assertEquals(knownSites.isKnownSite(contig.getSequenceName(), position), expected, contig.getSequenceName() + ":" + position);
+            }
+        }
+        Assert.assertFalse(knownSites.isKnownSite("4", 1));
+    }
+
+    @Test
+    public void testNextKnownSite() {
+        final KnownSitesBitSet knownSites = writeAndOpen(SITES);
+        Assert.assertEquals(knownSites.nextKnownSite("1", 1, 1000), 1);
+        Assert.assertEquals(knownSites.nextKnownSite("1", 2, 1000), 60);
+        Assert.assertEquals(knownSites.nextKnownSite("1", 65, 1000), 65);
+        Assert.assertEquals(knownSites.nextKnownSite("1", 71, 1000), 128);
+        Assert.assertEquals(knownSites.nextKnownSite("1", 71, 127), -1);
+        Assert.assertEquals(knownSites.nextKnownSite("1", 129, 1000), 500);
+        Assert.assertEquals(knownSites.nextKnownSite("1", 501, 2000), 1000);
+        Assert.assertEquals(knownSites.nextKnownSite("1", 1001, 2000), -1);
+        Assert.assertEquals(knownSites.nextKnownSite("2", 1, 200), -1);
+        Assert.assertEquals(knownSites.nextKnownSite("3", 1, 64), 63);
+        Assert.assertEquals(knownSites.nextKnownSite("4", 1, 64), -1);
+    }
+
+    @Test
+    public void testNextUnknownSite() {
+        final KnownSitesBitSet knownSites = writeAndOpen(SITES);
+        Assert.assertEquals(knownSites.nextUnknownSite("1", 1, 1000), 2);
+        Assert.assertEquals(knownSites.nextUnknownSite("1", 60, 1000), 71);
+        Assert.assertEquals(knownSites.nextUnknownSite("1", 60, 70), -1);
+        Assert.assertEquals(knownSites.nextUnknownSite("1", 128, 1000), 129);
+        Assert.assertEquals(knownSites.nextUnknownSite("1", 1000, 1000), -1);
+        Assert.assertEquals(knownSites.nextUnknownSite("1", 1000, 1010), 1001);
+        Assert.assertEquals(knownSites.nextUnknownSite("2", 5, 200), 5);
+        Assert.assertEquals(knownSites.nextUnknownSite("3", 63, 64), -1);
+        Assert.assertEquals(knownSites.nextUnknownSite("3", 63, 100), 65);
+        Assert.assertEquals(knownSites.nextUnknownSite("4", 10, 20), 10);
+        Assert.assertEquals(knownSites.nextUnknownSite("4", 20, 10), -1);
+    }
+
+    @Test
+    public void testNoSites() {
+        final KnownSitesBitSet knownSites = writeAndOpen(Collections.emptyList());
+        Assert.assertEquals(knownSites.nextKnownSite("1", 1, 1000), -1);
+        Assert.assertEquals(knownSites.nextUnknownSite("1", 1, 1000), 1);
+    }
+
+    @Test
+    public void testSiteOnUnknownContig() {
+        final KnownSitesBitSet knownSites = writeAndOpen(Arrays.asList(new SimpleInterval("4", 1, 1), new SimpleInterval("1", 5, 5)));
+        Assert.assertFalse(knownSites.isKnownSite("4", 1));
+        Assert.assertEquals(knownSites.nextKnownSite("1", 1, 1000), 5);
+    }
+
+    @Test(expectedExceptions = UserException.class)
+    public void testNotAKnownSitesFile() {
+        new KnownSitesBitSet(new File(publicTestDir + "exampleFASTA.fasta").toPath());
+    }
+}
@@ -408,6 +408,39 @@ public class GVCFWriterUnitTest extends GATKBaseTest {
         Assert.assertEquals(gvcfWriter.checkError(), mockWriter.checkError());
     }
 
+    @Test
+    public void testBandsAreMergedLikeTheirSites() {
+        final int[] gqs = {0, 5, 5, 12, 15, 30, 30, 2, 99, 120, 120, 15};
+
+        final MockWriter siteWriter = new MockWriter();
+        final GVCFWriter writerOfSites = new GVCFWriter(siteWriter, standardPartition, HomoSapiensConstants.DEFAULT_PLOIDY);
+        writerOfSites.add(makeDeletion(1, 3));
+        for (int i = 0; i < gqs.length; i++) {
+            writerOfSites.add(makeHomRef(2 + i, gqs[i]));
+        }
+        writerOfSites.close();
+
+        final MockWriter bandWriter = new MockWriter();
+        final GVCFWriter writerOfBands = new GVCFWriter(bandWriter, standardPartition, HomoSapiensConstants.DEFAULT_PLOIDY);
+        writerOfBands.add(makeDeletion(1, 3));
+        final ReferenceConfidenceBand.Builder band = new ReferenceConfidenceBand.Builder("test", SAMPLE_NAME,
+                HomoSapiensConstants.DEFAULT_PLOIDY, GVCFWriter.parsePartitions(standardPartition));
+        for (int i = 0; i < gqs.length; i++) {
+            // split the sites into bands of at most three sites, so that the writer has to merge bands
+            if (!band.isEmpty() && (i % 3 == 0 || !band.canAdd(CHR1, 2 + i, gqs[i]))) {
+                writerOfBands.addBand(band.build());
+            }
+            band.add(CHR1, 2 + i, REF.getBases()[0], gqs[i], new int[]{0, gqs[i], 20 + gqs[i]}, 10);
+        }
+        writerOfBands.addBand(band.build());
+        writerOfBands.close();
+
+        Assert.assertEquals(bandWriter.emitted.size(), siteWriter.emitted.size());
+        for (int i = 0; i < siteWriter.emitted.size(); i++) {
+            Assert.assertEquals(bandWriter.emitted.get(i).toStringDecodeGenotypes(), siteWriter.emitted.get(i).toStringDecodeGenotypes());
+        }
+    }
+
     @Test
     public void testToVCFHeaderLine() {
         final Range<Integer> band = Range.closedOpen(10,20);